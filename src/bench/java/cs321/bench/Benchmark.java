@@ -0,0 +1,45 @@
+package cs321.bench;
+
+/**
+ * A {@link Benchmark} is a piece of work that {@link BenchmarkHarness} times over and over to measure its throughput.
+ * <p>
+ * Anything that shouldn't be timed, like building inputs, belongs in {@link Benchmark#setUp()}. Each call to
+ * {@link Benchmark#run()} should do the same amount of work, and hand whatever it computes to {@link Blackhole} so the
+ * JIT can't optimize the work away.
+ *
+ * @author Derek Caplinger
+ * @author Matt Youngberg
+ */
+public interface Benchmark {
+
+    /**
+     * Get the name of the {@link Benchmark}, which {@link BenchmarkHarness} reports it under and filters it by.
+     *
+     * @return  the name of the {@link Benchmark}
+     */
+    String getName();
+
+    /**
+     * Prepare to run the {@link Benchmark}, once before any call to {@link Benchmark#run()}.
+     *
+     * @throws Exception    if the {@link Benchmark} can't be prepared
+     */
+    default void setUp() throws Exception {
+    }
+
+    /**
+     * Do the work being measured, once.
+     *
+     * @return              the number of operations done, by which throughput is counted
+     * @throws Exception    if the work fails
+     */
+    long run() throws Exception;
+
+    /**
+     * Clean up after the {@link Benchmark}, once after the last call to {@link Benchmark#run()}.
+     *
+     * @throws Exception    if the {@link Benchmark} can't be cleaned up
+     */
+    default void tearDown() throws Exception {
+    }
+}
@@ -0,0 +1,190 @@
+package cs321.bench;
+
+import cs321.btree.BTreeBenchmarks;
+import cs321.create.CreateBenchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A program that runs {@link Benchmark}s and reports their throughput.
+ * <p>
+ * Each {@link Benchmark} is run a number of times to warm up the JIT, then a number of times more while timed. The
+ * throughput of each timed run is recorded, and the mean and standard deviation over them reported. This is a small
+ * stand-in for a harness like JMH, which we can't fetch in every environment the project is built in; it doesn't fork
+ * a JVM per benchmark, so run benchmarks you compare in separate invocations, or in the same order, to keep the JIT on
+ * even footing.
+ * <p>
+ * Run with <code>./gradlew bench --args="--filter=&lt;regex&gt; --warmup=&lt;n&gt; --iterations=&lt;n&gt;"</code>,
+ * all arguments optional.
+ *
+ * @author Derek Caplinger
+ * @author Matt Youngberg
+ */
+public class BenchmarkHarness {
+
+    /**
+     * The number of untimed runs of each {@link Benchmark} by default.
+     */
+    private static final int DEFAULT_WARMUP = 5;
+
+    /**
+     * The number of timed runs of each {@link Benchmark} by default.
+     */
+    private static final int DEFAULT_ITERATIONS = 10;
+
+    /**
+     * The pattern that each argument must match.
+     */
+    private static final Pattern ARGUMENT_PATTERN = Pattern.compile("^--([a-zA-Z]+)=(.+)$");
+
+    /**
+     * The usage message of the program.
+     */
+    private static final String USAGE = "Usage: ./gradlew bench --args=\"[--filter=<regex>] [--warmup=<n>] "
+            + "[--iterations=<n>]\"";
+
+    /**
+     * The result of timing a {@link Benchmark}.
+     */
+    public static final class Result {
+
+        /**
+         * The name of the {@link Benchmark}.
+         */
+        public final String name;
+
+        /**
+         * The mean throughput over the timed runs, in operations per second.
+         */
+        public final double opsPerSecond;
+
+        /**
+         * The standard deviation of the throughput over the timed runs, in operations per second.
+         */
+        public final double stdDev;
+
+        /**
+         * Create a new {@link Result}.
+         *
+         * @param name          the name of the {@link Benchmark}
+         * @param opsPerSecond  the mean throughput, in operations per second
+         * @param stdDev        the standard deviation of the throughput, in operations per second
+         */
+        public Result(String name, double opsPerSecond, double stdDev) {
+            this.name = name;
+            this.opsPerSecond = opsPerSecond;
+            this.stdDev = stdDev;
+        }
+
+        /**
+         * Format the {@link Result} as a row of the report.
+         *
+         * @return  the {@link Result} as a row of the report
+         */
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%-50s %16.1f %9.1f%% %14.1f", name, opsPerSecond,
+                    100 * stdDev / opsPerSecond, 1e9 / opsPerSecond);
+        }
+    }
+
+    /**
+     * The entry point of the program.
+     *
+     * @param args  the command line arguments
+     */
+    public static void main(String[] args) {
+        String filter = ".*";
+        int warmup = DEFAULT_WARMUP;
+        int iterations = DEFAULT_ITERATIONS;
+        for (String arg : args) {
+            Matcher matcher = ARGUMENT_PATTERN.matcher(arg);
+            if (!matcher.matches()) {
+                System.err.println("Invalid argument: " + arg + "\n" + USAGE);
+                System.exit(1);
+            }
+            switch (matcher.group(1)) {
+                case "filter":
+                    filter = matcher.group(2);
+                    break;
+                case "warmup":
+                    warmup = Integer.parseInt(matcher.group(2));
+                    break;
+                case "iterations":
+                    iterations = Integer.parseInt(matcher.group(2));
+                    break;
+                default:
+                    System.err.println("Unknown argument: " + arg + "\n" + USAGE);
+                    System.exit(1);
+            }
+        }
+
+        Pattern pattern = Pattern.compile(filter);
+        System.out.println(String.format(Locale.ROOT, "%-50s %16s %10s %14s", "Benchmark", "ops/s", "stddev",
+                "ns/op"));
+        for (Benchmark benchmark : getBenchmarks()) {
+            if (!pattern.matcher(benchmark.getName()).find()) {
+                continue;
+            }
+            try {
+                System.out.println(run(benchmark, warmup, iterations));
+            } catch (Exception e) {  // E.g. no SQLite driver on the classpath; the rest can still run
+                System.out.println(String.format(Locale.ROOT, "%-50s failed: %s", benchmark.getName(), e));
+            }
+        }
+    }
+
+    /**
+     * Get every {@link Benchmark} of the project.
+     *
+     * @return  every {@link Benchmark} of the project
+     */
+    public static List<Benchmark> getBenchmarks() {
+        List<Benchmark> benchmarks = new ArrayList<>();
+        benchmarks.addAll(BTreeBenchmarks.getBenchmarks());
+        benchmarks.addAll(CreateBenchmarks.getBenchmarks());
+        return benchmarks;
+    }
+
+    /**
+     * Time a {@link Benchmark}.
+     *
+     * @param benchmark     the {@link Benchmark} to time
+     * @param warmup        the number of untimed runs before timing
+     * @param iterations    the number of timed runs
+     * @return              the {@link Result} of the timed runs
+     * @throws Exception    if the {@link Benchmark} fails
+     */
+    public static Result run(Benchmark benchmark, int warmup, int iterations) throws Exception {
+        benchmark.setUp();
+        try {
+            for (int i = 0; i < warmup; i++) {
+                benchmark.run();
+            }
+
+            double[] throughputs = new double[iterations];
+            for (int i = 0; i < iterations; i++) {
+                long start = System.nanoTime();
+                long ops = benchmark.run();
+                long elapsed = Math.max(System.nanoTime() - start, 1);
+                throughputs[i] = ops * 1e9 / elapsed;
+            }
+
+            double mean = 0;
+            for (double throughput : throughputs) {
+                mean += throughput / iterations;
+            }
+            double variance = 0;
+            for (double throughput : throughputs) {
+                variance += (throughput - mean) * (throughput - mean) / Math.max(iterations - 1, 1);
+            }
+            return new Result(benchmark.getName(), mean, Math.sqrt(variance));
+        } finally {
+            benchmark.tearDown();
+        }
+    }
+}
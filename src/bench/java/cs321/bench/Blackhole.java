@@ -0,0 +1,40 @@
+package cs321.bench;
+
+/**
+ * A sink for the results of {@link Benchmark}s, so the JIT can't find that a result goes unused and skip the work that
+ * computes it.
+ *
+ * @author Derek Caplinger
+ * @author Matt Youngberg
+ */
+public final class Blackhole {
+
+    /**
+     * Everything consumed so far, folded together. Volatile so that every write to it has to happen.
+     */
+    private static volatile long sink;
+
+    /**
+     * Not instantiable.
+     */
+    private Blackhole() {
+    }
+
+    /**
+     * Consume a value.
+     *
+     * @param value the value to consume
+     */
+    public static void consume(long value) {
+        sink ^= value;
+    }
+
+    /**
+     * Consume an object.
+     *
+     * @param obj   the object to consume
+     */
+    public static void consume(Object obj) {
+        sink ^= System.identityHashCode(obj);
+    }
+}
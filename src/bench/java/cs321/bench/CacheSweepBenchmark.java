@@ -0,0 +1,253 @@
+package cs321.bench;
+
+import cs321.btree.BTree;
+import cs321.btree.TreeObject;
+import cs321.create.SequenceUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A program that searches a {@link BTree} for a query file at a range of cache sizes, as GeneBankSearchBTree does
+ * with <code>--cachesize</code>, and reports how the cache hit rate, the nodes read from disk and the throughput change
+ * with the cache size. Paired with the skewed workloads of {@link QueryWorkloadGenerator}, this shows how much of a
+ * query stream's repetition the cache turns into hits.
+ * <p>
+ * Each cache size is searched in one or both of two ways: in batches with {@link BTree#searchBatch(long[], long[])},
+ * as GeneBankSearchBTree does, or one query at a time with {@link BTree#search(long, long)}. Either way every query
+ * and its complement are searched for. Each run opens the {@link BTree} afresh, so its cache starts cold; the first
+ * runs of each combination warm up the JIT and aren't recorded. Every run is written as JSON, and the median of each
+ * combination as a table on standard error.
+ * <p>
+ * Run with <code>./gradlew benchCache --args="--btreefile=&lt;file&gt; --queryfile=&lt;file&gt; ..."</code>; see
+ * {@link CacheSweepBenchmark#USAGE} for the arguments.
+ *
+ * @author Derek Caplinger
+ * @author Matt Youngberg
+ */
+public class CacheSweepBenchmark {
+
+    /**
+     * The usage message of the program.
+     */
+    private static final String USAGE = "Usage: ./gradlew benchCache --args=\"--btreefile=<btree-file> "
+            + "--queryfile=<query-file> [--cachesizes=<n>,...] [--methods=batch,single] [--warmup=<n>] "
+            + "[--repeats=<n>] [--output=<json-file>]\"\n"
+            + "A cache size of 0 means no cache.";
+
+    /**
+     * The {@link BTree} file to search.
+     */
+    private Path btreeFile;
+
+    /**
+     * The query file to search for.
+     */
+    private Path queryFile;
+
+    /**
+     * The cache sizes to search with, where 0 is no cache.
+     */
+    private int[] cacheSizes = {0, 100, 200, 500, 1000, 2000, 5000, 10000};
+
+    /**
+     * The ways to search: <code>batch</code> and <code>single</code>.
+     */
+    private List<String> methods = Arrays.asList("batch", "single");
+
+    /**
+     * The number of runs of each combination before recording.
+     */
+    private int warmup = 1;
+
+    /**
+     * The number of recorded runs of each combination.
+     */
+    private int repeats = 3;
+
+    /**
+     * The file to write the JSON to, or null for standard out.
+     */
+    private Path output = null;
+
+    /**
+     * The entry point of the program.
+     *
+     * @param args          the command line arguments
+     * @throws Exception    if a run fails
+     */
+    public static void main(String[] args) throws Exception {
+        CacheSweepBenchmark benchmark = new CacheSweepBenchmark();
+        try {
+            benchmark.parseArguments(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage() + "\n" + USAGE);
+            System.exit(1);
+        }
+        benchmark.run();
+    }
+
+    /**
+     * Parse the command line arguments into the fields of this {@link CacheSweepBenchmark}.
+     *
+     * @param args                      the command line arguments
+     * @throws IllegalArgumentException if an argument is invalid
+     */
+    private void parseArguments(String[] args) {
+        for (String arg : args) {
+            if (!arg.matches("^--[a-zA-Z]+=.+$")) {
+                throw new IllegalArgumentException("Invalid argument: " + arg);
+            }
+            String name = arg.substring(2, arg.indexOf('='));
+            String value = arg.substring(arg.indexOf('=') + 1);
+            try {
+                switch (name) {
+                    case "btreefile":
+                        btreeFile = Paths.get(value);
+                        break;
+                    case "queryfile":
+                        queryFile = Paths.get(value);
+                        break;
+                    case "cachesizes":
+                        cacheSizes = Arrays.stream(value.split(",")).mapToInt(Integer::parseInt).toArray();
+                        break;
+                    case "methods":
+                        methods = Arrays.asList(value.split(","));
+                        for (String method : methods) {
+                            if (!method.equals("batch") && !method.equals("single")) {
+                                throw new IllegalArgumentException("Methods must be batch or single: " + method);
+                            }
+                        }
+                        break;
+                    case "warmup":
+                        warmup = Integer.parseInt(value);
+                        break;
+                    case "repeats":
+                        repeats = Integer.parseInt(value);
+                        break;
+                    case "output":
+                        output = Paths.get(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown argument: " + arg);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid number in argument: " + arg);
+            }
+        }
+
+        if (btreeFile == null || queryFile == null) {
+            throw new IllegalArgumentException("Missing argument: --btreefile and --queryfile are required");
+        } else if (!Files.isRegularFile(btreeFile)) {
+            throw new IllegalArgumentException("BTree file does not exist: " + btreeFile);
+        } else if (!Files.isRegularFile(queryFile)) {
+            throw new IllegalArgumentException("Query file does not exist: " + queryFile);
+        } else if (Arrays.stream(cacheSizes).anyMatch(size -> size < 0)) {
+            throw new IllegalArgumentException("Cache sizes must be at least 0");
+        } else if (repeats < 1) {
+            throw new IllegalArgumentException("There must be at least one recorded run: " + repeats);
+        }
+    }
+
+    /**
+     * Run every combination, and write the results.
+     *
+     * @throws Exception    if a run fails
+     */
+    private void run() throws Exception {
+        List<String> queries = Files.readAllLines(queryFile);
+
+        JsonWriter json = new JsonWriter();
+        json.beginObject();
+        json.name("timestamp").value(Instant.now().toString());
+        json.name("java").value(System.getProperty("java.vm.name") + " " + System.getProperty("java.version"));
+        json.name("btreeFile").value(btreeFile.getFileName().toString());
+        json.name("queryFile").value(queryFile.getFileName().toString());
+        json.name("queries").value(queries.size());
+        json.name("distinctQueries").value(queries.stream().distinct().count());
+        json.name("warmup").value(warmup);
+        json.name("runs").beginArray();
+
+        StringBuilder table = new StringBuilder(String.format(Locale.ROOT, "%-8s %10s %10s %12s %14s%n", "method",
+                "cacheSize", "hitRate", "nodeReads", "queries/s"));
+        for (String method : methods) {
+            for (int cacheSize : cacheSizes) {
+                double[] hitRates = new double[repeats];
+                long[] nodeReads = new long[repeats];
+                double[] throughputs = new double[repeats];
+                for (int repeat = -warmup; repeat < repeats; repeat++) {
+                    System.err.printf("%s cache=%d %s%n", method, cacheSize,
+                            repeat < 0 ? "(warmup)" : "run " + (repeat + 1));
+                    BTree btree = cacheSize == 0 ? new BTree(btreeFile.toString())
+                            : new BTree(btreeFile.toString(), cacheSize);
+                    long start = System.nanoTime();
+                    long total = method.equals("batch") ? EndToEndBenchmark.searchQueries(btree, queries)
+                            : searchEach(btree, queries);
+                    long wallNanos = System.nanoTime() - start;
+                    btree.close();
+                    if (repeat < 0) {
+                        continue;  // Warmup runs are dropped
+                    }
+
+                    hitRates[repeat] = btree.getCacheHitRate();
+                    nodeReads[repeat] = btree.getNodeReads();
+                    throughputs[repeat] = queries.size() * 1e9 / wallNanos;
+                    json.beginObject();
+                    json.name("method").value(method);
+                    json.name("cacheSize").value(cacheSize);
+                    json.name("repeat").value(repeat);
+                    json.name("wallNanos").value(wallNanos);
+                    json.name("queriesPerSecond").value(throughputs[repeat]);
+                    json.name("cacheHitRate").value(hitRates[repeat]);
+                    json.name("nodeReads").value(nodeReads[repeat]);
+                    json.name("totalFrequency").value(total);
+                    json.endObject();
+                }
+                Arrays.sort(hitRates);
+                Arrays.sort(nodeReads);
+                Arrays.sort(throughputs);
+                table.append(String.format(Locale.ROOT, "%-8s %10d %10.3f %12d %14.0f%n", method, cacheSize,
+                        hitRates[repeats / 2], nodeReads[repeats / 2], throughputs[repeats / 2]));
+            }
+        }
+
+        json.endArray();
+        json.endObject();
+        System.err.print(table);
+        if (output == null) {
+            System.out.println(json);
+        } else {
+            Files.write(output, (json + "\n").getBytes(StandardCharsets.UTF_8));
+            System.err.println("Wrote " + output);
+        }
+    }
+
+    /**
+     * Search a {@link BTree} for every query and its complement, one at a time.
+     *
+     * @param btree         the {@link BTree}
+     * @param queries       the queries
+     * @return              the sum of the frequencies found
+     * @throws IOException  if the {@link BTree} can't be searched
+     */
+    private static long searchEach(BTree btree, List<String> queries) throws IOException {
+        long total = 0;
+        for (String line : queries) {
+            String query = line.trim().toLowerCase();
+            long high = SequenceUtils.dnaStringToLongHigh(query);
+            long low = SequenceUtils.dnaStringToLongLow(query);
+            TreeObject result = btree.search(high, low);
+            TreeObject complement = btree.search(SequenceUtils.getComplementHigh(high, query.length()),
+                    SequenceUtils.getComplementLow(low, query.length()));
+            total += (result == null ? 0 : result.getCount()) + (complement == null ? 0 : complement.getCount());
+        }
+        return total;
+    }
+}
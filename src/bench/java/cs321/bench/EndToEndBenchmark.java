@@ -0,0 +1,475 @@
+package cs321.bench;
+
+import cs321.btree.BTree;
+import cs321.btree.BTreeOptions;
+import cs321.btree.TreeObject;
+import cs321.create.GeneBankSubsequenceIterator;
+import cs321.create.SequenceUtils;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * A program that benchmarks the whole pipeline: creating a {@link BTree} and its database from a GeneBank file, as
+ * GeneBankCreateBTree does, then searching the {@link BTree} and the database with the matching query file, as
+ * GeneBankSearchBTree and GeneBankSearchDatabase do. It does so for every combination of the GeneBank files,
+ * subsequence lengths, degrees and cache sizes it is given, in one JVM, and writes what it measures as JSON.
+ * <p>
+ * Each run of a phase records its wall time, its throughput (bases per second to create, queries per second to
+ * search), the nodes the {@link BTree} read and wrote, and the peak heap use. The heap is collected before each phase
+ * and the peaks of the heap pools are summed, so the peak is an upper bound. The first runs of each combination warm
+ * up the JIT and aren't recorded. Both searches also add up the frequencies they find; if these disagree, the run is
+ * marked inconsistent.
+ * <p>
+ * Everything is written to a temporary directory and deleted afterwards; the GeneBank file is linked into it, as the
+ * database is named after it. Run with <code>./gradlew benchE2E --args="..."</code>; see
+ * {@link EndToEndBenchmark#USAGE} for the arguments.
+ *
+ * @author Derek Caplinger
+ * @author Matt Youngberg
+ */
+public class EndToEndBenchmark {
+
+    /**
+     * The usage message of the program.
+     */
+    private static final String USAGE = "Usage: ./gradlew benchE2E --args=\"[--gbkfiles=<file>,...] "
+            + "[--lengths=<k>,...] [--degrees=<t>,...] [--cachesizes=<n>,...] [--warmup=<n>] [--repeats=<n>] "
+            + "[--output=<json-file>]\"\n"
+            + "GeneBank files are looked for in data/files_gbk, and query files in data/queries, unless given as paths. "
+            + "A cache size of 0 means no cache, and a degree of 0 the optimal one.";
+
+    /**
+     * The directory of the sample GeneBank files.
+     */
+    private static final Path GBK_DIRECTORY = Paths.get("data", "files_gbk");
+
+    /**
+     * The directory of the sample query files.
+     */
+    private static final Path QUERY_DIRECTORY = Paths.get("data", "queries");
+
+    /**
+     * The number of queries searched for together with {@link BTree#searchBatch(long[], long[])}, as in
+     * GeneBankSearchBTree.
+     */
+    private static final int QUERY_BATCH_SIZE = 1024;
+
+    /**
+     * The GeneBank files to create {@link BTree}s from.
+     */
+    private List<Path> gbkFiles = Arrays.asList(GBK_DIRECTORY.resolve("test0.gbk"));
+
+    /**
+     * The subsequence lengths to create {@link BTree}s with.
+     */
+    private int[] lengths = {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 20, 31};
+
+    /**
+     * The degrees to create {@link BTree}s with, where 0 is the optimal degree.
+     */
+    private int[] degrees = {0};
+
+    /**
+     * The cache sizes to create and search {@link BTree}s with, where 0 is no cache.
+     */
+    private int[] cacheSizes = {0, 500};
+
+    /**
+     * The number of runs of each combination before recording.
+     */
+    private int warmup = 1;
+
+    /**
+     * The number of recorded runs of each combination.
+     */
+    private int repeats = 3;
+
+    /**
+     * The file to write the JSON to, or null for standard out.
+     */
+    private Path output = null;
+
+    /**
+     * The entry point of the program.
+     *
+     * @param args          the command line arguments
+     * @throws Exception    if a run fails
+     */
+    public static void main(String[] args) throws Exception {
+        EndToEndBenchmark benchmark = new EndToEndBenchmark();
+        try {
+            benchmark.parseArguments(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage() + "\n" + USAGE);
+            System.exit(1);
+        }
+        benchmark.run();
+    }
+
+    /**
+     * Parse the command line arguments into the fields of this {@link EndToEndBenchmark}.
+     *
+     * @param args                      the command line arguments
+     * @throws IllegalArgumentException if an argument is invalid
+     */
+    private void parseArguments(String[] args) {
+        for (String arg : args) {
+            if (!arg.matches("^--[a-zA-Z]+=.+$")) {
+                throw new IllegalArgumentException("Invalid argument: " + arg);
+            }
+            String name = arg.substring(2, arg.indexOf('='));
+            String value = arg.substring(arg.indexOf('=') + 1);
+            try {
+                switch (name) {
+                    case "gbkfiles":
+                        gbkFiles = new ArrayList<>();
+                        for (String file : value.split(",")) {
+                            Path path = Paths.get(file);
+                            gbkFiles.add(Files.exists(path) ? path : GBK_DIRECTORY.resolve(file));
+                        }
+                        break;
+                    case "lengths":
+                        lengths = parseInts(value);
+                        break;
+                    case "degrees":
+                        degrees = parseInts(value);
+                        break;
+                    case "cachesizes":
+                        cacheSizes = parseInts(value);
+                        break;
+                    case "warmup":
+                        warmup = Integer.parseInt(value);
+                        break;
+                    case "repeats":
+                        repeats = Integer.parseInt(value);
+                        break;
+                    case "output":
+                        output = Paths.get(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown argument: " + arg);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid number in argument: " + arg);
+            }
+        }
+        for (Path gbkFile : gbkFiles) {
+            if (!Files.isRegularFile(gbkFile)) {
+                throw new IllegalArgumentException("GeneBank file does not exist: " + gbkFile);
+            }
+        }
+    }
+
+    /**
+     * Parse a comma-separated list of integers.
+     *
+     * @param value the list
+     * @return      the integers
+     */
+    private static int[] parseInts(String value) {
+        return Arrays.stream(value.split(",")).mapToInt(Integer::parseInt).toArray();
+    }
+
+    /**
+     * Run every combination, and write the results.
+     *
+     * @throws Exception    if a run fails
+     */
+    private void run() throws Exception {
+        JsonWriter json = new JsonWriter();
+        json.beginObject();
+        json.name("timestamp").value(Instant.now().toString());
+        json.name("java").value(System.getProperty("java.vm.name") + " " + System.getProperty("java.version"));
+        json.name("os").value(System.getProperty("os.name") + " " + System.getProperty("os.arch"));
+        json.name("processors").value(Runtime.getRuntime().availableProcessors());
+        json.name("maxHeapBytes").value(Runtime.getRuntime().maxMemory());
+        json.name("warmup").value(warmup);
+        json.name("runs").beginArray();
+
+        for (Path gbkFile : gbkFiles) {
+            for (int length : lengths) {
+                for (int degree : degrees) {
+                    for (int cacheSize : cacheSizes) {
+                        for (int repeat = -warmup; repeat < repeats; repeat++) {
+                            System.err.printf("%s k=%d degree=%d cache=%d %s%n", gbkFile.getFileName(), length,
+                                    degree, cacheSize, repeat < 0 ? "(warmup)" : "run " + (repeat + 1));
+                            JsonWriter runJson = repeat < 0 ? new JsonWriter() : json;  // Warmup runs are dropped
+                            runJson.beginObject();
+                            runJson.name("gbkFile").value(gbkFile.getFileName().toString());
+                            runJson.name("length").value(length);
+                            runJson.name("degree").value(degree);
+                            runJson.name("cacheSize").value(cacheSize);
+                            runJson.name("repeat").value(Math.max(repeat, 0));
+                            runOnce(gbkFile, length, degree, cacheSize, runJson);
+                            runJson.endObject();
+                        }
+                    }
+                }
+            }
+        }
+
+        json.endArray();
+        json.endObject();
+        if (output == null) {
+            System.out.println(json);
+        } else {
+            Files.write(output, (json + "\n").getBytes(StandardCharsets.UTF_8));
+            System.err.println("Wrote " + output);
+        }
+    }
+
+    /**
+     * Run the phases once for one combination, in a fresh temporary directory.
+     *
+     * @param gbkFile       the GeneBank file
+     * @param length        the subsequence length
+     * @param degree        the degree, or 0 for the optimal one
+     * @param cacheSize     the cache size, or 0 for no cache
+     * @param json          the {@link JsonWriter} to write the results of each phase to, as members of an object
+     * @throws Exception    if a phase fails
+     */
+    private void runOnce(Path gbkFile, int length, int degree, int cacheSize, JsonWriter json) throws Exception {
+        Path directory = Files.createTempDirectory("cs321-e2e");
+        try {
+            Path linkedGbkFile = directory.resolve(gbkFile.getFileName());
+            try {
+                Files.createSymbolicLink(linkedGbkFile, gbkFile.toAbsolutePath());
+            } catch (IOException | UnsupportedOperationException e) {
+                Files.copy(gbkFile, linkedGbkFile);  // Some systems don't allow links without extra privileges
+            }
+            String btreeFileName = directory.resolve(gbkFile.getFileName() + ".btree.data." + length + "." + degree)
+                    .toString();
+            String baseName = gbkFile.getFileName().toString();
+            baseName = baseName.substring(0, baseName.lastIndexOf(".gbk"));
+            Path databaseFile = directory.resolve(baseName + "." + length + ".db");
+
+            json.name("create");
+            create(linkedGbkFile, btreeFileName, length, degree, cacheSize, json);
+
+            Path queryFile = QUERY_DIRECTORY.resolve("query" + length);
+            if (!Files.exists(queryFile)) {
+                json.name("searchBTree").value((String) null);
+                json.name("searchDatabase").value((String) null);
+                return;
+            }
+            List<String> queries = Files.readAllLines(queryFile);
+            json.name("searchBTree");
+            long btreeTotal = searchBTree(btreeFileName, queries, cacheSize, json);
+            json.name("searchDatabase");
+            long databaseTotal = searchDatabase(databaseFile, queries, json);
+            json.name("consistent").value(btreeTotal == databaseTotal);
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Create a {@link BTree} and its database from a GeneBank file, as GeneBankCreateBTree does, and write what was
+     * measured as an object.
+     *
+     * @param gbkFile       the GeneBank file
+     * @param btreeFileName the file to create the {@link BTree} in
+     * @param length        the subsequence length
+     * @param degree        the degree, or 0 for the optimal one
+     * @param cacheSize     the cache size, or 0 for no cache
+     * @param json          the {@link JsonWriter} to write to
+     * @throws Exception    if the {@link BTree} or database can't be created
+     */
+    private static void create(Path gbkFile, String btreeFileName, int length, int degree, int cacheSize,
+                               JsonWriter json) throws Exception {
+        startPhase();
+        long start = System.nanoTime();
+        TreeObject.subsequenceLength = length;
+        BTree btree = new BTree(degree, btreeFileName, cacheSize,
+                new BTreeOptions().subsequenceLength(length).maxFrequency(Files.size(gbkFile)));
+        long subsequences = 0;
+        try (GeneBankSubsequenceIterator iter = new GeneBankSubsequenceIterator(gbkFile, length)) {
+            while (iter.hasNext()) {
+                long low = iter.nextEncoded();
+                btree.insert(new TreeObject(iter.lastEncodedHigh(), low, 1));
+                subsequences++;
+            }
+        }
+        long insertNanos = System.nanoTime() - start;
+        btree.finishUp();
+        long wallNanos = System.nanoTime() - start;
+
+        json.beginObject();
+        json.name("wallNanos").value(wallNanos);
+        json.name("insertNanos").value(insertNanos);
+        json.name("subsequences").value(subsequences);
+        json.name("basesPerSecond").value(subsequences * 1e9 / wallNanos);
+        json.name("keys").value(btree.getSize());
+        json.name("actualDegree").value(btree.getDegree());
+        json.name("nodes").value(btree.getNumberOfNodes());
+        json.name("height").value(btree.getHeight());
+        json.name("nodeReads").value(btree.getNodeReads());
+        json.name("nodeWrites").value(btree.getNodeWrites());
+        json.name("cacheHitRate").value(btree.getCacheHitRate());
+        json.name("fileBytes").value(Files.size(Paths.get(btreeFileName)));
+        json.name("peakHeapBytes").value(peakHeap());
+        json.endObject();
+    }
+
+    /**
+     * Search a {@link BTree} for every query and its complement, as GeneBankSearchBTree does, and write what was
+     * measured as an object.
+     *
+     * @param btreeFileName the file of the {@link BTree}
+     * @param queries       the queries
+     * @param cacheSize     the cache size, or 0 for no cache
+     * @param json          the {@link JsonWriter} to write to
+     * @return              the sum of the frequencies found
+     * @throws Exception    if the {@link BTree} can't be searched
+     */
+    private static long searchBTree(String btreeFileName, List<String> queries, int cacheSize, JsonWriter json)
+            throws Exception {
+        startPhase();
+        long start = System.nanoTime();
+        BTree btree = cacheSize == 0 ? new BTree(btreeFileName) : new BTree(btreeFileName, cacheSize);
+        long total = searchQueries(btree, queries);
+        long wallNanos = System.nanoTime() - start;
+
+        json.beginObject();
+        json.name("wallNanos").value(wallNanos);
+        json.name("queries").value(queries.size());
+        json.name("queriesPerSecond").value(queries.size() * 1e9 / wallNanos);
+        json.name("totalFrequency").value(total);
+        json.name("nodeReads").value(btree.getNodeReads());
+        json.name("cacheHitRate").value(btree.getCacheHitRate());
+        json.name("peakHeapBytes").value(peakHeap());
+        json.endObject();
+        btree.close();
+        return total;
+    }
+
+    /**
+     * Search a {@link BTree} for every query and its complement, in batches with
+     * {@link BTree#searchBatch(long[], long[])}, as GeneBankSearchBTree does.
+     *
+     * @param btree         the {@link BTree}
+     * @param queries       the queries
+     * @return              the sum of the frequencies found
+     * @throws IOException  if the {@link BTree} can't be searched
+     */
+    static long searchQueries(BTree btree, List<String> queries) throws IOException {
+        long total = 0;
+        for (int from = 0; from < queries.size(); from += QUERY_BATCH_SIZE) {
+            int count = Math.min(QUERY_BATCH_SIZE, queries.size() - from);
+            long[] highs = new long[2 * count];  // Each query, then each complement
+            long[] lows = new long[2 * count];
+            for (int i = 0; i < count; i++) {
+                String query = queries.get(from + i).trim().toLowerCase();
+                highs[i] = SequenceUtils.dnaStringToLongHigh(query);
+                lows[i] = SequenceUtils.dnaStringToLongLow(query);
+                highs[count + i] = SequenceUtils.getComplementHigh(highs[i], query.length());
+                lows[count + i] = SequenceUtils.getComplementLow(lows[i], query.length());
+            }
+            for (TreeObject result : btree.searchBatch(highs, lows)) {
+                total += result == null ? 0 : result.getCount();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Search a database for every query and its complement, as GeneBankSearchDatabase does, and write what was
+     * measured as an object.
+     *
+     * @param databaseFile  the database
+     * @param queries       the queries
+     * @param json          the {@link JsonWriter} to write to
+     * @return              the sum of the frequencies found
+     * @throws Exception    if the database can't be searched
+     */
+    private static long searchDatabase(Path databaseFile, List<String> queries, JsonWriter json) throws Exception {
+        startPhase();
+        long start = System.nanoTime();
+        long total = 0;
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + databaseFile);
+             PreparedStatement narrow = connection.prepareStatement(
+                     "SELECT Frequency FROM Sequences WHERE Encoding = ? OR Encoding = ?");
+             PreparedStatement wide = connection.prepareStatement(
+                     "SELECT Frequency FROM Sequences WHERE (High = ? AND Encoding = ?) OR (High = ? AND Encoding = ?)")) {
+            for (String line : queries) {
+                String query = line.trim();
+                long high = SequenceUtils.dnaStringToLongHigh(query);
+                long low = SequenceUtils.dnaStringToLongLow(query);
+                PreparedStatement statement = query.length() > SequenceUtils.MAX_LENGTH ? wide : narrow;
+                int parameter = 1;
+                if (statement == wide) {
+                    statement.setString(parameter++, String.valueOf(high));
+                }
+                statement.setString(parameter++, String.valueOf(low));
+                if (statement == wide) {
+                    statement.setString(parameter++, String.valueOf(SequenceUtils.getComplementHigh(high,
+                            query.length())));
+                }
+                statement.setString(parameter, String.valueOf(SequenceUtils.getComplementLow(low, query.length())));
+                try (ResultSet results = statement.executeQuery()) {
+                    while (results.next()) {
+                        total += results.getLong(1);
+                    }
+                }
+            }
+        }
+        long wallNanos = System.nanoTime() - start;
+
+        json.beginObject();
+        json.name("wallNanos").value(wallNanos);
+        json.name("queries").value(queries.size());
+        json.name("queriesPerSecond").value(queries.size() * 1e9 / wallNanos);
+        json.name("totalFrequency").value(total);
+        json.name("peakHeapBytes").value(peakHeap());
+        json.endObject();
+        return total;
+    }
+
+    /**
+     * Collect the heap and reset the peak use of its pools, at the start of a phase.
+     */
+    private static void startPhase() {
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    /**
+     * Get the peak use of the heap since {@link EndToEndBenchmark#startPhase()}, summed over its pools.
+     *
+     * @return  the peak use of the heap in bytes, an upper bound
+     */
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+}
@@ -0,0 +1,352 @@
+package cs321.bench;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+/**
+ * A program that writes synthetic GeneBank files of any size, to test the project at scales the sample files don't
+ * reach without shipping real genomes around.
+ * <p>
+ * A file holds a number of records, each with a short header and a sequence of random length in a given range. Bases
+ * are drawn independently with a given GC content, and interrupted, at given rates per base, by:
+ * <ul>
+ *     <li>runs of unknown bases (<code>n</code>), which break subsequences the way gaps in assemblies do;</li>
+ *     <li>tandem repeats, a short unit repeated many times over, like microsatellites;</li>
+ *     <li>low-complexity regions, stretches drawn from only two bases.</li>
+ * </ul>
+ * Repeats and low-complexity regions make a few subsequences far more frequent than the rest, as in real genomes,
+ * which is what stresses frequencies and caches. Everything is drawn from one seeded {@link SplittableRandom}, so the
+ * same arguments always write the same file.
+ * <p>
+ * Run with <code>./gradlew generateGbk --args="--output=&lt;file&gt; ..."</code>; see {@link GeneBankGenerator#USAGE}
+ * for the arguments.
+ *
+ * @author Derek Caplinger
+ * @author Matt Youngberg
+ */
+public class GeneBankGenerator {
+
+    /**
+     * The usage message of the program.
+     */
+    private static final String USAGE = "Usage: ./gradlew generateGbk --args=\"--output=<gbk-file> [--records=<n>] "
+            + "[--minlength=<bases>] [--maxlength=<bases>] [--gc=<fraction>] [--nrate=<per-base>] "
+            + "[--nrunlength=<bases>] [--tandemrate=<per-base>] [--lowcomplexityrate=<per-base>] [--seed=<n>]\"";
+
+    /**
+     * The number of bases on each line of a sequence, per the GeneBank format.
+     */
+    private static final int BASES_PER_LINE = 60;
+
+    /**
+     * The number of bases in each group of a line, per the GeneBank format.
+     */
+    private static final int BASES_PER_GROUP = 10;
+
+    /**
+     * The longest unit of a tandem repeat, in bases.
+     */
+    private static final int MAX_TANDEM_UNIT = 8;
+
+    /**
+     * The most copies of the unit of a tandem repeat.
+     */
+    private static final int MAX_TANDEM_COPIES = 60;
+
+    /**
+     * The longest low-complexity region, in bases.
+     */
+    private static final int MAX_LOW_COMPLEXITY_LENGTH = 400;
+
+    /**
+     * The file to write.
+     */
+    private Path output;
+
+    /**
+     * The number of records to write.
+     */
+    private long records = 10;
+
+    /**
+     * The fewest bases in a record.
+     */
+    private long minLength = 100_000;
+
+    /**
+     * The most bases in a record.
+     */
+    private long maxLength = 100_000;
+
+    /**
+     * The fraction of drawn bases that are G or C.
+     */
+    private double gc = 0.41;
+
+    /**
+     * The chance at each base of starting a run of unknown bases.
+     */
+    private double nRate = 0.0001;
+
+    /**
+     * The longest run of unknown bases.
+     */
+    private int nRunLength = 100;
+
+    /**
+     * The chance at each base of starting a tandem repeat.
+     */
+    private double tandemRate = 0.0005;
+
+    /**
+     * The chance at each base of starting a low-complexity region.
+     */
+    private double lowComplexityRate = 0.0001;
+
+    /**
+     * The seed of the {@link SplittableRandom} that everything is drawn from.
+     */
+    private long seed = 321;
+
+    /**
+     * The source of randomness.
+     */
+    private SplittableRandom random;
+
+    /**
+     * The bases left to write from the current tandem repeat, low-complexity region or run of unknown bases, or 0 if
+     * bases are drawn independently.
+     */
+    private long special = 0;
+
+    /**
+     * The unit of the current tandem repeat, or null if there isn't one.
+     */
+    private byte[] tandemUnit = null;
+
+    /**
+     * The two bases of the current low-complexity region, or null if there isn't one.
+     */
+    private byte[] lowComplexityBases = null;
+
+    /**
+     * The entry point of the program.
+     *
+     * @param args          the command line arguments
+     * @throws IOException  if the file can't be written
+     */
+    public static void main(String[] args) throws IOException {
+        GeneBankGenerator generator = new GeneBankGenerator();
+        try {
+            generator.parseArguments(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage() + "\n" + USAGE);
+            System.exit(1);
+        }
+        generator.generate();
+    }
+
+    /**
+     * Parse the command line arguments into the fields of this {@link GeneBankGenerator}.
+     *
+     * @param args                      the command line arguments
+     * @throws IllegalArgumentException if an argument is invalid
+     */
+    private void parseArguments(String[] args) {
+        for (String arg : args) {
+            if (!arg.matches("^--[a-zA-Z]+=.+$")) {
+                throw new IllegalArgumentException("Invalid argument: " + arg);
+            }
+            String name = arg.substring(2, arg.indexOf('='));
+            String value = arg.substring(arg.indexOf('=') + 1);
+            try {
+                switch (name) {
+                    case "output":
+                        output = Paths.get(value);
+                        break;
+                    case "records":
+                        records = Long.parseLong(value);
+                        break;
+                    case "minlength":
+                        minLength = Long.parseLong(value);
+                        break;
+                    case "maxlength":
+                        maxLength = Long.parseLong(value);
+                        break;
+                    case "gc":
+                        gc = Double.parseDouble(value);
+                        break;
+                    case "nrate":
+                        nRate = Double.parseDouble(value);
+                        break;
+                    case "nrunlength":
+                        nRunLength = Integer.parseInt(value);
+                        break;
+                    case "tandemrate":
+                        tandemRate = Double.parseDouble(value);
+                        break;
+                    case "lowcomplexityrate":
+                        lowComplexityRate = Double.parseDouble(value);
+                        break;
+                    case "seed":
+                        seed = Long.parseLong(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown argument: " + arg);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid number in argument: " + arg);
+            }
+        }
+
+        if (output == null) {
+            throw new IllegalArgumentException("Missing argument: --output");
+        } else if (records < 1) {
+            throw new IllegalArgumentException("There must be at least one record: " + records);
+        } else if (minLength < 1 || maxLength < minLength) {
+            throw new IllegalArgumentException("Record lengths must satisfy 1 <= minlength <= maxlength");
+        } else if (gc < 0 || gc > 1) {
+            throw new IllegalArgumentException("GC content must be between 0 and 1: " + gc);
+        } else if (nRate < 0 || tandemRate < 0 || lowComplexityRate < 0 || nRate + tandemRate + lowComplexityRate > 1) {
+            throw new IllegalArgumentException("Rates must be at least 0 and add up to at most 1");
+        } else if (nRunLength < 1) {
+            throw new IllegalArgumentException("Runs of unknown bases must be at least 1 base long: " + nRunLength);
+        }
+    }
+
+    /**
+     * Write the file.
+     *
+     * @throws IOException  if the file can't be written
+     */
+    private void generate() throws IOException {
+        random = new SplittableRandom(seed);
+        long totalBases = 0;
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(output), 1 << 20)) {
+            for (long record = 1; record <= records; record++) {
+                long length = minLength + (long) (random.nextDouble() * (maxLength - minLength + 1));
+                writeRecord(out, record, length);
+                totalBases += length;
+            }
+        }
+        System.err.printf("Wrote %,d records, %,d bases, %,d bytes to %s%n", records, totalBases, Files.size(output),
+                output);
+    }
+
+    /**
+     * Write a record: its header, its sequence, and the line that ends it.
+     *
+     * @param out           the stream to write to
+     * @param record        the number of the record, from 1
+     * @param length        the number of bases in the sequence
+     * @throws IOException  if the record can't be written
+     */
+    private void writeRecord(OutputStream out, long record, long length) throws IOException {
+        String name = String.format(Locale.ROOT, "SYN%07d", record);
+        String header = String.format(Locale.ROOT, "LOCUS       %-16s%12d bp    DNA     linear   SYN 01-JAN-2000%n"
+                + "DEFINITION  Synthetic sequence %d (seed %d, GC %.2f).%n"
+                + "ACCESSION   %s%n"
+                + "VERSION     %s.1%n"
+                + "KEYWORDS    .%n"
+                + "SOURCE      synthetic DNA%n"
+                + "FEATURES             Location/Qualifiers%n"
+                + "     source          1..%d%n"
+                + "ORIGIN      %n", name, length, record, seed, gc, name, name, length);
+        out.write(header.getBytes(StandardCharsets.US_ASCII));
+
+        byte[] line = new byte[0];
+        for (long position = 1; position <= length; position += BASES_PER_LINE) {
+            // Right-aligned position, then groups of bases each after a space
+            String prefix = String.format(Locale.ROOT, "%9d", position);
+            line = ensureRoom(line, prefix.length() + BASES_PER_LINE + BASES_PER_LINE / BASES_PER_GROUP);
+            int size = 0;
+            for (int i = 0; i < prefix.length(); i++) {
+                line[size++] = (byte) prefix.charAt(i);
+            }
+            int basesOnLine = (int) Math.min(BASES_PER_LINE, length - position + 1);
+            for (int i = 0; i < basesOnLine; i++) {
+                if (i % BASES_PER_GROUP == 0) {
+                    line[size++] = ' ';
+                }
+                line[size++] = nextBase();
+            }
+            out.write(line, 0, size);
+            out.write('\n');
+        }
+        out.write("//\n".getBytes(StandardCharsets.US_ASCII));
+
+        special = 0;  // Nothing carries over from one record to the next
+    }
+
+    /**
+     * Make sure a line buffer can hold some number of bytes, as positions can be wider than 9 digits.
+     *
+     * @param line  the line buffer
+     * @param size  the number of bytes it must hold
+     * @return      the line buffer, grown if need be
+     */
+    private static byte[] ensureRoom(byte[] line, int size) {
+        if (size <= line.length) {
+            return line;
+        }
+        byte[] grown = new byte[2 * size];
+        System.arraycopy(line, 0, grown, 0, line.length);
+        return grown;
+    }
+
+    /**
+     * Draw the next base, continuing the current tandem repeat, low-complexity region or run of unknown bases if there
+     * is one, or else maybe starting one.
+     *
+     * @return  the next base, as a lowercase ASCII character
+     */
+    private byte nextBase() {
+        if (special == 0) {
+            tandemUnit = null;
+            lowComplexityBases = null;
+            double draw = random.nextDouble();
+            if (draw < nRate) {
+                special = 1 + random.nextInt(nRunLength);
+            } else if (draw < nRate + tandemRate) {
+                tandemUnit = new byte[1 + random.nextInt(MAX_TANDEM_UNIT)];
+                for (int i = 0; i < tandemUnit.length; i++) {
+                    tandemUnit[i] = randomBase();
+                }
+                special = (long) tandemUnit.length * (2 + random.nextInt(MAX_TANDEM_COPIES - 1));
+            } else if (draw < nRate + tandemRate + lowComplexityRate) {
+                lowComplexityBases = new byte[]{randomBase(), randomBase()};
+                special = 1 + random.nextInt(MAX_LOW_COMPLEXITY_LENGTH);
+            } else {
+                return randomBase();
+            }
+        }
+
+        special--;
+        if (tandemUnit != null) {
+            return tandemUnit[(int) (special % tandemUnit.length)];
+        } else if (lowComplexityBases != null) {
+            return lowComplexityBases[random.nextInt(2)];
+        }
+        return 'n';
+    }
+
+    /**
+     * Draw a base independently, with the GC content given.
+     *
+     * @return  the base, as a lowercase ASCII character
+     */
+    private byte randomBase() {
+        double draw = random.nextDouble();
+        if (draw < gc) {
+            return draw < gc / 2 ? (byte) 'g' : (byte) 'c';
+        }
+        return draw < gc + (1 - gc) / 2 ? (byte) 'a' : (byte) 't';
+    }
+}
@@ -0,0 +1,231 @@
+package cs321.bench;
+
+import java.util.Locale;
+
+/**
+ * A minimal writer of JSON, enough for benchmark reports: objects, arrays, strings and numbers, with commas placed
+ * automatically.
+ * <p>
+ * Values are written in the order they're given; nothing checks that objects and arrays are closed properly.
+ *
+ * @author Derek Caplinger
+ * @author Matt Youngberg
+ */
+public class JsonWriter {
+
+    /**
+     * The JSON written so far.
+     */
+    private final StringBuilder sb = new StringBuilder();
+
+    /**
+     * Whether the next value is the first in its object or array, and so needs no comma before it.
+     */
+    private boolean first = true;
+
+    /**
+     * The depth of nesting, for indentation.
+     */
+    private int depth = 0;
+
+    /**
+     * Whether a name was just written, so the next value goes on the same line with no comma.
+     */
+    private boolean afterName = false;
+
+    /**
+     * Start an object, as a value.
+     *
+     * @return  this {@link JsonWriter}
+     */
+    public JsonWriter beginObject() {
+        return open('{');
+    }
+
+    /**
+     * End the current object.
+     *
+     * @return  this {@link JsonWriter}
+     */
+    public JsonWriter endObject() {
+        return close('}');
+    }
+
+    /**
+     * Start an array, as a value.
+     *
+     * @return  this {@link JsonWriter}
+     */
+    public JsonWriter beginArray() {
+        return open('[');
+    }
+
+    /**
+     * End the current array.
+     *
+     * @return  this {@link JsonWriter}
+     */
+    public JsonWriter endArray() {
+        return close(']');
+    }
+
+    /**
+     * Write the name of the next member of the current object; its value must follow.
+     *
+     * @param name  the name of the member
+     * @return      this {@link JsonWriter}
+     */
+    public JsonWriter name(String name) {
+        separate();
+        quote(name);
+        sb.append(": ");
+        afterName = true;
+        return this;
+    }
+
+    /**
+     * Write a string value, or null.
+     *
+     * @param value the value
+     * @return      this {@link JsonWriter}
+     */
+    public JsonWriter value(String value) {
+        separateValue();
+        if (value == null) {
+            sb.append("null");
+        } else {
+            quote(value);
+        }
+        return this;
+    }
+
+    /**
+     * Write an integer value.
+     *
+     * @param value the value
+     * @return      this {@link JsonWriter}
+     */
+    public JsonWriter value(long value) {
+        separateValue();
+        sb.append(value);
+        return this;
+    }
+
+    /**
+     * Write a number value; values that JSON can't hold, like NaN, are written as null.
+     *
+     * @param value the value
+     * @return      this {@link JsonWriter}
+     */
+    public JsonWriter value(double value) {
+        separateValue();
+        sb.append(Double.isNaN(value) || Double.isInfinite(value) ? "null" : String.format(Locale.ROOT, "%.3f", value));
+        return this;
+    }
+
+    /**
+     * Write a boolean value.
+     *
+     * @param value the value
+     * @return      this {@link JsonWriter}
+     */
+    public JsonWriter value(boolean value) {
+        separateValue();
+        sb.append(value);
+        return this;
+    }
+
+    /**
+     * Get the JSON written so far.
+     *
+     * @return  the JSON written so far
+     */
+    @Override
+    public String toString() {
+        return sb.toString();
+    }
+
+    /**
+     * Start an object or array.
+     *
+     * @param bracket   the opening bracket
+     * @return          this {@link JsonWriter}
+     */
+    private JsonWriter open(char bracket) {
+        separateValue();
+        sb.append(bracket);
+        depth++;
+        first = true;
+        return this;
+    }
+
+    /**
+     * End an object or array.
+     *
+     * @param bracket   the closing bracket
+     * @return          this {@link JsonWriter}
+     */
+    private JsonWriter close(char bracket) {
+        depth--;
+        if (!first) {
+            newLine();
+        }
+        sb.append(bracket);
+        first = false;
+        return this;
+    }
+
+    /**
+     * Separate a value from the one before it, unless it follows a name.
+     */
+    private void separateValue() {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        separate();
+    }
+
+    /**
+     * Separate a member or element from the one before it, and start it on a new line.
+     */
+    private void separate() {
+        if (!first) {
+            sb.append(',');
+        }
+        if (depth > 0) {
+            newLine();
+        }
+        first = false;
+    }
+
+    /**
+     * Start a new, indented line.
+     */
+    private void newLine() {
+        sb.append('\n');
+        for (int i = 0; i < depth; i++) {
+            sb.append("  ");
+        }
+    }
+
+    /**
+     * Write a string, quoted and escaped.
+     *
+     * @param s the string
+     */
+    private void quote(String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        sb.append('"');
+    }
+}
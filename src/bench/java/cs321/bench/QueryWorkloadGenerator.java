@@ -0,0 +1,417 @@
+package cs321.bench;
+
+import cs321.btree.BTree;
+import cs321.btree.BTreeException;
+import cs321.btree.TreeObject;
+import cs321.create.SequenceUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * A program that writes query files with skewed, repeating workloads, to see how searches and caches behave on
+ * something closer to real query streams than the uniform, deduplicated queries of QueryGenerator.
+ * <p>
+ * The queries are drawn, with repeats, from a fixed set of distinct keys. Where the keys come from controls how many
+ * queries hit: given a {@link BTree} file, a chosen fraction of the keys is sampled from the {@link BTree} through its
+ * iterator, and the rest are random subsequences that neither it nor its complement holds; otherwise every key is a
+ * random subsequence. The keys are shuffled into an order of popularity, unrelated to their order in the
+ * {@link BTree}, and each query picks one:
+ * <ul>
+ *     <li><code>uniform</code>: every key equally often;</li>
+ *     <li><code>zipf</code>: the key of rank r in proportion to 1 / r<sup>s</sup>, for an exponent s;</li>
+ *     <li><code>hotspot</code>: with some probability, a key from a hot fraction of them, and otherwise one of the
+ *     rest.</li>
+ * </ul>
+ * The queries are written in the order they are drawn, or sorted, as <code>sort</code> would, but keeping repeats.
+ * Everything is drawn from one seeded {@link SplittableRandom}, so the same arguments and {@link BTree} always give the
+ * same file.
+ * <p>
+ * Run with <code>./gradlew generateQueries --args="--length=&lt;k&gt; ..."</code>; see
+ * {@link QueryWorkloadGenerator#USAGE} for the arguments.
+ *
+ * @author Derek Caplinger
+ * @author Matt Youngberg
+ */
+public class QueryWorkloadGenerator {
+
+    /**
+     * The usage message of the program.
+     */
+    private static final String USAGE = "Usage: ./gradlew generateQueries --args=\"(--length=<k> | "
+            + "--btreefile=<btree-file>) [--hitrate=<fraction>] [--keys=<n>] [--count=<n>] "
+            + "[--distribution=uniform|zipf|hotspot] [--zipf=<exponent>] [--hotfraction=<fraction>] "
+            + "[--hotprobability=<fraction>] [--order=random|sorted] [--seed=<n>] [--output=<query-file>]\"\n"
+            + "Without a BTree file every key is random; the hit rate is the fraction of keys sampled from the BTree.";
+
+    /**
+     * The number of random subsequences drawn for each one needed before giving up, when most of them are taken.
+     */
+    private static final int MAX_ATTEMPTS_PER_KEY = 100;
+
+    /**
+     * The length of the subsequences, or 0 to take it from the {@link BTree}.
+     */
+    private int length = 0;
+
+    /**
+     * The {@link BTree} file to sample keys from, or null for none.
+     */
+    private Path btreeFile = null;
+
+    /**
+     * The fraction of the keys sampled from the {@link BTree}.
+     */
+    private double hitRate = 1;
+
+    /**
+     * The number of distinct keys the queries are drawn from.
+     */
+    private int keys = 4096;
+
+    /**
+     * The number of queries to write.
+     */
+    private int count = 16384;
+
+    /**
+     * How often each key is drawn: <code>uniform</code>, <code>zipf</code> or <code>hotspot</code>.
+     */
+    private String distribution = "zipf";
+
+    /**
+     * The exponent of the <code>zipf</code> distribution.
+     */
+    private double zipfExponent = 1;
+
+    /**
+     * The fraction of the keys that are hot, in the <code>hotspot</code> distribution.
+     */
+    private double hotFraction = 0.1;
+
+    /**
+     * The chance of a query drawing a hot key, in the <code>hotspot</code> distribution.
+     */
+    private double hotProbability = 0.9;
+
+    /**
+     * Whether the queries are sorted, rather than written in the order drawn.
+     */
+    private boolean sorted = false;
+
+    /**
+     * The seed of the {@link SplittableRandom} that everything is drawn from.
+     */
+    private long seed = 321;
+
+    /**
+     * The file to write, or null for standard out.
+     */
+    private Path output = null;
+
+    /**
+     * The source of randomness.
+     */
+    private SplittableRandom random;
+
+    /**
+     * The entry point of the program.
+     *
+     * @param args              the command line arguments
+     * @throws IOException      if the {@link BTree} can't be read or the file can't be written
+     * @throws BTreeException   if the {@link BTree} can't be opened
+     */
+    public static void main(String[] args) throws IOException, BTreeException {
+        QueryWorkloadGenerator generator = new QueryWorkloadGenerator();
+        try {
+            generator.parseArguments(args);
+            generator.generate();
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage() + "\n" + USAGE);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Parse the command line arguments into the fields of this {@link QueryWorkloadGenerator}.
+     *
+     * @param args                      the command line arguments
+     * @throws IllegalArgumentException if an argument is invalid
+     */
+    private void parseArguments(String[] args) {
+        for (String arg : args) {
+            if (!arg.matches("^--[a-zA-Z]+=.+$")) {
+                throw new IllegalArgumentException("Invalid argument: " + arg);
+            }
+            String name = arg.substring(2, arg.indexOf('='));
+            String value = arg.substring(arg.indexOf('=') + 1);
+            try {
+                switch (name) {
+                    case "length":
+                        length = Integer.parseInt(value);
+                        break;
+                    case "btreefile":
+                        btreeFile = Paths.get(value);
+                        break;
+                    case "hitrate":
+                        hitRate = Double.parseDouble(value);
+                        break;
+                    case "keys":
+                        keys = Integer.parseInt(value);
+                        break;
+                    case "count":
+                        count = Integer.parseInt(value);
+                        break;
+                    case "distribution":
+                        distribution = value;
+                        break;
+                    case "zipf":
+                        zipfExponent = Double.parseDouble(value);
+                        break;
+                    case "hotfraction":
+                        hotFraction = Double.parseDouble(value);
+                        break;
+                    case "hotprobability":
+                        hotProbability = Double.parseDouble(value);
+                        break;
+                    case "order":
+                        if (!value.equals("random") && !value.equals("sorted")) {
+                            throw new IllegalArgumentException("Order must be random or sorted: " + value);
+                        }
+                        sorted = value.equals("sorted");
+                        break;
+                    case "seed":
+                        seed = Long.parseLong(value);
+                        break;
+                    case "output":
+                        output = Paths.get(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown argument: " + arg);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid number in argument: " + arg);
+            }
+        }
+
+        if (btreeFile == null && length == 0) {
+            throw new IllegalArgumentException("Missing argument: --length or --btreefile");
+        } else if (btreeFile != null && !Files.isRegularFile(btreeFile)) {
+            throw new IllegalArgumentException("BTree file does not exist: " + btreeFile);
+        } else if (length < 0 || length > SequenceUtils.MAX_WIDE_LENGTH) {
+            throw new IllegalArgumentException("Length must be between 1 and " + SequenceUtils.MAX_WIDE_LENGTH + ": "
+                    + length);
+        } else if (hitRate < 0 || hitRate > 1) {
+            throw new IllegalArgumentException("Hit rate must be between 0 and 1: " + hitRate);
+        } else if (keys < 1 || count < 1) {
+            throw new IllegalArgumentException("There must be at least one key and one query");
+        } else if (!Arrays.asList("uniform", "zipf", "hotspot").contains(distribution)) {
+            throw new IllegalArgumentException("Distribution must be uniform, zipf or hotspot: " + distribution);
+        } else if (zipfExponent < 0) {
+            throw new IllegalArgumentException("The zipf exponent must be at least 0: " + zipfExponent);
+        } else if (hotFraction <= 0 || hotFraction > 1 || hotProbability < 0 || hotProbability > 1) {
+            throw new IllegalArgumentException("The hot fraction must be in (0, 1] and the hot probability in [0, 1]");
+        }
+    }
+
+    /**
+     * Choose the keys, draw the queries from them, and write the file.
+     *
+     * @throws IOException      if the {@link BTree} can't be read or the file can't be written
+     * @throws BTreeException   if the {@link BTree} can't be opened
+     */
+    private void generate() throws IOException, BTreeException {
+        random = new SplittableRandom(seed);
+        List<String> universe = new ArrayList<>(keys);
+        int hits = 0;
+        if (btreeFile == null) {
+            addRandomKeys(universe, keys, null);
+        } else {
+            BTree btree = new BTree(btreeFile.toString());
+            try {
+                if (length != 0 && length != btree.getSubsequenceLength()) {
+                    throw new IllegalArgumentException("The BTree holds subsequences of length "
+                            + btree.getSubsequenceLength() + ", not " + length);
+                }
+                length = btree.getSubsequenceLength();
+                universe.addAll(sampleKeys(btree, (int) Math.round(keys * hitRate)));
+                hits = universe.size();
+                addRandomKeys(universe, keys - hits, btree);
+            } finally {
+                btree.close();
+            }
+        }
+        shuffle(universe);  // Popularity has nothing to do with the order of the keys
+
+        String[] queries = new String[count];
+        int[] draws = new int[universe.size()];
+        double[] cumulative = distribution.equals("zipf") ? zipfCumulative(universe.size()) : null;
+        int hot = Math.max(1, (int) Math.round(universe.size() * hotFraction));
+        for (int i = 0; i < count; i++) {
+            int rank;
+            if (cumulative != null) {
+                rank = Arrays.binarySearch(cumulative, random.nextDouble());
+                rank = Math.min(rank < 0 ? -rank - 1 : rank, universe.size() - 1);
+            } else if (distribution.equals("hotspot")) {
+                boolean drawHot = hot == universe.size() || random.nextDouble() < hotProbability;
+                rank = drawHot ? random.nextInt(hot) : hot + random.nextInt(universe.size() - hot);
+            } else {
+                rank = random.nextInt(universe.size());
+            }
+            queries[i] = universe.get(rank);
+            draws[rank]++;
+        }
+        if (sorted) {
+            Arrays.sort(queries);  // Bases sort alphabetically in the same order as their encodings
+        }
+
+        StringBuilder sb = new StringBuilder(count * (length + 1));
+        for (String query : queries) {
+            sb.append(query).append('\n');
+        }
+        if (output == null) {
+            System.out.print(sb);
+            System.out.flush();
+        } else {
+            Files.write(output, sb.toString().getBytes(StandardCharsets.US_ASCII));
+        }
+
+        int distinct = 0;
+        int topDraws = 0;
+        for (int draw : draws) {
+            distinct += draw > 0 ? 1 : 0;
+            topDraws = Math.max(topDraws, draw);
+        }
+        System.err.printf(Locale.ROOT, "Wrote %,d %s queries of length %d over %,d keys (%,d from the BTree): "
+                        + "%,d distinct, the most popular %.1f%% of queries%s%n", count, distribution, length,
+                universe.size(), hits, distinct, 100.0 * topDraws / count, output == null ? "" : " to " + output);
+    }
+
+    /**
+     * Sample keys from a {@link BTree} uniformly, by reservoir sampling over its iterator.
+     *
+     * @param btree     the {@link BTree}
+     * @param size      the number of keys to sample
+     * @return          the keys, as DNA strings; all of them if the {@link BTree} holds fewer
+     */
+    private List<String> sampleKeys(BTree btree, int size) {
+        List<String> sample = new ArrayList<>(size);
+        if (size == 0) {
+            return sample;
+        }
+        long seen = 0;
+        Iterator<TreeObject> iter = btree.iterator();
+        while (iter.hasNext()) {
+            TreeObject key = iter.next();
+            seen++;
+            if (sample.size() < size) {
+                sample.add(toDnaString(key.getSubsequenceHigh(), key.getSubsequence()));
+            } else {
+                long slot = random.nextLong(seen);
+                if (slot < size) {
+                    sample.set((int) slot, toDnaString(key.getSubsequenceHigh(), key.getSubsequence()));
+                }
+            }
+        }
+        return sample;
+    }
+
+    /**
+     * Add random keys, distinct from each other and the keys already there, and that neither a {@link BTree} nor its
+     * complement holds, as GeneBankSearchBTree counts both.
+     *
+     * @param universe                  the keys so far, to add to
+     * @param size                      the number of keys to add
+     * @param btree                     the {@link BTree} the keys must miss, or null for none
+     * @throws IOException              if the {@link BTree} can't be searched
+     * @throws IllegalArgumentException if there aren't enough such keys to be found
+     */
+    private void addRandomKeys(List<String> universe, int size, BTree btree) throws IOException {
+        Set<String> taken = new HashSet<>(universe);
+        int highBases = Math.max(length - SequenceUtils.BASES_PER_LONG, 0);
+        int lowBases = length - highBases;
+        long attempts = (long) size * MAX_ATTEMPTS_PER_KEY;
+        for (int added = 0; added < size; ) {
+            if (attempts-- == 0) {
+                throw new IllegalArgumentException("Couldn't find " + size + " distinct keys of length " + length
+                        + " that miss; ask for fewer keys or a higher hit rate");
+            }
+            long high = random.nextLong() & mask(highBases);
+            long low = random.nextLong() & mask(lowBases);
+            String key = toDnaString(high, low);
+            if (taken.contains(key)) {
+                continue;
+            }
+            if (btree != null && (btree.search(high, low) != null || btree.search(
+                    SequenceUtils.getComplementHigh(high, length), SequenceUtils.getComplementLow(low, length)) != null)) {
+                continue;
+            }
+            taken.add(key);
+            universe.add(key);
+            added++;
+        }
+    }
+
+    /**
+     * Get the mask of the bits that encode some number of bases.
+     *
+     * @param bases the number of bases, up to {@link SequenceUtils#BASES_PER_LONG}
+     * @return      the mask
+     */
+    private static long mask(int bases) {
+        return bases == SequenceUtils.BASES_PER_LONG ? -1L : (1L << (2 * bases)) - 1;
+    }
+
+    /**
+     * Decode a key into an uppercase DNA string, like the sample query files.
+     *
+     * @param high  the high 64 bits of the key
+     * @param low   the low 64 bits of the key
+     * @return      the DNA string
+     */
+    private String toDnaString(long high, long low) {
+        return SequenceUtils.longsToDnaString(high, low, length).toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * Get the cumulative probabilities of the ranks of a Zipf distribution, to draw from by binary search.
+     *
+     * @param size  the number of ranks
+     * @return      the chance of drawing each rank or a more popular one
+     */
+    private double[] zipfCumulative(int size) {
+        double[] cumulative = new double[size];
+        double sum = 0;
+        for (int rank = 0; rank < size; rank++) {
+            sum += 1 / Math.pow(rank + 1, zipfExponent);
+            cumulative[rank] = sum;
+        }
+        for (int rank = 0; rank < size; rank++) {
+            cumulative[rank] /= sum;
+        }
+        return cumulative;
+    }
+
+    /**
+     * Shuffle a list in place, with the Fisher-Yates shuffle.
+     *
+     * @param list  the list
+     */
+    private void shuffle(List<String> list) {
+        for (int i = list.size() - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            list.set(i, list.set(j, list.get(i)));
+        }
+    }
+}
@@ -0,0 +1,376 @@
+package cs321.btree;
+
+import cs321.bench.Benchmark;
+import cs321.bench.Blackhole;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * {@link Benchmark}s of the {@link BTree}: inserts and searches at several degrees and cache sizes, reading and writing
+ * {@link BTreeNode}s, in-order scans with {@link BTreeInOrderIterator}, and building a database with
+ * {@link BTreeSQLiteDBBuilder}.
+ * <p>
+ * These live in the package of the {@link BTree} so they can reach what it keeps package private, like
+ * {@link BTreeNode} and {@link BTree#flush()}.
+ *
+ * @author Derek Caplinger
+ * @author Matt Youngberg
+ */
+public class BTreeBenchmarks {
+
+    /**
+     * The length of the subsequences in the {@link BTree}s benchmarked.
+     */
+    private static final int SUBSEQUENCE_LENGTH = 12;
+
+    /**
+     * The number of keys inserted into each {@link BTree}.
+     */
+    private static final int KEY_COUNT = 20000;
+
+    /**
+     * The number of keys in the {@link BTree} that scans and database builds run over.
+     */
+    private static final int SCAN_KEY_COUNT = 100000;
+
+    /**
+     * The number of times a {@link BTreeNode} is read or written per run.
+     */
+    private static final int NODE_OPS = 10000;
+
+    /**
+     * The degrees benchmarked, where 0 is the degree the {@link BTree} calculates for itself.
+     */
+    private static final int[] DEGREES = {2, 16, 0};
+
+    /**
+     * The cache sizes benchmarked, where 0 is no cache.
+     */
+    private static final int[] CACHE_SIZES = {0, 100, 1000};
+
+    /**
+     * The seed of the random keys, so every run inserts and searches for the same ones.
+     */
+    private static final long SEED = 321;
+
+    /**
+     * Get every {@link Benchmark} of the {@link BTree}.
+     *
+     * @return  every {@link Benchmark} of the {@link BTree}
+     */
+    public static List<Benchmark> getBenchmarks() {
+        List<Benchmark> benchmarks = new ArrayList<>();
+        for (int degree : DEGREES) {
+            for (int cacheSize : CACHE_SIZES) {
+                benchmarks.add(new InsertBenchmark(degree, cacheSize));
+            }
+        }
+        for (int degree : DEGREES) {
+            for (int cacheSize : CACHE_SIZES) {
+                benchmarks.add(new SearchBenchmark(degree, cacheSize, false));
+            }
+        }
+        for (int cacheSize : CACHE_SIZES) {
+            benchmarks.add(new SearchBenchmark(0, cacheSize, true));
+        }
+        benchmarks.add(new NodeBenchmark(false));
+        benchmarks.add(new NodeBenchmark(true));
+        benchmarks.add(new ScanBenchmark());
+        benchmarks.add(new DatabaseBenchmark());
+        return benchmarks;
+    }
+
+    /**
+     * Get a name part for a degree.
+     *
+     * @param degree    the degree, or 0 for the one the {@link BTree} calculates
+     * @return          the name part
+     */
+    private static String degreeName(int degree) {
+        return degree == 0 ? "optimal" : "t" + degree;
+    }
+
+    /**
+     * Make random keys for subsequences of {@link BTreeBenchmarks#SUBSEQUENCE_LENGTH}.
+     *
+     * @param random    the source of randomness
+     * @param count     the number of keys
+     * @return          the keys
+     */
+    private static long[] randomKeys(Random random, int count) {
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = random.nextInt(1 << (2 * SUBSEQUENCE_LENGTH));
+        }
+        return keys;
+    }
+
+    /**
+     * Create a {@link BTree} in a new file and insert keys into it.
+     *
+     * @param file          the file to create the {@link BTree} in; replaced if it exists
+     * @param degree        the degree, or 0 for the one the {@link BTree} calculates
+     * @param cacheSize     the cache size, or 0 for no cache
+     * @param keys          the keys to insert
+     * @return              the {@link BTree}, still open
+     * @throws IOException      if an I/O error occurs
+     * @throws BTreeException   if the {@link BTree} can't be created
+     */
+    private static BTree createTree(Path file, int degree, int cacheSize, long[] keys)
+            throws IOException, BTreeException {
+        Files.deleteIfExists(file);
+        BTree btree = new BTree(degree, file.toString(), cacheSize,
+                new BTreeOptions().subsequenceLength(SUBSEQUENCE_LENGTH));
+        for (long key : keys) {
+            btree.insert(new TreeObject(key));
+        }
+        return btree;
+    }
+
+    /**
+     * Inserts {@link BTreeBenchmarks#KEY_COUNT} random keys into a new {@link BTree}.
+     */
+    private static class InsertBenchmark implements Benchmark {
+
+        private final int degree;
+        private final int cacheSize;
+        private long[] keys;
+        private Path file;
+
+        InsertBenchmark(int degree, int cacheSize) {
+            this.degree = degree;
+            this.cacheSize = cacheSize;
+        }
+
+        @Override
+        public String getName() {
+            return "btree.insert." + degreeName(degree) + ".cache" + cacheSize;
+        }
+
+        @Override
+        public void setUp() throws IOException {
+            keys = randomKeys(new Random(SEED), KEY_COUNT);
+            file = Files.createTempFile("cs321-bench", ".btree");
+        }
+
+        @Override
+        public long run() throws IOException, BTreeException {
+            BTree btree = createTree(file, degree, cacheSize, keys);
+            btree.flush();
+            Blackhole.consume(btree.getNumberOfNodes());
+            btree.close();
+            return keys.length;
+        }
+
+        @Override
+        public void tearDown() throws IOException {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Searches a {@link BTree} of {@link BTreeBenchmarks#KEY_COUNT} random keys, reopened from disk, for as many
+     * random keys, about half of which it holds; one at a time, or all at once with
+     * {@link BTree#searchBatch(long[], long[])}.
+     */
+    private static class SearchBenchmark implements Benchmark {
+
+        private final int degree;
+        private final int cacheSize;
+        private final boolean batch;
+        private long[] queries;
+        private Path file;
+        private BTree btree;
+
+        SearchBenchmark(int degree, int cacheSize, boolean batch) {
+            this.degree = degree;
+            this.cacheSize = cacheSize;
+            this.batch = batch;
+        }
+
+        @Override
+        public String getName() {
+            return "btree." + (batch ? "searchBatch." : "search.") + degreeName(degree) + ".cache" + cacheSize;
+        }
+
+        @Override
+        public void setUp() throws IOException, BTreeException {
+            Random random = new Random(SEED);
+            long[] keys = randomKeys(random, KEY_COUNT);
+            file = Files.createTempFile("cs321-bench", ".btree");
+            BTree created = createTree(file, degree, 0, keys);
+            created.flush();
+            created.close();
+            btree = cacheSize == 0 ? new BTree(file.toString()) : new BTree(file.toString(), cacheSize);
+
+            queries = new long[KEY_COUNT];
+            for (int i = 0; i < queries.length; i++) {
+                queries[i] = i % 2 == 0 ? keys[random.nextInt(keys.length)] : random.nextInt(1 << 24);
+            }
+        }
+
+        @Override
+        public long run() throws IOException {
+            if (batch) {
+                for (TreeObject result : btree.searchBatch(new long[queries.length], queries)) {
+                    Blackhole.consume(result);
+                }
+            } else {
+                for (long query : queries) {
+                    Blackhole.consume(btree.search(query));
+                }
+            }
+            return queries.length;
+        }
+
+        @Override
+        public void tearDown() throws IOException {
+            btree.close();
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Writes or reads a full {@link BTreeNode} of the degree a {@link BTree} calculates for itself, in the original
+     * layout, {@link BTreeBenchmarks#NODE_OPS} times.
+     */
+    private static class NodeBenchmark implements Benchmark {
+
+        private final boolean read;
+        private int t;
+        private BTreeNode node;
+        private ByteBuffer buffer;
+
+        NodeBenchmark(boolean read) {
+            this.read = read;
+        }
+
+        @Override
+        public String getName() {
+            return read ? "btree.node.fromByteBuffer" : "btree.node.writeToByteBuffer";
+        }
+
+        @Override
+        public void setUp() {
+            t = 2;
+            while (BTreeNode.getByteSize(t + 1) <= BTree.DEFAULT_PAGE_SIZE) {
+                t++;
+            }
+            node = new BTreeNode(t);
+            long[] keys = randomKeys(new Random(SEED), BTreeNode.getMaxKeyCount(t));
+            for (int i = 0; i < keys.length; i++) {
+                node.keys[i] = new TreeObject(keys[i]);
+            }
+            node.keyCount = keys.length;
+            node.leaf = false;
+            for (int i = 0; i < node.childPositions.length; i++) {
+                node.childPositions[i] = (long) (i + 1) * BTree.DEFAULT_PAGE_SIZE;
+            }
+            buffer = ByteBuffer.allocateDirect(BTreeNode.getByteSize(t));
+            node.writeToByteBuffer(buffer, false);
+        }
+
+        @Override
+        public long run() {
+            for (int i = 0; i < NODE_OPS; i++) {
+                buffer.clear();
+                if (read) {
+                    Blackhole.consume(BTreeNode.fromByteBuffer(buffer, t, false));
+                } else {
+                    node.writeToByteBuffer(buffer, false);
+                }
+            }
+            Blackhole.consume(buffer.position());
+            return NODE_OPS;
+        }
+    }
+
+    /**
+     * Scans a {@link BTree} of {@link BTreeBenchmarks#SCAN_KEY_COUNT} random keys, reopened from disk, in order.
+     */
+    private static class ScanBenchmark implements Benchmark {
+
+        private Path file;
+        private BTree btree;
+
+        @Override
+        public String getName() {
+            return "btree.scan.optimal";
+        }
+
+        @Override
+        public void setUp() throws IOException, BTreeException {
+            file = Files.createTempFile("cs321-bench", ".btree");
+            BTree created = createTree(file, 0, 0, randomKeys(new Random(SEED), SCAN_KEY_COUNT));
+            created.flush();
+            created.close();
+            btree = new BTree(file.toString());
+        }
+
+        @Override
+        public long run() {
+            long count = 0;
+            Iterator<TreeObject> iter = btree.iterator();
+            while (iter.hasNext()) {
+                Blackhole.consume(iter.next());
+                count++;
+            }
+            return count;
+        }
+
+        @Override
+        public void tearDown() throws IOException {
+            btree.close();
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Builds the SQLite database of a {@link BTree} of {@link BTreeBenchmarks#SCAN_KEY_COUNT} random keys.
+     */
+    private static class DatabaseBenchmark implements Benchmark {
+
+        private Path directory;
+        private Path gbkFile;
+        private BTree btree;
+
+        @Override
+        public String getName() {
+            return "btree.sqliteBuilder.optimal";
+        }
+
+        @Override
+        public void setUp() throws IOException, BTreeException {
+            TreeObject.subsequenceLength = SUBSEQUENCE_LENGTH;  // Part of the database name
+            directory = Files.createTempDirectory("cs321-bench");
+            gbkFile = directory.resolve("bench.gbk");  // The builder names the database after the GeneBank file
+            Path file = directory.resolve("bench.btree");
+            BTree created = createTree(file, 0, 0, randomKeys(new Random(SEED), SCAN_KEY_COUNT));
+            created.flush();
+            created.close();
+            btree = new BTree(file.toString());
+        }
+
+        @Override
+        public long run() throws Exception {
+            Files.deleteIfExists(directory.resolve("bench." + SUBSEQUENCE_LENGTH + ".db"));
+            BTreeSQLiteDBBuilder.create(btree, gbkFile);
+            return btree.getSize();
+        }
+
+        @Override
+        public void tearDown() throws IOException {
+            btree.close();
+            Files.deleteIfExists(directory.resolve("bench.btree"));
+            Files.deleteIfExists(directory.resolve("bench." + SUBSEQUENCE_LENGTH + ".db"));
+            Files.deleteIfExists(directory);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package cs321.create;
+
+import cs321.bench.Benchmark;
+import cs321.bench.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * {@link Benchmark}s of reading GeneBank files and encoding subsequences: {@link GeneBankSubsequenceIterator}
+ * throughput, and encoding and decoding with {@link SequenceUtils}.
+ *
+ * @author Derek Caplinger
+ * @author Matt Youngberg
+ */
+public class CreateBenchmarks {
+
+    /**
+     * The GeneBank file that {@link GeneBankSubsequenceIterator} reads, relative to the project directory.
+     */
+    private static final Path GBK_FILE = Paths.get("data", "files_gbk", "test5.gbk");
+
+    /**
+     * The subsequence lengths that {@link GeneBankSubsequenceIterator} is benchmarked at.
+     */
+    private static final int[] SUBSEQUENCE_LENGTHS = {6, 20, 31, 47};
+
+    /**
+     * The number of strings encoded or decoded per run.
+     */
+    private static final int STRING_COUNT = 100000;
+
+    /**
+     * The number of bases encoded or decoded per run in bulk.
+     */
+    private static final int BULK_BASES = 1 << 22;
+
+    /**
+     * The seed of the random bases, so every run encodes the same ones.
+     */
+    private static final long SEED = 321;
+
+    /**
+     * Get every {@link Benchmark} of reading and encoding subsequences.
+     *
+     * @return  every {@link Benchmark} of reading and encoding subsequences
+     */
+    public static List<Benchmark> getBenchmarks() {
+        List<Benchmark> benchmarks = new ArrayList<>();
+        for (int length : SUBSEQUENCE_LENGTHS) {
+            benchmarks.add(new IteratorBenchmark(length));
+        }
+        benchmarks.add(new StringBenchmark(false));
+        benchmarks.add(new StringBenchmark(true));
+        benchmarks.add(new BulkBenchmark(false));
+        benchmarks.add(new BulkBenchmark(true));
+        return benchmarks;
+    }
+
+    /**
+     * Make random lowercase bases.
+     *
+     * @param random    the source of randomness
+     * @param count     the number of bases
+     * @return          the bases, as ASCII
+     */
+    private static byte[] randomBases(Random random, int count) {
+        byte[] bases = new byte[count];
+        for (int i = 0; i < count; i++) {
+            bases[i] = (byte) "acgt".charAt(random.nextInt(4));
+        }
+        return bases;
+    }
+
+    /**
+     * Reads every encoded subsequence of {@link CreateBenchmarks#GBK_FILE}, as {@link GeneBankCreateBTree} does.
+     */
+    private static class IteratorBenchmark implements Benchmark {
+
+        private final int length;
+
+        IteratorBenchmark(int length) {
+            this.length = length;
+        }
+
+        @Override
+        public String getName() {
+            return "create.subsequenceIterator.k" + length;
+        }
+
+        @Override
+        public void setUp() throws IOException {
+            if (!Files.exists(GBK_FILE)) {
+                throw new IOException("Run from the project directory; can't find " + GBK_FILE);
+            }
+        }
+
+        @Override
+        public long run() throws IOException {
+            long count = 0;
+            try (GeneBankSubsequenceIterator iter = new GeneBankSubsequenceIterator(GBK_FILE, length)) {
+                while (iter.hasNext()) {
+                    Blackhole.consume(iter.nextEncoded() ^ iter.lastEncodedHigh());
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Encodes or decodes {@link CreateBenchmarks#STRING_COUNT} random 31-base strings one at a time.
+     */
+    private static class StringBenchmark implements Benchmark {
+
+        private final boolean decode;
+        private String[] strings;
+        private long[] encodings;
+
+        StringBenchmark(boolean decode) {
+            this.decode = decode;
+        }
+
+        @Override
+        public String getName() {
+            return decode ? "sequence.longToDnaString" : "sequence.dnaStringToLong";
+        }
+
+        @Override
+        public void setUp() {
+            byte[] bases = randomBases(new Random(SEED), STRING_COUNT * SequenceUtils.MAX_LENGTH);
+            strings = new String[STRING_COUNT];
+            encodings = new long[STRING_COUNT];
+            for (int i = 0; i < STRING_COUNT; i++) {
+                strings[i] = new String(bases, i * SequenceUtils.MAX_LENGTH, SequenceUtils.MAX_LENGTH);
+                encodings[i] = SequenceUtils.dnaStringToLong(strings[i]);
+            }
+        }
+
+        @Override
+        public long run() {
+            for (int i = 0; i < STRING_COUNT; i++) {
+                if (decode) {
+                    Blackhole.consume(SequenceUtils.longToDnaString(encodings[i], SequenceUtils.MAX_LENGTH));
+                } else {
+                    Blackhole.consume(SequenceUtils.dnaStringToLong(strings[i]));
+                }
+            }
+            return STRING_COUNT;
+        }
+    }
+
+    /**
+     * Encodes or decodes {@link CreateBenchmarks#BULK_BASES} random bases at once; throughput is in bases.
+     */
+    private static class BulkBenchmark implements Benchmark {
+
+        private final boolean decode;
+        private byte[] bases;
+        private long[] encoded;
+
+        BulkBenchmark(boolean decode) {
+            this.decode = decode;
+        }
+
+        @Override
+        public String getName() {
+            return decode ? "sequence.decode.bulk" : "sequence.encode.bulk";
+        }
+
+        @Override
+        public void setUp() {
+            bases = randomBases(new Random(SEED), BULK_BASES);
+            encoded = new long[(BULK_BASES + SequenceUtils.BASES_PER_LONG - 1) / SequenceUtils.BASES_PER_LONG];
+            SequenceUtils.encode(bases, 0, BULK_BASES, encoded);
+        }
+
+        @Override
+        public long run() {
+            if (decode) {
+                SequenceUtils.decode(encoded, BULK_BASES, bases, 0);
+                Blackhole.consume(bases[BULK_BASES - 1]);
+            } else {
+                Blackhole.consume(SequenceUtils.encode(bases, 0, BULK_BASES, encoded));
+            }
+            return BULK_BASES;
+        }
+    }
+}
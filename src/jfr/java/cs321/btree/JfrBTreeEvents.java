@@ -0,0 +1,267 @@
+package cs321.btree;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The {@link BTreeEvents} of a JVM that has the Java Flight Recorder, as Flight Recorder events. This class is compiled
+ * apart from the rest of the {@link BTree}, from <code>src/jfr/java</code>, so that the tree itself doesn't need
+ * <code>jdk.jfr</code>, and is loaded by name by {@link BTreeEvents} when it is present.
+ * <p>
+ * Each event is created and begun before the work it times and committed after, whether or not a recording is running.
+ * With none, that is a few instructions the JIT largely optimizes away, and the events cost close to nothing.
+ * Reads and writes are recorded without stack traces, as there are many of them and a stack trace is the costly part
+ * of an event; turn them on with a recording setting such as <code>cs321.btree.NodeRead#stackTrace=true</code>.
+ *
+ * @author Derek Caplinger
+ * @author Matt Youngberg
+ */
+final class JfrBTreeEvents extends BTreeEvents {
+
+    /**
+     * Create the events, as {@link BTreeEvents} does by reflection.
+     */
+    JfrBTreeEvents() {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    BTreeEvents.NodeRead nodeRead() {
+        NodeRead event = new NodeRead();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    BTreeEvents.NodeWrite nodeWrite() {
+        NodeWrite event = new NodeWrite();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    BTreeEvents.NodeSplit nodeSplit() {
+        NodeSplit event = new NodeSplit();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    BTreeEvents.NodeEviction nodeEviction() {
+        NodeEviction event = new NodeEviction();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * A lookup of a {@link BTreeNode} by {@link BTree#getNode(long, int)} or {@link BTree#getNodeAsync(long, int)},
+     * served from the cache, the write buffer or the disk.
+     */
+    @Name("cs321.btree.NodeRead")
+    @Label("Node Read")
+    @Category("B-Tree")
+    @Description("A lookup of a node, from the cache, the write buffer or the disk")
+    @StackTrace(false)
+    static final class NodeRead extends Event implements BTreeEvents.NodeRead {
+
+        /**
+         * The position of the node in the file.
+         */
+        @Label("Position")
+        long position;
+
+        /**
+         * The depth of the node, where the root is at 0.
+         */
+        @Label("Level")
+        int level;
+
+        /**
+         * Whether the node was found in the cache.
+         */
+        @Label("Cache Hit")
+        boolean cacheHit;
+
+        /**
+         * The number of bytes read from disk, 0 if the node was found in memory.
+         */
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+        /**
+         * Whether the node was read by {@link BTree#getNodeAsync(long, int)}, and committed by the thread that
+         * completed the read.
+         */
+        @Label("Asynchronous")
+        boolean async;
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void commit(long position, int level, boolean cacheHit, long bytes, boolean async) {
+            end();
+            if (shouldCommit()) {
+                this.position = position;
+                this.level = level;
+                this.cacheHit = cacheHit;
+                this.bytes = bytes;
+                this.async = async;
+                commit();
+            }
+        }
+    }
+
+    /**
+     * A write of a run of adjacent {@link BTreeNode}s by the {@link NodeWriteBuffer}, in one gathering write.
+     */
+    @Name("cs321.btree.NodeWrite")
+    @Label("Node Write")
+    @Category("B-Tree")
+    @Description("A write of a run of adjacent nodes to disk")
+    @StackTrace(false)
+    static final class NodeWrite extends Event implements BTreeEvents.NodeWrite {
+
+        /**
+         * The position of the first node of the run in the file.
+         */
+        @Label("Position")
+        long position;
+
+        /**
+         * The number of nodes in the run.
+         */
+        @Label("Nodes")
+        int nodes;
+
+        /**
+         * The number of bytes written, padding included.
+         */
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void commit(long position, int nodes, long bytes) {
+            end();
+            if (shouldCommit()) {
+                this.position = position;
+                this.nodes = nodes;
+                this.bytes = bytes;
+                commit();
+            }
+        }
+    }
+
+    /**
+     * A split of a full {@link BTreeNode} around its median key, by {@link BTree#insert(TreeObject)}.
+     */
+    @Name("cs321.btree.NodeSplit")
+    @Label("Node Split")
+    @Category("B-Tree")
+    @Description("A split of a full node around its median key")
+    static final class NodeSplit extends Event implements BTreeEvents.NodeSplit {
+
+        /**
+         * The depth of the node split, where the root is at 0.
+         */
+        @Label("Level")
+        int level;
+
+        /**
+         * The position of the node split in the file, which keeps its lesser half.
+         */
+        @Label("Position")
+        long position;
+
+        /**
+         * The position of the new node in the file, which takes the greater half.
+         */
+        @Label("New Position")
+        long newPosition;
+
+        /**
+         * The position of the parent of the node split in the file, which takes its median key.
+         */
+        @Label("Parent Position")
+        long parentPosition;
+
+        /**
+         * Whether the node split was the root, so that the split added a level to the {@link BTree}.
+         */
+        @Label("Root Split")
+        boolean rootSplit;
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void commit(int level, long position, long newPosition, long parentPosition, boolean rootSplit) {
+            end();
+            if (shouldCommit()) {
+                this.level = level;
+                this.position = position;
+                this.newPosition = newPosition;
+                this.parentPosition = parentPosition;
+                this.rootSplit = rootSplit;
+                commit();
+            }
+        }
+    }
+
+    /**
+     * An eviction of a {@link BTreeNode} from the cache, which for a dirty node includes handing it to the
+     * {@link NodeWriteBuffer}.
+     */
+    @Name("cs321.btree.NodeEviction")
+    @Label("Node Eviction")
+    @Category("B-Tree")
+    @Description("An eviction of a node from the cache")
+    static final class NodeEviction extends Event implements BTreeEvents.NodeEviction {
+
+        /**
+         * The position of the node in the file.
+         */
+        @Label("Position")
+        long position;
+
+        /**
+         * Whether the node had changed since it was read, and so had to be written back.
+         */
+        @Label("Dirty")
+        boolean dirty;
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void commit(long position, boolean dirty) {
+            end();
+            if (shouldCommit()) {
+                this.position = position;
+                this.dirty = dirty;
+                commit();
+            }
+        }
+    }
+}
@@ -2,17 +2,31 @@ package cs321.btree;
 
 import cs321.create.SequenceUtils;
 
+import java.io.EOFException;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.PrintWriter;
 import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
 import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
 import java.nio.channels.FileChannel;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 /**
  * Implements a BTree, which is optimized for large amounts of data that cannot fit in memory, given the proper degree.
@@ -32,16 +46,19 @@ import java.util.LinkedHashMap;
  * of the file is always the metadata of the {@link BTree}, which includes the following fields:
  * <p>
  * <ul>
+ *     <li>The magic number {@link BTree#MAGIC} and the version of the file layout, {@link BTree#FORMAT_VERSION}</li>
  *     <li>The degree of the {@link BTree}</li>
  *     <li>The position of the root node of the {@link BTree}</li>
  *     <li>The number of keys in the {@link BTree}</li>
  *     <li>The height of the {@link BTree}</li>
+ *     <li>The length of the subsequences stored in the {@link BTree}, if known</li>
+ *     <li>Flags describing how keys are stored, e.g. whether they are canonical (see {@link BTree#isCanonical()})</li>
  * </ul>
  * <p>
  * After which, it will begin to store its nodes. The nodes do not dynamically expand, as that would necessitate a
  * rewrite of the entire file. Instead, the {@link BTree} will allocate the max amount of space for each node, and
  * only use the space that it needs. For this reason, it is recommended you allow this class to calculate the optimal
- * degree for a block size of 4096B, as that will maximize the size of a given node given the block size. Each node
+ * degree for a page size of 4096B, as that will maximize the size of a given node given the block size. Each node
  * stores the following fields:
  * <p>
  * <ul>
@@ -49,26 +66,92 @@ import java.util.LinkedHashMap;
  *     <li>Its children positions in the file</li>
  * </ul>
  * <p>
- * As such, you can visualize the layout of the file as follows (if the {@link BTree} was tracking 3 nodes at optimal
- * block size):
+ * Keys holding subsequences longer than 31 bases are wide: they take 8B more on disk for the high bits of their
+ * subsequence (see {@link TreeObject#WIDE_BYTE_SIZE}), which in turn lowers the optimal degree. Whether keys are wide
+ * follows from the subsequence length in the metadata, so a {@link BTree} must be given the length on creation to
+ * store them. Given the length, a {@link BTree} also packs its keys into only as many bytes as they need, which raises
+ * the optimal degree for short subsequences; see {@link FixedNodeCodec}.
+ * <p>
+ * Alternatively, a {@link BTree} can store its nodes in compressed pages (see {@link BTree#isCompressed()}), where each
+ * node is a page of delta-encoded keys and holds as many as fit rather than a number fixed by its degree. How
+ * nodes are laid out is up to a {@link NodeCodec}.
+ * <p>
+ * When the {@link BTree} calculates its own degree, or is given a page size (see {@link BTree#getPageSize()}), the
+ * file is aligned to pages: the metadata takes up the first page, and each node starts on a page of its own, so a node
+ * is always read from a single page. As such, you can visualize the layout of the file as follows (if the
+ * {@link BTree} was tracking 2 nodes at the default page size):
  * <p>
  * <pre>
- * +----------------+--------------------------------+--------------------------------+
- * |   Metadata     |            Node 1              |            Node 2              |
- * |     20B        |            ~4096B              |            ~4096B              |
- * +----------------+--------------------------------+--------------------------------+
+ * +--------------------------------+--------------------------------+--------------------------------+
+ * |      Metadata + padding        |        Node 1 + padding        |        Node 2 + padding        |
+ * |           4096B                |            4096B               |            4096B               |
+ * +--------------------------------+--------------------------------+--------------------------------+
  * </pre>
+ * <p>
+ * Each node is written with the zeroed padding after it, so that adjacent nodes are written in one write; see
+ * {@link NodeWriteBuffer}. A {@link BTree} given a degree but no page size packs its nodes end to end after the 48B of
+ * metadata instead.
  *
  * @author Derek Caplinger
  * @author Matt Youngberg
  *
  */
-public class BTree implements BTreeInterface, Iterable<TreeObject> {
+public class BTree implements BTreeInterface, Iterable<TreeObject>, FrequencyIndex {
 
     /**
      * The size of the metadata for the {@link BTree} in bytes.
      */
-    private final int METADATA_SIZE = Long.BYTES + Integer.BYTES * 3;  // t + root position + count + height
+    private final int METADATA_SIZE = Long.BYTES + Integer.BYTES * 10;  // magic + version + t + root position + count + height + length + flags + key width + count width + page size
+
+	/**
+	 * The first four bytes of a {@link BTree} file, "BTRE".
+	 */
+	public static final int MAGIC = 0x42545245;
+
+	/**
+	 * The version of the layout of the metadata and nodes of a {@link BTree} file, which follows {@link BTree#MAGIC}.
+	 */
+	public static final int FORMAT_VERSION = 1;
+
+	/**
+	 * The size of a page in bytes when none is given and the {@link BTree} chooses its own degree.
+	 */
+	public static final int DEFAULT_PAGE_SIZE = 4096;
+
+	/**
+	 * The smallest page size a {@link BTree} can be given, in bytes.
+	 */
+	public static final int MIN_PAGE_SIZE = 4096;
+
+	/**
+	 * The largest page size a {@link BTree} can be given, in bytes.
+	 */
+	public static final int MAX_PAGE_SIZE = 65536;
+
+	/**
+	 * The suffix added to the file name of a {@link BTree} for the file of its Bloom filter (see
+	 * {@link BTree#writeBloomFilter(double)}).
+	 */
+	public static final String BLOOM_FILTER_SUFFIX = ".bloom";
+
+	/**
+	 * The bit in {@link BTree#flags} that is set when the {@link BTree} stores canonical keys.
+	 *
+	 * @see BTree#isCanonical()
+	 */
+	private static final int CANONICAL_FLAG = 1;
+
+	/**
+	 * The bit in {@link BTree#flags} that is set when the nodes of the {@link BTree} are stored in compressed pages.
+	 *
+	 * @see BTree#isCompressed()
+	 */
+	private static final int COMPRESSED_FLAG = 2;
+
+	/**
+	 * The most node reads {@link BTree#searchBatch(long[], long[])} keeps in flight at once.
+	 */
+	static final int MAX_OUTSTANDING_READS = 64;
 
 	/**
 	 * The {@link RandomAccessFile} that produces the {@link FileChannel} that the {@link BTree} is stored in.
@@ -82,6 +165,11 @@ public class BTree implements BTreeInterface, Iterable<TreeObject> {
      */
     private final FileChannel fileChannel;
 
+	/**
+	 * The {@link AsynchronousFileChannel} that {@link BTree#getNodeAsync(long, int)} reads from, opened on first use.
+	 */
+	private AsynchronousFileChannel asyncChannel = null;
+
     /**
      * The {@link ByteBuffer} that is used to read and write metadata to the {@link BTree}.
      */
@@ -92,6 +180,12 @@ public class BTree implements BTreeInterface, Iterable<TreeObject> {
      */
     private final ByteBuffer nodeBuffer;
 
+	/**
+	 * The {@link NodeWriteBuffer} that holds {@link BTreeNode}s on their way to disk, so they can be written in order of
+	 * position rather than one at a time.
+	 */
+	private final NodeWriteBuffer writeBuffer;
+
 	/**
 	 * The minimum degree of the {@link BTree}
 	 */
@@ -112,6 +206,60 @@ public class BTree implements BTreeInterface, Iterable<TreeObject> {
 	 */
 	private int height;
 
+	/**
+	 * The length of the subsequences stored in the {@link BTree}, or 0 if it was not given upon creation
+	 */
+	private int subsequenceLength;
+
+	/**
+	 * Bit flags describing how keys are stored in the {@link BTree}; see {@link BTree#CANONICAL_FLAG}
+	 */
+	private int flags;
+
+	/**
+	 * Whether the keys of the {@link BTree} are wide, i.e. its subsequences are longer than 31 bases and the high bits
+	 * of their subsequence are stored on disk
+	 */
+	private boolean wide;
+
+	/**
+	 * The width in bytes of a key in a node, or 0 if nodes use the original layout; see {@link FixedNodeCodec}
+	 */
+	private int keyWidth;
+
+	/**
+	 * The width in bytes of a frequency in a node, or 0 if nodes use the original layout; see {@link FixedNodeCodec}
+	 */
+	private int countWidth;
+
+	/**
+	 * The most a frequency can be given {@link BTree#countWidth}; see {@link FixedNodeCodec#getMaxFrequency(int)}
+	 */
+	private int maxFrequency;
+
+	/**
+	 * The size in bytes of the pages the {@link BTree} is aligned to, or 0 if its nodes are packed end to end after the
+	 * metadata
+	 */
+	private int pageSize;
+
+	/**
+	 * The position on disk of the first {@link BTreeNode}: the end of the metadata, or of the header page if aligned
+	 */
+	private long firstNodePosition;
+
+	/**
+	 * The distance on disk from the start of one {@link BTreeNode} to the next: the size of a node, or a page if aligned
+	 */
+	private int nodeSlotSize;
+
+	/**
+	 * The {@link NodeCodec} that lays out the {@link BTreeNode}s of the {@link BTree} on disk, which follows from
+	 * {@link BTree#t}, {@link BTree#wide}, {@link BTree#flags}, {@link BTree#keyWidth}, {@link BTree#countWidth} and
+	 * {@link BTree#pageSize}
+	 */
+	private NodeCodec codec;
+
 	/**
 	 * The path to the file that stores the {@link BTree} on disk
 	 */
@@ -126,19 +274,26 @@ public class BTree implements BTreeInterface, Iterable<TreeObject> {
 	private long nextPosition = METADATA_SIZE;
 
 	/**
-	 * The cache of the {@link BTree}, which is optional
+	 * The cache of the {@link BTree}, which is optional: a {@link HeapNodeCache} of a number of nodes, or an
+	 * {@link OffHeapNodeCache} of a number of bytes (see {@link BTree#useOffHeapCache(long)})
 	 */
-	private LinkedHashMap<Long, BTreeNode> cache = null;
+	private NodeCache cache = null;
 
 	/**
-	 * The cache hits of the {@link BTree#cache}.
+	 * The metrics of the {@link BTree}: reads, writes, cache hits and misses, evictions, splits and insertions
 	 */
-	private long cacheHits = 0;
+	private final BTreeMetrics metrics = new BTreeMetrics();
 
 	/**
-	 * The cache misses of the {@link BTree#cache}.
+	 * The name the {@link BTree#metrics} are registered under with the platform MBean server, or null if they aren't
 	 */
-	 private long cacheMisses = 0;
+	private ObjectName mbeanName = null;
+
+	/**
+	 * The {@link BloomFilter} of the keys of the {@link BTree}, which searches consult first, or null if it has none,
+	 * or has been inserted into since it was built
+	 */
+	private BloomFilter bloomFilter = null;
 
 	/**
 	 * The root node of the {@link BTree}, which is always in memory
@@ -148,7 +303,7 @@ public class BTree implements BTreeInterface, Iterable<TreeObject> {
 	/**
 	 * Construct a BTree that already exists on disk, or if not, create a new one with an optimal degree.
 	 * <p>
-	 * {@link BTree}s are designed to maximize their degree <code>t</code> under a constraint of 4096KB disk blocks.
+	 * {@link BTree}s are designed to maximize their degree <code>t</code> under a constraint of 4096B disk pages.
 	 *
 	 * @param fileName file name that stores the {@link BTree} on disk
 	 */
@@ -160,27 +315,59 @@ public class BTree implements BTreeInterface, Iterable<TreeObject> {
 			try {
 				this.randomAccessFile = new RandomAccessFile(fileName, "rw");
 				this.fileChannel = this.randomAccessFile.getChannel();
-				this.nextPosition = this.fileChannel.size();  // Set nextPosition to end of file
 			} catch (IOException e) {
 				throw new BTreeException(e.getMessage());  // Given tests only take BTreeException
 			}
 
 			// Read metadata in, prepare for reading root
 			this.metadataBuffer = ByteBuffer.allocateDirect(METADATA_SIZE);
-			readMetaData();  // sets t, rootAddress, keyCount, height
+			try {
+				readMetaData();  // sets t, rootAddress, keyCount, height, subsequenceLength, flags, key/count width, pageSize
+			} catch (BTreeException e) {
+				try {
+					this.randomAccessFile.close();
+				} catch (IOException ignored) {
+					// Already failing; report the bad metadata instead
+				}
+				throw e;
+			}
+			this.wide = subsequenceLength > SequenceUtils.MAX_LENGTH;
+			setUpNodeLayout();
+			try {
+				// Set nextPosition to the first free slot at the end of the file; the last node may not fill its page
+				long fileSize = this.fileChannel.size();
+				long slots = (Math.max(fileSize, firstNodePosition) - firstNodePosition + nodeSlotSize - 1) / nodeSlotSize;
+				this.nextPosition = firstNodePosition + slots * nodeSlotSize;
+			} catch (IOException e) {
+				throw new BTreeException(e.getMessage());  // Given tests only take BTreeException
+			}
 
 			// Allocate nodeBuffer, set root node
-			this.nodeBuffer = ByteBuffer.allocateDirect(BTreeNode.getByteSize(t));
+			this.nodeBuffer = ByteBuffer.allocateDirect(codec.getNodeSize());
+			this.writeBuffer = new NodeWriteBuffer(fileChannel, codec, nodeSlotSize, NodeWriteBuffer.DEFAULT_CAPACITY,
+				metrics);
 			try {
-				this.root = getNode(rootPosition);
+				this.root = getNode(rootPosition, 0);
+				this.bloomFilter = BloomFilter.read(getBloomFilterPath());
 			} catch (IOException e) {
 				throw new BTreeException(e.getMessage());  // Given tests only take BTreeException
 			}
+			if (bloomFilter != null
+					&& (bloomFilter.getKeyCount() != keyCount || bloomFilter.getRootPosition() != rootPosition)) {
+				bloomFilter = null;  // Built before keys were added since; it would turn them away
+			}
 		} else {  // Copied code from other constructor; not DRY, but we can't call the other constructor
+			this.wide = false;
+			this.keyWidth = 0;
+			this.countWidth = 0;
+			this.pageSize = DEFAULT_PAGE_SIZE;
 			this.t = calculateOptimalT();
+			this.flags = 0;
+			setUpNodeLayout();
 			this.rootPosition = getNextPositionAndIncrement();  // Manually set before fileChannel is initialized
 			this.keyCount = 0;
 			this.height = 0;
+			this.subsequenceLength = 0;
 
 			// Open the file for processing, get FileChannel
 			try {
@@ -199,7 +386,9 @@ public class BTree implements BTreeInterface, Iterable<TreeObject> {
 			}
 
 			// Allocate nodeBuffer, write root node
-			this.nodeBuffer = ByteBuffer.allocateDirect(BTreeNode.getByteSize(t));
+			this.nodeBuffer = ByteBuffer.allocateDirect(codec.getNodeSize());
+			this.writeBuffer = new NodeWriteBuffer(fileChannel, codec, nodeSlotSize, NodeWriteBuffer.DEFAULT_CAPACITY,
+				metrics);
 			try {
 				createBTree();  // See page 506 of textbook, B-TREE-CREATE(T)
 			} catch (IOException e) {
@@ -211,23 +400,92 @@ public class BTree implements BTreeInterface, Iterable<TreeObject> {
 	/**
 	 * Construct a new BTree with the given degree.
 	 * <p>
-	 * If the given degree is 0, the optimal degree will be calculated for a block size of 4096 bytes.
+	 * If the given degree is 0, the optimal degree will be calculated for a page size of 4096 bytes.
 	 *
 	 * @param degree	integer value for the desired degree of BTree
 	 * @param fileName	file name that will the {@link BTree} on disk
 	 */
 	public BTree(int degree, String fileName) throws BTreeException {
+		this(degree, fileName, 0, new BTreeOptions());
+	}
+
+	/**
+	 * Create a new BTree with a cache of the given capacity.
+	 * <p>
+	 * If a BTree file is found at the given fileName, the BTree will be constructed from the file. If not, a new BTree
+	 * will be created with the given degree.
+	 * <p>
+	 * If no cache is required, use the other constructors.
+	 * <p>
+	 * This constructor is a direct response to the project requirement to extend this class at the end with a cache. I
+	 * do not think it would be wise at this point to refactor all the constructors to require its consideration, since
+	 * those constructors were given in the project files and given tests were dependent on them. Therefore, this
+	 * constructor can be used by the command line programs to create a BTree with a cache, but the other constructors
+	 * should be used either by tests or by the command line programs when a cache is not required.
+	 *
+	 * @param degree			the degree of the BTree
+	 * @param fileName			the file name of the BTree
+	 * @param cacheCapacity		the capacity of the cache
+	 */
+	public BTree(int degree, String fileName, int cacheCapacity) throws BTreeException {
+		this(degree, fileName, cacheCapacity, new BTreeOptions());
+	}
+
+	/**
+	 * Construct a new BTree with the given degree and the given options; see {@link BTreeOptions}.
+	 * <p>
+	 * If the given degree is 0, the optimal degree will be calculated for the page size of the options. If the given
+	 * cache capacity is 0, no cache is used.
+	 *
+	 * @param degree				the degree of the BTree
+	 * @param fileName				the file name of the BTree
+	 * @param cacheCapacity			the capacity of the cache, or 0 for no cache
+	 * @param options				the subsequence length, modes and page size of the BTree
+	 */
+	public BTree(int degree, String fileName, int cacheCapacity, BTreeOptions options) throws BTreeException {
+		int subsequenceLength = options.getSubsequenceLength();
+		boolean canonical = options.isCanonical();
+		boolean compressed = options.isCompressed();
+		long maxFrequency = options.getMaxFrequency();
+		int pageSize = options.getPageSize();
+		if (pageSize != 0 && (pageSize < MIN_PAGE_SIZE || pageSize > MAX_PAGE_SIZE || Integer.bitCount(pageSize) != 1)) {
+			throw new IllegalArgumentException("Page size must be a power of two from " + MIN_PAGE_SIZE + " to "
+					+ MAX_PAGE_SIZE + ": " + pageSize);
+		}
+		if (maxFrequency < 0) {
+			throw new IllegalArgumentException("Maximum frequency must be non-negative");
+		}
+		if (subsequenceLength < 0 || subsequenceLength > SequenceUtils.MAX_WIDE_LENGTH) {
+			throw new IllegalArgumentException("Subsequence length must be 0-" + SequenceUtils.MAX_WIDE_LENGTH);
+		}
+		if (canonical && subsequenceLength == 0) {
+			throw new IllegalArgumentException("Canonical mode requires a subsequence length of 1-"
+					+ SequenceUtils.MAX_WIDE_LENGTH);
+		}
+		this.wide = subsequenceLength > SequenceUtils.MAX_LENGTH;
+		boolean packed = subsequenceLength > 0 && !compressed;
+		this.keyWidth = packed ? FixedNodeCodec.getKeyWidth(subsequenceLength) : 0;
+		this.countWidth = packed ? FixedNodeCodec.getCountWidth(maxFrequency) : 0;
+		this.pageSize = pageSize == 0 && (degree == 0 || compressed) ? DEFAULT_PAGE_SIZE : pageSize;
 		this.filePath = Paths.get(fileName);
-		if (degree == 0) {
+		if (degree == 0 && compressed) {
+			this.t = CompressedNodeCodec.getMaxDegree(this.pageSize);
+		} else if (degree == 0) {
 			this.t = calculateOptimalT();
 		}  else if (degree == 1) {
 			throw new IllegalArgumentException("Degree must be greater than 1");
 		} else {
 			this.t = degree;
 		}
+		this.flags = (canonical ? CANONICAL_FLAG : 0) | (compressed ? COMPRESSED_FLAG : 0);
+		setUpNodeLayout();
+		if (this.pageSize != 0 && codec.getNodeSize() > this.pageSize) {
+			throw new IllegalArgumentException("Nodes of degree " + t + " do not fit in pages of " + this.pageSize + "B");
+		}
 		this.rootPosition = getNextPositionAndIncrement();  // Manually set before fileChannel is initialized
 		this.keyCount = 0;
 		this.height = 0;
+		this.subsequenceLength = subsequenceLength;
 
 		// Open the file for processing, get FileChannel
 		try {
@@ -246,35 +504,19 @@ public class BTree implements BTreeInterface, Iterable<TreeObject> {
 		}
 
 		// Allocate nodeBuffer, write root node
-		this.nodeBuffer = ByteBuffer.allocateDirect(BTreeNode.getByteSize(t));
+		this.nodeBuffer = ByteBuffer.allocateDirect(codec.getNodeSize());
+		this.writeBuffer = new NodeWriteBuffer(fileChannel, codec, nodeSlotSize, NodeWriteBuffer.DEFAULT_CAPACITY,
+				metrics);
 		try {
 			createBTree();  // See page 506 of textbook, B-TREE-CREATE(T)
 		} catch (IOException e) {
 			throw new BTreeException(e.getMessage());  // Given test `testBTreeCreateDegree` only take BTreeException
 		}
-	}
 
-	/**
-	 * Create a new BTree with a cache of the given capacity.
-	 * <p>
-	 * If a BTree file is found at the given fileName, the BTree will be constructed from the file. If not, a new BTree
-	 * will be created with the given degree.
-	 * <p>
-	 * If no cache is required, use the other constructors.
-	 * <p>
-	 * This constructor is a direct response to the project requirement to extend this class at the end with a cache. I
-	 * do not think it would be wise at this point to refactor all the constructors to require its consideration, since
-	 * those constructors were given in the project files and given tests were dependent on them. Therefore, this
-	 * constructor can be used by the command line programs to create a BTree with a cache, but the other constructors
-	 * should be used either by tests or by the command line programs when a cache is not required.
-	 *
-	 * @param degree			the degree of the BTree
-	 * @param fileName			the file name of the BTree
-	 * @param cacheCapacity		the capacity of the cache
-	 */
-	public BTree(int degree, String fileName, int cacheCapacity) throws BTreeException {
-		this(degree, fileName);  // Call other constructor to set up BTree
-		this.cache = createCache(cacheCapacity);
+		if (cacheCapacity > 0) {
+			// Created after the root so the root never lands in the cache
+			this.cache = new HeapNodeCache(cacheCapacity, writeBuffer, metrics);
+		}
 	}
 
 	/**
@@ -286,7 +528,50 @@ public class BTree implements BTreeInterface, Iterable<TreeObject> {
 	 */
 	public BTree(String fileName, int cacheCapacity) throws BTreeException {
 		this(fileName);  // Call other constructor to set up BTree
-		this.cache = createCache(cacheCapacity);
+		this.cache = new HeapNodeCache(cacheCapacity, writeBuffer, metrics);
+	}
+
+	/**
+	 * Cache the {@link BTree}'s nodes in a cache of the given size in bytes, held outside the heap, in place of any
+	 * cache it has. The nodes of the cache it had are written back first.
+	 * <p>
+	 * The capacity of a cache given to a constructor is a number of nodes, each a graph of objects on the heap, which
+	 * the garbage collector takes longer to trace the more of them there are. This cache holds its nodes as they are
+	 * encoded on disk, in memory the garbage collector doesn't trace, and decodes them when they are read, so it can
+	 * grow as large as the memory of the machine allows; a cache the size of the file holds the whole tree. Allow the
+	 * JVM that much direct memory with <code>-XX:MaxDirectMemorySize</code>. See {@link OffHeapNodeCache}.
+	 *
+	 * @param cacheBytes	the size of the cache in bytes, at least the size of a node
+	 * @throws IOException	if an I/O error occurs writing back the nodes of the cache it had
+	 */
+	public void useOffHeapCache(long cacheBytes) throws IOException {
+		NodeCache offHeapCache = new OffHeapNodeCache(cacheBytes, codec, writeBuffer, metrics);
+		if (cache != null) {
+			cache.flush();
+			cache.close();
+		}
+		cache = offHeapCache;
+	}
+
+	/**
+	 * Cache the {@link BTree}'s nodes in a {@link BufferPool} shared with other {@link BTree}s, in place of any cache it
+	 * has. The nodes of the cache it had are written back first.
+	 * <p>
+	 * A program with several trees open at once, e.g. of several subsequence lengths, can give each a cache of its own,
+	 * but then each has a fixed share of memory whether it is being used or not. Trees sharing a pool evict each
+	 * other's least recently used nodes instead, so the memory goes to whichever are busiest. {@link BTree#close()}
+	 * returns the tree's share to the pool.
+	 *
+	 * @param pool			the pool to cache nodes in
+	 * @throws IOException	if an I/O error occurs writing back the nodes of the cache it had
+	 */
+	public void useBufferPool(BufferPool pool) throws IOException {
+		NodeCache pooledCache = pool.register(codec, writeBuffer, metrics);
+		if (cache != null) {
+			cache.flush();
+			cache.close();
+		}
+		cache = pooledCache;
 	}
 
 	/**
@@ -312,8 +597,8 @@ public class BTree implements BTreeInterface, Iterable<TreeObject> {
 	public int getNumberOfNodes() {
         long nextPosition = getNextPositionAndIncrement();
 		// Undo the increment
-		this.nextPosition -= BTreeNode.getByteSize(t);
-		return (int) ((nextPosition - METADATA_SIZE) / BTreeNode.getByteSize(t));
+		this.nextPosition -= nodeSlotSize;
+		return (int) ((nextPosition - firstNodePosition) / nodeSlotSize);
 	}
 
 	/**
@@ -324,6 +609,57 @@ public class BTree implements BTreeInterface, Iterable<TreeObject> {
         return height;
 	}
 
+	/**
+	 * Get the length of the subsequences stored in the {@link BTree}.
+	 *
+	 * @return	the length of the subsequences stored in the {@link BTree}, or 0 if it was not given upon creation
+	 */
+	@Override
+	public int getSubsequenceLength() {
+		return subsequenceLength;
+	}
+
+	/**
+	 * Whether the {@link BTree} stores each subsequence under its canonical key, i.e. the lesser of its encoding and
+	 * the encoding of its complement.
+	 * <p>
+	 * If so, the frequency of a key returned by {@link BTree#search(long)} is already the combined frequency of the
+	 * subsequence and its complement, and searching for the complement separately would count it twice.
+	 *
+	 * @return	whether the {@link BTree} stores canonical keys
+	 */
+	@Override
+	public boolean isCanonical() {
+		return (flags & CANONICAL_FLAG) != 0;
+	}
+
+	/**
+	 * Whether the nodes of the {@link BTree} are stored in compressed pages; see {@link CompressedNodeCodec}.
+	 *
+	 * @return	whether the nodes of the {@link BTree} are stored in compressed pages
+	 */
+	public boolean isCompressed() {
+		return (flags & COMPRESSED_FLAG) != 0;
+	}
+
+	/**
+	 * Get the size of the pages the nodes of the {@link BTree} are aligned to.
+	 *
+	 * @return	the size of a page in bytes, or 0 if nodes are packed end to end
+	 */
+	public int getPageSize() {
+		return pageSize;
+	}
+
+	/**
+	 * Whether the keys of the {@link BTree} are wide, i.e. hold subsequences longer than 31 bases.
+	 *
+	 * @return	whether the keys of the {@link BTree} are wide
+	 */
+	boolean isWide() {  // Package private for BTreeSQLiteDBBuilder
+		return wide;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -334,15 +670,27 @@ public class BTree implements BTreeInterface, Iterable<TreeObject> {
 
 	/**
 	 * {@inheritDoc}
+	 * <p>
+	 * If frequencies are packed (see {@link FixedNodeCodec}), a frequency can't grow past the bound the {@link BTree}
+	 * was created with: the insert fails with an {@link IllegalStateException} before the key is changed, or an
+	 * {@link IllegalArgumentException} if the given {@link TreeObject} is already past it.
 	 */
 	@Override
 	public void insert(TreeObject obj) throws IOException {
+		if (obj.getCount() > maxFrequency) {
+			throw new IllegalArgumentException("Frequency " + obj.getCount() + " is more than the " + maxFrequency
+					+ " a frequency can be in this BTree");
+		}
+		if (isCanonical()) {
+			obj = toCanonical(obj);
+		}
+		bloomFilter = null;  // May not hold the key
 		// See page 508 of textbook, B-TREE-INSERT(T, k)
-		if (root.keyCount == BTreeNode.getMaxKeyCount(t)) {
+		if (codec.isFull(root)) {
 			BTreeNode s = splitRoot();
-			insertNonFull(s, obj, rootPosition);
+			insertNonFull(s, obj, rootPosition, 0);
 		} else {
-			insertNonFull(root, obj, rootPosition);
+			insertNonFull(root, obj, rootPosition, 0);
 		}
 	}
 
@@ -364,7 +712,8 @@ public class BTree implements BTreeInterface, Iterable<TreeObject> {
 			} catch (RuntimeException e) {
 				throw new IOException(e);  // Coerce to an IOException to back out coercion by Iterator
 			}
-			String subSeqString = SequenceUtils.longToDnaString(obj.getSubsequence(), TreeObject.subsequenceLength);
+			String subSeqString = SequenceUtils.longsToDnaString(obj.getSubsequenceHigh(), obj.getSubsequence(),
+					TreeObject.subsequenceLength);
 			out.println(subSeqString + " " + obj.getCount());
 		}
 		out.flush();
@@ -375,7 +724,124 @@ public class BTree implements BTreeInterface, Iterable<TreeObject> {
 	 */
 	@Override
 	public TreeObject search(long key) throws IOException {
-		return searchRecursive(root, new TreeObject(key));
+		return search(0L, key);
+	}
+
+	/**
+	 * Search for a subsequence longer than 31 bases, given as the high and low 64 bits of its encoding (see
+	 * {@link TreeObject#getSubsequenceHigh()}). Shorter subsequences can be searched for with a high of 0.
+	 *
+	 * @param high			the high 64 bits of the subsequence
+	 * @param low			the low 64 bits of the subsequence
+	 * @return				the {@link TreeObject} holding the subsequence, or null if it is not in the {@link BTree}
+	 * @throws IOException	if an I/O error occurs
+	 */
+	@Override
+	public TreeObject search(long high, long low) throws IOException {
+		TreeObject key = new TreeObject(high, low, 1);
+		if (isCanonical()) {
+			key = toCanonical(key);
+		}
+		if (bloomFilter != null && !bloomFilter.mightContain(key.getSubsequenceHigh(), key.getSubsequence())) {
+			return null;  // Certainly absent, without reading a node
+		}
+		return searchRecursive(root, key, 0);
+	}
+
+	/**
+	 * Search for a batch of subsequences at once, given as the high and low 64 bits of their encodings (see
+	 * {@link BTree#search(long, long)}).
+	 * <p>
+	 * Rather than descending the {@link BTree} for one subsequence after another, every subsequence is searched for a
+	 * level at a time: after each level, the children that the searches have to descend into are read together, with
+	 * up to {@link BTree#MAX_OUTSTANDING_READS} reads in flight at once (see {@link BTree#getNodeAsync(long, int)}). A
+	 * child that several searches descend into is read once. On a disk that serves many reads at once, this keeps it
+	 * busy instead of waiting on each read in turn.
+	 *
+	 * @param high			the high 64 bits of each subsequence
+	 * @param low			the low 64 bits of each subsequence
+	 * @return				the {@link TreeObject} holding each subsequence, or null where it is not in the {@link BTree}
+	 * @throws IOException	if an I/O error occurs
+	 */
+	@Override
+	public TreeObject[] searchBatch(long[] high, long[] low) throws IOException {
+		if (high.length != low.length) {
+			throw new IllegalArgumentException("Got " + high.length + " high and " + low.length + " low halves");
+		}
+		TreeObject[] results = new TreeObject[low.length];
+		TreeObject[] keys = new TreeObject[low.length];
+		BTreeNode[] nodes = new BTreeNode[low.length];  // The node each search looks in next, or null once done
+		int remaining = 0;
+		for (int i = 0; i < low.length; i++) {
+			TreeObject key = new TreeObject(high[i], low[i], 1);
+			keys[i] = isCanonical() ? toCanonical(key) : key;
+			if (bloomFilter != null
+					&& !bloomFilter.mightContain(keys[i].getSubsequenceHigh(), keys[i].getSubsequence())) {
+				continue;  // Certainly absent, as in search
+			}
+			nodes[i] = root;
+			remaining++;
+		}
+
+		// Each search that descends a level is a long of the slot of the child it descends into, above its index, so
+		// that sorting them orders the children by position and gathers the searches of each child; no boxing
+		int indexBits = 32 - Integer.numberOfLeadingZeros(Math.max(low.length - 1, 1));
+		long indexMask = (1L << indexBits) - 1;
+		long[] descents = new long[low.length];
+		int[] runStarts = new int[MAX_OUTSTANDING_READS + 1];  // Where the searches of each child of a window start
+		List<CompletableFuture<BTreeNode>> reads = new ArrayList<>(MAX_OUTSTANDING_READS);
+		for (int depth = 1; remaining > 0; depth++) {  // The depth of the children read at the end of each pass
+			// Look for each key in its node, noting the child of each search that has to descend
+			int descentCount = 0;
+			for (int i = 0; i < nodes.length; i++) {
+				BTreeNode node = nodes[i];
+				if (node == null) {
+					continue;
+				}
+				int j = 0;
+				int comparison = 1;
+				while (j < node.keyCount && (comparison = keys[i].compareTo(node.keys[j])) > 0) {
+					j++;
+				}
+				if (j < node.keyCount && comparison == 0) {
+					results[i] = node.keys[j];
+				} else if (!node.leaf) {
+					long slot = (node.childPositions[j] - firstNodePosition) / nodeSlotSize;
+					descents[descentCount++] = slot << indexBits | i;
+					continue;
+				}
+				nodes[i] = null;
+				remaining--;
+			}
+			Arrays.sort(descents, 0, descentCount);
+
+			// Read the children of this level in order of position, a window of reads at a time
+			int k = 0;
+			while (k < descentCount) {
+				reads.clear();
+				int runCount = 0;
+				while (k < descentCount && runCount < MAX_OUTSTANDING_READS) {
+					long slot = descents[k] >>> indexBits;
+					runStarts[runCount++] = k;
+					reads.add(getNodeAsync(firstNodePosition + slot * nodeSlotSize, depth));
+					while (k < descentCount && descents[k] >>> indexBits == slot) {
+						k++;
+					}
+				}
+				runStarts[runCount] = k;
+				for (int r = 0; r < runCount; r++) {
+					BTreeNode child = awaitNode(reads.get(r));
+					if (cache != null) {  // As getNode does, so the upper levels stay cached across batches
+						long slot = descents[runStarts[r]] >>> indexBits;
+						this.cache.put(firstNodePosition + slot * nodeSlotSize, child);
+					}
+					for (int m = runStarts[r]; m < runStarts[r + 1]; m++) {
+						nodes[(int) (descents[m] & indexMask)] = child;
+					}
+				}
+			}
+		}
+		return results;
 	}
 
 	/**
@@ -402,10 +868,117 @@ public class BTree implements BTreeInterface, Iterable<TreeObject> {
 	 * @throws SQLException	if an SQL error occurs
 	 */
 	public void finishUp() throws IOException, SQLException {
+		finishUp(0);
+	}
+
+	/**
+	 * Finalize the state of the file on disk as {@link BTree#finishUp()} does, also writing a Bloom filter of the keys
+	 * beside it with the given false positive rate (see {@link BTree#writeBloomFilter(double)}).
+	 *
+	 * @param falsePositiveRate	the false positive rate of the Bloom filter, e.g. 0.01, or 0 for none
+	 * @throws IOException		if an I/O error occurs
+	 * @throws SQLException		if an SQL error occurs
+	 */
+	public void finishUp(double falsePositiveRate) throws IOException, SQLException {
+		flush();
+		if (falsePositiveRate != 0) {
+			writeBloomFilter(falsePositiveRate);
+		}
+		BTreeSQLiteDBBuilder.create(this, filePath);
+		close();
+	}
+
+	/**
+	 * Build a Bloom filter of the keys of the {@link BTree} and write it beside its file, at
+	 * {@link BTree#getBloomFilterPath()}, where it is read whenever the file is opened.
+	 * <p>
+	 * Searches consult the filter before descending the {@link BTree}, and a search for a key the filter says is absent
+	 * returns null without reading a node. A random subsequence of 20 bases or more is most likely absent, so most
+	 * searches of a workload of them are answered from the filter alone. The false positive rate is the share of
+	 * absent keys the filter lets through to descend anyway: a rate of 0.01 takes about 11.5 bits a key, and every
+	 * tenfold smaller rate another 5.7 or so.
+	 * <p>
+	 * The filter only holds the keys the {@link BTree} has now. An insertion stops it being used, and a filter found
+	 * beside the file holding a different number of keys is ignored, so write it again after adding keys.
+	 *
+	 * @param falsePositiveRate	the false positive rate, more than 0 and at most 0.5
+	 * @throws IOException		if an I/O error occurs
+	 */
+	public void writeBloomFilter(double falsePositiveRate) throws IOException {
+		BloomFilter filter = BloomFilter.create(keyCount, rootPosition, falsePositiveRate);
+		Iterator<TreeObject> iter = this.iterator();
+		try {
+			while (iter.hasNext()) {
+				TreeObject obj = iter.next();
+				filter.add(obj.getSubsequenceHigh(), obj.getSubsequence());
+			}
+		} catch (RuntimeException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();  // Back out coercion by Iterator
+			}
+			throw e;
+		}
+		filter.write(getBloomFilterPath());
+		this.bloomFilter = filter;
+	}
+
+	/**
+	 * Tell whether searches of the {@link BTree} consult a Bloom filter (see {@link BTree#writeBloomFilter(double)}).
+	 *
+	 * @return	whether the {@link BTree} has a Bloom filter
+	 */
+	public boolean hasBloomFilter() {
+		return bloomFilter != null;
+	}
+
+	/**
+	 * Get the path of the file of the Bloom filter of the {@link BTree}: its own, with
+	 * {@link BTree#BLOOM_FILTER_SUFFIX} added.
+	 *
+	 * @return	the path of the file of the Bloom filter
+	 */
+	public Path getBloomFilterPath() {
+		return Paths.get(filePath.toString() + BLOOM_FILTER_SUFFIX);
+	}
+
+	/**
+	 * Write everything the {@link BTree} holds in memory to disk, so that its file is valid as it stands.
+	 * <p>
+	 * {@link BTree#finishUp()} does this before building the SQLite database. Call it directly, followed by
+	 * {@link BTreeSQLiteDBBuilder#create(BTree, Path)} and {@link BTree#close()}, to time those steps apart, or to reopen
+	 * the file without building the database, as tests and benchmarks do.
+	 *
+	 * @throws IOException	if an I/O error occurs
+	 */
+	public void flush() throws IOException {
 		diskWrite(root, rootPosition);
 		flushCache();
+		writeBuffer.flush();
 		writeMetaData();
-		BTreeSQLiteDBBuilder.create(this, filePath);
+	}
+
+	/**
+	 * Close the file of the {@link BTree} without finalizing it, e.g. once done searching it. After modifying a
+	 * {@link BTree}, call {@link BTree#finishUp()} instead.
+	 *
+	 * @throws IOException	if an I/O error occurs
+	 */
+	@Override
+	public void close() throws IOException {
+		if (mbeanName != null) {
+			try {
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(mbeanName);
+			} catch (JMException e) {
+				// Already unregistered, e.g. replaced by another BTree of the same file; nothing to undo
+			}
+			mbeanName = null;
+		}
+		if (cache != null) {
+			cache.close();  // Frees an off-heap cache's memory, which a long-running program may want for another tree
+		}
+		if (asyncChannel != null) {
+			asyncChannel.close();
+		}
 		fileChannel.close();
 		randomAccessFile.close();
 	}
@@ -418,11 +991,63 @@ public class BTree implements BTreeInterface, Iterable<TreeObject> {
 	 * @return the cache hit rate of the {@link BTree#cache}
 	 */
 	public float getCacheHitRate() {
-		if (cache == null || cacheHits + cacheMisses == 0) {
+		if (cache == null) {
 			return 0;
 		}
 
-		return (float) cacheHits / (float) (cacheHits + cacheMisses);
+		return (float) metrics.getCacheHitRate();
+	}
+
+	/**
+	 * Get the number of {@link BTreeNode}s the {@link BTree} has read from disk so far.
+	 *
+	 * @return the number of {@link BTreeNode}s read from disk
+	 */
+	public long getNodeReads() {
+		return metrics.getNodeReads();
+	}
+
+	/**
+	 * Get the number of {@link BTreeNode}s the {@link BTree} has written to disk so far. Nodes still waiting in the
+	 * {@link BTree#writeBuffer} are not counted until they are written.
+	 *
+	 * @return the number of {@link BTreeNode}s written to disk
+	 */
+	public long getNodeWrites() {
+		return metrics.getNodeWrites();
+	}
+
+	/**
+	 * Get the metrics of the {@link BTree}, live; see {@link BTreeMetrics#snapshot()} to copy them at a point in time.
+	 *
+	 * @return the {@link BTreeMetrics} of the {@link BTree}
+	 */
+	public BTreeMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Register the metrics of the {@link BTree} with the platform MBean server, so that JMX clients like JConsole can
+	 * watch them while it is built or searched. They are registered under
+	 * <code>cs321.btree:type=BTree,file=&lt;absolute path of the file&gt;</code>, replacing any registered under that
+	 * name before, and unregistered by {@link BTree#close()}.
+	 *
+	 * @return					the name the metrics are registered under
+	 * @throws JMException		if the metrics can't be registered
+	 */
+	public ObjectName registerMBean() throws JMException {
+		if (mbeanName != null) {
+			return mbeanName;
+		}
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName("cs321.btree:type=BTree,file="
+				+ ObjectName.quote(filePath.toAbsolutePath().toString()));
+		if (server.isRegistered(name)) {
+			server.unregisterMBean(name);  // Left behind by a BTree of the same file that wasn't closed
+		}
+		server.registerMBean(metrics, name);
+		mbeanName = name;
+		return name;
 	}
 
 	/**
@@ -442,14 +1067,31 @@ public class BTree implements BTreeInterface, Iterable<TreeObject> {
 		return keys;
 	}
 
+	/**
+	 * Get the {@link TreeObject} to store a subsequence under in canonical mode: the given one if its subsequence is
+	 * the lesser of itself and its complement, or else a new one with the complement.
+	 *
+	 * @param obj	the {@link TreeObject} holding the subsequence
+	 * @return		a {@link TreeObject} holding the canonical key of the subsequence, with the same frequency
+	 */
+	private TreeObject toCanonical(TreeObject obj) {
+		long high = obj.getSubsequenceHigh();
+		long low = obj.getSubsequence();
+		long canonicalHigh = SequenceUtils.getCanonicalHigh(high, low, subsequenceLength);
+		long canonicalLow = SequenceUtils.getCanonicalLow(high, low, subsequenceLength);
+		return canonicalHigh == high && canonicalLow == low ? obj
+				: new TreeObject(canonicalHigh, canonicalLow, obj.getCount());
+	}
+
 	/**
 	 * Create a new {@link BTreeNode} and set it as the root of the {@link BTree}.
 	 */
 	private void createBTree() throws IOException {
+		Files.deleteIfExists(getBloomFilterPath());  // Of an earlier tree of the same file name
 		BTreeNode newRoot = new BTreeNode(t);
 		newRoot.leaf = true;
 		newRoot.keyCount = 0;
-		updateNode(newRoot, rootPosition);  // Cache should be null on first invocation if used
+		updateNode(newRoot, rootPosition, 0);  // Cache should be null on first invocation if used
 		this.root = newRoot;
 	}
 
@@ -466,54 +1108,67 @@ public class BTree implements BTreeInterface, Iterable<TreeObject> {
 		s.keyCount = 0;
 		s.childPositions[0] = rootPosition;
 		if (cache != null) {
+			root.dirty = true;
 			this.cache.put(rootPosition, root);  // Put root in the cache manually before reassignment
 		} else {
 			diskWrite(root, rootPosition);  // Force disk write before reassignment
 		}
 		root = s;
 		rootPosition = getNextPositionAndIncrement();
-		splitChild(s, 0, rootPosition);
+		metrics.recordRootSplit();
+		splitChild(s, 0, rootPosition, 0);
 		height++;  // height can only increase at split of the root node: pg 508, near the bottom
 		return s;
 	}
 
 	/**
 	 * Splits the child of a {@link BTreeNode} at the given position.
+	 * <p>
+	 * The child is split around its median key, which for a child of <code>2t-1</code> keys leaves each half with
+	 * <code>t-1</code> keys as in the textbook. A child in a compressed page may be full with fewer keys.
 	 *
 	 * @param x			the parent {@link BTreeNode} of the child to split, <b>assumed to be non-full</b>.
 	 * @param i			the index of the childPosition to split in {@link BTreeNode#childPositions}.
 	 * @param xPosition	the position of x in the file, to write back updates
+	 * @param xDepth	the depth of x, where the root is at 0
 	 */
-	private void splitChild(BTreeNode x, int i, long xPosition) throws IOException {
+	private void splitChild(BTreeNode x, int i, long xPosition, int xDepth) throws IOException {
+		BTreeEvents.NodeSplit event = BTreeEvents.EVENTS.nodeSplit();
+		boolean rootSplit = x.keyCount == 0;  // Only a new root from splitRoot() has no keys
+
 		// See page 507 of textbook, B-TREE-SPLIT-CHILD(x, i)
-        BTreeNode y = getNode(x.childPositions[i]);						// full node to split
+        BTreeNode y = getNode(x.childPositions[i], xDepth + 1);			// full node to split
         BTreeNode z = new BTreeNode(t);  									// z will take half of y
+		int m = y.keyCount / 2;												// index of y's median key
 		z.leaf = y.leaf;
-		z.keyCount = BTreeNode.getMinKeyCount(t);
-		for (int j = 0; j <= BTreeNode.getMinKeyCount(t) - 1; j++) {		// z gets y's greatest keys...
-			z.keys[j] = y.keys[j + t];
-			y.keys[j + t] = null;											// ... and y loses them
+		z.keyCount = y.keyCount - m - 1;
+		for (int j = 0; j <= z.keyCount - 1; j++) {							// z gets y's greatest keys...
+			z.keys[j] = y.keys[j + m + 1];
+			y.keys[j + m + 1] = null;										// ... and y loses them
 		}
 		if (!y.leaf) {
-			for (int j = 0; j <= BTreeNode.getMinChildCount(t) - 1; j++) {	// ... and its corresponding children
-				z.childPositions[j] = y.childPositions[j + t];
-				y.childPositions[j + t] = 0;								// ... and y loses them
+			for (int j = 0; j <= z.keyCount; j++) {							// ... and its corresponding children
+				z.childPositions[j] = y.childPositions[j + m + 1];
+				y.childPositions[j + m + 1] = 0;							// ... and y loses them
 			}
 		}
-		y.keyCount = BTreeNode.getMinKeyCount(t);
-		for (int j = x.keyCount; j >= i + 1; j--) {							// y keeps t-1 keys
+		y.keyCount = m;
+		for (int j = x.keyCount; j >= i + 1; j--) {							// y keeps the keys below its median
 			x.childPositions[j+1] = x.childPositions[j];					// shift x's children to the right...
 		}
 		x.childPositions[i + 1] = getNextPositionAndIncrement();                       	// ... to make room for z as a child
 		for (int j = x.keyCount - 1; j >= i; j--) {							// shift the corresponding keys in x
 			x.keys[j+1]= x.keys[j];
 		}
-		x.keys[i] = y.keys[BTreeNode.getMinKeyCount(t)];					// insert y's median key
-		y.keys[BTreeNode.getMinKeyCount(t)] = null;							// y's median key goes to x
+		x.keys[i] = y.keys[m];												// insert y's median key
+		y.keys[m] = null;													// y's median key goes to x
 		x.keyCount++;														// x has gained a child
-		updateNode(y, x.childPositions[i]);
-		updateNode(z, x.childPositions[i + 1]);
-		updateNode(x, xPosition);
+		updateNode(y, x.childPositions[i], xDepth + 1);
+		updateNode(z, x.childPositions[i + 1], xDepth + 1);
+		updateNode(x, xPosition, xDepth);
+		metrics.recordSplit();
+		// The root was at depth 0 when it was split, though it is at depth 1 now
+		event.commit(rootSplit ? 0 : xDepth + 1, x.childPositions[i], x.childPositions[i + 1], xPosition, rootSplit);
 	}
 
 	/**
@@ -522,50 +1177,72 @@ public class BTree implements BTreeInterface, Iterable<TreeObject> {
 	 * @param x			the {@link BTreeNode} to insert into
 	 * @param k			the {@link TreeObject} to insert
 	 * @param xPosition	the position of x in the file, to write back updates
+	 * @param xDepth	the depth of x, where the root is at 0
 	 */
-	private void insertNonFull(BTreeNode x, TreeObject k, long xPosition) throws IOException {
+	private void insertNonFull(BTreeNode x, TreeObject k, long xPosition, int xDepth) throws IOException {
 		int i = x.keyCount - 1;
 		if (x.leaf) {																// inserting into a leaf
 			for (int j = 0; j < x.keyCount; j++) {									// double check that we don't have a duplicate
-				if (k.getSubsequence() == x.keys[j].getSubsequence()) {				// if we do...
-					x.keys[j].incrementFrequency();
-					updateNode(x, xPosition);
+				if (k.compareTo(x.keys[j]) == 0) {										// if we do...
+					incrementFrequency(x.keys[j]);
+					updateNode(x, xPosition, xDepth);
+					metrics.recordInsert(true);
 					return;															// ... return early.
 				}
 			}
-			while (i >= 0 && k.getSubsequence() < x.keys[i].getSubsequence()) {		// shift keys in x to make room for k
+			while (i >= 0 && k.compareTo(x.keys[i]) < 0) {								// shift keys in x to make room for k
 				x.keys[i+1] = x.keys[i];
 				i--;
 			}
 			x.keys[i+1] = k;														// insert k in x
 			x.keyCount++;															//  now x has 1 more key
-			updateNode(x, xPosition);
+			updateNode(x, xPosition, xDepth);
 			keyCount++;  															// increment BTree keyCount
+			metrics.recordInsert(false);
 		} else {
-			while (i >= 0 && k.getSubsequence() < x.keys[i].getSubsequence()) {		// find the child where k belongs
+			while (i >= 0 && k.compareTo(x.keys[i]) < 0) {								// find the child where k belongs
 				i--;
 			}
 			i++;
-			BTreeNode y = getNode(x.childPositions[i]);
-			if (y.keyCount == BTreeNode.getMaxKeyCount(t)) {						// split the child if it is full
-				splitChild(x, i, xPosition);
-				y = getNode(x.childPositions[i]);									// reread y after split...
-				if (k.getSubsequence() > x.keys[i].getSubsequence()) {				// does k go into x.c[i] or x.c[i+1]
+			BTreeNode y = getNode(x.childPositions[i], xDepth + 1);
+			if (codec.isFull(y)) {													// split the child if it is full
+				splitChild(x, i, xPosition, xDepth);
+				y = getNode(x.childPositions[i], xDepth + 1);						// reread y after split...
+				if (k.compareTo(x.keys[i]) > 0) {										// does k go into x.c[i] or x.c[i+1]
 					i++;
-					y = getNode(x.childPositions[i]);
+					y = getNode(x.childPositions[i], xDepth + 1);
 				}
 			}
 			for (int j = 0; j < x.keyCount; j++) {									// double check after split that
-				if (k.getSubsequence() == x.keys[j].getSubsequence()) {				// target node didn't move up
-					x.keys[j].incrementFrequency();
-					updateNode(x, xPosition);
+				if (k.compareTo(x.keys[j]) == 0) {										// target node didn't move up
+					incrementFrequency(x.keys[j]);
+					updateNode(x, xPosition, xDepth);
+					metrics.recordInsert(true);
 					return;
 				}
 			}
-			insertNonFull(y, k, x.childPositions[i]);
+			insertNonFull(y, k, x.childPositions[i], xDepth + 1);
 		}
 	}
 
+	/**
+	 * Increment the frequency of a key, if it can be written in {@link BTree#countWidth}.
+	 * <p>
+	 * Packed frequencies are only as wide as the bound the {@link BTree} was created with, which a {@link BTree}
+	 * reopened from its file can be inserted into beyond. This checks before the key changes, rather than leaving the
+	 * {@link FixedNodeCodec} to find out when the node is written, by which time the insert has already returned.
+	 *
+	 * @param key						the key whose frequency to increment
+	 * @throws IllegalStateException	if the frequency is already the most it can be
+	 */
+	private void incrementFrequency(TreeObject key) {
+		if (key.getCount() >= maxFrequency) {
+			throw new IllegalStateException("Frequency of " + Long.toHexString(key.getSubsequence()) + " would be more"
+					+ " than the " + maxFrequency + " a frequency can be in this BTree");
+		}
+		key.incrementFrequency();
+	}
+
 	/**
 	 * Searches for a sequence in the given {@link BTree} recursively.
 	 * <p>
@@ -574,34 +1251,69 @@ public class BTree implements BTreeInterface, Iterable<TreeObject> {
 	 *
 	 * @param node			the node to search
 	 * @param obj			the TreeObject to search for
+	 * @param depth			the depth of the node, where the root is at 0
 	 * @return				the TreeObject if found, null otherwise
 	 * @throws IOException	if an I/O error occurs
 	 */
-	private TreeObject searchRecursive(BTreeNode node, TreeObject obj) throws IOException {
+	private TreeObject searchRecursive(BTreeNode node, TreeObject obj, int depth) throws IOException {
 		// See page 505 of textbook, B-TREE-SEARCH(x, k)
 		int i = 0;
-		while (i < node.keyCount && obj.getSubsequence() > node.keys[i].getSubsequence()) {
+		int comparison = 1;
+		while (i < node.keyCount && (comparison = obj.compareTo(node.keys[i])) > 0) {
 			i++;
 		}
-		if (i < node.keyCount && obj.getSubsequence() == node.keys[i].getSubsequence()) {
+		if (i < node.keyCount && comparison == 0) {
 			return node.keys[i];
 		} else if (node.leaf) {
 			return null;
 		} else {
-			BTreeNode child = getNode(node.childPositions[i]);
-			return searchRecursive(child, obj);
+			BTreeNode child = getNode(node.childPositions[i], depth + 1);
+			return searchRecursive(child, obj, depth + 1);
+		}
+	}
+
+	/**
+	 * Set up the {@link BTree#codec}, where nodes go on disk and {@link BTree#maxFrequency}, once {@link BTree#t},
+	 * {@link BTree#wide}, {@link BTree#flags}, the key and count widths and {@link BTree#pageSize} are set.
+	 * <p>
+	 * If aligned to pages, the metadata takes up the whole first page and each node a whole page:
+	 * <p>
+	 * <pre>
+	 * +-------------------------+-------------------------+-------------------------+
+	 * |  Metadata + padding     |  Node 1 + padding       |  Node 2 + padding       |
+	 * |      pageSize B         |      pageSize B         |      pageSize B         |
+	 * +-------------------------+-------------------------+-------------------------+
+	 * </pre>
+	 * <p>
+	 * A node is read by its own bytes only, but written with the padding after it, zeroed, by the
+	 * {@link NodeWriteBuffer}, so that nodes in adjacent slots are written together in one gathering write. The padding
+	 * after the metadata is never written.
+	 */
+	private void setUpNodeLayout() {
+		this.firstNodePosition = pageSize == 0 ? METADATA_SIZE : pageSize;
+		if (isCompressed()) {
+			this.codec = new CompressedNodeCodec(pageSize, t, wide, firstNodePosition);
+		} else if (keyWidth != 0) {
+			int slotSize = pageSize == 0 ? FixedNodeCodec.getByteSize(t, keyWidth, countWidth) : pageSize;
+			this.codec = new FixedNodeCodec(t, keyWidth, countWidth, firstNodePosition, slotSize);
+		} else {
+			this.codec = new FixedNodeCodec(t, wide);
 		}
+		this.nodeSlotSize = pageSize == 0 ? codec.getNodeSize() : pageSize;
+		this.nextPosition = firstNodePosition;
+		this.maxFrequency = FixedNodeCodec.getMaxFrequency(countWidth);
 	}
 
 	/**
-	 * Calculate the optimal minimum degree <code>t</code> such that the maximum amount of nodes can fit in 4096 bytes
-	 * of disk space.
+	 * Calculate the optimal minimum degree <code>t</code> such that the maximum amount of nodes can fit in a page of
+	 * {@link BTree#pageSize} bytes, given the width of the keys and their frequencies.
 	 *
 	 * @return	the optimal minimum degree <code>t</code>
 	 */
 	private int calculateOptimalT() {
 		int t = 0;
-		while (BTreeNode.getByteSize(t) <= 4096) {
+		while ((keyWidth == 0 ? BTreeNode.getByteSize(t, wide) : FixedNodeCodec.getByteSize(t, keyWidth, countWidth))
+				<= pageSize) {
 			t++;
 		}
 		return t - 1;
@@ -616,6 +1328,11 @@ public class BTree implements BTreeInterface, Iterable<TreeObject> {
 	 *     <li>{@link BTree#rootPosition}</li>
 	 *     <li>{@link BTree#keyCount}</li>
 	 *     <li>{@link BTree#height}</li>
+	 *     <li>{@link BTree#subsequenceLength}</li>
+	 *     <li>{@link BTree#flags}</li>
+	 *     <li>{@link BTree#keyWidth}</li>
+	 *     <li>{@link BTree#countWidth}</li>
+	 *     <li>{@link BTree#pageSize}</li>
  *     </ul>
 	 * <p>
 	 * This method is to only be used upon instance construction; metadata read directly from the disk is not guaranteed
@@ -626,38 +1343,62 @@ public class BTree implements BTreeInterface, Iterable<TreeObject> {
 	 * Metadata is stored in memory in the following sequence:
 	 * <p>
 	 * <pre>
-	 * +--------+----------------+--------+--------+
-	 * |   t    |  rootPosition  | keyCnt | height |
-	 * |  4B    |      8B        |  4B    |  4B    |
-	 * +--------+----------------+--------+--------+
+	 * +--------+--------+--------+----------------+--------+--------+--------+--------+--------+--------+--------+
+	 * | magic  | versn  |   t    |  rootPosition  | keyCnt | height | length | flags  | keyWid | cntWid | pgSize |
+	 * |  4B    |  4B    |  4B    |      8B        |  4B    |  4B    |  4B    |  4B    |  4B    |  4B    |  4B    |
+	 * +--------+--------+--------+----------------+--------+--------+--------+--------+--------+--------+--------+
 	 * </pre>
+	 *
+	 * @throws BTreeException	if the file is too short, or doesn't start with {@link BTree#MAGIC} and
+	 * 							{@link BTree#FORMAT_VERSION}, e.g. it was written in an older layout
      */
-	private void readMetaData() {
+	private void readMetaData() throws BTreeException {
 		try {
 			fileChannel.position(0);
 			metadataBuffer.clear();
-			fileChannel.read(metadataBuffer);
+			while (metadataBuffer.hasRemaining() && fileChannel.read(metadataBuffer) >= 0) {
+				// Read until full or the end of the file
+			}
 			metadataBuffer.flip();
 		} catch (IOException e) {
 			throw new RuntimeException(e);  // Tests do not expect an IOException, throwing as RuntimeException
 		}
 
+		if (metadataBuffer.remaining() < METADATA_SIZE || metadataBuffer.getInt() != MAGIC) {
+			throw new BTreeException("Not a BTree file: " + filePath);
+		}
+		int version = metadataBuffer.getInt();
+		if (version != FORMAT_VERSION) {
+			throw new BTreeException("Unsupported BTree file version " + version + " (expected " + FORMAT_VERSION
+					+ "): " + filePath);
+		}
 		this.t = metadataBuffer.getInt();
 		this.rootPosition = metadataBuffer.getLong();
 		this.keyCount = metadataBuffer.getInt();
 		this.height = metadataBuffer.getInt();
+		this.subsequenceLength = metadataBuffer.getInt();
+		this.flags = metadataBuffer.getInt();
+		this.keyWidth = metadataBuffer.getInt();
+		this.countWidth = metadataBuffer.getInt();
+		this.pageSize = metadataBuffer.getInt();
 	}
 	
 	/**
      * Write the metadata to the {@link BTree#fileChannel}.
 	 * <p>
-	 * The data included in writing are the following fields:
+	 * The data included in writing are the following fields, after {@link BTree#MAGIC} and
+	 * {@link BTree#FORMAT_VERSION}:
 	 * <p>
 	 * <ul>
 	 *     <li>{@link BTree#t}</li>
 	 *     <li>{@link BTree#rootPosition}</li>
 	 *     <li>{@link BTree#keyCount}</li>
 	 *     <li>{@link BTree#height}</li>
+	 *     <li>{@link BTree#subsequenceLength}</li>
+	 *     <li>{@link BTree#flags}</li>
+	 *     <li>{@link BTree#keyWidth}</li>
+	 *     <li>{@link BTree#countWidth}</li>
+	 *     <li>{@link BTree#pageSize}</li>
 	 * </ul>
 	 * <p>
 	 * Metadata is written to the file only upon 1) construction of a new {@link BTree} and 2) after an invocation of
@@ -667,18 +1408,25 @@ public class BTree implements BTreeInterface, Iterable<TreeObject> {
 	 * Metadata is stored in memory in the following sequence:
 	 * <p>
 	 * <pre>
-	 * +--------+----------------+--------+--------+
-	 * |   t    |  rootPosition  | keyCnt | height |
-	 * |  4B    |      8B        |  4B    |  4B    |
-	 * +--------+----------------+--------+--------+
+	 * +--------+--------+--------+----------------+--------+--------+--------+--------+--------+--------+--------+
+	 * | magic  | versn  |   t    |  rootPosition  | keyCnt | height | length | flags  | keyWid | cntWid | pgSize |
+	 * |  4B    |  4B    |  4B    |      8B        |  4B    |  4B    |  4B    |  4B    |  4B    |  4B    |  4B    |
+	 * +--------+--------+--------+----------------+--------+--------+--------+--------+--------+--------+--------+
 	 * </pre>
      */
     private void writeMetaData() throws IOException {
         metadataBuffer.clear();
+		metadataBuffer.putInt(MAGIC);
+		metadataBuffer.putInt(FORMAT_VERSION);
 		metadataBuffer.putInt(t);
 		metadataBuffer.putLong(rootPosition);
 		metadataBuffer.putInt(keyCount);
 		metadataBuffer.putInt(height);
+		metadataBuffer.putInt(subsequenceLength);
+		metadataBuffer.putInt(flags);
+		metadataBuffer.putInt(keyWidth);
+		metadataBuffer.putInt(countWidth);
+		metadataBuffer.putInt(pageSize);
 		metadataBuffer.flip();
 
 		fileChannel.position(0);
@@ -689,32 +1437,41 @@ public class BTree implements BTreeInterface, Iterable<TreeObject> {
      * Reads a {@link BTreeNode} from the {@link BTree#fileChannel} or the {@link BTree#cache}, if available.
      *
      * @param position      the byte offset for the node in the data file
+     * @param depth         the depth of the node, where the root is at 0, for the {@link BTree#metrics}
      * @return              the {@link BTreeNode} read from the disk
      */
-    BTreeNode getNode(long position) throws IOException {  // Package private for BTreeInOrderIterator
+    BTreeNode getNode(long position, int depth) throws IOException {  // Package private for BTreeInOrderIterator
         if (position < 0) {
             throw new IllegalArgumentException("position must be non-negative");
         }
 
-        if (position < METADATA_SIZE) {
+        if (position < firstNodePosition) {
             throw new IllegalArgumentException("cannot read node from tree metadata");
         }
 
+		BTreeEvents.NodeRead event = BTreeEvents.EVENTS.nodeRead();
+
 		if (this.cache != null) {  // If cache is enabled, check it first and return early if found.
 			BTreeNode node = this.cache.get(position);
+			metrics.recordCacheLookup(depth, node != null);
 			if (node != null) {
-				cacheHits++;
+				event.commit(position, depth, true, 0, false);
 				return node;
 			}
-			cacheMisses++;
 		}
 
-		fileChannel.position(position);
-		nodeBuffer.clear();
-		fileChannel.read(nodeBuffer);
-		nodeBuffer.flip();
-
-        BTreeNode node = BTreeNode.fromByteBuffer(nodeBuffer, getDegree());
+		BTreeNode node = writeBuffer.get(position);  // A node waiting to be written is newer than the one on disk
+		int bytesRead = 0;
+		if (node == null) {
+			long start = System.nanoTime();
+			fileChannel.position(position);
+			nodeBuffer.clear();
+			bytesRead = Math.max(fileChannel.read(nodeBuffer), 0);
+			metrics.recordNodeRead(bytesRead, System.nanoTime() - start);
+			nodeBuffer.flip();
+			node = codec.read(nodeBuffer);
+		}
+		event.commit(position, depth, false, bytesRead, false);
 
 		if (this.cache != null) {  // If cache is enabled, add the node to it.
 			this.cache.put(position, node);
@@ -726,17 +1483,18 @@ public class BTree implements BTreeInterface, Iterable<TreeObject> {
     /**
      * Writes a {@link BTreeNode} to the {@link BTree#fileChannel} or the {@link BTree#cache}, if available.
 	 * <p>
-	 * In the case the cache is available, disk writes occur when a node is evicted.
+	 * In the case the cache is available, the node is marked dirty, and disk writes occur when it is evicted.
      *
      * @param node          the node to write
      * @param position      the byte offset for the node in the data file
+     * @param depth         the depth of the node, where the root is at 0, for the {@link BTree#metrics}
      */
-    private void updateNode(BTreeNode node, long position) throws IOException {
+    private void updateNode(BTreeNode node, long position, int depth) throws IOException {
         if (position < 0) {
             throw new IllegalArgumentException("position must be non-negative");
         }
 
-        if (position < METADATA_SIZE) {
+        if (position < firstNodePosition) {
             throw new IllegalArgumentException("cannot write node to tree metadata");
         }
 
@@ -744,19 +1502,109 @@ public class BTree implements BTreeInterface, Iterable<TreeObject> {
 			return;  // Don't write the root node to disk until a split occurs; see splitRoot()
 		}
 
+		node.dirty = true;
 		if (cache == null) {
 			diskWrite(node, position);
-		} else if (!this.cache.containsKey(position)) {
-			cacheMisses++;
-			this.cache.put(position, node);
 		} else {
-			cacheHits++;
+			metrics.recordCacheLookup(depth, this.cache.put(position, node));
 		}
     }
 
+	/**
+	 * Start reading a {@link BTreeNode} without waiting for it to arrive, so that many reads can be in flight at once.
+	 * <p>
+	 * A node in the {@link BTree#cache} or the {@link BTree#writeBuffer} is returned as is, already complete. Any other
+	 * is read from the {@link BTree#asyncChannel}, and decoded on the thread that completes the read; unlike
+	 * {@link BTree#getNode(long, int)}, it is not added to the cache, as the cache is not safe to touch from that thread.
+	 * Call this method and use the cache from one thread only.
+	 *
+	 * @param position		the byte offset for the node in the data file
+	 * @param depth			the depth of the node, where the root is at 0, for the {@link BTree#metrics}
+	 * @return				a {@link CompletableFuture} of the {@link BTreeNode} read from disk
+	 * @throws IOException	if the {@link BTree#asyncChannel} can't be opened
+	 */
+	// Package private for BTreeInOrderIterator
+	CompletableFuture<BTreeNode> getNodeAsync(long position, int depth) throws IOException {
+		if (position < firstNodePosition) {
+			throw new IllegalArgumentException("cannot read node from tree metadata");
+		}
+
+		BTreeEvents.NodeRead event = BTreeEvents.EVENTS.nodeRead();
+
+		BTreeNode node = null;
+		if (this.cache != null) {
+			node = this.cache.get(position);
+			metrics.recordCacheLookup(depth, node != null);
+		}
+		boolean cacheHit = node != null;
+		if (node == null) {
+			node = writeBuffer.get(position);
+		}
+		if (node != null) {
+			event.commit(position, depth, cacheHit, 0, false);
+			return CompletableFuture.completedFuture(node);
+		}
+
+		if (asyncChannel == null) {
+			asyncChannel = AsynchronousFileChannel.open(filePath, StandardOpenOption.READ);
+		}
+		long start = System.nanoTime();
+		CompletableFuture<BTreeNode> future = new CompletableFuture<>();
+		ByteBuffer buffer = ByteBuffer.allocate(codec.getNodeSize());  // One per read, as reads overlap
+		asyncChannel.read(buffer, position, position, new CompletionHandler<Integer, Long>() {
+			@Override
+			public void completed(Integer bytesRead, Long readPosition) {
+				if (bytesRead < 0) {
+					future.completeExceptionally(new EOFException("node at " + position + " is past the end of the file"));
+				} else if (buffer.hasRemaining()) {  // A short read; read the rest
+					asyncChannel.read(buffer, readPosition + bytesRead, readPosition + bytesRead, this);
+				} else {
+					metrics.recordNodeRead(buffer.position(), System.nanoTime() - start);  // Safe from any thread
+					event.commit(position, depth, false, buffer.position(), true);
+					buffer.flip();
+					try {
+						future.complete(codec.read(buffer));
+					} catch (RuntimeException e) {
+						future.completeExceptionally(e);
+					}
+				}
+			}
+
+			@Override
+			public void failed(Throwable exc, Long readPosition) {
+				future.completeExceptionally(exc);
+			}
+		});
+		return future;
+	}
+
+	/**
+	 * Wait for a read started by {@link BTree#getNodeAsync(long, int)} to finish.
+	 *
+	 * @param future		the {@link CompletableFuture} of the read
+	 * @return				the {@link BTreeNode} read
+	 * @throws IOException	if the read failed, or the thread was interrupted while waiting
+	 */
+	static BTreeNode awaitNode(CompletableFuture<BTreeNode> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted while reading a node");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		}
+	}
+
 	/**
 	 * Bypass the cache and write a {@link BTreeNode} to the {@link BTree#fileChannel}.
 	 * <p>
+	 * The write goes through the {@link BTree#writeBuffer}, so it may not reach the file until the buffer fills up or
+	 * {@link BTree#finishUp()} is called; {@link BTree#getNode(long, int)} reads from the buffer in the meantime.
+	 * <p>
 	 * This method should be judiciously used, as the main interface into persistence for the {@link BTree} is via its
 	 * {@link BTree#updateNode} method. That method manages the relationship between disk and the cache. If you really
 	 * intend to force a write to disk, this method should be used.
@@ -770,15 +1618,12 @@ public class BTree implements BTreeInterface, Iterable<TreeObject> {
 			throw new IllegalArgumentException("position must be non-negative");
 		}
 
-		if (position < METADATA_SIZE) {
+		if (position < firstNodePosition) {
 			throw new IllegalArgumentException("cannot write node to tree metadata");
 		}
 
-		fileChannel.position(position);
-		nodeBuffer.clear();
-		node.writeToByteBuffer(nodeBuffer);
-		nodeBuffer.flip();
-		fileChannel.write(nodeBuffer);
+		writeBuffer.put(position, node);
+		node.dirty = false;
 	}
 
 	/**
@@ -788,45 +1633,18 @@ public class BTree implements BTreeInterface, Iterable<TreeObject> {
 	 */
 	private long getNextPositionAndIncrement() {
 		long retVal = nextPosition;
-		nextPosition += BTreeNode.getByteSize(t);
+		nextPosition += nodeSlotSize;
 		return retVal;
 	}
 
 	/**
-	 * Flush the cache to disk.
+	 * Flush the dirty nodes of the cache to disk, in order of position.
 	 */
 	private void flushCache() throws IOException {
 		if (cache == null) {
 			return;
 		}
 
-		for (java.util.Map.Entry<Long, BTreeNode> entry : this.cache.entrySet()) {
-			diskWrite(entry.getValue(), entry.getKey());
-		}
-	}
-
-	/**
-	 * Create a {@link LinkedHashMap} for a cache with a properly overwritten {@link LinkedHashMap#removeEldestEntry}
-	 * method.
-	 *
-	 * @param cacheCapacity	the capacity of the cache
-	 * @return				a {@link LinkedHashMap} for a cache with a properly overwritten
-	 * 						{@link LinkedHashMap#removeEldestEntry} method
-	 */
-	private LinkedHashMap<Long, BTreeNode> createCache(int cacheCapacity) {
-		return new LinkedHashMap<Long, BTreeNode>(cacheCapacity, 1.0f, true) {
-			@Override
-			protected boolean removeEldestEntry(java.util.Map.Entry<Long, BTreeNode> eldest) {
-				boolean willRemove = size() > cacheCapacity;
-				if (willRemove) {
-					try {
-						diskWrite(eldest.getValue(), eldest.getKey());  // Force disk write before eviction
-					} catch (IOException e) {
-						throw new RuntimeException(e);  // Coerce to a RuntimeException to meet interface
-					}
-				}
-				return willRemove;
-			}
-		};
+		this.cache.flush();  // The write buffer puts them in order of position
 	}
 }
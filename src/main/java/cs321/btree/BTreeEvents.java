@@ -0,0 +1,193 @@
+package cs321.btree;
+
+/**
+ * The hook through which a {@link BTree} reports which node, at which depth, each read, write, split and eviction was
+ * of, which {@link BTreeMetrics} can't say. By default every event is ignored. When the running JVM has the Java Flight
+ * Recorder, the events are instead those of <code>JfrBTreeEvents</code>, built from <code>src/jfr/java</code>, so
+ * that a build or a search can be recorded with <code>java -XX:StartFlightRecording=filename=btree.jfr ...</code>,
+ * and its hot pages and write amplification found in JDK Mission Control, or with e.g.
+ * <code>jfr print --events cs321.btree.NodeRead btree.jfr</code>.
+ * <p>
+ * The events are chosen once, when this class is initialized, so a call through {@link #EVENTS} has only the one
+ * implementation to go to, which the JIT inlines. Ignored events are a shared instance that does nothing, and cost
+ * nothing to create.
+ * <p>
+ * Each event is begun when it is created, before the work it times, and committed after it.
+ *
+ * @author Derek Caplinger
+ * @author Matt Youngberg
+ */
+class BTreeEvents {
+
+    /**
+     * The events of every {@link BTree}, those of the Flight Recorder if it is present, or else ignored ones.
+     */
+    static final BTreeEvents EVENTS = load();
+
+    /**
+     * The name of the class of the Flight Recorder events, loaded by name as it is compiled apart from this one.
+     */
+    private static final String JFR_EVENTS = "cs321.btree.JfrBTreeEvents";
+
+    /**
+     * The event that ignores everything, of every kind.
+     */
+    private static final Ignored IGNORED = new Ignored();
+
+    /**
+     * Create the default events, which are all ignored.
+     */
+    BTreeEvents() {
+    }
+
+    /**
+     * Begin an event for a lookup of a {@link BTreeNode} by {@link BTree#getNode(long, int)} or
+     * {@link BTree#getNodeAsync(long, int)}.
+     *
+     * @return  the event
+     */
+    NodeRead nodeRead() {
+        return IGNORED;
+    }
+
+    /**
+     * Begin an event for a write of a run of adjacent {@link BTreeNode}s by the {@link NodeWriteBuffer}.
+     *
+     * @return  the event
+     */
+    NodeWrite nodeWrite() {
+        return IGNORED;
+    }
+
+    /**
+     * Begin an event for a split of a full {@link BTreeNode} around its median key.
+     *
+     * @return  the event
+     */
+    NodeSplit nodeSplit() {
+        return IGNORED;
+    }
+
+    /**
+     * Begin an event for an eviction of a {@link BTreeNode} from a cache.
+     *
+     * @return  the event
+     */
+    NodeEviction nodeEviction() {
+        return IGNORED;
+    }
+
+    /**
+     * Load the Flight Recorder events if the JVM has the Flight Recorder and they were built, or else the default
+     * ones.
+     *
+     * @return  the events
+     */
+    private static BTreeEvents load() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return (BTreeEvents) Class.forName(JFR_EVENTS).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return new BTreeEvents();
+        }
+    }
+
+    /**
+     * A lookup of a {@link BTreeNode}, served from the cache, the write buffer or the disk.
+     */
+    interface NodeRead {
+
+        /**
+         * End the event and commit it, if it is recorded.
+         *
+         * @param position  the position of the node
+         * @param level     the depth of the node, where the root is at 0
+         * @param cacheHit  whether the node was found in the cache
+         * @param bytes     the number of bytes read from disk, 0 if the node was found in memory
+         * @param async     whether the node was read asynchronously, and the event committed by the thread that
+         *                  completed the read
+         */
+        void commit(long position, int level, boolean cacheHit, long bytes, boolean async);
+    }
+
+    /**
+     * A write of a run of adjacent {@link BTreeNode}s, in one gathering write.
+     */
+    interface NodeWrite {
+
+        /**
+         * End the event and commit it, if it is recorded.
+         *
+         * @param position  the position of the first node of the run
+         * @param nodes     the number of nodes in the run
+         * @param bytes     the number of bytes written, padding included
+         */
+        void commit(long position, int nodes, long bytes);
+    }
+
+    /**
+     * A split of a full {@link BTreeNode} around its median key, by {@link BTree#insert(TreeObject)}.
+     */
+    interface NodeSplit {
+
+        /**
+         * End the event and commit it, if it is recorded.
+         *
+         * @param level             the depth of the node split, where the root is at 0
+         * @param position          the position of the node split, which keeps its lesser half
+         * @param newPosition       the position of the new node, which takes the greater half
+         * @param parentPosition    the position of the parent, which takes the median key
+         * @param rootSplit         whether the node split was the root, so that the split added a level
+         */
+        void commit(int level, long position, long newPosition, long parentPosition, boolean rootSplit);
+    }
+
+    /**
+     * An eviction of a {@link BTreeNode} from a cache, which for a dirty node includes handing it to the
+     * {@link NodeWriteBuffer}.
+     */
+    interface NodeEviction {
+
+        /**
+         * End the event and commit it, if it is recorded.
+         *
+         * @param position  the position of the node
+         * @param dirty     whether the node had changed since it was read, and so had to be written back
+         */
+        void commit(long position, boolean dirty);
+    }
+
+    /**
+     * An event of every kind that is never recorded.
+     */
+    private static final class Ignored implements NodeRead, NodeWrite, NodeSplit, NodeEviction {
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void commit(long position, int level, boolean cacheHit, long bytes, boolean async) {
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void commit(long position, int nodes, long bytes) {
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void commit(int level, long position, long newPosition, long parentPosition, boolean rootSplit) {
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void commit(long position, boolean dirty) {
+        }
+    }
+}
@@ -1,9 +1,11 @@
 package cs321.btree;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 import java.util.Stack;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * An {@link Iterator} for a {@link BTree} that traverses the tree in order.
@@ -13,12 +15,21 @@ import java.util.Stack;
  * and the project specification does not introduce a circumstance in the command line programs where a BTree would be
  * modified while being iterated over. If we were to build to a broader specification, we would implement this
  * exception, but for the sake of time, we did not.
+ * <p>
+ * Children are read ahead of when they are needed: for each node on the stack, the next
+ * {@link BTreeInOrderIterator#PREFETCH_DEPTH} children are kept in flight with
+ * {@link BTree#getNodeAsync(long, int)}, so that by the time iteration reaches a child, it has usually arrived.
  *
  * @author Derek Caplinger
  * @author Matt Youngberg
  */
 class BTreeInOrderIterator implements Iterator<TreeObject> {
 
+    /**
+     * The number of children of each node on the stack read ahead of iteration.
+     */
+    static final int PREFETCH_DEPTH = 8;
+
     /**
      * A {@link NodeFrame} represents a node in the {@link BTree} that's maintained in memory between invocations of
      * {@link BTreeInOrderIterator#next()} to know what to process next. Since height is assumed to be small and
@@ -43,6 +54,16 @@ class BTreeInOrderIterator implements Iterator<TreeObject> {
          */
         public boolean processChildNext;
 
+        /**
+         * The reads of the next children of the {@link BTreeNode} that this {@link NodeFrame} represents, in order.
+         */
+        public final ArrayDeque<CompletableFuture<BTreeNode>> prefetched;
+
+        /**
+         * The index of the next child of the {@link BTreeNode} that this {@link NodeFrame} represents to read.
+         */
+        public int nextPrefetch;
+
         /**
          * Construct a new {@link NodeFrame} for the given {@link BTreeNode}.
          *
@@ -52,6 +73,8 @@ class BTreeInOrderIterator implements Iterator<TreeObject> {
             this.node = node;
             this.index = 0;
             this.processChildNext = false;
+            this.prefetched = new ArrayDeque<>();
+            this.nextPrefetch = 0;
         }
     }
 
@@ -66,7 +89,7 @@ class BTreeInOrderIterator implements Iterator<TreeObject> {
 
     /**
      * A reference to the {@link BTree} provided upon construction for the sake of invoking
-     * {@link BTree#getNode(long)}.
+     * {@link BTree#getNode(long, int)}.
      */
     private final BTree btree;
 
@@ -82,7 +105,9 @@ class BTreeInOrderIterator implements Iterator<TreeObject> {
         if (btree.getSize() > 0) {
             NodeFrame nodeFrame = new NodeFrame(btree.root);
             this.stack.push(nodeFrame);
-            pushAllLeftNodes(btree.root.childPositions[0]); // Initialize the stack with the leftmost path of the tree
+            if (!btree.root.leaf) {
+                pushAllLeftNodes(nodeFrame); // Initialize the stack with the leftmost path of the tree
+            }
         }
     }
 
@@ -119,7 +144,7 @@ class BTreeInOrderIterator implements Iterator<TreeObject> {
         } else {  // Guaranteed to have children
             if (frame.processChildNext) {  // if not a leaf, there is guaranteed to be a child at position index + 1
                 try {
-                    pushAllLeftNodes(frame.node.childPositions[frame.index + 1]);
+                    pushAllLeftNodes(frame);
                 } catch (IOException e) {
                     throw new RuntimeException(e);
                 }
@@ -136,22 +161,35 @@ class BTreeInOrderIterator implements Iterator<TreeObject> {
     }
 
     /**
-     * Push all the left nodes of the node at the given position onto the stack. Used as a way to get the stack in
-     * a state to process the minimum element in the subtree rooted at the node at the given position.
+     * Push the next child of the given frame and all its left nodes onto the stack. Used as a way to get the stack in
+     * a state to process the minimum element in the subtree rooted at that child.
      *
-     * @param position  the position on disk of the node to push all the left nodes of onto the stack
+     * @param parent    the {@link NodeFrame} of an internal node, whose next child to push
      */
-    private void pushAllLeftNodes(long position) throws IOException {
-        if (position == 0) {
-            return;
-        }
-
+    private void pushAllLeftNodes(NodeFrame parent) throws IOException {
         NodeFrame nodeFrame;
-        nodeFrame = new NodeFrame(btree.getNode(position));
+        nodeFrame = new NodeFrame(nextChild(parent));
 
         stack.push(nodeFrame);
 
-        pushAllLeftNodes(nodeFrame.node.childPositions[0]);
+        if (!nodeFrame.node.leaf) {
+            pushAllLeftNodes(nodeFrame);
+        }
+    }
+
+    /**
+     * Get the next child of the node of the given frame, first topping up the reads in flight for the children after.
+     *
+     * @param frame the {@link NodeFrame} of an internal node
+     * @return      the next child of its node
+     */
+    private BTreeNode nextChild(NodeFrame frame) throws IOException {
+        while (frame.prefetched.size() < PREFETCH_DEPTH && frame.nextPrefetch <= frame.node.keyCount) {
+            // The frame is on top of the stack, so its children are as deep as the stack is high
+            frame.prefetched.add(btree.getNodeAsync(frame.node.childPositions[frame.nextPrefetch], stack.size()));
+            frame.nextPrefetch++;
+        }
+        return BTree.awaitNode(frame.prefetched.remove());
     }
 
     /**
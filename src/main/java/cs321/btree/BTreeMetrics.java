@@ -0,0 +1,594 @@
+package cs321.btree;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The metrics of a {@link BTree}: what it read and wrote, how its cache did at each level, how often it split, and
+ * how long its disk operations took. Every {@link BTree} keeps one, see {@link BTree#getMetrics()}, which can be read
+ * live through {@link BTreeMetricsMXBean} or copied all at once with {@link BTreeMetrics#snapshot()}.
+ * <p>
+ * Counters are {@link LongAdder}s, which spread updates from different threads over separate cells and only add them
+ * up when read. Recording costs about as much as incrementing a plain field, and stays correct for reads completed on
+ * the threads of the asynchronous channel (see {@link BTree#getNodeAsync(long, int)}).
+ *
+ * @author Derek Caplinger
+ * @author Matt Youngberg
+ */
+public final class BTreeMetrics implements BTreeMetricsMXBean {
+
+    /**
+     * The number of depths counted separately; deeper lookups are counted with the deepest. A {@link BTree} of degree
+     * 2 this deep would hold billions of keys.
+     */
+    static final int MAX_LEVELS = 32;
+
+    /**
+     * The number of buckets of a latency histogram, one for every power of two nanoseconds a long can hold.
+     */
+    static final int HISTOGRAM_BUCKETS = 64;
+
+    /**
+     * The number of nodes read from disk.
+     */
+    private final LongAdder nodeReads = new LongAdder();
+
+    /**
+     * The number of bytes of the nodes read from disk.
+     */
+    private final LongAdder nodeReadBytes = new LongAdder();
+
+    /**
+     * The total time spent reading nodes from disk, in nanoseconds.
+     */
+    private final LongAdder nodeReadNanos = new LongAdder();
+
+    /**
+     * The number of nodes written to disk.
+     */
+    private final LongAdder nodeWrites = new LongAdder();
+
+    /**
+     * The number of bytes of the nodes written to disk.
+     */
+    private final LongAdder nodeWriteBytes = new LongAdder();
+
+    /**
+     * The total time spent writing nodes to disk, in nanoseconds.
+     */
+    private final LongAdder nodeWriteNanos = new LongAdder();
+
+    /**
+     * The cache hits at each depth, up to {@link BTreeMetrics#MAX_LEVELS}.
+     */
+    private final LongAdder[] cacheHitsByLevel = newAdders(MAX_LEVELS);
+
+    /**
+     * The cache misses at each depth, up to {@link BTreeMetrics#MAX_LEVELS}.
+     */
+    private final LongAdder[] cacheMissesByLevel = newAdders(MAX_LEVELS);
+
+    /**
+     * The evictions from the cache of nodes without changes.
+     */
+    private final LongAdder cleanEvictions = new LongAdder();
+
+    /**
+     * The evictions from the cache of nodes with changes, which had to be written out.
+     */
+    private final LongAdder dirtyEvictions = new LongAdder();
+
+    /**
+     * The splits of any node, including the root.
+     */
+    private final LongAdder splits = new LongAdder();
+
+    /**
+     * The splits of the root.
+     */
+    private final LongAdder rootSplits = new LongAdder();
+
+    /**
+     * The insertions of keys not already held.
+     */
+    private final LongAdder newKeys = new LongAdder();
+
+    /**
+     * The insertions of keys already held, which only incremented their frequency.
+     */
+    private final LongAdder duplicateIncrements = new LongAdder();
+
+    /**
+     * The latency histogram of reads, one adder per bucket; see {@link BTreeMetrics#bucket(long)}.
+     */
+    private final LongAdder[] readLatencies = newAdders(HISTOGRAM_BUCKETS);
+
+    /**
+     * The latency histogram of writes, one adder per bucket; see {@link BTreeMetrics#bucket(long)}.
+     */
+    private final LongAdder[] writeLatencies = newAdders(HISTOGRAM_BUCKETS);
+
+    /**
+     * Record a {@link BTreeNode} read from disk.
+     *
+     * @param bytes the number of bytes read
+     * @param nanos how long the read took
+     */
+    void recordNodeRead(long bytes, long nanos) {
+        nodeReads.increment();
+        nodeReadBytes.add(bytes);
+        nodeReadNanos.add(nanos);
+        readLatencies[bucket(nanos)].increment();
+    }
+
+    /**
+     * Record a run of adjacent {@link BTreeNode}s written to disk together.
+     *
+     * @param nodes the number of nodes written
+     * @param bytes the number of bytes written
+     * @param nanos how long the write took
+     */
+    void recordNodeWrites(long nodes, long bytes, long nanos) {
+        nodeWrites.add(nodes);
+        nodeWriteBytes.add(bytes);
+        nodeWriteNanos.add(nanos);
+        writeLatencies[bucket(nanos)].increment();
+    }
+
+    /**
+     * Record a lookup of a {@link BTreeNode} in the cache.
+     *
+     * @param depth the depth of the node, where the root is at 0
+     * @param hit   whether the node was in the cache
+     */
+    void recordCacheLookup(int depth, boolean hit) {
+        (hit ? cacheHitsByLevel : cacheMissesByLevel)[Math.min(Math.max(depth, 0), MAX_LEVELS - 1)].increment();
+    }
+
+    /**
+     * Record a {@link BTreeNode} evicted from the cache.
+     *
+     * @param dirty whether the node had changes that had to be written out
+     */
+    void recordEviction(boolean dirty) {
+        (dirty ? dirtyEvictions : cleanEvictions).increment();
+    }
+
+    /**
+     * Record a split of a {@link BTreeNode}.
+     */
+    void recordSplit() {
+        splits.increment();
+    }
+
+    /**
+     * Record a split of the root, which is also recorded as a split when its old root is split.
+     */
+    void recordRootSplit() {
+        rootSplits.increment();
+    }
+
+    /**
+     * Record an insertion.
+     *
+     * @param duplicate whether the key was already held, so that only its frequency was incremented
+     */
+    void recordInsert(boolean duplicate) {
+        (duplicate ? duplicateIncrements : newKeys).increment();
+    }
+
+    /**
+     * Copy every metric at once, into an immutable {@link Snapshot}. Metrics recorded while copying may or may not be
+     * included.
+     *
+     * @return  a {@link Snapshot} of the metrics
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    @Override
+    public long getNodeReads() {
+        return nodeReads.sum();
+    }
+
+    @Override
+    public long getNodeReadBytes() {
+        return nodeReadBytes.sum();
+    }
+
+    @Override
+    public long getNodeReadNanos() {
+        return nodeReadNanos.sum();
+    }
+
+    @Override
+    public long getNodeWrites() {
+        return nodeWrites.sum();
+    }
+
+    @Override
+    public long getNodeWriteBytes() {
+        return nodeWriteBytes.sum();
+    }
+
+    @Override
+    public long getNodeWriteNanos() {
+        return nodeWriteNanos.sum();
+    }
+
+    @Override
+    public long getCacheHits() {
+        return Arrays.stream(cacheHitsByLevel).mapToLong(LongAdder::sum).sum();
+    }
+
+    @Override
+    public long getCacheMisses() {
+        return Arrays.stream(cacheMissesByLevel).mapToLong(LongAdder::sum).sum();
+    }
+
+    @Override
+    public double getCacheHitRate() {
+        return hitRate(getCacheHits(), getCacheMisses());
+    }
+
+    @Override
+    public long[] getCacheHitsByLevel() {
+        return trim(sums(cacheHitsByLevel), levels());
+    }
+
+    @Override
+    public long[] getCacheMissesByLevel() {
+        return trim(sums(cacheMissesByLevel), levels());
+    }
+
+    @Override
+    public long getCleanEvictions() {
+        return cleanEvictions.sum();
+    }
+
+    @Override
+    public long getDirtyEvictions() {
+        return dirtyEvictions.sum();
+    }
+
+    @Override
+    public long getSplits() {
+        return splits.sum();
+    }
+
+    @Override
+    public long getRootSplits() {
+        return rootSplits.sum();
+    }
+
+    @Override
+    public long getNewKeys() {
+        return newKeys.sum();
+    }
+
+    @Override
+    public long getDuplicateIncrements() {
+        return duplicateIncrements.sum();
+    }
+
+    @Override
+    public long[] getReadLatencyHistogram() {
+        long[] histogram = sums(readLatencies);
+        return trim(histogram, used(histogram));
+    }
+
+    @Override
+    public long[] getWriteLatencyHistogram() {
+        long[] histogram = sums(writeLatencies);
+        return trim(histogram, used(histogram));
+    }
+
+    /**
+     * Estimate a percentile of a latency histogram, as the upper bound of the bucket it falls in.
+     *
+     * @param histogram a latency histogram, as from {@link BTreeMetricsMXBean#getReadLatencyHistogram()}
+     * @param fraction  the percentile, as a fraction between 0 and 1
+     * @return          an upper bound of the percentile in nanoseconds, or 0 if the histogram is empty
+     */
+    public static long percentileNanos(long[] histogram, double fraction) {
+        long total = Arrays.stream(histogram).sum();
+        long seen = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            seen += histogram[i];
+            if (seen > 0 && seen >= fraction * total) {
+                return i + 1 < HISTOGRAM_BUCKETS - 1 ? 1L << (i + 1) : Long.MAX_VALUE;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Get the bucket of a latency histogram that a latency falls in.
+     *
+     * @param nanos the latency in nanoseconds
+     * @return      the index of its bucket
+     */
+    static int bucket(long nanos) {
+        return nanos < 1 ? 0 : 63 - Long.numberOfLeadingZeros(nanos);
+    }
+
+    /**
+     * Get the number of depths at which there were any cache lookups.
+     *
+     * @return  one more than the deepest depth looked up at
+     */
+    private int levels() {
+        return Math.max(used(sums(cacheHitsByLevel)), used(sums(cacheMissesByLevel)));
+    }
+
+    /**
+     * Get a cache hit rate.
+     *
+     * @param hits      the number of hits
+     * @param misses    the number of misses
+     * @return          the fraction of lookups that hit, or 0 if there were none
+     */
+    private static double hitRate(long hits, long misses) {
+        return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+    }
+
+    /**
+     * Create an array of new {@link LongAdder}s.
+     *
+     * @param count the number of adders
+     * @return      the adders
+     */
+    private static LongAdder[] newAdders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    /**
+     * Add up each of an array of {@link LongAdder}s.
+     *
+     * @param adders    the adders
+     * @return          the sum of each
+     */
+    private static long[] sums(LongAdder[] adders) {
+        long[] sums = new long[adders.length];
+        for (int i = 0; i < adders.length; i++) {
+            sums[i] = adders[i].sum();
+        }
+        return sums;
+    }
+
+    /**
+     * Get the length of an array up to and including its last nonzero entry.
+     *
+     * @param counts    the array
+     * @return          the length of it that is used
+     */
+    private static int used(long[] counts) {
+        int length = counts.length;
+        while (length > 0 && counts[length - 1] == 0) {
+            length--;
+        }
+        return length;
+    }
+
+    /**
+     * Cut an array down to a length.
+     *
+     * @param counts    the array
+     * @param length    the length to keep
+     * @return          a copy of the array, of that length
+     */
+    private static long[] trim(long[] counts, int length) {
+        return Arrays.copyOf(counts, length);
+    }
+
+    /**
+     * An immutable copy of the metrics of a {@link BTree} at one point in time, e.g. to compare before and after a
+     * phase of work, or to log.
+     */
+    public static final class Snapshot implements BTreeMetricsMXBean {
+
+        /**
+         * The number of nodes read from disk.
+         */
+        private final long nodeReads;
+
+        /**
+         * The number of bytes of the nodes read from disk.
+         */
+        private final long nodeReadBytes;
+
+        /**
+         * The total time spent reading nodes from disk, in nanoseconds.
+         */
+        private final long nodeReadNanos;
+
+        /**
+         * The number of nodes written to disk.
+         */
+        private final long nodeWrites;
+
+        /**
+         * The number of bytes of the nodes written to disk.
+         */
+        private final long nodeWriteBytes;
+
+        /**
+         * The total time spent writing nodes to disk, in nanoseconds.
+         */
+        private final long nodeWriteNanos;
+
+        /**
+         * The cache hits at each depth looked up at.
+         */
+        private final long[] cacheHitsByLevel;
+
+        /**
+         * The cache misses at each depth looked up at.
+         */
+        private final long[] cacheMissesByLevel;
+
+        /**
+         * The evictions from the cache of nodes without changes.
+         */
+        private final long cleanEvictions;
+
+        /**
+         * The evictions from the cache of nodes with changes.
+         */
+        private final long dirtyEvictions;
+
+        /**
+         * The splits of any node, including the root.
+         */
+        private final long splits;
+
+        /**
+         * The splits of the root.
+         */
+        private final long rootSplits;
+
+        /**
+         * The insertions of keys not already held.
+         */
+        private final long newKeys;
+
+        /**
+         * The insertions of keys already held.
+         */
+        private final long duplicateIncrements;
+
+        /**
+         * The latency histogram of reads, up to the last bucket used.
+         */
+        private final long[] readLatencyHistogram;
+
+        /**
+         * The latency histogram of writes, up to the last bucket used.
+         */
+        private final long[] writeLatencyHistogram;
+
+        /**
+         * Copy the metrics of a {@link BTreeMetrics}.
+         *
+         * @param metrics   the metrics to copy
+         */
+        private Snapshot(BTreeMetrics metrics) {
+            nodeReads = metrics.getNodeReads();
+            nodeReadBytes = metrics.getNodeReadBytes();
+            nodeReadNanos = metrics.getNodeReadNanos();
+            nodeWrites = metrics.getNodeWrites();
+            nodeWriteBytes = metrics.getNodeWriteBytes();
+            nodeWriteNanos = metrics.getNodeWriteNanos();
+            cacheHitsByLevel = metrics.getCacheHitsByLevel();
+            cacheMissesByLevel = metrics.getCacheMissesByLevel();
+            cleanEvictions = metrics.getCleanEvictions();
+            dirtyEvictions = metrics.getDirtyEvictions();
+            splits = metrics.getSplits();
+            rootSplits = metrics.getRootSplits();
+            newKeys = metrics.getNewKeys();
+            duplicateIncrements = metrics.getDuplicateIncrements();
+            readLatencyHistogram = metrics.getReadLatencyHistogram();
+            writeLatencyHistogram = metrics.getWriteLatencyHistogram();
+        }
+
+        @Override
+        public long getNodeReads() {
+            return nodeReads;
+        }
+
+        @Override
+        public long getNodeReadBytes() {
+            return nodeReadBytes;
+        }
+
+        @Override
+        public long getNodeReadNanos() {
+            return nodeReadNanos;
+        }
+
+        @Override
+        public long getNodeWrites() {
+            return nodeWrites;
+        }
+
+        @Override
+        public long getNodeWriteBytes() {
+            return nodeWriteBytes;
+        }
+
+        @Override
+        public long getNodeWriteNanos() {
+            return nodeWriteNanos;
+        }
+
+        @Override
+        public long getCacheHits() {
+            return Arrays.stream(cacheHitsByLevel).sum();
+        }
+
+        @Override
+        public long getCacheMisses() {
+            return Arrays.stream(cacheMissesByLevel).sum();
+        }
+
+        @Override
+        public double getCacheHitRate() {
+            return hitRate(getCacheHits(), getCacheMisses());
+        }
+
+        @Override
+        public long[] getCacheHitsByLevel() {
+            return cacheHitsByLevel.clone();
+        }
+
+        @Override
+        public long[] getCacheMissesByLevel() {
+            return cacheMissesByLevel.clone();
+        }
+
+        @Override
+        public long getCleanEvictions() {
+            return cleanEvictions;
+        }
+
+        @Override
+        public long getDirtyEvictions() {
+            return dirtyEvictions;
+        }
+
+        @Override
+        public long getSplits() {
+            return splits;
+        }
+
+        @Override
+        public long getRootSplits() {
+            return rootSplits;
+        }
+
+        @Override
+        public long getNewKeys() {
+            return newKeys;
+        }
+
+        @Override
+        public long getDuplicateIncrements() {
+            return duplicateIncrements;
+        }
+
+        @Override
+        public long[] getReadLatencyHistogram() {
+            return readLatencyHistogram.clone();
+        }
+
+        @Override
+        public long[] getWriteLatencyHistogram() {
+            return writeLatencyHistogram.clone();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package cs321.btree;
+
+/**
+ * The metrics of a {@link BTree}, as a JMX MXBean: register a {@link BTree} with {@link BTree#registerMBean()} and its
+ * metrics appear as attributes in JConsole, VisualVM or any other JMX client, live, while it is being built or
+ * searched.
+ * <p>
+ * Every count is since the {@link BTree} was opened. Counts by level are indexed by depth, where the root is at depth
+ * 0 (and, being always in memory, is never looked up). Latency histograms have a bucket for every power of two:
+ * bucket <code>i</code> counts the operations that took from <code>2<sup>i</sup></code> up to
+ * <code>2<sup>i+1</sup></code> nanoseconds; see {@link BTreeMetrics#percentileNanos(long[], double)}. Arrays end at
+ * their last nonzero entry.
+ *
+ * @author Derek Caplinger
+ * @author Matt Youngberg
+ */
+public interface BTreeMetricsMXBean {
+
+    /**
+     * Get the number of {@link BTreeNode}s read from disk, rather than from the cache or the write buffer.
+     *
+     * @return  the number of nodes read from disk
+     */
+    long getNodeReads();
+
+    /**
+     * Get the number of bytes of {@link BTreeNode}s read from disk.
+     *
+     * @return  the number of bytes read
+     */
+    long getNodeReadBytes();
+
+    /**
+     * Get the total time spent reading {@link BTreeNode}s from disk, in nanoseconds.
+     *
+     * @return  the time spent reading
+     */
+    long getNodeReadNanos();
+
+    /**
+     * Get the number of {@link BTreeNode}s written to disk. Nodes still waiting in the write buffer are not counted
+     * until they are written.
+     *
+     * @return  the number of nodes written to disk
+     */
+    long getNodeWrites();
+
+    /**
+     * Get the number of bytes of {@link BTreeNode}s written to disk, padding included.
+     *
+     * @return  the number of bytes written
+     */
+    long getNodeWriteBytes();
+
+    /**
+     * Get the total time spent writing {@link BTreeNode}s to disk, in nanoseconds.
+     *
+     * @return  the time spent writing
+     */
+    long getNodeWriteNanos();
+
+    /**
+     * Get the number of lookups of {@link BTreeNode}s found in the cache.
+     *
+     * @return  the number of cache hits
+     */
+    long getCacheHits();
+
+    /**
+     * Get the number of lookups of {@link BTreeNode}s not found in the cache.
+     *
+     * @return  the number of cache misses
+     */
+    long getCacheMisses();
+
+    /**
+     * Get the fraction of lookups of {@link BTreeNode}s found in the cache, or 0 if there were none.
+     *
+     * @return  the cache hit rate
+     */
+    double getCacheHitRate();
+
+    /**
+     * Get the number of cache hits at each depth of the {@link BTree}.
+     *
+     * @return  the number of cache hits by depth
+     */
+    long[] getCacheHitsByLevel();
+
+    /**
+     * Get the number of cache misses at each depth of the {@link BTree}.
+     *
+     * @return  the number of cache misses by depth
+     */
+    long[] getCacheMissesByLevel();
+
+    /**
+     * Get the number of {@link BTreeNode}s evicted from the cache unchanged, which cost nothing to evict.
+     *
+     * @return  the number of clean evictions
+     */
+    long getCleanEvictions();
+
+    /**
+     * Get the number of {@link BTreeNode}s evicted from the cache with changes, which had to be written out.
+     *
+     * @return  the number of dirty evictions
+     */
+    long getDirtyEvictions();
+
+    /**
+     * Get the number of {@link BTreeNode}s split, the root included.
+     *
+     * @return  the number of splits
+     */
+    long getSplits();
+
+    /**
+     * Get the number of times the root was split, each adding a level to the {@link BTree}.
+     *
+     * @return  the number of root splits
+     */
+    long getRootSplits();
+
+    /**
+     * Get the number of insertions of a key the {@link BTree} didn't hold yet.
+     *
+     * @return  the number of new keys
+     */
+    long getNewKeys();
+
+    /**
+     * Get the number of insertions of a key the {@link BTree} already held, which only incremented its frequency.
+     *
+     * @return  the number of duplicate increments
+     */
+    long getDuplicateIncrements();
+
+    /**
+     * Get the histogram of the latencies of reads of {@link BTreeNode}s from disk, one per node.
+     *
+     * @return  the read latency histogram
+     */
+    long[] getReadLatencyHistogram();
+
+    /**
+     * Get the histogram of the latencies of writes of {@link BTreeNode}s to disk, one per run of adjacent nodes
+     * written together.
+     *
+     * @return  the write latency histogram
+     */
+    long[] getWriteLatencyHistogram();
+}
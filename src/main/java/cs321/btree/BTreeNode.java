@@ -16,12 +16,21 @@ import java.nio.ByteBuffer;
  * read and write the node. If the `t` value changes, the size of the {@link BTreeNode} will be incorrect, and the
  * read/write operations will fail. A {@link BTreeNode} does not track `t` explicitly because it is expected that the
  * caller, the {@link BTree}, will track it.
+ * <p>
+ * The same goes for whether the keys are wide, i.e. whether they hold subsequences longer than 31 bases and need the
+ * high bits of their subsequence written to disk (see {@link TreeObject#getByteSize(boolean)}). Methods that don't take
+ * this as a parameter assume the keys are not wide.
  *
  * @author Derek Caplinger
  * @author Matt Youngberg
  */
 class BTreeNode {
 
+    /**
+     * Zeros written in place of an empty key slot.
+     */
+    private static final byte[] EMPTY_KEY = new byte[TreeObject.WIDE_BYTE_SIZE];
+
     /**
      * The keys of this {@link BTreeNode}, all {@link TreeObject}s.
      * <p>
@@ -44,6 +53,11 @@ class BTreeNode {
      */
     int keyCount;
 
+    /**
+     * Whether this {@link BTreeNode} has changed since it was last read from or written to disk.
+     */
+    boolean dirty;
+
 
     /**
      * Construct a {@link BTreeNode} from disk with the given keys and children positions.
@@ -97,7 +111,19 @@ class BTreeNode {
      * @return  The derived size of this {@link BTreeNode} in bytes.
      */
     static int getByteSize(int t) {
-        return (TreeObject.BYTE_SIZE * getMaxKeyCount(t)) + (Long.BYTES * getMaxChildCount(t));
+        return getByteSize(t, false);
+    }
+
+    /**
+     * Get the derived size of this {@link BTreeNode} in bytes given the minimum degree of the {@link BTree} that this
+     * {@link BTreeNode} is a part of and whether its keys are wide.
+     *
+     * @param t     The minimum degree of the {@link BTree} that this {@link BTreeNode} is a part of.
+     * @param wide  Whether the keys of the {@link BTree} are wide.
+     * @return      The derived size of this {@link BTreeNode} in bytes.
+     */
+    static int getByteSize(int t, boolean wide) {
+        return (TreeObject.getByteSize(wide) * getMaxKeyCount(t)) + (Long.BYTES * getMaxChildCount(t));
     }
 
     /**
@@ -123,13 +149,24 @@ class BTreeNode {
      * @param buffer The {@link ByteBuffer} to write this {@link BTreeNode} to.
      */
     void writeToByteBuffer(ByteBuffer buffer) {
+        writeToByteBuffer(buffer, false);
+    }
+
+    /**
+     * Write this {@link BTreeNode} to the given {@link ByteBuffer}, with keys of the given width. See
+     * {@link BTreeNode#writeToByteBuffer(ByteBuffer)}; the only difference on disk is the size of each key.
+     *
+     * @param buffer    The {@link ByteBuffer} to write this {@link BTreeNode} to.
+     * @param wide      Whether the keys of the {@link BTree} are wide.
+     */
+    void writeToByteBuffer(ByteBuffer buffer, boolean wide) {
+        int keySize = TreeObject.getByteSize(wide);
         for (TreeObject key : keys) {
             if (key == null) {
-                // Write a default value or leave the space blank.
-                // For example, write TreeObject.BYTE_SIZE number of zero bytes.
-                buffer.put(new byte[TreeObject.BYTE_SIZE]);
+                // Write zeros in place of the empty key
+                buffer.put(EMPTY_KEY, 0, keySize);
             } else {
-                key.writeToByteBuffer(buffer);
+                key.writeToByteBuffer(buffer, wide);
             }
         }
         for (long child : childPositions) {
@@ -161,9 +198,24 @@ class BTreeNode {
      * @return          A new {@link BTreeNode} with the data from the {@link ByteBuffer}.
      */
     static BTreeNode fromByteBuffer(ByteBuffer buffer, int t) {
-        if (buffer.remaining() < getByteSize(t)) {
+        return fromByteBuffer(buffer, t, false);
+    }
+
+    /**
+     * Read a {@link BTreeNode} from the given {@link ByteBuffer} with the given minimum degree and width of keys. See
+     * {@link BTreeNode#fromByteBuffer(ByteBuffer, int)}.
+     *
+     * @param buffer    The {@link ByteBuffer} to read the {@link BTreeNode} from, with at least
+     *                  {@link BTreeNode#getByteSize(int, boolean)} bytes remaining.
+     * @param t         The minimum degree of the {@link BTree} that this {@link BTreeNode} is a part of.
+     * @param wide      Whether the keys of the {@link BTree} are wide.
+     * @return          A new {@link BTreeNode} with the data from the {@link ByteBuffer}.
+     */
+    static BTreeNode fromByteBuffer(ByteBuffer buffer, int t, boolean wide) {
+        if (buffer.remaining() < getByteSize(t, wide)) {
             throw new BufferUnderflowException();
         }
+        int keySize = TreeObject.getByteSize(wide);
 
         int keyCount = getMaxKeyCount(t);
         int childCount = getMaxChildCount(t);
@@ -172,24 +224,14 @@ class BTreeNode {
         long[] children = new long[childCount];
 
         for (int i = 0; i < keyCount; i++) {
-            // Read the next TreeObject.BYTE_SIZE bytes to determine if it's a null object.
-            byte[] potentialNull = new byte[TreeObject.BYTE_SIZE];
-            buffer.get(potentialNull);
-
-            // Determine if the bytes read represent a null object.
-            boolean isNull = true;
-            for (byte b : potentialNull) {
-                if (b != 0) {
-                    isNull = false;
-                    break;
-                }
-            }
+            // A stored TreeObject always has a frequency of at least 1, so a frequency of 0 means an empty slot. The
+            // frequency is the last field of the TreeObject, so peek at it without moving the buffer.
+            boolean isNull = buffer.getInt(buffer.position() + keySize - Integer.BYTES) == 0;
 
             if (!isNull) {
-                // Move the buffer back and read the actual TreeObject.
-                buffer.position(buffer.position() - TreeObject.BYTE_SIZE);
-                keys[i] = TreeObject.fromByteBuffer(buffer);
+                keys[i] = TreeObject.fromByteBuffer(buffer, wide);
             } else {
+                buffer.position(buffer.position() + keySize);
                 keys[i] = null; // Handle null TreeObject
             }
         }
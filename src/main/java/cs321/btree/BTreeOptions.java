@@ -0,0 +1,168 @@
+package cs321.btree;
+
+import cs321.create.SequenceUtils;
+
+/**
+ * The options a new {@link BTree} is created with beyond its degree, file name and cache, passed to
+ * {@link BTree#BTree(int, String, int, BTreeOptions)}. Each option starts at its default, and is set by a method of the
+ * same name, which returns the options so that they can be set in one expression:
+ * <pre>
+ * new BTree(0, fileName, 0, new BTreeOptions().subsequenceLength(20).canonical(true).pageSize(16384));
+ * </pre>
+ * The options are only read when a {@link BTree} is created. Each is recorded in the metadata, so a {@link BTree}
+ * loaded from disk continues with the options it was created with. They are checked by the {@link BTree}, which
+ * throws an {@link IllegalArgumentException} for options it can't be created with.
+ *
+ * @author Derek Caplinger
+ * @author Matt Youngberg
+ */
+public class BTreeOptions {
+
+    /**
+     * The length of the subsequences that will be stored, 1-63, or 0 if unknown.
+     */
+    private int subsequenceLength;
+
+    /**
+     * Whether to store subsequences under their canonical key.
+     */
+    private boolean canonical;
+
+    /**
+     * Whether to store nodes in compressed pages.
+     */
+    private boolean compressed;
+
+    /**
+     * The most any frequency can reach, or 0 if unknown.
+     */
+    private long maxFrequency;
+
+    /**
+     * The size of a page in bytes, or 0 for the default.
+     */
+    private int pageSize;
+
+    /**
+     * Set the length of the subsequences that will be stored. The default is 0, for unknown.
+     * <p>
+     * Subsequences longer than 31 bases are stored in wide keys; see {@link TreeObject#getSubsequenceHigh()}. If the
+     * length is given and nodes are not compressed, nodes use the packed layout of {@link FixedNodeCodec}: keys take
+     * only as many bytes as the length needs. The optimal degree then grows as the subsequences get shorter.
+     *
+     * @param subsequenceLength the length of the subsequences, 1-63, or 0 if unknown
+     * @return                  these options
+     */
+    public BTreeOptions subsequenceLength(int subsequenceLength) {
+        this.subsequenceLength = subsequenceLength;
+        return this;
+    }
+
+    /**
+     * Set whether to store subsequences under their canonical key, which requires a subsequence length. The default
+     * is not to.
+     * <p>
+     * In canonical mode, a subsequence and its complement (per {@link SequenceUtils#getComplement(long, int)}) share a
+     * single key: {@link BTree#insert(TreeObject)} stores every subsequence under the lesser of the two encodings, and
+     * {@link BTree#search(long)} looks up the same key. A search for either then yields the combined frequency of both,
+     * and the {@link BTree} holds half as many distinct keys.
+     *
+     * @param canonical whether to store subsequences under their canonical key
+     * @return          these options
+     */
+    public BTreeOptions canonical(boolean canonical) {
+        this.canonical = canonical;
+        return this;
+    }
+
+    /**
+     * Set whether to store nodes in compressed pages. The default is not to.
+     * <p>
+     * In compressed mode, each node is a page into which its keys are delta encoded (see {@link CompressedNodeCodec}),
+     * so a node holds as many keys as fit in the page rather than a number fixed by the degree. The degree then only
+     * caps how many keys a node may hold; if it is 0, it is the largest that could fit in a page.
+     *
+     * @param compressed    whether to store nodes in compressed pages
+     * @return              these options
+     */
+    public BTreeOptions compressed(boolean compressed) {
+        this.compressed = compressed;
+        return this;
+    }
+
+    /**
+     * Set the most any frequency can reach, e.g. the number of subsequences to be inserted. The default is 0, for
+     * unknown.
+     * <p>
+     * In the packed layout of {@link FixedNodeCodec}, frequencies take only as many bytes as the bound needs.
+     *
+     * @param maxFrequency  the most any frequency can reach, or 0 if unknown
+     * @return              these options
+     */
+    public BTreeOptions maxFrequency(long maxFrequency) {
+        this.maxFrequency = maxFrequency;
+        return this;
+    }
+
+    /**
+     * Set the size of the page every node starts on. The default is 0, for the default.
+     * <p>
+     * If a page size is given, the metadata takes up the first page and each node a page of its own, so that reading
+     * a node never touches two pages of the file. If the degree is 0, it is the largest whose nodes fit in a page. If
+     * the page size is 0, pages default to {@link BTree#DEFAULT_PAGE_SIZE} when the degree is 0 or nodes are
+     * compressed; otherwise nodes of the given degree are packed end to end after the metadata.
+     *
+     * @param pageSize  the size of a page in bytes, a power of two from {@link BTree#MIN_PAGE_SIZE} to
+     *                  {@link BTree#MAX_PAGE_SIZE}, or 0 for the default
+     * @return          these options
+     */
+    public BTreeOptions pageSize(int pageSize) {
+        this.pageSize = pageSize;
+        return this;
+    }
+
+    /**
+     * Get the length of the subsequences that will be stored.
+     *
+     * @return  the length of the subsequences, 1-63, or 0 if unknown
+     */
+    public int getSubsequenceLength() {
+        return subsequenceLength;
+    }
+
+    /**
+     * Get whether to store subsequences under their canonical key.
+     *
+     * @return  whether to store subsequences under their canonical key
+     */
+    public boolean isCanonical() {
+        return canonical;
+    }
+
+    /**
+     * Get whether to store nodes in compressed pages.
+     *
+     * @return  whether to store nodes in compressed pages
+     */
+    public boolean isCompressed() {
+        return compressed;
+    }
+
+    /**
+     * Get the most any frequency can reach.
+     *
+     * @return  the most any frequency can reach, or 0 if unknown
+     */
+    public long getMaxFrequency() {
+        return maxFrequency;
+    }
+
+    /**
+     * Get the size of the page every node starts on.
+     *
+     * @return  the size of a page in bytes, or 0 for the default
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+}
@@ -10,6 +10,10 @@ import java.util.Iterator;
 
 /**
  * A utility class for creating a SQLite database file from a BTree at the end of its lifecycle.
+ * <p>
+ * Each key is stored in a row of the Sequences table under its encoding. A BTree with wide keys (see
+ * {@link TreeObject#getSubsequenceHigh()}) stores the high 64 bits of each encoding in an additional High column, as
+ * SQLite integers are only 64 bits wide.
  *
  * @author Derek Caplinger
  * @author Matt Youngberg
@@ -31,6 +35,11 @@ public class BTreeSQLiteDBBuilder {
      */
     private static final String CREATE_TABLE = "CREATE TABLE Sequences (Encoding INTEGER PRIMARY KEY, Frequency INTEGER NOT NULL);";
 
+    /**
+     * Creates the Sequences table for a BTree with wide keys if it does not exist.
+     */
+    private static final String CREATE_WIDE_TABLE = "CREATE TABLE Sequences (High INTEGER NOT NULL, Encoding INTEGER NOT NULL, Frequency INTEGER NOT NULL, PRIMARY KEY (High, Encoding));";
+
     /**
      * Creates an index on the Encoding column of the Sequences table if it does not exist.
      */
@@ -57,11 +66,11 @@ public class BTreeSQLiteDBBuilder {
             connection.setAutoCommit(false);
 
             // Initialize database with table and index
-            initializeDB(connection);
+            initializeDB(connection, btree.isWide());
 
             // Insert all elements from the BTree into the database
             Iterator<TreeObject> iter = btree.iterator();
-            batchInsert(connection, iter);
+            batchInsert(connection, iter, btree.isWide());
         }
     }
 
@@ -85,13 +94,14 @@ public class BTreeSQLiteDBBuilder {
      * Create the Sequences table and index. Drops the Sequences table and its index if they already exist.
      *
      * @param connection    the connection to the database
+     * @param wide          whether the BTree has wide keys
      * @throws SQLException if an error occurs while creating the database
      */
-    private static void initializeDB(Connection connection) throws SQLException {
+    private static void initializeDB(Connection connection, boolean wide) throws SQLException {
         try (Statement tableStmt = connection.createStatement()) {
             tableStmt.execute(DROP_TABLE);
             tableStmt.execute(DROP_INDEX);
-            tableStmt.execute(CREATE_TABLE);
+            tableStmt.execute(wide ? CREATE_WIDE_TABLE : CREATE_TABLE);
             tableStmt.execute(CREATE_INDEX);
             connection.commit();
         }
@@ -102,9 +112,10 @@ public class BTreeSQLiteDBBuilder {
      *
      * @param connection    the connection to the database
      * @param iter          the iterator over the BTree
+     * @param wide          whether the BTree has wide keys
      * @throws SQLException if an error occurs while inserting into the database
      */
-    private static void batchInsert(Connection connection, Iterator<TreeObject> iter) throws SQLException {
+    private static void batchInsert(Connection connection, Iterator<TreeObject> iter, boolean wide) throws SQLException {
         StringBuilder sb = new StringBuilder();
         int count = 0;
 
@@ -112,11 +123,12 @@ public class BTreeSQLiteDBBuilder {
             if (count == 0) {
                 // Start a new batch
                 sb.setLength(0); // Reset the StringBuilder
-                sb.append("INSERT INTO Sequences (Encoding, Frequency) VALUES ");
+                sb.append(wide ? "INSERT INTO Sequences (High, Encoding, Frequency) VALUES "
+                               : "INSERT INTO Sequences (Encoding, Frequency) VALUES ");
             }
 
             TreeObject obj = iter.next();
-            sb.append(encodeTreeObject(obj));
+            sb.append(encodeTreeObject(obj, wide));
             count++;
 
             // Check if the batch is full or if there are no more elements
@@ -137,9 +149,13 @@ public class BTreeSQLiteDBBuilder {
      * Encode a TreeObject as a string for insertion into the database.
      *
      * @param obj   the TreeObject to encode
+     * @param wide  whether to include the high bits of the subsequence
      * @return      the String encoding of the TreeObject to be included in an INSERT statement
      */
-    private static String encodeTreeObject(TreeObject obj) {
+    private static String encodeTreeObject(TreeObject obj, boolean wide) {
+        if (wide) {
+            return "(" + obj.getSubsequenceHigh() + ", " + obj.getSubsequence() + ", " + obj.getCount() + ")";
+        }
         return "(" + obj.getSubsequence() + ", " + obj.getCount() + ")";
     }
 }
@@ -0,0 +1,368 @@
+package cs321.btree;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A pool of memory for caching the {@link BTreeNode}s of many {@link BTree}s at once, under one budget in bytes, like
+ * the buffer manager of a database.
+ * <p>
+ * Each {@link BTree} given the pool by {@link BTree#useBufferPool(BufferPool)} is registered with an id of its own,
+ * and its nodes are cached in frames keyed by that id and their position in its file. Frames are evicted least
+ * recently used first across every tree, so memory goes to whichever trees are being used most, rather than being
+ * split between them up front; a tree that sits idle gives up its frames to the others as they need them. A dirty
+ * frame is written back through the {@link NodeWriteBuffer} of the tree it belongs to, whichever tree's access evicted
+ * it.
+ * <p>
+ * Frames hold their nodes encoded, as they are on disk, in byte arrays on the heap, and decode them on access, as an
+ * {@link OffHeapNodeCache} does; each frame counts against the budget as the bytes of its encoded node, which is the
+ * memory it holds but for a few dozen bytes of bookkeeping. A decoded node would take several times that. The arrays
+ * hold no references for the garbage collector to trace, and an evicted frame's array is reused for the next node of
+ * the same size. Trees with nodes of different sizes can share a pool, which is why the frames aren't slots of slabs.
+ * <p>
+ * Like the trees that share it, a pool is used from one thread only.
+ *
+ * @author Derek Caplinger
+ * @author Matt Youngberg
+ */
+public class BufferPool {
+
+    /**
+     * The cached frames by tree and position, in order of access across every tree.
+     */
+    private final LinkedHashMap<PageKey, Frame> frames = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * The budget of the pool in bytes.
+     */
+    private final long capacity;
+
+    /**
+     * The bytes of the encoded nodes of the frames of the pool.
+     */
+    private long used = 0;
+
+    /**
+     * The id to give the next tree registered.
+     */
+    private int nextTreeId = 0;
+
+    /**
+     * The number of trees registered and not yet closed.
+     */
+    private int trees = 0;
+
+    /**
+     * Create a new {@link BufferPool}.
+     *
+     * @param capacity  the budget of the pool in bytes
+     */
+    public BufferPool(long capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Get the budget of the pool.
+     *
+     * @return  the budget of the pool in bytes
+     */
+    public long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Get the bytes of the encoded nodes of the frames of the pool, at most its budget.
+     *
+     * @return  the bytes used
+     */
+    public long getUsed() {
+        return used;
+    }
+
+    /**
+     * Get the number of frames in the pool, across every tree.
+     *
+     * @return  the number of frames
+     */
+    public int getFrameCount() {
+        return frames.size();
+    }
+
+    /**
+     * Get the number of trees using the pool.
+     *
+     * @return  the number of trees registered and not yet closed
+     */
+    public int getTreeCount() {
+        return trees;
+    }
+
+    /**
+     * Register a tree with the pool.
+     *
+     * @param codec         the {@link NodeCodec} the tree's nodes are encoded with
+     * @param writeBuffer   the {@link NodeWriteBuffer} to write the tree's dirty nodes back to
+     * @param metrics       the {@link BTreeMetrics} to record the tree's evictions in
+     * @return              the cache of the tree, its share of the pool
+     */
+    NodeCache register(NodeCodec codec, NodeWriteBuffer writeBuffer, BTreeMetrics metrics) {
+        if (codec.getNodeSize() > capacity) {
+            throw new IllegalArgumentException("pool of " + capacity + " bytes can't hold a node of "
+                    + codec.getNodeSize());
+        }
+        trees++;
+        return new Partition(nextTreeId++, codec, writeBuffer, metrics);
+    }
+
+    /**
+     * Make room in the pool for a node, evicting least recently used frames until it fits within the budget.
+     *
+     * @param nodeSize      the size of the encoded node
+     * @return              an array of the size to encode the node into, taken from an evicted frame if one was
+     * @throws IOException  if an I/O error occurs writing back an evicted node
+     */
+    private byte[] reserve(int nodeSize) throws IOException {
+        byte[] reused = null;
+        Iterator<Frame> eldest = frames.values().iterator();
+        while (used + nodeSize > capacity) {
+            Frame frame = eldest.next();
+            eldest.remove();
+            frame.owner.evict(frame);
+            if (frame.bytes.length == nodeSize) {
+                reused = frame.bytes;
+            }
+        }
+        used += nodeSize;
+        return reused != null ? reused : new byte[nodeSize];
+    }
+
+    /**
+     * The key of a frame: the tree it belongs to, and the position of its node in the tree's file.
+     */
+    private static final class PageKey {
+
+        /**
+         * The id of the tree.
+         */
+        private final int treeId;
+
+        /**
+         * The position of the node in the tree's file.
+         */
+        private final long position;
+
+        /**
+         * Create a new {@link PageKey}.
+         *
+         * @param treeId    the id of the tree
+         * @param position  the position of the node
+         */
+        private PageKey(int treeId, long position) {
+            this.treeId = treeId;
+            this.position = position;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof PageKey)) {
+                return false;
+            }
+            PageKey other = (PageKey) o;
+            return treeId == other.treeId && position == other.position;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int hashCode() {
+            return 31 * treeId + Long.hashCode(position);
+        }
+    }
+
+    /**
+     * A cached node, encoded, and the tree it belongs to.
+     */
+    private static final class Frame {
+
+        /**
+         * The share of the pool of the tree the node belongs to.
+         */
+        private final Partition owner;
+
+        /**
+         * The position of the node in the tree's file.
+         */
+        private final long position;
+
+        /**
+         * The encoded node.
+         */
+        private final byte[] bytes;
+
+        /**
+         * Whether the node has changed since it was last written back.
+         */
+        private boolean dirty;
+
+        /**
+         * Create a new {@link Frame}.
+         *
+         * @param owner     the share of the pool of the tree
+         * @param position  the position of the node
+         * @param bytes     the array to encode the node into
+         */
+        private Frame(Partition owner, long position, byte[] bytes) {
+            this.owner = owner;
+            this.position = position;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * The share of the pool of one tree: its {@link NodeCache}, which caches the tree's nodes in frames of the pool.
+     */
+    private final class Partition implements NodeCache {
+
+        /**
+         * The id of the tree in the pool.
+         */
+        private final int treeId;
+
+        /**
+         * The {@link NodeCodec} the tree's nodes are encoded with.
+         */
+        private final NodeCodec codec;
+
+        /**
+         * The {@link NodeWriteBuffer} the tree's dirty nodes are written back to.
+         */
+        private final NodeWriteBuffer writeBuffer;
+
+        /**
+         * The {@link BTreeMetrics} the tree's evictions are recorded in.
+         */
+        private final BTreeMetrics metrics;
+
+        /**
+         * Whether the tree has closed its cache, leaving the pool.
+         */
+        private boolean closed = false;
+
+        /**
+         * Create a new {@link Partition}.
+         *
+         * @param treeId        the id of the tree
+         * @param codec         the {@link NodeCodec} the tree's nodes are encoded with
+         * @param writeBuffer   the {@link NodeWriteBuffer} to write the tree's dirty nodes back to
+         * @param metrics       the {@link BTreeMetrics} to record the tree's evictions in
+         */
+        private Partition(int treeId, NodeCodec codec, NodeWriteBuffer writeBuffer, BTreeMetrics metrics) {
+            this.treeId = treeId;
+            this.codec = codec;
+            this.writeBuffer = writeBuffer;
+            this.metrics = metrics;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public BTreeNode get(long position) {
+            Frame frame = frames.get(new PageKey(treeId, position));
+            if (frame == null) {
+                return null;
+            }
+            BTreeNode node = codec.read(ByteBuffer.wrap(frame.bytes));
+            node.dirty = frame.dirty;
+            return node;
+        }
+
+        /**
+         * {@inheritDoc}
+         * <p>
+         * The node is encoded into its frame, so changes made to it afterwards must be put again to be cached. Frames
+         * of any tree may be evicted to make room for the node.
+         */
+        @Override
+        public boolean put(long position, BTreeNode node) throws IOException {
+            if (closed) {
+                throw new IllegalStateException("cache is closed");
+            }
+            PageKey key = new PageKey(treeId, position);
+            Frame frame = frames.get(key);
+            boolean cached = frame != null;
+            if (!cached) {
+                frame = new Frame(this, position, reserve(codec.getNodeSize()));
+                frames.put(key, frame);
+            }
+            codec.write(node, ByteBuffer.wrap(frame.bytes));
+            frame.dirty |= node.dirty;  // A dirty frame stays dirty until it is written back
+            return cached;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void flush() throws IOException {
+            for (Frame frame : frames.values()) {
+                if (frame.owner == this && frame.dirty) {
+                    // The write buffer puts them in order of position
+                    writeBuffer.putEncoded(frame.position, ByteBuffer.wrap(frame.bytes));
+                    frame.dirty = false;
+                }
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         * <p>
+         * The tree's frames are returned to the pool for the other trees, and the tree leaves it.
+         */
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            Iterator<Frame> iterator = frames.values().iterator();
+            while (iterator.hasNext()) {
+                Frame frame = iterator.next();
+                if (frame.owner == this) {
+                    iterator.remove();
+                    used -= frame.bytes.length;
+                }
+            }
+            closed = true;
+            trees--;
+        }
+
+        /**
+         * Evict a frame of the tree, already removed from the pool, writing its node back if it is dirty; a clean node
+         * is the same as the one on disk.
+         *
+         * @param frame         the frame
+         * @throws IOException  if an I/O error occurs
+         */
+        private void evict(Frame frame) throws IOException {
+            BTreeEvents.NodeEviction event = BTreeEvents.EVENTS.nodeEviction();
+            used -= frame.bytes.length;
+            boolean dirty = frame.dirty;
+            metrics.recordEviction(dirty);
+            if (dirty) {
+                writeBuffer.putEncoded(frame.position, ByteBuffer.wrap(frame.bytes));
+                frame.dirty = false;
+            }
+            event.commit(frame.position, dirty);
+        }
+    }
+}
@@ -0,0 +1,355 @@
+package cs321.btree;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link NodeCodec} that packs the keys of a {@link BTreeNode} into a fixed-size page by delta encoding them.
+ * <p>
+ * The keys of a node are sorted, and neighbouring keys of a large tree tend to be close together, so storing each key as
+ * its difference from the one before it takes only a few bytes. Frequencies are mostly small and are stored the same
+ * way. Every number on the page is an unsigned variable-length integer (seven bits per byte, low bits first, high bit
+ * set on all bytes but the last), so the layout of a page is:
+ * <p>
+ * <pre>
+ * +--------+----------+----------------------------------+---------------------+---------+
+ * | Header | KeyCount | (KeyDelta, Frequency) x KeyCount | Child x (KeyCount+1) | Padding |
+ * |   1B   |  varint  |          varint, varint          |       varint        |         |
+ * +--------+----------+----------------------------------+---------------------+---------+
+ * </pre>
+ * <p>
+ * The header holds whether the node is a leaf; children are only written for internal nodes. The first key's delta is
+ * from zero. A key is treated as one unsigned 128-bit number, high bits then low bits, so wide keys delta encode the
+ * same way narrow keys do. Children are written as page numbers counted from the first page of the tree rather than as
+ * positions, which keeps them small.
+ * <p>
+ * Because how many keys fit in a page depends on the keys, a node is full when it might not have room for one more key
+ * (see {@link CompressedNodeCodec#isFull(BTreeNode)}) rather than when some number of slots are taken. The minimum
+ * degree of the tree then only sizes the key and child arrays of a {@link BTreeNode} in memory, and should be at most
+ * {@link CompressedNodeCodec#getMaxDegree(int)} so that those arrays can hold a full page.
+ *
+ * @author Derek Caplinger
+ * @author Matt Youngberg
+ */
+class CompressedNodeCodec implements NodeCodec {
+
+    /**
+     * The bit of the header that is set when the node is a leaf.
+     */
+    private static final int LEAF_FLAG = 1;
+
+    /**
+     * The most bytes a variable-length long can take up.
+     */
+    private static final int MAX_VAR_LONG_SIZE = 10;
+
+    /**
+     * The most bytes a variable-length int can take up.
+     */
+    private static final int MAX_VAR_INT_SIZE = 5;
+
+    /**
+     * The most bytes a variable-length 128-bit number can take up.
+     */
+    private static final int MAX_VAR_WIDE_SIZE = 19;
+
+    /**
+     * The most bytes the header, key count and the one child not paired with a key can take up.
+     */
+    private static final int MAX_OVERHEAD_SIZE = 1 + MAX_VAR_INT_SIZE + MAX_VAR_LONG_SIZE;
+
+    /**
+     * The size of a page in bytes.
+     */
+    private final int pageSize;
+
+    /**
+     * The minimum degree of the {@link BTree}.
+     */
+    private final int t;
+
+    /**
+     * Whether the keys of the {@link BTree} are wide.
+     */
+    private final boolean wide;
+
+    /**
+     * The position on disk of the first page of the {@link BTree}, from which children are counted.
+     */
+    private final long firstPagePosition;
+
+    /**
+     * The most bytes one key with its frequency and one child can take up.
+     */
+    private final int maxEntrySize;
+
+    /**
+     * The number of keys below which a node is never full, however large its keys.
+     */
+    private final int safeKeyCount;
+
+    /**
+     * Create a new {@link CompressedNodeCodec}.
+     *
+     * @param pageSize          the size of a page in bytes
+     * @param t                 the minimum degree of the {@link BTree}, at most
+     *                          {@link CompressedNodeCodec#getMaxDegree(int)}
+     * @param wide              whether the keys of the {@link BTree} are wide
+     * @param firstPagePosition the position on disk of the first page of the {@link BTree}
+     */
+    CompressedNodeCodec(int pageSize, int t, boolean wide, long firstPagePosition) {
+        if (t < 2 || t > getMaxDegree(pageSize)) {
+            throw new IllegalArgumentException("Degree must be between 2 and " + getMaxDegree(pageSize)
+                    + " for compressed pages of " + pageSize + " bytes");
+        }
+        this.pageSize = pageSize;
+        this.t = t;
+        this.wide = wide;
+        this.firstPagePosition = firstPagePosition;
+        this.maxEntrySize = (wide ? MAX_VAR_WIDE_SIZE : MAX_VAR_LONG_SIZE) + MAX_VAR_INT_SIZE + MAX_VAR_LONG_SIZE;
+        this.safeKeyCount = (pageSize - MAX_OVERHEAD_SIZE) / maxEntrySize - 1;
+    }
+
+    /**
+     * Get the largest minimum degree worth using with pages of the given size, i.e. the smallest one for which a
+     * {@link BTreeNode} can hold as many keys as could ever fit in a page.
+     * <p>
+     * The smallest a key can be on a page is two bytes: a one-byte delta and a one-byte frequency.
+     *
+     * @param pageSize  the size of a page in bytes
+     * @return          the largest minimum degree worth using
+     */
+    static int getMaxDegree(int pageSize) {
+        int maxKeyCount = (pageSize - 2) / 2;
+        return (maxKeyCount + 1) / 2;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getNodeSize() {
+        return pageSize;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * A node is full when all <code>2t-1</code> of its key slots are taken, or when one more key, child and a larger
+     * frequency might not fit in its page.
+     */
+    @Override
+    public boolean isFull(BTreeNode node) {
+        if (node.keyCount >= BTreeNode.getMaxKeyCount(t)) {
+            return true;
+        }
+        if (node.keyCount < safeKeyCount) {
+            return false;
+        }
+        return getEncodedSize(node) + maxEntrySize > pageSize;
+    }
+
+    /**
+     * Get the number of bytes the given node takes up on its page, not counting padding.
+     *
+     * @param node  the node to measure
+     * @return      the number of bytes the node takes up
+     */
+    int getEncodedSize(BTreeNode node) {
+        int size = 1 + getVarLongSize(node.keyCount);
+        long previousHigh = 0;
+        long previousLow = 0;
+        for (int i = 0; i < node.keyCount; i++) {
+            TreeObject key = node.keys[i];
+            long high = key.getSubsequenceHigh();
+            long low = key.getSubsequence();
+            size += getVarWideSize(deltaHigh(high, low, previousHigh, previousLow), low - previousLow);
+            size += getVarLongSize(key.getCount());
+            previousHigh = high;
+            previousLow = low;
+        }
+        if (!node.leaf) {
+            for (int i = 0; i <= node.keyCount; i++) {
+                size += getVarLongSize(toPageNumber(node.childPositions[i]));
+            }
+        }
+        return size;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(BTreeNode node, ByteBuffer buffer) {
+        int start = buffer.position();
+        buffer.put((byte) (node.leaf ? LEAF_FLAG : 0));
+        putVarLong(buffer, node.keyCount);
+        long previousHigh = 0;
+        long previousLow = 0;
+        for (int i = 0; i < node.keyCount; i++) {
+            TreeObject key = node.keys[i];
+            long high = key.getSubsequenceHigh();
+            long low = key.getSubsequence();
+            putVarWide(buffer, deltaHigh(high, low, previousHigh, previousLow), low - previousLow);
+            putVarLong(buffer, key.getCount());
+            previousHigh = high;
+            previousLow = low;
+        }
+        if (!node.leaf) {
+            for (int i = 0; i <= node.keyCount; i++) {
+                putVarLong(buffer, toPageNumber(node.childPositions[i]));
+            }
+        }
+        if (buffer.position() - start > pageSize) {
+            throw new IllegalStateException("Node of " + node.keyCount + " keys does not fit in a page of "
+                    + pageSize + " bytes");
+        }
+        while (buffer.position() - start < pageSize) {
+            buffer.put((byte) 0);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BTreeNode read(ByteBuffer buffer) {
+        int start = buffer.position();
+        boolean leaf = (buffer.get() & LEAF_FLAG) != 0;
+        int keyCount = (int) getVarLong(buffer);
+
+        TreeObject[] keys = new TreeObject[BTreeNode.getMaxKeyCount(t)];
+        long[] children = new long[BTreeNode.getMaxChildCount(t)];
+
+        long high = 0;
+        long low = 0;
+        for (int i = 0; i < keyCount; i++) {
+            // Read the delta, then add it to the previous key as a 128-bit number
+            long deltaHigh = 0;
+            long deltaLow = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer.get();
+                long bits = b & 0x7FL;
+                if (shift < Long.SIZE) {
+                    deltaLow |= bits << shift;
+                }
+                if (shift > 0 && shift + 7 > Long.SIZE) {
+                    deltaHigh |= shift >= Long.SIZE ? bits << (shift - Long.SIZE) : bits >>> (Long.SIZE - shift);
+                }
+                shift += 7;
+            } while ((b & 0x80) != 0);
+
+            long previousLow = low;
+            low += deltaLow;
+            high += deltaHigh + (Long.compareUnsigned(low, previousLow) < 0 ? 1 : 0);
+            int frequency = (int) getVarLong(buffer);
+            keys[i] = new TreeObject(high, low, frequency);
+        }
+        if (!leaf) {
+            for (int i = 0; i <= keyCount; i++) {
+                children[i] = firstPagePosition + getVarLong(buffer) * pageSize;
+            }
+        }
+        buffer.position(start + pageSize);
+
+        return new BTreeNode(keys, children);
+    }
+
+    /**
+     * Get the page number of the page at the given position on disk.
+     *
+     * @param position  the position on disk of the page
+     * @return          its page number
+     */
+    private long toPageNumber(long position) {
+        return (position - firstPagePosition) / pageSize;
+    }
+
+    /**
+     * Get the high bits of the difference between two 128-bit numbers.
+     *
+     * @param high          the high bits of the larger number
+     * @param low           the low bits of the larger number
+     * @param previousHigh  the high bits of the smaller number
+     * @param previousLow   the low bits of the smaller number
+     * @return              the high bits of their difference
+     */
+    private static long deltaHigh(long high, long low, long previousHigh, long previousLow) {
+        return high - previousHigh - (Long.compareUnsigned(low, previousLow) < 0 ? 1 : 0);
+    }
+
+    /**
+     * Write an unsigned variable-length long to the given {@link ByteBuffer}.
+     *
+     * @param buffer    the buffer to write to
+     * @param value     the value to write, treated as unsigned
+     */
+    private static void putVarLong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Read an unsigned variable-length long from the given {@link ByteBuffer}.
+     *
+     * @param buffer    the buffer to read from
+     * @return          the value read
+     */
+    private static long getVarLong(ByteBuffer buffer) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (b & 0x7FL) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    /**
+     * Get the number of bytes an unsigned variable-length long takes up.
+     *
+     * @param value the value, treated as unsigned
+     * @return      the number of bytes it takes up
+     */
+    private static int getVarLongSize(long value) {
+        int bits = Long.SIZE - Long.numberOfLeadingZeros(value);
+        return bits == 0 ? 1 : (bits + 6) / 7;
+    }
+
+    /**
+     * Write an unsigned variable-length 128-bit number to the given {@link ByteBuffer}.
+     *
+     * @param buffer    the buffer to write to
+     * @param high      the high bits of the value
+     * @param low       the low bits of the value
+     */
+    private static void putVarWide(ByteBuffer buffer, long high, long low) {
+        while (high != 0 || (low & ~0x7FL) != 0) {
+            buffer.put((byte) ((low & 0x7F) | 0x80));
+            low = (low >>> 7) | (high << (Long.SIZE - 7));
+            high >>>= 7;
+        }
+        buffer.put((byte) low);
+    }
+
+    /**
+     * Get the number of bytes an unsigned variable-length 128-bit number takes up.
+     *
+     * @param high  the high bits of the value
+     * @param low   the low bits of the value
+     * @return      the number of bytes it takes up
+     */
+    private static int getVarWideSize(long high, long low) {
+        if (high == 0) {
+            return getVarLongSize(low);
+        }
+        int bits = 2 * Long.SIZE - Long.numberOfLeadingZeros(high);
+        return (bits + 6) / 7;
+    }
+}
@@ -0,0 +1,329 @@
+package cs321.btree;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A layout of a {@link BTreeNode} on disk with a fixed-size slot for each of its <code>2t-1</code> keys, followed by a
+ * slot for each of its <code>2t</code> children. A node is full when all of its key slots are taken.
+ * <p>
+ * There are two variants of this layout:
+ * <ul>
+ *     <li>The original one (see {@link BTreeNode#writeToByteBuffer(ByteBuffer, boolean)}), with 8B keys (16B if
+ *     wide), 4B frequencies and children as 8B positions, used when the length of the subsequences in the
+ *     {@link BTree} is not known.</li>
+ *     <li>A packed one, where keys are only as wide as the subsequences of the {@link BTree} need (see
+ *     {@link FixedNodeCodec#getKeyWidth(int)}), frequencies are only as wide as the most a frequency can be (see
+ *     {@link FixedNodeCodec#getCountWidth(long)}), and children are 4B node numbers.</li>
+ * </ul>
+ * <p>
+ * Packing lets the short subsequences that most trees hold fit two or three times as many keys into the same space as
+ * the original layout. The packed layout looks like so, where <code>K</code> and <code>C</code> are the key and count
+ * widths:
+ * <p>
+ * <pre>
+ * +-------------------------------+--------------+
+ * |  (Subsequence, Freq) x (2t-1) |  Child x 2t  |
+ * |          (K + C)B             |     4B       |
+ * +-------------------------------+--------------+
+ * </pre>
+ * <p>
+ * A child is written as one more than its node number, counted from the first node of the {@link BTree}, so that 0
+ * still means no child. Nodes need not be packed end to end on disk, e.g. if each takes up a page, so node numbers
+ * are counted in slots rather than node sizes. Keys wider than 8B are written high bits first.
+ *
+ * @author Derek Caplinger
+ * @author Matt Youngberg
+ */
+class FixedNodeCodec implements NodeCodec {
+
+    /**
+     * The size of a child slot in the packed layout, in bytes.
+     */
+    private static final int CHILD_WIDTH = Integer.BYTES;
+
+    /**
+     * The minimum degree of the {@link BTree}.
+     */
+    private final int t;
+
+    /**
+     * Whether the keys of the {@link BTree} are wide.
+     */
+    private final boolean wide;
+
+    /**
+     * The width of a key in bytes, or 0 for the original layout.
+     */
+    private final int keyWidth;
+
+    /**
+     * The width of a frequency in bytes, or 0 for the original layout.
+     */
+    private final int countWidth;
+
+    /**
+     * The position on disk of the first node of the {@link BTree}, from which children are counted.
+     */
+    private final long firstNodePosition;
+
+    /**
+     * The distance on disk from the start of one node to the next, in bytes.
+     */
+    private final int slotSize;
+
+    /**
+     * The size of a node on disk, in bytes.
+     */
+    private final int nodeSize;
+
+    /**
+     * Create a new {@link FixedNodeCodec} for the original layout.
+     *
+     * @param t     the minimum degree of the {@link BTree}
+     * @param wide  whether the keys of the {@link BTree} are wide
+     */
+    FixedNodeCodec(int t, boolean wide) {
+        this.t = t;
+        this.wide = wide;
+        this.keyWidth = 0;
+        this.countWidth = 0;
+        this.firstNodePosition = 0;
+        this.nodeSize = BTreeNode.getByteSize(t, wide);
+        this.slotSize = nodeSize;
+    }
+
+    /**
+     * Create a new {@link FixedNodeCodec} for the packed layout.
+     *
+     * @param t                 the minimum degree of the {@link BTree}
+     * @param keyWidth          the width of a key in bytes: 1, 2, 4, 8 or 16
+     * @param countWidth        the width of a frequency in bytes: 1, 2 or 4
+     * @param firstNodePosition the position on disk of the first node of the {@link BTree}
+     * @param slotSize          the distance on disk from the start of one node to the next, at least
+     *                          {@link FixedNodeCodec#getByteSize(int, int, int)}
+     */
+    FixedNodeCodec(int t, int keyWidth, int countWidth, long firstNodePosition, int slotSize) {
+        if (keyWidth != 1 && keyWidth != 2 && keyWidth != 4 && keyWidth != 8 && keyWidth != 16) {
+            throw new IllegalArgumentException("Key width must be 1, 2, 4, 8 or 16 bytes: " + keyWidth);
+        }
+        if (countWidth != 1 && countWidth != 2 && countWidth != 4) {
+            throw new IllegalArgumentException("Count width must be 1, 2 or 4 bytes: " + countWidth);
+        }
+        this.t = t;
+        this.wide = keyWidth > Long.BYTES;
+        this.keyWidth = keyWidth;
+        this.countWidth = countWidth;
+        this.firstNodePosition = firstNodePosition;
+        this.nodeSize = getByteSize(t, keyWidth, countWidth);
+        this.slotSize = slotSize;
+        if (slotSize < nodeSize) {
+            throw new IllegalArgumentException("Slot of " + slotSize + "B is smaller than a node of " + nodeSize + "B");
+        }
+    }
+
+    /**
+     * Get the size of a node in the packed layout.
+     *
+     * @param t             the minimum degree of the {@link BTree}
+     * @param keyWidth      the width of a key in bytes
+     * @param countWidth    the width of a frequency in bytes
+     * @return              the size of a node on disk in bytes
+     */
+    static int getByteSize(int t, int keyWidth, int countWidth) {
+        return (keyWidth + countWidth) * BTreeNode.getMaxKeyCount(t) + CHILD_WIDTH * BTreeNode.getMaxChildCount(t);
+    }
+
+    /**
+     * Get the narrowest key width, in bytes, that holds a subsequence of the given length.
+     *
+     * @param subsequenceLength the length of the subsequences, 1-63
+     * @return                  the key width: 1, 2, 4, 8 or 16
+     */
+    static int getKeyWidth(int subsequenceLength) {
+        int bits = 2 * subsequenceLength;
+        if (bits <= Byte.SIZE) {
+            return 1;
+        } else if (bits <= Short.SIZE) {
+            return 2;
+        } else if (bits <= Integer.SIZE) {
+            return 4;
+        } else if (bits < Long.SIZE) {
+            return 8;
+        }
+        return 2 * Long.BYTES;
+    }
+
+    /**
+     * Get the narrowest count width, in bytes, that holds the given frequency.
+     *
+     * @param maxFrequency  the most any frequency can be, or 0 if not known
+     * @return              the count width: 1, 2 or 4
+     */
+    static int getCountWidth(long maxFrequency) {
+        if (maxFrequency > 0 && maxFrequency <= 0xFF) {
+            return 1;
+        } else if (maxFrequency > 0 && maxFrequency <= 0xFFFF) {
+            return 2;
+        }
+        return Integer.BYTES;
+    }
+
+    /**
+     * Get the most a frequency can be when written in the given count width.
+     *
+     * @param countWidth    the count width: 1, 2 or 4, or 0 for the original layout
+     * @return              the most a frequency can be
+     */
+    static int getMaxFrequency(int countWidth) {
+        if (countWidth == 1) {
+            return 0xFF;
+        } else if (countWidth == 2) {
+            return 0xFFFF;
+        }
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getNodeSize() {
+        return nodeSize;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * A node is full when all <code>2t-1</code> of its key slots are taken.
+     */
+    @Override
+    public boolean isFull(BTreeNode node) {
+        return node.keyCount == BTreeNode.getMaxKeyCount(t);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalStateException    if a key or frequency of the node is too wide for its slot
+     */
+    @Override
+    public void write(BTreeNode node, ByteBuffer buffer) {
+        if (keyWidth == 0) {
+            node.writeToByteBuffer(buffer, wide);
+            return;
+        }
+        for (TreeObject key : node.keys) {
+            if (key == null) {
+                for (int i = 0; i < keyWidth + countWidth; i++) {
+                    buffer.put((byte) 0);
+                }
+            } else {
+                putKey(buffer, key);
+            }
+        }
+        for (long child : node.childPositions) {
+            buffer.putInt(child == 0 ? 0 : (int) ((child - firstNodePosition) / slotSize + 1));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BTreeNode read(ByteBuffer buffer) {
+        if (keyWidth == 0) {
+            return BTreeNode.fromByteBuffer(buffer, t, wide);
+        }
+        TreeObject[] keys = new TreeObject[BTreeNode.getMaxKeyCount(t)];
+        long[] children = new long[BTreeNode.getMaxChildCount(t)];
+
+        for (int i = 0; i < keys.length; i++) {
+            // As in the original layout, a frequency of 0 means an empty slot
+            long high = keyWidth > Long.BYTES ? buffer.getLong() : 0L;
+            long low = getUnsigned(buffer, Math.min(keyWidth, Long.BYTES));
+            int frequency = (int) getUnsigned(buffer, countWidth);
+            keys[i] = frequency == 0 ? null : new TreeObject(high, low, frequency);
+        }
+        for (int i = 0; i < children.length; i++) {
+            long child = Integer.toUnsignedLong(buffer.getInt());
+            children[i] = child == 0 ? 0 : firstNodePosition + (child - 1) * slotSize;
+        }
+
+        return new BTreeNode(keys, children);
+    }
+
+    /**
+     * Write a key and its frequency in the packed layout.
+     *
+     * @param buffer    the buffer to write to
+     * @param key       the key to write
+     */
+    private void putKey(ByteBuffer buffer, TreeObject key) {
+        int lowWidth = Math.min(keyWidth, Long.BYTES);
+        if (keyWidth > Long.BYTES) {
+            buffer.putLong(key.getSubsequenceHigh());
+        } else if (key.getSubsequenceHigh() != 0 || !fits(key.getSubsequence(), lowWidth)) {
+            throw new IllegalStateException("Subsequence does not fit in " + keyWidth + "B: "
+                    + Long.toHexString(key.getSubsequenceHigh()) + ":" + Long.toHexString(key.getSubsequence()));
+        }
+        if (!fits(key.getCount(), countWidth)) {
+            throw new IllegalStateException("Frequency does not fit in " + countWidth + "B: " + key.getCount());
+        }
+        putUnsigned(buffer, key.getSubsequence(), lowWidth);
+        putUnsigned(buffer, key.getCount(), countWidth);
+    }
+
+    /**
+     * Whether an unsigned value fits in the given number of bytes.
+     *
+     * @param value the value, treated as unsigned
+     * @param width the number of bytes: 1, 2, 4 or 8
+     * @return      whether it fits
+     */
+    private static boolean fits(long value, int width) {
+        return width == Long.BYTES || (value >>> (width * Byte.SIZE)) == 0;
+    }
+
+    /**
+     * Write the low bytes of a value.
+     *
+     * @param buffer    the buffer to write to
+     * @param value     the value to write
+     * @param width     the number of bytes to write: 1, 2, 4 or 8
+     */
+    private static void putUnsigned(ByteBuffer buffer, long value, int width) {
+        switch (width) {
+            case 1:
+                buffer.put((byte) value);
+                break;
+            case 2:
+                buffer.putShort((short) value);
+                break;
+            case 4:
+                buffer.putInt((int) value);
+                break;
+            default:
+                buffer.putLong(value);
+        }
+    }
+
+    /**
+     * Read an unsigned value of the given number of bytes.
+     *
+     * @param buffer    the buffer to read from
+     * @param width     the number of bytes to read: 1, 2, 4 or 8
+     * @return          the value read
+     */
+    private static long getUnsigned(ByteBuffer buffer, int width) {
+        switch (width) {
+            case 1:
+                return Byte.toUnsignedLong(buffer.get());
+            case 2:
+                return Short.toUnsignedLong(buffer.getShort());
+            case 4:
+                return Integer.toUnsignedLong(buffer.getInt());
+            default:
+                return buffer.getLong();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package cs321.btree;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Something that holds the frequencies of subsequences and can be searched for them: a {@link BTree}, or one of the
+ * read-only indexes in <code>cs321.index</code> exported from one.
+ * <p>
+ * Subsequences are given as the high and low 64 bits of their encoding (see {@link TreeObject#getSubsequenceHigh()});
+ * subsequences of up to 31 bases have a high of 0. An index of canonical keys finds a subsequence under its canonical
+ * key, whichever strand it is given as.
+ *
+ * @author Derek Caplinger
+ * @author Matt Youngberg
+ */
+public interface FrequencyIndex extends Closeable {
+
+    /**
+     * Search for a subsequence.
+     *
+     * @param high          the high 64 bits of the subsequence
+     * @param low           the low 64 bits of the subsequence
+     * @return              the {@link TreeObject} holding the subsequence and its frequency, or null if it is absent
+     * @throws IOException  if an I/O error occurs
+     */
+    TreeObject search(long high, long low) throws IOException;
+
+    /**
+     * Search for a batch of subsequences at once, which an index may do faster than one after another.
+     *
+     * @param high          the high 64 bits of each subsequence
+     * @param low           the low 64 bits of each subsequence
+     * @return              the {@link TreeObject} holding each subsequence, or null where it is absent
+     * @throws IOException  if an I/O error occurs
+     */
+    TreeObject[] searchBatch(long[] high, long[] low) throws IOException;
+
+    /**
+     * Get the number of distinct subsequences held.
+     *
+     * @return  the number of distinct subsequences
+     */
+    long getSize();
+
+    /**
+     * Get the length of the subsequences held.
+     *
+     * @return  the length of the subsequences, or 0 if unknown
+     */
+    int getSubsequenceLength();
+
+    /**
+     * Tell whether subsequences are held under their canonical keys.
+     *
+     * @return  whether subsequences are held under their canonical keys
+     */
+    boolean isCanonical();
+}
@@ -0,0 +1,134 @@
+package cs321.btree;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A {@link NodeCache} of a fixed number of {@link BTreeNode}s, held as they are on the heap and evicted least recently
+ * used first.
+ * <p>
+ * Nodes are cached by reference, so a cached node changed in place is up to date in the cache already. That makes
+ * this the cheapest cache per access, but every node is an object graph for the garbage collector to trace, which
+ * limits how large it can usefully grow; see {@link OffHeapNodeCache} for large caches.
+ *
+ * @author Derek Caplinger
+ * @author Matt Youngberg
+ */
+class HeapNodeCache implements NodeCache {
+
+    /**
+     * The cached nodes by position, in order of access.
+     */
+    private final LinkedHashMap<Long, BTreeNode> nodes;
+
+    /**
+     * The {@link NodeWriteBuffer} dirty nodes are written back to.
+     */
+    private final NodeWriteBuffer writeBuffer;
+
+    /**
+     * The {@link BTreeMetrics} evictions are recorded in.
+     */
+    private final BTreeMetrics metrics;
+
+    /**
+     * Create a new {@link HeapNodeCache}.
+     *
+     * @param capacity      the number of nodes to hold
+     * @param writeBuffer   the {@link NodeWriteBuffer} to write dirty nodes back to
+     * @param metrics       the {@link BTreeMetrics} to record evictions in
+     */
+    HeapNodeCache(int capacity, NodeWriteBuffer writeBuffer, BTreeMetrics metrics) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.writeBuffer = writeBuffer;
+        this.metrics = metrics;
+        this.nodes = new LinkedHashMap<Long, BTreeNode>(capacity, 1.0f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, BTreeNode> eldest) {
+                if (size() <= capacity) {
+                    return false;
+                }
+                try {
+                    evict(eldest.getKey(), eldest.getValue());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);  // Coerce to a RuntimeException to meet interface
+                }
+                return true;
+            }
+        };
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BTreeNode get(long position) {
+        return nodes.get(position);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Putting a node counts as an access, so the node becomes the most recently used, whether or not one was already
+     * cached at the position. A node already cached there is most likely the same node, changed in place.
+     */
+    @Override
+    public boolean put(long position, BTreeNode node) throws IOException {
+        BTreeNode cached = nodes.containsKey(position) ? nodes.get(position) : null;
+        if (cached == node) {
+            return true;
+        }
+        if (cached != null && cached.dirty) {
+            node.dirty = true;  // Not to lose changes made through the node replaced
+        }
+        try {
+            nodes.put(position, node);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return cached != null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void flush() throws IOException {
+        for (Map.Entry<Long, BTreeNode> entry : nodes.entrySet()) {
+            if (entry.getValue().dirty) {
+                writeBuffer.put(entry.getKey(), entry.getValue());  // The write buffer puts them in order of position
+                entry.getValue().dirty = false;
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        nodes.clear();
+    }
+
+    /**
+     * Evict a node, writing it back if it is dirty; a clean node is the same as the one on disk.
+     *
+     * @param position      the position in the file of the node
+     * @param node          the node
+     * @throws IOException  if an I/O error occurs
+     */
+    private void evict(long position, BTreeNode node) throws IOException {
+        BTreeEvents.NodeEviction event = BTreeEvents.EVENTS.nodeEviction();
+        boolean dirty = node.dirty;
+        metrics.recordEviction(dirty);
+        if (dirty) {
+            writeBuffer.put(position, node);
+            node.dirty = false;
+        }
+        event.commit(position, dirty);
+    }
+}
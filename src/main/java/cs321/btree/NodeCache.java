@@ -0,0 +1,46 @@
+package cs321.btree;
+
+import java.io.IOException;
+
+/**
+ * A cache of the {@link BTreeNode}s of a {@link BTree}, by their position in its file.
+ * <p>
+ * A node changed while cached is marked dirty and written back when it is evicted, through the
+ * {@link NodeWriteBuffer} of the {@link BTree}, or when the cache is flushed. A cache is used from one thread only.
+ *
+ * @author Derek Caplinger
+ * @author Matt Youngberg
+ */
+interface NodeCache {
+
+    /**
+     * Get the node cached at the given position, counting it as used for eviction.
+     *
+     * @param position  the position in the file of the node
+     * @return          the node, or null if none is cached there
+     */
+    BTreeNode get(long position);
+
+    /**
+     * Cache a node at the given position, either as read from disk or, if {@link BTreeNode#dirty}, as changed since. A
+     * position cached dirty stays dirty until it is written back. If the cache is then over capacity, evict from it.
+     *
+     * @param position      the position in the file of the node
+     * @param node          the node
+     * @return              whether a node was already cached at the position
+     * @throws IOException  if an I/O error occurs writing back an evicted node
+     */
+    boolean put(long position, BTreeNode node) throws IOException;
+
+    /**
+     * Write back every dirty node to the {@link NodeWriteBuffer}, leaving it cached and clean.
+     *
+     * @throws IOException  if an I/O error occurs
+     */
+    void flush() throws IOException;
+
+    /**
+     * Release the memory of the cache. It is empty afterwards; flush it first to keep its dirty nodes.
+     */
+    void close();
+}
@@ -0,0 +1,60 @@
+package cs321.btree;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link NodeCodec} decides how a {@link BTreeNode} is laid out on disk, and therefore how many keys fit in one.
+ * <p>
+ * Every node of a {@link BTree} takes up the same number of bytes on disk, {@link NodeCodec#getNodeSize()}, so that
+ * nodes can be addressed by position without an index. What a codec is free to choose is how the keys and children of a
+ * node are packed into those bytes, and with it when a node counts as full and must be split on the way down an
+ * insertion.
+ * <p>
+ * Two codecs exist:
+ * <ul>
+ *     <li>{@link FixedNodeCodec}, the original layout, where every key has a fixed-size slot and a node is full when
+ *     all of its slots are taken.</li>
+ *     <li>{@link CompressedNodeCodec}, where keys are delta encoded into a page and a node is full when the page has
+ *     no room for one more key.</li>
+ * </ul>
+ *
+ * @author Derek Caplinger
+ * @author Matt Youngberg
+ */
+interface NodeCodec {
+
+    /**
+     * Get the number of bytes every node takes up on disk.
+     *
+     * @return  the size of a node on disk in bytes
+     */
+    int getNodeSize();
+
+    /**
+     * Whether a node is full, i.e. must be split before anything is inserted into it.
+     * <p>
+     * A node that is not full must have room for one more key, one more child, and an increase in the frequency of
+     * any one of its keys, as any of these can happen to it before the next time it is checked.
+     *
+     * @param node  the node to check
+     * @return      whether the node is full
+     */
+    boolean isFull(BTreeNode node);
+
+    /**
+     * Write a node to a {@link ByteBuffer} with at least {@link NodeCodec#getNodeSize()} bytes remaining. Exactly
+     * {@link NodeCodec#getNodeSize()} bytes are written, whatever the node holds.
+     *
+     * @param node      the node to write
+     * @param buffer    the buffer to write to
+     */
+    void write(BTreeNode node, ByteBuffer buffer);
+
+    /**
+     * Read a node from a {@link ByteBuffer} with at least {@link NodeCodec#getNodeSize()} bytes remaining.
+     *
+     * @param buffer    the buffer to read from
+     * @return          the node read
+     */
+    BTreeNode read(ByteBuffer buffer);
+}
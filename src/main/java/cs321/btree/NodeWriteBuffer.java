@@ -0,0 +1,211 @@
+package cs321.btree;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A {@link NodeWriteBuffer} collects the {@link BTreeNode}s a {@link BTree} writes to disk, and writes them out in
+ * batches sorted by their position in the file.
+ * <p>
+ * Writing each node as it is evicted from the cache means a seek and a small write at a random offset for every node.
+ * Held back until there are enough of them, the same writes can instead be made in order of position, and nodes that
+ * sit next to each other in the file (such as the nodes newly appended to its end) can be written together with one
+ * gathering write. On disks where seeks are expensive, this turns scattered writes into mostly sequential ones.
+ * <p>
+ * Nodes are encoded as soon as they are put in the buffer, each into a buffer the size of its slot on disk with zeros
+ * after the node, and the whole slot is written, so the {@link BTreeNode} itself is free to change afterwards. Until the buffer is flushed, the file is out of date for the
+ * nodes it holds, so reads must check {@link NodeWriteBuffer#get(long)} before going to disk.
+ *
+ * @author Derek Caplinger
+ * @author Matt Youngberg
+ */
+class NodeWriteBuffer {
+
+    /**
+     * The number of nodes held before the buffer flushes itself.
+     */
+    static final int DEFAULT_CAPACITY = 256;
+
+    /**
+     * The {@link FileChannel} nodes are written to.
+     */
+    private final FileChannel fileChannel;
+
+    /**
+     * The {@link NodeCodec} nodes are encoded with.
+     */
+    private final NodeCodec codec;
+
+    /**
+     * The distance on disk from the start of one node to the next; every encoded node is padded to this size.
+     */
+    private final int slotSize;
+
+    /**
+     * The number of nodes held before the buffer flushes itself.
+     */
+    private final int capacity;
+
+    /**
+     * The encoded nodes waiting to be written, by position.
+     */
+    private final TreeMap<Long, ByteBuffer> pending = new TreeMap<>();
+
+    /**
+     * Buffers from flushed nodes, kept to encode the next ones into.
+     */
+    private final ArrayDeque<ByteBuffer> freeBuffers = new ArrayDeque<>();
+
+    /**
+     * The {@link BTreeMetrics} that writes are recorded in.
+     */
+    private final BTreeMetrics metrics;
+
+    /**
+     * Create a new {@link NodeWriteBuffer}.
+     *
+     * @param fileChannel   the {@link FileChannel} to write nodes to
+     * @param codec         the {@link NodeCodec} to encode nodes with
+     * @param slotSize      the distance on disk from the start of one node to the next
+     * @param capacity      the number of nodes to hold before flushing
+     * @param metrics       the {@link BTreeMetrics} to record writes in
+     */
+    NodeWriteBuffer(FileChannel fileChannel, NodeCodec codec, int slotSize, int capacity, BTreeMetrics metrics) {
+        this.fileChannel = fileChannel;
+        this.codec = codec;
+        this.slotSize = slotSize;
+        this.capacity = capacity;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Encode a node to be written at the given position, replacing any node already waiting there. If the buffer is
+     * then full, flush it.
+     *
+     * @param position      the position in the file to write the node to
+     * @param node          the node to write
+     * @throws IOException  if an I/O error occurs while flushing
+     */
+    void put(long position, BTreeNode node) throws IOException {
+        ByteBuffer buffer = freeBuffers.isEmpty() ? ByteBuffer.allocate(slotSize) : freeBuffers.pop();
+        buffer.clear();
+        codec.write(node, buffer);
+        enqueue(position, buffer);
+    }
+
+    /**
+     * Copy a node already encoded to be written at the given position, replacing any node already waiting there. If
+     * the buffer is then full, flush it.
+     *
+     * @param position      the position in the file to write the node to
+     * @param encoded       the encoded node, from its position to its limit; left unchanged
+     * @throws IOException  if an I/O error occurs while flushing
+     */
+    void putEncoded(long position, ByteBuffer encoded) throws IOException {
+        ByteBuffer buffer = freeBuffers.isEmpty() ? ByteBuffer.allocate(slotSize) : freeBuffers.pop();
+        buffer.clear();
+        buffer.put(encoded.duplicate());
+        enqueue(position, buffer);
+    }
+
+    /**
+     * Pad an encoded node to its slot and queue it to be written, then flush the buffer if it is full.
+     *
+     * @param position      the position in the file to write the node to
+     * @param buffer        the buffer of the encoded node, positioned at its end
+     * @throws IOException  if an I/O error occurs while flushing
+     */
+    private void enqueue(long position, ByteBuffer buffer) throws IOException {
+        // Pad to the slot so that neighbouring slots can be written together; a reused buffer holds an old node
+        Arrays.fill(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.arrayOffset() + buffer.limit(),
+                (byte) 0);
+        buffer.position(buffer.limit());
+        buffer.flip();
+
+        ByteBuffer replaced = pending.put(position, buffer);
+        if (replaced != null) {
+            freeBuffers.push(replaced);
+        }
+        if (pending.size() >= capacity) {
+            flush();
+        }
+    }
+
+    /**
+     * Get the node waiting to be written at the given position, if any.
+     *
+     * @param position  the position in the file of the node
+     * @return          a new {@link BTreeNode} decoded from the waiting node, or null if none is waiting there
+     */
+    BTreeNode get(long position) {
+        ByteBuffer buffer = pending.get(position);
+        return buffer == null ? null : codec.read(buffer.duplicate());
+    }
+
+    /**
+     * Write every waiting node to disk in order of position, writing runs of adjacent nodes together.
+     *
+     * @throws IOException  if an I/O error occurs
+     */
+    void flush() throws IOException {
+        List<ByteBuffer> run = new ArrayList<>();
+        long runStart = -1;
+        long runEnd = -1;
+        for (Map.Entry<Long, ByteBuffer> entry : pending.entrySet()) {
+            if (entry.getKey() != runEnd) {
+                writeRun(runStart, run);
+                runStart = entry.getKey();
+            }
+            run.add(entry.getValue());
+            runEnd = entry.getKey() + slotSize;
+        }
+        writeRun(runStart, run);
+
+        freeBuffers.addAll(pending.values());
+        pending.clear();
+    }
+
+    /**
+     * Get the number of nodes waiting to be written.
+     *
+     * @return  the number of nodes waiting to be written
+     */
+    int size() {
+        return pending.size();
+    }
+
+    /**
+     * Write a run of adjacent nodes with gathering writes, then empty the run.
+     *
+     * @param position      the position in the file of the first node of the run
+     * @param run           the encoded nodes of the run, in order
+     * @throws IOException  if an I/O error occurs
+     */
+    private void writeRun(long position, List<ByteBuffer> run) throws IOException {
+        if (run.isEmpty()) {
+            return;
+        }
+        BTreeEvents.NodeWrite event = BTreeEvents.EVENTS.nodeWrite();
+        long start = System.nanoTime();
+        ByteBuffer[] buffers = run.toArray(new ByteBuffer[0]);
+        fileChannel.position(position);
+        // A gathering write may stop short, e.g. at the operating system's limit on buffers per write
+        int first = 0;
+        while (first < buffers.length) {
+            fileChannel.write(buffers, first, buffers.length - first);
+            while (first < buffers.length && !buffers[first].hasRemaining()) {
+                first++;
+            }
+        }
+        metrics.recordNodeWrites(run.size(), (long) run.size() * slotSize, System.nanoTime() - start);
+        event.commit(position, run.size(), (long) run.size() * slotSize);
+        run.clear();
+    }
+}
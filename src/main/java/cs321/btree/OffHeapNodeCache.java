@@ -0,0 +1,382 @@
+package cs321.btree;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A {@link NodeCache} sized in bytes, which holds {@link BTreeNode}s encoded, as they are on disk, in slabs of memory
+ * outside the heap, and decodes them on access.
+ * <p>
+ * A {@link HeapNodeCache} of many nodes is millions of objects for the garbage collector to trace, and collections
+ * take longer the larger it grows. This cache holds no objects per node at all: the encoded nodes live in direct
+ * {@link ByteBuffer}s, which the garbage collector doesn't look inside, and its bookkeeping is in a few primitive
+ * arrays. That lets it grow to hold a whole large tree in memory. In exchange, every access decodes a node, and every
+ * change to one encodes it again.
+ * <p>
+ * Memory is divided into slots of {@link NodeCodec#getNodeSize()} bytes, in slabs of up to {@link #MAX_SLAB_SIZE}
+ * bytes allocated as they are first needed, so a cache larger than its tree costs no more than the tree. Slots are
+ * found by position through an open addressing hash table, and evicted by the CLOCK algorithm, an approximation of
+ * least recently used that costs a bit per slot rather than a linked list.
+ * <p>
+ * Direct memory is limited by the JVM to the maximum heap size by default; run with
+ * <code>-XX:MaxDirectMemorySize</code> set to at least the size of the cache. If a slab can't be allocated, the cache
+ * stops growing at the slabs it has.
+ *
+ * @author Derek Caplinger
+ * @author Matt Youngberg
+ */
+class OffHeapNodeCache implements NodeCache {
+
+    /**
+     * The maximum size of a slab in bytes. A direct {@link ByteBuffer} is indexed by an int.
+     */
+    static final int MAX_SLAB_SIZE = 1 << 30;
+
+    /**
+     * The flag of a slot accessed since the clock hand last passed it.
+     */
+    private static final byte REFERENCED = 1;
+
+    /**
+     * The flag of a slot changed since it was last written back.
+     */
+    private static final byte DIRTY = 2;
+
+    /**
+     * The key of an empty entry of the hash table. No node is at position -1.
+     */
+    private static final long EMPTY = -1;
+
+    /**
+     * The {@link NodeCodec} nodes are encoded with.
+     */
+    private final NodeCodec codec;
+
+    /**
+     * The {@link NodeWriteBuffer} dirty nodes are written back to.
+     */
+    private final NodeWriteBuffer writeBuffer;
+
+    /**
+     * The {@link BTreeMetrics} evictions are recorded in.
+     */
+    private final BTreeMetrics metrics;
+
+    /**
+     * The size of a slot, the size of an encoded node.
+     */
+    private final int slotSize;
+
+    /**
+     * Zeros to pad an encoded node to the end of its slot with, so that a slot holds the same bytes as a node on disk.
+     */
+    private final byte[] padding;
+
+    /**
+     * The number of slots in a full slab.
+     */
+    private final int slotsPerSlab;
+
+    /**
+     * The number of slots the cache can hold.
+     */
+    private int capacity;
+
+    /**
+     * The slabs allocated so far, in order.
+     */
+    private ByteBuffer[] slabs;
+
+    /**
+     * The position of the node in each slot.
+     */
+    private final long[] slotPositions;
+
+    /**
+     * The {@link #REFERENCED} and {@link #DIRTY} flags of each slot.
+     */
+    private final byte[] slotFlags;
+
+    /**
+     * The number of slots used; until the cache is full, the first ones.
+     */
+    private int used = 0;
+
+    /**
+     * The slot the clock hand points to, the next to consider for eviction.
+     */
+    private int hand = 0;
+
+    /**
+     * The keys of the hash table: positions, or {@link #EMPTY}.
+     */
+    private final long[] tableKeys;
+
+    /**
+     * The values of the hash table: the slot of the node at the position of the same entry.
+     */
+    private final int[] tableSlots;
+
+    /**
+     * The number of bits of a hash, to index {@link #tableKeys}.
+     */
+    private final int tableBits;
+
+    /**
+     * Create a new {@link OffHeapNodeCache}. No memory is allocated for nodes until they are cached.
+     *
+     * @param bytes         the size of the cache in bytes
+     * @param codec         the {@link NodeCodec} to encode nodes with
+     * @param writeBuffer   the {@link NodeWriteBuffer} to write dirty nodes back to
+     * @param metrics       the {@link BTreeMetrics} to record evictions in
+     */
+    OffHeapNodeCache(long bytes, NodeCodec codec, NodeWriteBuffer writeBuffer, BTreeMetrics metrics) {
+        this.codec = codec;
+        this.writeBuffer = writeBuffer;
+        this.metrics = metrics;
+        this.slotSize = codec.getNodeSize();
+        if (bytes < slotSize) {
+            throw new IllegalArgumentException("cache of " + bytes + " bytes can't hold a node of " + slotSize);
+        }
+        this.padding = new byte[slotSize];
+        this.capacity = (int) Math.min(bytes / slotSize, 1 << 29);  // Leaves room for the hash table to be twice as big
+        this.slotsPerSlab = Math.min(MAX_SLAB_SIZE / slotSize, capacity);
+        this.slabs = new ByteBuffer[0];
+        this.slotPositions = new long[capacity];
+        this.slotFlags = new byte[capacity];
+
+        this.tableBits = 64 - Long.numberOfLeadingZeros(2L * capacity - 1);  // At most half full
+        this.tableKeys = new long[1 << tableBits];
+        this.tableSlots = new int[1 << tableBits];
+        Arrays.fill(tableKeys, EMPTY);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BTreeNode get(long position) {
+        int slot = find(position);
+        if (slot < 0) {
+            return null;
+        }
+        slotFlags[slot] |= REFERENCED;
+        BTreeNode node = codec.read(view(slot));
+        node.dirty = (slotFlags[slot] & DIRTY) != 0;
+        return node;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The node is encoded into its slot, so changes made to it afterwards must be put again to be cached.
+     */
+    @Override
+    public boolean put(long position, BTreeNode node) throws IOException {
+        int slot = find(position);
+        boolean cached = slot >= 0;
+        if (!cached) {
+            slot = allocate();
+            slotPositions[slot] = position;
+            slotFlags[slot] = 0;
+            insert(position, slot);
+        }
+        slotFlags[slot] |= REFERENCED;
+        if (node.dirty) {
+            slotFlags[slot] |= DIRTY;
+        }
+        ByteBuffer view = view(slot);
+        codec.write(node, view);
+        view.put(padding, 0, view.remaining());
+        return cached;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void flush() throws IOException {
+        for (int slot = 0; slot < used; slot++) {
+            if ((slotFlags[slot] & DIRTY) != 0) {
+                writeBuffer.putEncoded(slotPositions[slot], view(slot));
+                slotFlags[slot] &= ~DIRTY;
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The slabs are freed once they are garbage collected.
+     */
+    @Override
+    public void close() {
+        slabs = new ByteBuffer[0];
+        used = 0;
+        hand = 0;
+        Arrays.fill(tableKeys, EMPTY);
+    }
+
+    /**
+     * Get the number of nodes the cache can hold.
+     *
+     * @return  the capacity of the cache in nodes
+     */
+    int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Get a slot to cache a node in: the next unused slot, allocating a slab for it if needed, or else a slot evicted
+     * from.
+     *
+     * @return              the slot
+     * @throws IOException  if an I/O error occurs writing back an evicted node
+     */
+    private int allocate() throws IOException {
+        if (used < capacity) {
+            int slab = used / slotsPerSlab;
+            if (slab == slabs.length && !allocateSlab()) {
+                capacity = used;  // Out of direct memory; make do with what there is
+            } else {
+                return used++;
+            }
+        }
+
+        while ((slotFlags[hand] & REFERENCED) != 0) {  // Give every slot used since the last pass another chance
+            slotFlags[hand] &= ~REFERENCED;
+            hand = (hand + 1) % capacity;
+        }
+        int slot = hand;
+        hand = (hand + 1) % capacity;
+        evict(slot);
+        return slot;
+    }
+
+    /**
+     * Allocate the next slab.
+     *
+     * @return  whether the slab could be allocated
+     */
+    private boolean allocateSlab() {
+        int slots = Math.min(slotsPerSlab, capacity - slabs.length * slotsPerSlab);
+        ByteBuffer slab;
+        try {
+            slab = ByteBuffer.allocateDirect(slots * slotSize);
+        } catch (OutOfMemoryError e) {
+            if (slabs.length == 0) {
+                throw e;  // Not even one slab; there is no cache to make do with
+            }
+            return false;
+        }
+        slabs = Arrays.copyOf(slabs, slabs.length + 1);
+        slabs[slabs.length - 1] = slab;
+        return true;
+    }
+
+    /**
+     * Evict the node in a slot, writing it back if it is dirty; a clean node is the same as the one on disk.
+     *
+     * @param slot          the slot
+     * @throws IOException  if an I/O error occurs
+     */
+    private void evict(int slot) throws IOException {
+        BTreeEvents.NodeEviction event = BTreeEvents.EVENTS.nodeEviction();
+        long position = slotPositions[slot];
+        boolean dirty = (slotFlags[slot] & DIRTY) != 0;
+        metrics.recordEviction(dirty);
+        if (dirty) {
+            writeBuffer.putEncoded(position, view(slot));
+        }
+        remove(position);
+        slotFlags[slot] = 0;
+        event.commit(position, dirty);
+    }
+
+    /**
+     * Get a buffer of the bytes of a slot, positioned at its start and limited to its end.
+     *
+     * @param slot  the slot
+     * @return      the buffer
+     */
+    private ByteBuffer view(int slot) {
+        ByteBuffer view = slabs[slot / slotsPerSlab].duplicate();
+        int offset = (slot % slotsPerSlab) * slotSize;
+        view.position(offset);
+        view.limit(offset + slotSize);
+        return view;
+    }
+
+    /**
+     * Get the index in the hash table to start looking for a position at.
+     *
+     * @param position  the position
+     * @return          the index
+     */
+    private int hash(long position) {
+        return (int) ((position * 0x9E3779B97F4A7C15L) >>> (64 - tableBits));  // Fibonacci hashing
+    }
+
+    /**
+     * Find the slot of the node cached at a position.
+     *
+     * @param position  the position
+     * @return          the slot, or -1 if no node is cached there
+     */
+    private int find(long position) {
+        int mask = tableKeys.length - 1;
+        for (int i = hash(position); tableKeys[i] != EMPTY; i = (i + 1) & mask) {
+            if (tableKeys[i] == position) {
+                return tableSlots[i];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Add a position not yet in the hash table.
+     *
+     * @param position  the position
+     * @param slot      the slot of its node
+     */
+    private void insert(long position, int slot) {
+        int mask = tableKeys.length - 1;
+        int i = hash(position);
+        while (tableKeys[i] != EMPTY) {
+            i = (i + 1) & mask;
+        }
+        tableKeys[i] = position;
+        tableSlots[i] = slot;
+    }
+
+    /**
+     * Remove a position from the hash table, shifting back the entries after it so that none is cut off from where
+     * its search starts.
+     *
+     * @param position  the position
+     */
+    private void remove(long position) {
+        int mask = tableKeys.length - 1;
+        int i = hash(position);
+        while (tableKeys[i] != position) {
+            i = (i + 1) & mask;
+        }
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (tableKeys[j] == EMPTY) {
+                break;
+            }
+            int home = hash(tableKeys[j]);
+            // Move the entry at j into the gap at i unless its search starts after i, cyclically, so it can't see i
+            boolean afterGap = i <= j ? (i < home && home <= j) : (i < home || home <= j);
+            if (!afterGap) {
+                tableKeys[i] = tableKeys[j];
+                tableSlots[i] = tableSlots[j];
+                i = j;
+            }
+        }
+        tableKeys[i] = EMPTY;
+    }
+}
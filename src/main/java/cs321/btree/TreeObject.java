@@ -19,6 +19,12 @@ import java.nio.ByteBuffer;
  * <p>
  * The {@link TreeObject#BYTE_SIZE} constant is the number of bytes that a {@link TreeObject} takes
  * up in a {@link ByteBuffer}, and is useful in allocating the space ahead of time.
+ * <p>
+ * Subsequences longer than 31 bases don't fit in a single long, so a {@link TreeObject} holds its subsequence as a
+ * 128-bit number split across two longs: {@link TreeObject#getSubsequenceHigh()} and
+ * {@link TreeObject#getSubsequence()}, per {@link cs321.create.SequenceUtils#dnaStringToLongHigh(String)} and
+ * {@link cs321.create.SequenceUtils#dnaStringToLongLow(String)}. For subsequences of up to 31 bases the high bits are
+ * always 0 and are not written to disk; {@link TreeObject#WIDE_BYTE_SIZE} is the size when they are.
  *
  * @author Derek Caplinger
  * @author Matt Youngberg
@@ -42,7 +48,18 @@ public class TreeObject implements Comparable<TreeObject> {
     public static final int BYTE_SIZE = Long.BYTES + Integer.BYTES;  // subsequence + frequency
 
     /**
-     * The DNA subsequence of this {@link TreeObject}, represented as a long.
+     * The size of a {@link TreeObject} in bytes when the high bits of its subsequence are written as well.
+     */
+    public static final int WIDE_BYTE_SIZE = Long.BYTES + Long.BYTES + Integer.BYTES;  // high + subsequence + frequency
+
+    /**
+     * The high 64 bits of the DNA subsequence of this {@link TreeObject}; 0 for subsequences of up to 31 bases.
+     */
+    private final long subsequenceHigh;
+
+    /**
+     * The DNA subsequence of this {@link TreeObject}, represented as a long; the low 64 bits if the subsequence is
+     * longer than 31 bases.
      */
     private final long subsequence;
 
@@ -60,11 +77,24 @@ public class TreeObject implements Comparable<TreeObject> {
      * @param frequency     The frequency of this TreeObject.
      */
     public TreeObject(long subsequence, int frequency)
+    {
+        this(0L, subsequence, frequency);
+    }
+
+    /**
+     * Create a new {@link TreeObject} with the given 128-bit subsequence and frequency.
+     *
+     * @param subsequenceHigh   The high 64 bits of the subsequence of this TreeObject.
+     * @param subsequence       The low 64 bits of the subsequence of this TreeObject.
+     * @param frequency         The frequency of this TreeObject.
+     */
+    public TreeObject(long subsequenceHigh, long subsequence, int frequency)
     {
         if (frequency < 1) {  // Must be true + guards against bad BTreeNode reads
             throw new IllegalArgumentException("Frequency must be greater than 0.");
         }
 
+        this.subsequenceHigh = subsequenceHigh;
         this.subsequence = subsequence;
         this.frequency = frequency;
     }
@@ -80,6 +110,9 @@ public class TreeObject implements Comparable<TreeObject> {
 
     /**
      * Get the subsequence of this {@link TreeObject}.
+     * <p>
+     * For subsequences longer than 31 bases, these are only the low 64 bits; see
+     * {@link TreeObject#getSubsequenceHigh()}.
      *
      * @return The subsequence of this {@link TreeObject}.
      */
@@ -87,6 +120,27 @@ public class TreeObject implements Comparable<TreeObject> {
         return subsequence;
     }
 
+    /**
+     * Get the high 64 bits of the subsequence of this {@link TreeObject}, which are 0 unless it is longer than 31
+     * bases.
+     *
+     * @return The high 64 bits of the subsequence of this {@link TreeObject}.
+     */
+    public long getSubsequenceHigh() {
+        return subsequenceHigh;
+    }
+
+    /**
+     * Get the size of a {@link TreeObject} in bytes, depending on whether the high bits of its subsequence are
+     * written.
+     *
+     * @param wide  Whether the high bits of the subsequence are written, i.e. subsequences are longer than 31 bases.
+     * @return      {@link TreeObject#WIDE_BYTE_SIZE} if wide, {@link TreeObject#BYTE_SIZE} otherwise.
+     */
+    public static int getByteSize(boolean wide) {
+        return wide ? WIDE_BYTE_SIZE : BYTE_SIZE;
+    }
+
     /**
      * Increment the frequency of this {@link TreeObject} by 1.
      */
@@ -126,12 +180,33 @@ public class TreeObject implements Comparable<TreeObject> {
      * @throws BufferUnderflowException if the buffer does not have enough remaining bytes.
      */
     public static TreeObject fromByteBuffer(ByteBuffer buffer) {
-        if (buffer.remaining() < BYTE_SIZE) {
+        return fromByteBuffer(buffer, false);
+    }
+
+    /**
+     * Create a new {@link TreeObject} from the next bytes to be consumed in a {@link ByteBuffer}, which include the
+     * high bits of the subsequence if wide. See {@link TreeObject#fromByteBuffer(ByteBuffer)}.
+     * <p>
+     * <pre>
+     * +------------------------+------------------------+------------+
+     * |    Subsequence High    |        Subsequence     |    Freq    |
+     * |   8B (only if wide)    |          8B            |     4B     |
+     * +------------------------+------------------------+------------+
+     * </pre>
+     *
+     * @param buffer                    The {@link ByteBuffer} to read from.
+     * @param wide                      Whether the high bits of the subsequence were written.
+     * @return                          A new {@link TreeObject} with the data from the {@link ByteBuffer}.
+     * @throws BufferUnderflowException if the buffer does not have enough remaining bytes.
+     */
+    public static TreeObject fromByteBuffer(ByteBuffer buffer, boolean wide) {
+        if (buffer.remaining() < getByteSize(wide)) {
             throw new BufferUnderflowException();
         }
+        long subsequenceHigh = wide ? buffer.getLong() : 0L;
         long subsequence = buffer.getLong();
         int frequency = buffer.getInt();
-        return new TreeObject(subsequence, frequency);
+        return new TreeObject(subsequenceHigh, subsequence, frequency);
     }
 
     /**
@@ -153,21 +228,43 @@ public class TreeObject implements Comparable<TreeObject> {
      * @throws BufferOverflowException  if the buffer does not have enough space.
      */
     public void writeToByteBuffer(ByteBuffer buffer) {
-        if (buffer.remaining() < BYTE_SIZE) {
+        writeToByteBuffer(buffer, false);
+    }
+
+    /**
+     * Write the data of this {@link TreeObject} instance to a {@link ByteBuffer}, including the high bits of the
+     * subsequence if wide. See {@link TreeObject#writeToByteBuffer(ByteBuffer)} and
+     * {@link TreeObject#fromByteBuffer(ByteBuffer, boolean)}.
+     *
+     * @param buffer                    The {@link ByteBuffer} to write to.
+     * @param wide                      Whether to write the high bits of the subsequence.
+     * @throws BufferOverflowException  if the buffer does not have enough space.
+     */
+    public void writeToByteBuffer(ByteBuffer buffer, boolean wide) {
+        if (buffer.remaining() < getByteSize(wide)) {
             throw new BufferOverflowException();
         }
+        if (wide) {
+            buffer.putLong(subsequenceHigh);
+        }
         buffer.putLong(subsequence);
         buffer.putInt(frequency);
     }
 
     /**
      * Compare this {@link TreeObject} to another {@link TreeObject} by their subsequence.
+     * <p>
+     * The high bits are compared first. The low bits are compared as unsigned, since a subsequence of 32 or more bases
+     * uses all 64 of them; an encoding of up to 31 bases is never negative, so this doesn't change its order.
      *
      * @param treeObject    The {@link TreeObject} to compare to.
      * @return              -1 if this {@link TreeObject} is less than the other {@link TreeObject}, 1 if this
      */
     @Override
     public int compareTo(TreeObject treeObject) {
-        return Long.compare(this.subsequence, treeObject.subsequence);
+        if (this.subsequenceHigh != treeObject.subsequenceHigh) {
+            return Long.compare(this.subsequenceHigh, treeObject.subsequenceHigh);
+        }
+        return Long.compareUnsigned(this.subsequence, treeObject.subsequence);
     }
 }
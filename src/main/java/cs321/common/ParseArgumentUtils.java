@@ -14,4 +14,31 @@ public class ParseArgumentUtils
     {
         return 0;
     }
+
+    /**
+     * Parses a size in bytes, such as the size of a cache: a whole number, optionally followed by k, m, g or t (in
+     * either case) for kibibytes, mebibytes, gibibytes or tebibytes. For example, "8g" is 8,589,934,592 bytes.
+     *
+     * @param argument                  the size
+     * @return                          the size in bytes
+     * @throws IllegalArgumentException if the argument isn't a size, or is too large to count in a long
+     */
+    public static long parseByteSize(String argument)
+    {
+        if (argument == null || !argument.matches("[0-9]+[kKmMgGtT]?")) {
+            throw new IllegalArgumentException("Not a size in bytes: " + argument);
+        }
+        char unit = Character.toLowerCase(argument.charAt(argument.length() - 1));
+        int shift = "kmgt".indexOf(unit) + 1;  // 0 for no unit
+        String number = shift == 0 ? argument : argument.substring(0, argument.length() - 1);
+        try {
+            long value = Long.parseLong(number);
+            if (value > Long.MAX_VALUE >> (10 * shift)) {
+                throw new NumberFormatException();
+            }
+            return value << (10 * shift);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Size in bytes is too large: " + argument);
+        }
+    }
 }
@@ -1,12 +1,16 @@
 package cs321.create;
 
 import java.io.*;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.sql.SQLException;
+import javax.management.JMException;
 
 import cs321.btree.BTree;
+import cs321.btree.BTreeOptions;
 import cs321.btree.BTreeException;
+import cs321.btree.BTreeSQLiteDBBuilder;
 import cs321.btree.TreeObject;
 import cs321.common.ParseArgumentException;
 
@@ -20,6 +24,16 @@ import cs321.common.ParseArgumentException;
  */
 public class GeneBankCreateBTree {
 
+    /**
+     * The number of subsequences inserted between checks of whether to report progress.
+     */
+    private static final int PROGRESS_CHECK_INTERVAL = 1 << 14;
+
+    /**
+     * The minimum time between reports of progress, in nanoseconds.
+     */
+    private static final long PROGRESS_INTERVAL_NANOS = 1_000_000_000L;
+
     /**
      * The entry point for the GeneBankCreateBTree program.
      * <p>
@@ -89,6 +103,8 @@ public class GeneBankCreateBTree {
         System.err.println(errorMessage);
         System.err.println("Usage: java -jar build/libs/GeneBankCreateBTree.jar --cache=<0|1>  --degree=<btree-degree> ");
         System.err.println("\t--gbkfile=<gbk-file> --length=<sequence-length> [--cachesize=<n>] [--debug=0|1]");
+        System.err.println("\t[--canonical=0|1] [--compressed=0|1] [--pagesize=4096|16384|65536] [--progress=0|1]");
+        System.err.println("\t[--cachemem=<size>] [--bloomfpr=<rate>] [--index=<eytzinger|dense|mphf|pgm|auto>]");
         System.exit(exitCode);
     }
 
@@ -103,6 +119,12 @@ public class GeneBankCreateBTree {
      * <p>
      * Debug level 1 uses the BTreeDumpToFile to output the created tree to a dump file, dump is appended to the
      * filename to designate.
+     * <p>
+     * Either way, a {@link PhaseTimer} report follows, breaking the time taken down by phase: parsing the gbk file,
+     * encoding its subsequences, inserting them, dumping, flushing the cache and exporting to SQLite, along with the
+     * throughput of the build. Parsing, encoding and inserting are interleaved subsequence by subsequence, so only
+     * the loop they make up as a whole has its CPU and garbage collection time measured. With progress on, the share
+     * of the gbk file read so far and an estimate of the time left are reported while the loop runs.
      *
      * @param args              command line arguments provided with program call
      * @throws BTreeException   if there is an error creating the BTree
@@ -120,25 +142,64 @@ public class GeneBankCreateBTree {
 
         System.err.println();
         System.err.println("Creating BTree from file \"" + gbkFilePathString + "\"...");
-        BTree bTree;
-        if (args.useCache()) {
-            bTree = new BTree(args.getDegree(), btreeFileName, args.getCacheSize());
-        } else {
-            bTree = new BTree(args.getDegree(), btreeFileName);
+        // No subsequence can occur more often than there are bases, and there are fewer bases than bytes in the file
+        long maxFrequency = Files.size(gbkFilePath);
+        BTreeOptions options = new BTreeOptions()
+                .subsequenceLength(args.getSubsequenceLength())
+                .canonical(args.useCanonical())
+                .compressed(args.useCompressed())
+                .maxFrequency(maxFrequency)
+                .pageSize(args.getPageSize());
+        BTree bTree = new BTree(args.getDegree(), btreeFileName, args.getCacheSize(), options);
+        if (args.getCacheMemory() > 0) {
+            bTree.useOffHeapCache(args.getCacheMemory());
+        }
+        try {
+            bTree.registerMBean();  // So a slow build can be watched from JConsole
+        } catch (JMException e) {
+            System.err.println("Warning: BTree metrics are not available over JMX: " + e.getMessage());
         }
         int subsequencesInserted = 0;
+        long basesRead;
 
-        String subsequenceString;
         long subsequenceEncoded;
 
+        PhaseTimer timer = new PhaseTimer();
+        timer.start("Build loop");
+        long iteratorNanos = 0;
+        long insertNanos = 0;
+        long parseNanos;
         try (GeneBankSubsequenceIterator subsequenceIterator = new GeneBankSubsequenceIterator(gbkFilePath, args.getSubsequenceLength())) {
+            long loopStart = System.nanoTime();
+            long lastProgress = loopStart;
+            long time = loopStart;
             while (subsequenceIterator.hasNext()) {
-                subsequenceString = subsequenceIterator.next();
-                subsequenceEncoded = SequenceUtils.dnaStringToLong(subsequenceString);
-                TreeObject tempTreeObject = new TreeObject(subsequenceEncoded);
+                subsequenceEncoded = subsequenceIterator.nextEncoded();
+                TreeObject tempTreeObject = new TreeObject(subsequenceIterator.lastEncodedHigh(), subsequenceEncoded, 1);
+                long inserting = System.nanoTime();
+                iteratorNanos += inserting - time;
                 bTree.insert(tempTreeObject);
+                time = System.nanoTime();
+                insertNanos += time - inserting;
                 subsequencesInserted++;
+
+                if (args.showProgress() && subsequencesInserted % PROGRESS_CHECK_INTERVAL == 0
+                        && time - lastProgress >= PROGRESS_INTERVAL_NANOS) {
+                    printProgress(subsequenceIterator.getBytesRead(), subsequenceIterator.getFileSize(),
+                            subsequencesInserted, time - loopStart);
+                    lastProgress = time;
+                    time = System.nanoTime();  // Not to count the report as parsing
+                }
             }
+            basesRead = subsequenceIterator.getBasesRead();
+            parseNanos = subsequenceIterator.getParseNanos();
+        }
+        timer.stop();
+        timer.add("Parse", parseNanos);
+        timer.add("Encode", iteratorNanos - parseNanos);
+        timer.add("Insert", insertNanos);
+        if (args.showProgress()) {
+            System.err.println();  // End the line of progress
         }
 
         System.err.println("BTree created successfully.");
@@ -147,10 +208,15 @@ public class GeneBankCreateBTree {
         System.err.println("-------");
         System.err.printf("%-30s%,10d%n", "Subsequences inserted:", subsequencesInserted);
         System.err.printf("%-30s%,10d%n", "Subsequence length:", args.getSubsequenceLength());
+        System.err.printf("%-30s%10s%n", "Canonical keys:", bTree.isCanonical() ? "yes" : "no");
+        System.err.printf("%-30s%10s%n", "Compressed pages:", bTree.isCompressed() ? "yes" : "no");
         System.err.printf("%-30s%,10d%n", "BTree degree:", bTree.getDegree());
+        System.err.printf("%-30s%,10d%n", "Page size:", bTree.getPageSize());
         System.err.printf("%-30s%,10d%n", "Total number of objects:", bTree.getSize());
         System.err.printf("%-30s%,10d%n", "Total number of nodes:", bTree.getNumberOfNodes());
         System.err.printf("%-30s%,10d%n", "Height of final tree:", bTree.getHeight());
+        System.err.printf("%-30s%,10d%n", "Duplicates counted:", bTree.getMetrics().getDuplicateIncrements());
+        System.err.printf("%-30s%,10d%n", "Node splits:", bTree.getMetrics().getSplits());
         if (args.useCache()) {
             System.err.printf("%-30s%,9.2f%%%n", "Cache hit rate:", bTree.getCacheHitRate() * 100);
         }
@@ -158,16 +224,57 @@ public class GeneBankCreateBTree {
 
         if (args.getDebugLevel() == 1) {
             System.err.printf("Dumping BTree contents to file...%n");
+            timer.start("Dump");
             PrintWriter printWriter = new PrintWriter("dump");  // This is what `create-btrees.sh` expects
             bTree.dumpToFile(printWriter);
             printWriter.close();
+            timer.stop();
             System.err.println("Done.");
             System.err.println();
         }
 
+        // The steps of bTree.finishUp(), timed one by one
         System.err.println("Finalizing BTree on disk and creating SQLite database...");
-        bTree.finishUp();
+        timer.start("Cache flush");
+        bTree.flush();
+        if (args.getBloomFilterRate() > 0) {
+            timer.start("Bloom filter");
+            bTree.writeBloomFilter(args.getBloomFilterRate());
+        }
+        if (args.getIndexFormat() != null) {
+            timer.start("Index export");
+            args.getIndexFormat().write(bTree, Paths.get(btreeFileName + args.getIndexFormat().getSuffix()));
+        }
+        timer.start("SQLite export");
+        BTreeSQLiteDBBuilder.create(bTree, Paths.get(btreeFileName));
+        timer.stop();
+        bTree.close();
         System.err.println("Done.");
         System.err.println();
+
+        System.err.println("Timing:");
+        System.err.println("------");
+        timer.printReport(System.err);
+        long loopNanos = timer.getWallNanos("Build loop");
+        System.err.printf("%-30s%,10.0f%n", "Bases/s:", loopNanos == 0 ? 0.0 : basesRead * 1e9 / loopNanos);
+        System.err.printf("%-30s%,10.0f%n", "Inserts/s:",
+                insertNanos == 0 ? 0.0 : subsequencesInserted * 1e9 / insertNanos);
+        System.err.println();
+    }
+
+    /**
+     * Print the progress of a build on standard error, over the previous report: the share of the gbk file read so
+     * far, the rate of insertion and an estimate of the time left, assuming the rest of the file goes as fast.
+     *
+     * @param bytesRead     the number of bytes of the gbk file read so far
+     * @param fileSize      the size of the gbk file in bytes
+     * @param inserted      the number of subsequences inserted so far
+     * @param elapsedNanos  the time since the build started, in nanoseconds
+     */
+    private static void printProgress(long bytesRead, long fileSize, long inserted, long elapsedNanos) {
+        double fraction = fileSize == 0 ? 1.0 : (double) bytesRead / fileSize;
+        long etaSeconds = fraction == 0 ? 0 : Math.round(elapsedNanos / 1e9 * (1 - fraction) / fraction);
+        System.err.printf("\rProgress: %5.1f%%  %,d inserted  %,.0f inserts/s  ETA %d:%02d:%02d   ", fraction * 100,
+                inserted, inserted * 1e9 / elapsedNanos, etaSeconds / 3600, etaSeconds / 60 % 60, etaSeconds % 60);
     }
 }
@@ -1,5 +1,9 @@
 package cs321.create;
 
+import cs321.btree.BTree;
+import cs321.common.ParseArgumentUtils;
+import cs321.index.IndexFormat;
+
 import java.io.File;
 import java.util.*;
 import java.util.regex.Matcher;
@@ -16,7 +20,21 @@ import java.util.regex.Pattern;
  * <pre>
  * java -jar build/libs/GeneBankCreateBTree.jar --cache=&lt;0|1&gt;  --degree=&lt;btree-degree&gt;
  *  --gbkfile=&lt;gbk-file&gt; --length=&lt;sequence-length&gt; [--cachesize=&lt;n&gt;] [--debug=&lt;0|1&gt;]
+ *  [--canonical=&lt;0|1&gt;] [--compressed=&lt;0|1&gt;] [--pagesize=&lt;4096|16384|65536&gt;] [--progress=&lt;0|1&gt;]
+ *  [--cachemem=&lt;size&gt;] [--bloomfpr=&lt;rate&gt;] [--index=&lt;eytzinger|dense|mphf|pgm|auto&gt;]
  * </pre>
+ * <p>
+ * The <code>--canonical</code>, <code>--compressed</code> and <code>--pagesize</code> arguments are extensions to the
+ * project spec; see {@link BTree#isCanonical()}, {@link BTree#isCompressed()} and {@link BTree#getPageSize()}. So is
+ * <code>--progress</code>, which reports the progress of a long build on standard error as it goes, and
+ * <code>--cachemem</code>, which sizes the cache in bytes rather than nodes, such as <code>512m</code> or
+ * <code>8g</code>, and holds it outside the heap; see {@link BTree#useOffHeapCache(long)}. With <code>--cache=1</code>,
+ * give either <code>--cachesize</code> or <code>--cachemem</code>. And so is <code>--bloomfpr</code>, which writes a Bloom
+ * filter of the keys beside the BTree file with the given false positive rate, such as <code>0.01</code>, for searches
+ * to skip absent keys with; see {@link BTree#writeBloomFilter(double)}. Last, <code>--index</code> exports the finished
+ * BTree to a read-only index file beside it, which GeneBankSearchBTree searches in place of the BTree file; see
+ * {@link IndexFormat}. With <code>--index=auto</code>, the format is chosen by the length of the subsequences; see
+ * {@link IndexFormat#forLength(int)}.
  *
  * @author Derek Caplinger
  * @author Matt Youngberg
@@ -28,6 +46,11 @@ public class GeneBankCreateBTreeArguments {
      */
     private static final Pattern argPattern = Pattern.compile("^--([a-zA-Z]+)=([0-9a-zA-Z._/\\\\:-]+)$");
 
+    /**
+     * The smallest cache memory accepted, in bytes, which holds a few nodes of the largest page size.
+     */
+    private static final long MIN_CACHE_MEMORY = 1 << 20;
+
     /**
      * Whether to use a cache. 0 or 1
      */
@@ -44,7 +67,7 @@ public class GeneBankCreateBTreeArguments {
     private final String gbkFileName;
 
     /**
-     * The subsequence length. 1-31
+     * The subsequence length. 1-63
      */
     private final int subsequenceLength;
 
@@ -58,23 +81,74 @@ public class GeneBankCreateBTreeArguments {
      */
     private final int debugLevel;
 
+    /**
+     * Whether to store subsequences under their canonical key. 0 or 1
+     */
+    private final boolean canonical;
+
+    /**
+     * Whether to store nodes in compressed pages. 0 or 1
+     */
+    private final boolean compressed;
+
+    /**
+     * The size of a page in bytes. A power of two from 4096-65536. Will be 0 if unset.
+     */
+    private final int pageSize;
+
+    /**
+     * Whether to report progress while building. 0 or 1
+     */
+    private final boolean progress;
+
+    /**
+     * The size of an off-heap cache in bytes, in place of a cache size in nodes. Will be 0 if unset.
+     */
+    private final long cacheMemory;
+
+    /**
+     * The false positive rate of a Bloom filter to write. More than 0 and at most 0.5. Will be 0 if unset.
+     */
+    private final double bloomFilterRate;
+
+    /**
+     * The format of a read-only index to export the BTree to. Will be null if unset.
+     */
+    private final IndexFormat indexFormat;
+
     /**
      * Create a new {@link GeneBankCreateBTreeArguments} object.
      *
      * @param useCache              whether to use a cache. 0 or 1
      * @param degree                the degree of the BTree. 0 or >=2
      * @param gbkFileName           the file name of the GBK file. Should exist on disk
-     * @param subsequenceLength     the subsequence length. 1-31
-     * @param cacheSize             the cache size. 100-10,000
+     * @param subsequenceLength     the subsequence length. 1-63
+     * @param cacheSize             the cache size. 100-10,000, or 0 with a cache memory
      * @param debugLevel            the debug level. 0 or 1
+     * @param canonical             whether to store subsequences under their canonical key
+     * @param compressed            whether to store nodes in compressed pages
+     * @param pageSize              the size of a page in bytes. A power of two from 4096-65536, or 0 for the default
+     * @param progress              whether to report progress while building
+     * @param cacheMemory           the size of an off-heap cache in bytes, or 0 for a cache size in nodes
+     * @param bloomFilterRate       the false positive rate of a Bloom filter to write, or 0 for none
+     * @param indexFormat           the format of a read-only index to export the BTree to, or null for none
      */
-    GeneBankCreateBTreeArguments(boolean useCache, int degree, String gbkFileName, int subsequenceLength, int cacheSize, int debugLevel) {
+    GeneBankCreateBTreeArguments(boolean useCache, int degree, String gbkFileName, int subsequenceLength, int cacheSize,
+                                 int debugLevel, boolean canonical, boolean compressed, int pageSize, boolean progress,
+                                 long cacheMemory, double bloomFilterRate, IndexFormat indexFormat) {
         this.useCache = useCache;
         this.degree = degree;
         this.gbkFileName = gbkFileName;
         this.subsequenceLength = subsequenceLength;
         this.cacheSize = cacheSize;
         this.debugLevel = debugLevel;
+        this.canonical = canonical;
+        this.compressed = compressed;
+        this.pageSize = pageSize;
+        this.progress = progress;
+        this.cacheMemory = cacheMemory;
+        this.bloomFilterRate = bloomFilterRate;
+        this.indexFormat = indexFormat;
     }
 
     /**
@@ -119,6 +193,27 @@ public class GeneBankCreateBTreeArguments {
         if (useCache != other.useCache) {
             return false;
         }
+        if (canonical != other.canonical) {
+            return false;
+        }
+        if (compressed != other.compressed) {
+            return false;
+        }
+        if (pageSize != other.pageSize) {
+            return false;
+        }
+        if (progress != other.progress) {
+            return false;
+        }
+        if (cacheMemory != other.cacheMemory) {
+            return false;
+        }
+        if (Double.compare(bloomFilterRate, other.bloomFilterRate) != 0) {
+            return false;
+        }
+        if (indexFormat != other.indexFormat) {
+            return false;
+        }
 
         return true;
     }
@@ -135,6 +230,13 @@ public class GeneBankCreateBTreeArguments {
                 ", subsequenceLength=" + subsequenceLength +
                 ", cacheSize=" + cacheSize +
                 ", debugLevel=" + getDebugLevel() +
+                ", canonical=" + canonical +
+                ", compressed=" + compressed +
+                ", pageSize=" + pageSize +
+                ", progress=" + progress +
+                ", cacheMemory=" + cacheMemory +
+                ", bloomFilterRate=" + bloomFilterRate +
+                ", indexFormat=" + indexFormat +
                 '}';
     }
 
@@ -172,7 +274,7 @@ public class GeneBankCreateBTreeArguments {
     /**
      * Get the subsequence length that should be encoded into longs.
      * <p>
-     * Will be between 1 and 31, inclusive.
+     * Will be between 1 and 63, inclusive. Subsequences longer than 31 bases are encoded into two longs.
      *
      * @return the subsequenceLength
      */
@@ -201,6 +303,71 @@ public class GeneBankCreateBTreeArguments {
 		return debugLevel;
 	}
 
+    /**
+     * Get whether subsequences should be stored under their canonical key.
+     *
+     * @return whether to store canonical keys
+     */
+    public boolean useCanonical() {
+        return canonical;
+    }
+
+    /**
+     * Get whether nodes should be stored in compressed pages.
+     *
+     * @return whether to store nodes in compressed pages
+     */
+    public boolean useCompressed() {
+        return compressed;
+    }
+
+    /**
+     * Get the size of a page.
+     *
+     * @return the size of a page in bytes, or 0 for the default
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Get whether progress should be reported while building.
+     *
+     * @return whether to report progress
+     */
+    public boolean showProgress() {
+        return progress;
+    }
+
+    /**
+     * Get the size of the cache in bytes, for a cache held off the heap.
+     * <p>
+     * Will be 0 if the cache is sized in nodes by {@link #getCacheSize()} instead, or there is no cache.
+     *
+     * @return the size of the cache in bytes
+     */
+    public long getCacheMemory() {
+        return cacheMemory;
+    }
+
+    /**
+     * Get the false positive rate of the Bloom filter to write beside the BTree file.
+     *
+     * @return the false positive rate, or 0 if no Bloom filter is to be written
+     */
+    public double getBloomFilterRate() {
+        return bloomFilterRate;
+    }
+
+    /**
+     * Get the format of the read-only index to export the BTree to.
+     *
+     * @return the format of the index, or null if no index is to be exported
+     */
+    public IndexFormat getIndexFormat() {
+        return indexFormat;
+    }
+
     /**
      * Create a GeneBankCreateBTreeArguments object from a string array of arguments, typically the command line args.
      * <p>
@@ -218,7 +385,7 @@ public class GeneBankCreateBTreeArguments {
         Map<String, String> argMap = new HashMap<>();
 
         Set<String> requiredArgs = new HashSet<>(Arrays.asList("cache", "degree", "gbkfile", "length"));
-        Set<String> optionalArgs = new HashSet<>(Arrays.asList("cachesize", "debug"));
+        Set<String> optionalArgs = new HashSet<>(Arrays.asList("cachesize", "debug", "canonical", "compressed", "pagesize", "progress", "cachemem", "bloomfpr", "index"));
 
         // Get all strings into argMap
         Matcher matcher;
@@ -284,8 +451,29 @@ public class GeneBankCreateBTreeArguments {
             throw new IllegalArgumentException("Invalid argument. Length must be a number: length=" + lengthValue);
         }
         int length = Integer.parseInt(lengthValue);
-        if (length < 1 || length > 31) {
-            throw new IllegalArgumentException("Invalid argument. Length must be 1-31: length=" + lengthValue);
+        if (length < 1 || length > SequenceUtils.MAX_WIDE_LENGTH) {
+            throw new IllegalArgumentException("Invalid argument. Length must be 1-" + SequenceUtils.MAX_WIDE_LENGTH
+                    + ": length=" + lengthValue);
+        }
+
+        // Cache memory
+        String cachememValue = argMap.get("cachemem");
+        long cachemem = 0;
+        if (cachememValue != null) {
+            try {
+                cachemem = ParseArgumentUtils.parseByteSize(cachememValue);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid argument. Cache memory must be a size in bytes, e.g. 512m or 8g: cachemem=" + cachememValue);
+            }
+            if (cachemem < MIN_CACHE_MEMORY) {
+                throw new IllegalArgumentException("Invalid argument. Cache memory must be at least 1m: cachemem=" + cachememValue);
+            }
+            if (cacheValue.equals("0")) {  // specified not to have a cache
+                throw new IllegalArgumentException("Invalid argument. Cannot specify cache memory with no cache: cachemem=" + cachememValue + "; cache=" + cacheValue);
+            }
+            if (argMap.get("cachesize") != null) {
+                throw new IllegalArgumentException("Invalid argument. Cannot specify both cache size and cache memory: cachesize=" + argMap.get("cachesize") + "; cachemem=" + cachememValue);
+            }
         }
 
         // Cache size
@@ -302,8 +490,8 @@ public class GeneBankCreateBTreeArguments {
                 throw new IllegalArgumentException("Invalid argument. Cannot specify cache size with no cache: cachesize=" + cachesizeValue + "; cache=" + cacheValue);
             }
         } else {
-            if (cacheValue.equals("1")) {
-                throw new IllegalArgumentException("Invalid argument. Must specify cache size when using cache: cachesize=" + cachesizeValue + "; cache=" + cacheValue);
+            if (cacheValue.equals("1") && cachememValue == null) {
+                throw new IllegalArgumentException("Invalid argument. Must specify cache size or cache memory when using cache: cachesize=" + cachesizeValue + "; cache=" + cacheValue);
             }
             argMap.put("cachesize", "0");
         }
@@ -323,6 +511,66 @@ public class GeneBankCreateBTreeArguments {
             debugValue = "0";
         }
 
+        // Canonical
+        String canonicalValue = argMap.get("canonical");
+        if (canonicalValue != null && !canonicalValue.equals("0") && !canonicalValue.equals("1")) {
+            throw new IllegalArgumentException("Invalid argument. Canonical should be 0 or 1: canonical=" + canonicalValue);
+        }
+
+        // Compressed
+        String compressedValue = argMap.get("compressed");
+        if (compressedValue != null && !compressedValue.equals("0") && !compressedValue.equals("1")) {
+            throw new IllegalArgumentException("Invalid argument. Compressed should be 0 or 1: compressed=" + compressedValue);
+        }
+
+        // Page size
+        String pagesizeValue = argMap.get("pagesize");
+        if (pagesizeValue != null) {
+            if (!pagesizeValue.matches("[0-9]+")) {
+                throw new IllegalArgumentException("Invalid argument. Page size must be a number: pagesize=" + pagesizeValue);
+            }
+            long pagesize = Long.parseLong(pagesizeValue);
+            if (pagesize < BTree.MIN_PAGE_SIZE || pagesize > BTree.MAX_PAGE_SIZE || Long.bitCount(pagesize) != 1) {
+                throw new IllegalArgumentException("Invalid argument. Page size must be a power of two between " + BTree.MIN_PAGE_SIZE + "-" + BTree.MAX_PAGE_SIZE + ": pagesize=" + pagesizeValue);
+            }
+        } else {
+            argMap.put("pagesize", "0");
+        }
+
+        // Progress
+        String progressValue = argMap.get("progress");
+        if (progressValue != null && !progressValue.equals("0") && !progressValue.equals("1")) {
+            throw new IllegalArgumentException("Invalid argument. Progress should be 0 or 1: progress=" + progressValue);
+        }
+
+        // Index format
+        String indexValue = argMap.get("index");
+        IndexFormat indexFormat = null;
+        if (indexValue != null) {
+            try {
+                indexFormat = indexValue.equalsIgnoreCase("auto") ? IndexFormat.forLength(length) : IndexFormat.fromString(indexValue);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid argument. Index should be eytzinger, dense, mphf, pgm or auto: index=" + indexValue);
+            }
+            if (length > indexFormat.getMaxLength()) {
+                throw new IllegalArgumentException("Invalid argument. Cannot export an index of subsequences longer than " + indexFormat.getMaxLength() + ": index=" + indexValue + "; length=" + lengthValue);
+            }
+        }
+
+        // Bloom filter false positive rate
+        String bloomfprValue = argMap.get("bloomfpr");
+        double bloomfpr = 0;
+        if (bloomfprValue != null) {
+            try {
+                bloomfpr = Double.parseDouble(bloomfprValue);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid argument. Bloom filter false positive rate must be a number: bloomfpr=" + bloomfprValue);
+            }
+            if (!(bloomfpr > 0 && bloomfpr <= 0.5)) {
+                throw new IllegalArgumentException("Invalid argument. Bloom filter false positive rate must be more than 0 and at most 0.5: bloomfpr=" + bloomfprValue);
+            }
+        }
+
         // Create and return the arguments object
         return new GeneBankCreateBTreeArguments(
                 argMap.get("cache").equals("1"),
@@ -330,7 +578,14 @@ public class GeneBankCreateBTreeArguments {
                 argMap.get("gbkfile"),
                 Integer.parseInt(argMap.get("length")),
                 Integer.parseInt(argMap.get("cachesize")),
-                Integer.parseInt(argMap.get("debug"))
+                Integer.parseInt(argMap.get("debug")),
+                "1".equals(canonicalValue),
+                "1".equals(compressedValue),
+                Integer.parseInt(argMap.get("pagesize")),
+                "1".equals(progressValue),
+                cachemem,
+                bloomfpr,
+                indexFormat
         );
     }
 }
@@ -21,11 +21,6 @@ import java.util.*;
  */
 public class GeneBankSubsequenceIterator implements Iterator<String>, AutoCloseable {
 
-    /**
-     * The set of all valid DNA bases, upper or lower case.
-     */
-    private static final Set<Character> DNA_BASES = new HashSet<>(Arrays.asList('A', 'C', 'G', 'T', 'a', 'c', 'g', 't'));
-
     /**
      * The size of the byte buffer used to read from the file channel.
      */
@@ -75,11 +70,51 @@ public class GeneBankSubsequenceIterator implements Iterator<String>, AutoClosea
      */
     private int subsequenceFillCount;
 
+    /**
+     * The encoding of the bases in {@link #subsequenceArr}, per {@link SequenceUtils#dnaStringToLong(String)}, kept up
+     * to date one base at a time with {@link SequenceUtils#rollForward(long, int, int)}. For subsequences longer than
+     * 31 bases, these are the low 64 bits, per {@link SequenceUtils#dnaStringToLongLow(String)}.
+     */
+    private long subsequenceEncoding;
+
+    /**
+     * The high 64 bits of the encoding of the bases in {@link #subsequenceArr}, per
+     * {@link SequenceUtils#dnaStringToLongHigh(String)}. Always 0 for subsequences of up to 32 bases.
+     */
+    private long subsequenceEncodingHigh;
+
+    /**
+     * The value of {@link #subsequenceEncoding} before the last base was rolled into it, so that the last base can be
+     * undone.
+     */
+    private long previousEncoding;
+
+    /**
+     * The value of {@link #subsequenceEncodingHigh} before the last base was rolled into it, so that the last base can
+     * be undone.
+     */
+    private long previousEncodingHigh;
+
+    /**
+     * The high 64 bits of the encoding last returned by {@link #nextEncoded()}.
+     */
+    private long lastEncodingHigh;
+
     /**
      * Whether the iterator has reached the end of the file.
      */
     private boolean done;
 
+    /**
+     * The number of bases read so far, counting each base of the file once.
+     */
+    private long basesRead;
+
+    /**
+     * The time spent reading the file and decoding it into characters, and looking for ORIGIN blocks, in nanoseconds.
+     */
+    private long parseNanos;
+
     /**
      * Create a new {@link GeneBankSubsequenceIterator} that iterates over all subsequences in the GeneBank file
      * situated at the given path.
@@ -103,8 +138,12 @@ public class GeneBankSubsequenceIterator implements Iterator<String>, AutoClosea
         Arrays.fill(this.subsequenceArr, '\0');
         this.subsequenceIdx = 0;
         this.subsequenceFillCount = 0;
+        this.subsequenceEncoding = 0L;
+        this.subsequenceEncodingHigh = 0L;
 
+        long start = System.nanoTime();
         fileChannel.position(findNextOrigin(0L));
+        parseNanos += System.nanoTime() - start;
         this.done = !advanceToNextCharacter();
 
         if (this.done) {
@@ -130,6 +169,86 @@ public class GeneBankSubsequenceIterator implements Iterator<String>, AutoClosea
      */
     @Override
     public String next() {
+        completeSubsequence();
+        String subsequence = subsequenceToString();  // Value to return
+        prepareNextSubsequence();
+        return subsequence;
+    }
+
+    /**
+     * Get the next subsequence in the GeneBank file, encoded per {@link SequenceUtils#dnaStringToLong(String)}.
+     * <p>
+     * This advances the iterator just like {@link #next()}, but without building a {@link String} for the subsequence,
+     * as the encoding is kept up to date while the file is read.
+     * <p>
+     * For subsequences longer than 31 bases, this returns the low 64 bits of the encoding, per
+     * {@link SequenceUtils#dnaStringToLongLow(String)}; get the high 64 bits from {@link #lastEncodedHigh()}.
+     *
+     * @return The encoding of the next subsequence in the GeneBank file.
+     */
+    public long nextEncoded() {
+        completeSubsequence();
+        long encoding = subsequenceEncoding;  // Value to return
+        lastEncodingHigh = subsequenceEncodingHigh;
+        prepareNextSubsequence();
+        return encoding;
+    }
+
+    /**
+     * Get the high 64 bits of the encoding of the subsequence last returned by {@link #nextEncoded()}, per
+     * {@link SequenceUtils#dnaStringToLongHigh(String)}. Always 0 for subsequences of up to 32 bases.
+     *
+     * @return The high 64 bits of the encoding of the last subsequence.
+     */
+    public long lastEncodedHigh() {
+        return lastEncodingHigh;
+    }
+
+    /**
+     * Get the number of bases read so far. Each base of the file is counted once, though it's part of up to
+     * <code>subsequenceLength</code> subsequences.
+     *
+     * @return The number of bases read.
+     */
+    public long getBasesRead() {
+        return basesRead;
+    }
+
+    /**
+     * Get the number of bytes of the file read so far, e.g. to report progress against {@link #getFileSize()}.
+     *
+     * @return              The number of bytes read.
+     * @throws IOException  If there is an error reading from the fileChannel.
+     */
+    public long getBytesRead() throws IOException {
+        return fileChannel.position();
+    }
+
+    /**
+     * Get the size of the file.
+     *
+     * @return              The size of the file in bytes.
+     * @throws IOException  If there is an error reading from the fileChannel.
+     */
+    public long getFileSize() throws IOException {
+        return fileChannel.size();
+    }
+
+    /**
+     * Get the time spent parsing the file: reading it, decoding it into characters and looking for ORIGIN blocks. The
+     * rest of the time spent in this iterator goes to encoding the subsequences read.
+     *
+     * @return The time spent parsing in nanoseconds.
+     */
+    public long getParseNanos() {
+        return parseNanos;
+    }
+
+    /**
+     * Read the last base of the next subsequence, leaving the subsequence in {@link #subsequenceArr} and
+     * {@link #subsequenceEncoding}.
+     */
+    private void completeSubsequence() {
         if (!hasNext()) {
             throw new NoSuchElementException("No more subsequences available");
         }
@@ -144,8 +263,14 @@ public class GeneBankSubsequenceIterator implements Iterator<String>, AutoClosea
         this.subsequenceArr[this.subsequenceIdx] = Character.toLowerCase(next);
         this.subsequenceIdx = (this.subsequenceIdx + 1) % this.subsequenceArr.length;
         this.subsequenceFillCount++;
-        String subsequence = subsequenceToString();  // Value to return
+        basesRead++;
+        rollEncoding(SequenceUtils.baseCode(next));
+    }
 
+    /**
+     * Read ahead to the last base of the subsequence after the one just completed, if there is one.
+     */
+    private void prepareNextSubsequence() {
         // Get the object in a state to either 1) return the next subsequence, or 2) alert that we've exhausted the file
         try {
             boolean hasNextSubsequence = advanceToNextCharacter();
@@ -155,9 +280,6 @@ public class GeneBankSubsequenceIterator implements Iterator<String>, AutoClosea
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
-
-        // Return the subsequence
-        return subsequence;
     }
 
     /**
@@ -172,6 +294,7 @@ public class GeneBankSubsequenceIterator implements Iterator<String>, AutoClosea
      */
     private boolean advanceToNextCharacter() throws IOException {
         char current;
+        int code;
         do {
             boolean succeeded = guaranteeCharBuffer();
             if (!succeeded) {
@@ -180,35 +303,57 @@ public class GeneBankSubsequenceIterator implements Iterator<String>, AutoClosea
 
             // Read `charBuffer`
             current = charBuffer.get();
+            code = SequenceUtils.baseCode(current);
 
             if (current == 'n' || current == 'N') {  // End subsequence, but continue through the charBuffer
                 resetSubsequence();
             } else if (current == '/') {  // End of block; look for new ORIGIN if it exists, or see if we're done
                 resetSubsequence();
                 int bytesRead = consumeCharBuffer();
+                long start = System.nanoTime();
                 long loc = findNextOrigin(fileChannel.position() - bytesRead);
+                parseNanos += System.nanoTime() - start;
                 if (loc == fileChannel.size()) {
                     return false;
                 }
                 fileChannel.position(loc);
                 consumeCharBuffer();  // Will get reloaded w/ guaranteeCharBuffer
-            } else if (DNA_BASES.contains(current)) {
+            } else if (code >= 0) {
                 subsequenceArr[subsequenceIdx] = Character.toLowerCase(current);
                 subsequenceIdx = (subsequenceIdx + 1) % subsequenceArr.length;
                 if (subsequenceFillCount < subsequenceArr.length) {
                     subsequenceFillCount++;
                 }
+                previousEncoding = subsequenceEncoding;
+                previousEncodingHigh = subsequenceEncodingHigh;
+                basesRead++;
+                rollEncoding(code);
             }
-        } while (subsequenceFillCount < subsequenceArr.length || !DNA_BASES.contains(current));
+        } while (subsequenceFillCount < subsequenceArr.length || code < 0);
 
         // We have a subsequence ready; we need to undo the last read character
         charBuffer.position(charBuffer.position() - 1);
         subsequenceIdx = (subsequenceIdx - 1 + subsequenceArr.length) % subsequenceArr.length;
         subsequenceArr[subsequenceIdx] = '\0';
         subsequenceFillCount--;
+        basesRead--;  // Read again by completeSubsequence
+        subsequenceEncoding = previousEncoding;
+        subsequenceEncodingHigh = previousEncodingHigh;
         return true;
     }
 
+    /**
+     * Roll a base into {@link #subsequenceEncoding} and {@link #subsequenceEncodingHigh}.
+     *
+     * @param code  The 2-bit code of the base, per {@link SequenceUtils#baseCode(char)}.
+     */
+    private void rollEncoding(int code) {
+        int length = subsequenceArr.length;
+        subsequenceEncodingHigh = SequenceUtils.rollForwardHigh(subsequenceEncodingHigh, subsequenceEncoding, length);
+        subsequenceEncoding = SequenceUtils.rollForward(subsequenceEncoding, code,
+                Math.min(length, SequenceUtils.BASES_PER_LONG));
+    }
+
 
     /**
      * Find the starting position of the next ORIGIN block within the Genebank File.
@@ -273,6 +418,8 @@ public class GeneBankSubsequenceIterator implements Iterator<String>, AutoClosea
         Arrays.fill(this.subsequenceArr, '\0');
         this.subsequenceFillCount = 0;
         this.subsequenceIdx = 0;
+        this.subsequenceEncoding = 0L;
+        this.subsequenceEncodingHigh = 0L;
     }
 
     /**
@@ -299,16 +446,19 @@ public class GeneBankSubsequenceIterator implements Iterator<String>, AutoClosea
             return false;
         }
 
+        long start = System.nanoTime();
         byteBuffer.clear();
         int bytesRead = fileChannel.read(byteBuffer);
 
         if (bytesRead == -1) {
             // End of the file channel has been reached
+            parseNanos += System.nanoTime() - start;
             return false;
         }
 
         byteBuffer.flip();
         charBuffer = decoder.decode(byteBuffer);
+        parseNanos += System.nanoTime() - start;
 
         return charBuffer.hasRemaining();
     }
@@ -0,0 +1,266 @@
+package cs321.create;
+
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A timer of the phases of a program, such as GeneBankCreateBTree's parse, insert and export, that reports the wall
+ * and CPU time of each, the time spent in garbage collection and the peak heap use.
+ * <p>
+ * Phases that run one after another are timed with {@link PhaseTimer#start(String)} and {@link PhaseTimer#stop()},
+ * which sample the CPU time of the current thread and the collection time of the garbage collectors at either end.
+ * Phases that are interleaved in one loop, too finely to sample the CPU time at every switch, are timed by the caller
+ * with {@link System#nanoTime()} and added with {@link PhaseTimer#add(String, long)}; they report wall time only,
+ * while the loop itself can be timed as a phase of its own for its CPU and GC time.
+ *
+ * @author Derek Caplinger
+ * @author Matt Youngberg
+ */
+public class PhaseTimer {
+
+    /**
+     * A timed phase.
+     */
+    static class Phase {
+
+        /**
+         * The name of the phase.
+         */
+        final String name;
+
+        /**
+         * The wall time of the phase, in nanoseconds.
+         */
+        long wallNanos;
+
+        /**
+         * The CPU time of the phase, in nanoseconds, or -1 if unknown.
+         */
+        long cpuNanos = -1;
+
+        /**
+         * The time spent in garbage collection during the phase, in milliseconds, or -1 if unknown.
+         */
+        long gcMillis = -1;
+
+        /**
+         * Whether the phase is part of another phase, and so not counted in the total.
+         */
+        final boolean nested;
+
+        /**
+         * Create a new {@link Phase}.
+         *
+         * @param name      the name of the phase
+         * @param nested    whether the phase is part of another phase
+         */
+        Phase(String name, boolean nested) {
+            this.name = name;
+            this.nested = nested;
+        }
+    }
+
+    /**
+     * The phases timed so far, in order.
+     */
+    private final List<Phase> phases = new ArrayList<>();
+
+    /**
+     * The source of the CPU time of the current thread, or null if the JVM can't measure it.
+     */
+    private final ThreadMXBean threadBean;
+
+    /**
+     * The phase being timed with {@link PhaseTimer#start(String)}, or null if none is.
+     */
+    private Phase current = null;
+
+    /**
+     * The wall time when the current phase started, per {@link System#nanoTime()}.
+     */
+    private long startWall;
+
+    /**
+     * The CPU time of the current thread when the current phase started, in nanoseconds.
+     */
+    private long startCpu;
+
+    /**
+     * The time all garbage collectors had spent collecting when the current phase started, in milliseconds.
+     */
+    private long startGc;
+
+    /**
+     * Create a new {@link PhaseTimer}, resetting the peak usage of the heap so that {@link PhaseTimer#getPeakHeap()}
+     * covers the phases timed from now on.
+     */
+    public PhaseTimer() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        this.threadBean = bean.isCurrentThreadCpuTimeSupported() ? bean : null;
+        if (threadBean != null && !threadBean.isThreadCpuTimeEnabled()) {
+            threadBean.setThreadCpuTimeEnabled(true);
+        }
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    /**
+     * Start timing a phase, stopping the current one if there is one.
+     *
+     * @param name  the name of the phase
+     */
+    public void start(String name) {
+        stop();
+        current = new Phase(name, false);
+        startGc = getCollectionMillis();
+        startCpu = getCpuNanos();
+        startWall = System.nanoTime();
+    }
+
+    /**
+     * Stop timing the current phase, if there is one.
+     */
+    public void stop() {
+        if (current == null) {
+            return;
+        }
+        current.wallNanos = System.nanoTime() - startWall;
+        if (threadBean != null) {
+            current.cpuNanos = getCpuNanos() - startCpu;
+        }
+        current.gcMillis = getCollectionMillis() - startGc;
+        phases.add(current);
+        current = null;
+    }
+
+    /**
+     * Add a phase timed by the caller, which is part of a phase timed with {@link PhaseTimer#start(String)} and so
+     * isn't counted again in the total.
+     *
+     * @param name      the name of the phase
+     * @param wallNanos the wall time of the phase, in nanoseconds
+     */
+    public void add(String name, long wallNanos) {
+        Phase phase = new Phase(name, true);
+        phase.wallNanos = wallNanos;
+        phases.add(phase);
+    }
+
+    /**
+     * Get the wall time of a phase.
+     *
+     * @param name  the name of the phase
+     * @return      the wall time of the phase in nanoseconds, or 0 if it hasn't been timed
+     */
+    public long getWallNanos(String name) {
+        long total = 0;
+        for (Phase phase : phases) {
+            if (phase.name.equals(name)) {
+                total += phase.wallNanos;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Get the total wall time of the phases timed with {@link PhaseTimer#start(String)}.
+     *
+     * @return  the total wall time in nanoseconds
+     */
+    public long getTotalWallNanos() {
+        long total = 0;
+        for (Phase phase : phases) {
+            if (!phase.nested) {
+                total += phase.wallNanos;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Get the peak usage of the heap since this {@link PhaseTimer} was created, as the sum of the peaks of the heap's
+     * memory pools. The pools don't necessarily peak together, so this is an upper bound.
+     *
+     * @return  the peak heap usage in bytes
+     */
+    public long getPeakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    /**
+     * Print a table of the phases timed so far, with their wall time, CPU time, garbage collection time and share of
+     * the total wall time, followed by the total and the peak heap usage. Phases added with
+     * {@link PhaseTimer#add(String, long)} are indented under the phase they are part of.
+     *
+     * @param out   the stream to print to
+     */
+    public void printReport(PrintStream out) {
+        stop();
+        long total = getTotalWallNanos();
+        out.printf(Locale.ROOT, "%-30s%10s%10s%10s%8s%n", "Phase", "Wall (s)", "CPU (s)", "GC (s)", "Share");
+        out.printf(Locale.ROOT, "%-30s%10s%10s%10s%8s%n", "-----", "--------", "-------", "------", "-----");
+        long totalCpu = 0;
+        long totalGc = 0;
+        for (Phase phase : phases) {
+            out.printf(Locale.ROOT, "%-30s%10.3f%10s%10s%7.1f%%%n", (phase.nested ? "  " : "") + phase.name,
+                    phase.wallNanos / 1e9, formatSeconds(phase.cpuNanos, 1e9), formatSeconds(phase.gcMillis, 1e3),
+                    total == 0 ? 0.0 : phase.wallNanos * 100.0 / total);
+            if (!phase.nested) {
+                totalCpu += Math.max(phase.cpuNanos, 0);
+                totalGc += Math.max(phase.gcMillis, 0);
+            }
+        }
+        out.printf(Locale.ROOT, "%-30s%10.3f%10s%10.3f%n", "Total", total / 1e9,
+                formatSeconds(threadBean == null ? -1 : totalCpu, 1e9), totalGc / 1e3);
+        out.printf(Locale.ROOT, "%-30s%,10.1f MB%n", "Peak heap:", getPeakHeap() / (1024.0 * 1024.0));
+    }
+
+    /**
+     * Format a time in seconds for {@link PhaseTimer#printReport(PrintStream)}.
+     *
+     * @param time      the time, or -1 if unknown
+     * @param perSecond the number of units of the time in a second, e.g. 1e9 for nanoseconds
+     * @return          the time in seconds to three places, or "-" if unknown
+     */
+    private static String formatSeconds(long time, double perSecond) {
+        return time < 0 ? "-" : String.format(Locale.ROOT, "%.3f", time / perSecond);
+    }
+
+    /**
+     * Get the CPU time of the current thread.
+     *
+     * @return  the CPU time in nanoseconds, or 0 if the JVM can't measure it
+     */
+    private long getCpuNanos() {
+        return threadBean == null ? 0 : threadBean.getCurrentThreadCpuTime();
+    }
+
+    /**
+     * Get the total time all garbage collectors have spent collecting.
+     *
+     * @return  the collection time in milliseconds
+     */
+    private static long getCollectionMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(gc.getCollectionTime(), 0);  // -1 if the collector doesn't report it
+        }
+        return total;
+    }
+}
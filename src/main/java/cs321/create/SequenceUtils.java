@@ -3,6 +3,9 @@ package cs321.create;
 
 import cs321.common.DNA;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
 /**
  * A utility class that provides methods to encode a DNA string into a long, decode
  * from the long back to a DNA string, and get the complement of a DNA string encoded 
@@ -15,6 +18,61 @@ import cs321.common.DNA;
 
 public class SequenceUtils
 {
+    /**
+     * The 2-bit code of each ASCII character that is a DNA base, upper or lower case, and -1 for every other character.
+     */
+    private static final byte[] BASE_CODES = new byte[128];
+
+    /**
+     * The lowercase ASCII character of each 2-bit code.
+     */
+    private static final byte[] BASES = {'a', 'c', 'g', 't'};
+
+    /**
+     * The four lowercase ASCII bases encoded by each possible byte of an encoded sequence, most significant base first.
+     * Lets a sequence be decoded one byte, i.e. four bases, per lookup.
+     */
+    private static final byte[] BYTE_TO_BASES = new byte[256 * 4];
+
+    /**
+     * The number of bases that fit in a long when packing a sequence with {@link #encode(byte[], int, int, long[])}.
+     */
+    public static final int BASES_PER_LONG = 32;
+
+    /**
+     * The longest DNA string that fits in a single long with {@link #dnaStringToLong(String)}.
+     */
+    public static final int MAX_LENGTH = 31;
+
+    /**
+     * The longest DNA string that fits in a pair of longs with {@link #dnaStringToLongHigh(String)} and
+     * {@link #dnaStringToLongLow(String)}.
+     */
+    public static final int MAX_WIDE_LENGTH = 63;
+
+    static {
+        Arrays.fill(BASE_CODES, (byte) -1);
+        for (int code = 0; code < BASES.length; code++) {
+            BASE_CODES[BASES[code]] = (byte) code;
+            BASE_CODES[Character.toUpperCase(BASES[code])] = (byte) code;
+        }
+        for (int b = 0; b < 256; b++) {
+            for (int i = 0; i < 4; i++) {
+                BYTE_TO_BASES[b * 4 + i] = BASES[(b >>> (6 - 2 * i)) & 0b11];
+            }
+        }
+    }
+
+    /**
+     * Returns the 2-bit code of a single DNA base, per {@link DNA}. It is case insensitive.
+     *
+     * @param base The DNA base, one of A, C, G and T
+     * @return the code of the base, or -1 if the character is not a DNA base
+     */
+    public static int baseCode(char base) {
+        return base < BASE_CODES.length ? BASE_CODES[base] : -1;
+    }
+
     /**
      * Converts a DNA sequence provided as a string of A,C, T and G into a long by
      * encoding into a binary number. It is case insensitive.
@@ -23,34 +81,10 @@ public class SequenceUtils
      * @return
      */
     public static long dnaStringToLong(String dna) {
-        if (dna.length() > 31) {
+        if (dna.length() > MAX_LENGTH) {
             throw new IllegalArgumentException("DNA string longer than 31");
         }
-        dna = dna.toLowerCase();
-        long encoding = 0;
-
-        for (int i = 0; i < dna.length(); i++) {
-            char next = dna.charAt(i);
-            switch (next) {
-                case 'a':
-                    encoding = encoding | DNA.A;
-                    break;
-                case 'c':
-                    encoding = encoding | DNA.C;
-                    break;
-                case 'g':
-                    encoding = encoding | DNA.G;
-                    break;
-                case 't':
-                    encoding = encoding | DNA.T;
-                    break;
-                default:
-                    break;
-            }
-            if (i == dna.length() - 1) break;
-            encoding = encoding << 2;
-        }
-        return encoding;
+        return encodeRange(dna, 0, dna.length());  // Anything that isn't a base is read as an A
     }
 
 
@@ -66,33 +100,90 @@ public class SequenceUtils
     public static String longToDnaString(long sequence, int seqLength) throws IllegalArgumentException {
         if (seqLength > 31) throw new IllegalArgumentException("seqlength must be <= 31");
 
-        StringBuilder buffer = new StringBuilder(32);
-        for (int i = 0; i < seqLength; i++) {
-            // extract the least significant two bits -- which is the next DNA base
-            int next = (int) sequence & 0b11; // mask out the 2 least significant bits
-            switch (next) {
-                case DNA.A:
-                    buffer.append('a');
-                    break;
-                case DNA.C:
-                    buffer.append('c');
-                    break;
-                case DNA.G:
-                    buffer.append('g');
-                    break;
-                case DNA.T:
-                    buffer.append('t');
-                    break;
-                default:
-                    break;
-            }
-            sequence = sequence >>> 2;
-        }
-        String value = buffer.reverse().toString();
-        return value;
+        byte[] bases = new byte[Math.max(seqLength, 0)];
+        decodeInto(sequence, seqLength, bases, 0);
+        return new String(bases, StandardCharsets.US_ASCII);
     }
     
     
+    /**
+     * Encodes the leading bases of a DNA string of up to {@value #MAX_WIDE_LENGTH} bases: every base but the last
+     * {@value #BASES_PER_LONG}. Together with {@link #dnaStringToLongLow(String)}, this encodes the string as a 128-bit
+     * number in the same layout as {@link #dnaStringToLong(String)}. For strings of up to {@value #MAX_LENGTH} bases
+     * this is always 0. It is case insensitive.
+     *
+     * @param dna The DNA sequence of bases A, C, T, and G
+     * @return the high 64 bits of the encoding
+     */
+    public static long dnaStringToLongHigh(String dna) {
+        if (dna.length() > MAX_WIDE_LENGTH) {
+            throw new IllegalArgumentException("DNA string longer than " + MAX_WIDE_LENGTH);
+        }
+        return encodeRange(dna, 0, dna.length() - BASES_PER_LONG);
+    }
+
+    /**
+     * Encodes the trailing {@value #BASES_PER_LONG} bases of a DNA string of up to {@value #MAX_WIDE_LENGTH} bases,
+     * or all of them if it is shorter; see {@link #dnaStringToLongHigh(String)}. For strings of up to
+     * {@value #MAX_LENGTH} bases this is the same as {@link #dnaStringToLong(String)}. It is case insensitive.
+     *
+     * @param dna The DNA sequence of bases A, C, T, and G
+     * @return the low 64 bits of the encoding
+     */
+    public static long dnaStringToLongLow(String dna) {
+        if (dna.length() > MAX_WIDE_LENGTH) {
+            throw new IllegalArgumentException("DNA string longer than " + MAX_WIDE_LENGTH);
+        }
+        return encodeRange(dna, Math.max(dna.length() - BASES_PER_LONG, 0), dna.length());
+    }
+
+    /**
+     * Converts a DNA string encoded as a pair of longs, per {@link #dnaStringToLongHigh(String)} and
+     * {@link #dnaStringToLongLow(String)}, back into a DNA string.
+     *
+     * @param high      the high 64 bits of the encoding
+     * @param low       the low 64 bits of the encoding
+     * @param seqLength the length of the sequence to decode, up to {@value #MAX_WIDE_LENGTH}
+     * @return the decoded DNA string
+     * @throws IllegalArgumentException if the length is longer than {@value #MAX_WIDE_LENGTH}
+     */
+    public static String longsToDnaString(long high, long low, int seqLength) throws IllegalArgumentException {
+        if (seqLength > MAX_WIDE_LENGTH) {
+            throw new IllegalArgumentException("seqlength must be <= " + MAX_WIDE_LENGTH);
+        }
+        int lowLength = Math.min(Math.max(seqLength, 0), BASES_PER_LONG);
+        byte[] bases = new byte[Math.max(seqLength, 0)];
+        decodeInto(high, bases.length - lowLength, bases, 0);
+        decodeInto(low, lowLength, bases, bases.length - lowLength);
+        return new String(bases, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Returns the high 64 bits of the complement of a DNA string encoded as a pair of longs; see
+     * {@link #getComplement(long, int)}.
+     *
+     * @param high The high 64 bits of the DNA sequence to complement.
+     * @param seqLength The length of the sequence, up to {@value #MAX_WIDE_LENGTH}.
+     * @return the high 64 bits of the complement
+     */
+    public static long getComplementHigh(long high, int seqLength)
+    {
+        return seqLength <= BASES_PER_LONG ? high : getComplement(high, seqLength - BASES_PER_LONG);
+    }
+
+    /**
+     * Returns the low 64 bits of the complement of a DNA string encoded as a pair of longs; see
+     * {@link #getComplement(long, int)}.
+     *
+     * @param low The low 64 bits of the DNA sequence to complement.
+     * @param seqLength The length of the sequence, up to {@value #MAX_WIDE_LENGTH}.
+     * @return the low 64 bits of the complement
+     */
+    public static long getComplementLow(long low, int seqLength)
+    {
+        return seqLength >= BASES_PER_LONG ? ~low : getComplement(low, seqLength);
+    }
+
     /**
      * Returns the complement of a DNA string encoded as a long. For example, the string 
      * ATCG will become TAGC since A and T are complementary bases and so are C and G.
@@ -107,7 +198,240 @@ public class SequenceUtils
         return sequence ^ mask; // use xor operator to invert the bits
     }
 
+    /**
+     * Returns the reverse complement of a DNA string encoded as a long, i.e. the sequence read from the opposite strand.
+     * For example, the string AACG will become CGTT.
+     * <p>
+     * Rather than walking the bases one at a time, the 2-bit groups are reversed in place: neighboring bases are
+     * swapped, then neighboring pairs, then the bytes of the long, before the result is shifted back down to the
+     * length of the sequence.
+     *
+     * @param sequence The DNA sequence (encoded as a long value).
+     * @param seqLength The length of the sequence, from 1 to 32.
+     * @return the reverse complement of the sequence
+     */
+    public static long getReverseComplement(long sequence, int seqLength)
+    {
+        long x = ~sequence;
+        x = ((x >>> 2) & 0x3333333333333333L) | ((x & 0x3333333333333333L) << 2);
+        x = ((x >>> 4) & 0x0F0F0F0F0F0F0F0FL) | ((x & 0x0F0F0F0F0F0F0F0FL) << 4);
+        x = Long.reverseBytes(x);
+        return x >>> (64 - 2 * seqLength);
+    }
+
+    /**
+     * Slides a window of a DNA sequence forward by one base: the oldest base is dropped and the given base is appended.
+     * Encoding every subsequence of a longer sequence this way takes constant time per base.
+     *
+     * @param sequence The current window (encoded as a long value).
+     * @param base The 2-bit code of the next base, per {@link #baseCode(char)}.
+     * @param seqLength The length of the window, from 1 to 32.
+     * @return the encoding of the next window
+     */
+    public static long rollForward(long sequence, int base, int seqLength)
+    {
+        return ((sequence << 2) | base) & (-1L >>> (64 - 2 * seqLength));
+    }
+
+    /**
+     * Slides the high 64 bits of a window of a DNA string encoded as a pair of longs forward by one base, to go along
+     * with {@link #rollForward(long, int, int)} on the low 64 bits with a length of {@value #BASES_PER_LONG}. Must be
+     * called with the low 64 bits from before they are rolled forward, as their first base moves to the high bits.
+     *
+     * @param high The high 64 bits of the current window.
+     * @param low The low 64 bits of the current window.
+     * @param seqLength The length of the window, up to {@value #MAX_WIDE_LENGTH}.
+     * @return the high 64 bits of the next window
+     */
+    public static long rollForwardHigh(long high, long low, int seqLength)
+    {
+        if (seqLength <= BASES_PER_LONG) {
+            return 0L;
+        }
+        return rollForward(high, (int) (low >>> 62), seqLength - BASES_PER_LONG);
+    }
+
+    /**
+     * Slides the reverse complement of a window of a DNA sequence forward by one base, to match
+     * {@link #rollForward(long, int, int)} on the window itself. The complement of the new base becomes the first base
+     * of the reverse complement.
+     *
+     * @param reverseComplement The reverse complement of the current window (encoded as a long value).
+     * @param base The 2-bit code of the next base, per {@link #baseCode(char)}.
+     * @param seqLength The length of the window, from 1 to 32.
+     * @return the reverse complement of the next window
+     */
+    public static long rollReverseComplement(long reverseComplement, int base, int seqLength)
+    {
+        return (reverseComplement >>> 2) | ((long) (base ^ 0b11) << (2 * (seqLength - 1)));
+    }
+
+    /**
+     * Encodes a run of ASCII DNA bases, upper or lower case, into packed longs.
+     * <p>
+     * Each long holds {@value #BASES_PER_LONG} consecutive bases, first base in the most significant bits, in the same
+     * layout as {@link #dnaStringToLong(String)}. The last long holds whatever bases remain, right-aligned. No objects
+     * are allocated, so the same destination array can be reused across calls.
+     *
+     * @param src The bytes to encode.
+     * @param off The index of the first base in src.
+     * @param len The number of bases to encode.
+     * @param dst The array to write the packed longs to, starting at index 0. Must have room for
+     *            ceil(len / {@value #BASES_PER_LONG}) longs.
+     * @return the number of longs written to dst
+     * @throws IllegalArgumentException if a byte in the run is not a DNA base
+     */
+    public static int encode(byte[] src, int off, int len, long[] dst) throws IllegalArgumentException {
+        int written = 0;
+        int end = off + len;
+        while (off < end) {
+            int stop = Math.min(off + BASES_PER_LONG, end);
+            long word = 0;
+            int invalid = 0;
+            for (int i = off; i < stop; i++) {
+                int code = src[i] < 0 ? -1 : BASE_CODES[src[i]];
+                invalid |= code;  // Only ever negative if some code was -1
+                word = (word << 2) | (code & 0b11);
+            }
+            if (invalid < 0) {
+                throw new IllegalArgumentException("Not a DNA base in bytes " + off + " to " + stop);
+            }
+            dst[written++] = word;
+            off = stop;
+        }
+        return written;
+    }
 
+    /**
+     * Decodes packed longs, as written by {@link #encode(byte[], int, int, long[])}, back into lowercase ASCII bases.
+     * Bases are decoded four, i.e. one byte of a long, per table lookup.
+     *
+     * @param src The packed longs.
+     * @param len The number of bases to decode.
+     * @param dst The array to write the bases to.
+     * @param off The index in dst to write the first base to.
+     */
+    public static void decode(long[] src, int len, byte[] dst, int off) {
+        int word = 0;
+        for (; len >= BASES_PER_LONG; len -= BASES_PER_LONG, off += BASES_PER_LONG) {
+            decodeInto(src[word++], BASES_PER_LONG, dst, off);
+        }
+        if (len > 0) {
+            decodeInto(src[word], len, dst, off);
+        }
+    }
+
+    /**
+     * Encodes a range of the characters of a DNA string into a long. Characters that are not bases are read as an A.
+     *
+     * @param dna The DNA string.
+     * @param start The index of the first character to encode; negative values are read as 0.
+     * @param end The index after the last character to encode.
+     * @return the encoding of the range
+     */
+    private static long encodeRange(String dna, int start, int end) {
+        long encoding = 0;
+        for (int i = Math.max(start, 0); i < end; i++) {
+            int code = baseCode(dna.charAt(i));
+            encoding = (encoding << 2) | (code < 0 ? DNA.A : code);
+        }
+        return encoding;
+    }
+
+    /**
+     * Decodes a single encoded sequence into lowercase ASCII bases, four bases per table lookup.
+     *
+     * @param sequence The DNA sequence (encoded as a long value).
+     * @param seqLength The length of the sequence, from 0 to 32.
+     * @param dst The array to write the bases to.
+     * @param off The index in dst to write the first base to.
+     */
+    private static void decodeInto(long sequence, int seqLength, byte[] dst, int off) {
+        int i = off + seqLength;
+        for (; i - off >= 4; i -= 4) {
+            System.arraycopy(BYTE_TO_BASES, ((int) sequence & 0xFF) * 4, dst, i - 4, 4);
+            sequence >>>= 8;
+        }
+        for (; i > off; i--) {
+            dst[i - 1] = BASES[(int) sequence & 0b11];
+            sequence >>>= 2;
+        }
+    }
+
+    /**
+     * Returns the canonical key of a DNA string encoded as a long: the lesser, unsigned, of its encoding and the
+     * encoding of its complement (see {@link #getComplement(long, int)}). A sequence and its complement always share
+     * the same canonical key, so storing only canonical keys lets a single lookup answer for both.
+     *
+     * @param sequence The DNA sequence (encoded as a long value).
+     * @param seqLength The length of the sequence, up to {@value #MAX_LENGTH}.
+     * @return the canonical key of the sequence
+     */
+    public static long getCanonical(long sequence, int seqLength)
+    {
+        return getCanonicalLow(0, sequence, seqLength);
+    }
+
+    /**
+     * Returns the high 64 bits of the canonical key of a DNA string encoded as a pair of longs; see
+     * {@link #getCanonical(long, int)}.
+     *
+     * @param high The high 64 bits of the DNA sequence.
+     * @param low The low 64 bits of the DNA sequence.
+     * @param seqLength The length of the sequence, up to {@value #MAX_WIDE_LENGTH}.
+     * @return the high 64 bits of the canonical key
+     */
+    public static long getCanonicalHigh(long high, long low, int seqLength)
+    {
+        return isComplementLesser(high, low, seqLength) ? getComplementHigh(high, seqLength) : high;
+    }
+
+    /**
+     * Returns the low 64 bits of the canonical key of a DNA string encoded as a pair of longs; see
+     * {@link #getCanonical(long, int)}.
+     *
+     * @param high The high 64 bits of the DNA sequence.
+     * @param low The low 64 bits of the DNA sequence.
+     * @param seqLength The length of the sequence, up to {@value #MAX_WIDE_LENGTH}.
+     * @return the low 64 bits of the canonical key
+     */
+    public static long getCanonicalLow(long high, long low, int seqLength)
+    {
+        return isComplementLesser(high, low, seqLength) ? getComplementLow(low, seqLength) : low;
+    }
+
+    /**
+     * Returns whether the complement of a DNA string encoded as a pair of longs is less than the string itself,
+     * comparing the high 64 bits and then the low 64 bits, unsigned, as {@link cs321.btree.TreeObject} orders keys.
+     *
+     * @param high The high 64 bits of the DNA sequence.
+     * @param low The low 64 bits of the DNA sequence.
+     * @param seqLength The length of the sequence, up to {@value #MAX_WIDE_LENGTH}.
+     * @return whether the complement is the canonical key
+     */
+    private static boolean isComplementLesser(long high, long low, int seqLength)
+    {
+        int comparison = Long.compareUnsigned(getComplementHigh(high, seqLength), high);
+        return comparison < 0 || comparison == 0 && Long.compareUnsigned(getComplementLow(low, seqLength), low) < 0;
+    }
+
+    /**
+     * Mixes the bits of an encoded sequence, or any long, so that every bit of it affects every bit of the result, with
+     * the finalizer of MurmurHash3. Encodings of sequences that differ only in their last bases differ only in their
+     * low bits, so a hash of one is taken from its mixed bits rather than its bits.
+     *
+     * @param value The value to mix.
+     * @return the mixed value
+     */
+    public static long mix(long value)
+    {
+        value ^= value >>> 33;
+        value *= 0xFF51AFD7ED558CCDL;
+        value ^= value >>> 33;
+        value *= 0xC4CEB9FE1A85EC53L;
+        value ^= value >>> 33;
+        return value;
+    }
 
     /**
      * The driver for demonstrating the usage of the methods in the class.
@@ -0,0 +1,172 @@
+package cs321.index;
+
+import cs321.btree.BTree;
+import cs321.btree.FrequencyIndex;
+import cs321.btree.TreeObject;
+import cs321.create.SequenceUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Iterator;
+
+/**
+ * A read-only {@link FrequencyIndex} of the keys of a {@link BTree} of short subsequences, as a table of the frequency
+ * of every possible subsequence, indexed directly by its encoding from {@link SequenceUtils#dnaStringToLong(String)}.
+ * <p>
+ * There are only <code>4^k</code> subsequences of length <code>k</code>, so for short ones a table of all of them is
+ * small: 64MB of frequencies for length 12, and at most 1GB for length {@value #MAX_LENGTH}, the longest held. A search
+ * reads the one frequency at the offset of its key, without comparing it to any other, and writing the table from the
+ * keys of a {@link BTree} in order writes it front to back. Absent subsequences have a frequency of 0.
+ * <p>
+ * An index is written by {@link #write(BTree, Path)}, and the file is laid out as follows, big-endian:
+ * <pre>
+ * int     magic               {@link #MAGIC}
+ * int     version             1
+ * int     subsequenceLength   as {@link BTree#getSubsequenceLength()}, k
+ * int     flags               1 if canonical
+ * long    size                the number of subsequences with a frequency, n
+ * long    unused              0
+ * int[]   frequencies         4^k frequencies, at the index of the encoding of their subsequences
+ * </pre>
+ * A table of canonical keys leaves the frequencies of the other keys 0 rather than packing them out, so that its keys
+ * are indexed the same way.
+ *
+ * @author Derek Caplinger
+ * @author Matt Youngberg
+ */
+public final class DenseIndex extends MappedIndex {
+
+    /**
+     * The first four bytes of an index file, "DENS".
+     */
+    public static final int MAGIC = 0x44454E53;
+
+    /**
+     * The longest subsequences a table is written for, whose table is 1GB.
+     */
+    public static final int MAX_LENGTH = 14;
+
+    /**
+     * The longest subsequences a table is chosen for by {@link IndexFormat#forLength(int)}, whose table is 64MB. The
+     * tables of longer subsequences are mostly empty for any but the largest gbk files.
+     */
+    public static final int AUTO_MAX_LENGTH = 12;
+
+    /**
+     * The version of the layout of the file.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * The size of the header of the file in bytes.
+     */
+    private static final int HEADER_SIZE = 32;
+
+    /**
+     * The frequencies, mapped.
+     */
+    private final MappedBuffer frequencies;
+
+    /**
+     * Open an index file.
+     *
+     * @param path          the path of the file
+     * @throws IOException  if an I/O error occurs, or the file isn't an index
+     */
+    public DenseIndex(Path path) throws IOException {
+        super(path, MAGIC, VERSION, HEADER_SIZE, "dense index");
+        try {
+            int length = getSubsequenceLength();
+            if (length < 1 || length > MAX_LENGTH) {
+                throw new IOException("Dense index of subsequences of length " + length + ": " + path);
+            }
+            if (channel.size() != getFileSize(length)) {
+                throw truncated();
+            }
+            this.frequencies = new MappedBuffer(channel, FileChannel.MapMode.READ_ONLY, HEADER_SIZE,
+                    4 * getKeyCount(length));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Write the keys of a {@link BTree} to an index file, replacing any there.
+     * <p>
+     * The keys are read in order from {@link BTree#iterator()}, so their frequencies are written in order of offset.
+     * The table starts out as zeros from extending the file, which a file system may leave unallocated until written.
+     *
+     * @param tree          the {@link BTree}, of subsequences of up to {@value #MAX_LENGTH} bases
+     * @param path          the path of the file
+     * @throws IOException  if an I/O error occurs
+     */
+    public static void write(BTree tree, Path path) throws IOException {
+        int length = tree.getSubsequenceLength();
+        if (length < 1 || length > MAX_LENGTH) {
+            throw new IllegalArgumentException("Dense indexes hold subsequences of 1 to " + MAX_LENGTH
+                    + " bases, not " + length);
+        }
+        long keyCount = getKeyCount(length);
+        try (FileChannel out = create(path)) {
+            ByteBuffer header = newHeader(HEADER_SIZE, MAGIC, VERSION, tree).putLong(0);
+            header.flip();
+            writeFully(out, header, 0);
+            MappedBuffer frequencies = new MappedBuffer(out, FileChannel.MapMode.READ_WRITE, HEADER_SIZE,
+                    4 * keyCount);
+            Iterator<TreeObject> iter = tree.iterator();
+            while (iter.hasNext()) {
+                TreeObject obj = iter.next();
+                long key = obj.getSubsequence();
+                if (obj.getSubsequenceHigh() != 0 || Long.compareUnsigned(key, keyCount) >= 0) {
+                    throw new IllegalArgumentException("Key " + Long.toUnsignedString(key)
+                            + " doesn't encode a subsequence of length " + length);
+                }
+                frequencies.putInt(4 * key, obj.getCount());
+            }
+            frequencies.force();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public TreeObject search(long high, long low) {
+        if (high != 0 || Long.compareUnsigned(low, getKeyCount(getSubsequenceLength())) >= 0) {
+            return null;  // Not a subsequence of the length held
+        }
+        return super.search(high, low);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    TreeObject searchKey(long key) {
+        int frequency = frequencies.getInt(4 * key);
+        return frequency == 0 ? null : new TreeObject(key, frequency);
+    }
+
+    /**
+     * Get the number of possible subsequences of a length, which is the number of frequencies in its table.
+     *
+     * @param length    the length of the subsequences
+     * @return          <code>4^length</code>
+     */
+    private static long getKeyCount(int length) {
+        return 1L << (2 * length);
+    }
+
+    /**
+     * Get the size of the file of an index of subsequences of a length.
+     *
+     * @param length    the length of the subsequences
+     * @return          the size of the file in bytes
+     */
+    static long getFileSize(int length) {
+        return HEADER_SIZE + 4 * getKeyCount(length);
+    }
+}
@@ -0,0 +1,165 @@
+package cs321.index;
+
+import cs321.btree.BTree;
+import cs321.btree.FrequencyIndex;
+import cs321.btree.TreeObject;
+import cs321.create.SequenceUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Iterator;
+
+/**
+ * A read-only {@link FrequencyIndex} of the keys of a {@link BTree} that is done being built, with its keys sorted in
+ * Eytzinger order: the order of a breadth-first walk of a complete binary search tree over them, as in a binary heap.
+ * <p>
+ * A {@link BTree} is laid out for insertion: its nodes are half full on average, padded to their pages, and found
+ * through their parents' child positions. Once it is only searched, none of that pays for itself. This index holds only
+ * its keys and their frequencies, 12B each, in a file memory-mapped for searching. A search of the keys in Eytzinger
+ * order visits the children of key <code>i</code> at <code>2i</code> and <code>2i + 1</code>, so it needs no pointers,
+ * and the keys near the root, which every search visits, sit together at the start of the file, where they stay
+ * cached. The loop of a search moves left or right by adding the result of a comparison rather than branching on it,
+ * so the JIT can compile it without a branch to mispredict.
+ * <p>
+ * An index is written by {@link #write(BTree, Path)}, and the file is laid out as follows, big-endian:
+ * <pre>
+ * int     magic               {@link #MAGIC}
+ * int     version             1
+ * int     subsequenceLength   as {@link BTree#getSubsequenceLength()}
+ * int     flags               1 if canonical
+ * long    size                the number of keys, n
+ * long    unused              0
+ * long[]  keys                n + 1 keys in Eytzinger order from index 1; index 0 is unused
+ * int[]   frequencies         n + 1 frequencies, at the same index as their keys
+ * </pre>
+ * Only keys of up to 31 bases, with a high of 0, can be indexed.
+ *
+ * @author Derek Caplinger
+ * @author Matt Youngberg
+ */
+public final class EytzingerIndex extends MappedIndex {
+
+    /**
+     * The first four bytes of an index file, "EYTZ".
+     */
+    public static final int MAGIC = 0x45595A54;
+
+    /**
+     * The version of the layout of the file.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * The size of the header of the file in bytes.
+     */
+    private static final int HEADER_SIZE = 32;
+
+    /**
+     * The keys, mapped.
+     */
+    private final MappedBuffer keys;
+
+    /**
+     * The frequencies, mapped.
+     */
+    private final MappedBuffer frequencies;
+
+    /**
+     * Open an index file.
+     *
+     * @param path          the path of the file
+     * @throws IOException  if an I/O error occurs, or the file isn't an index
+     */
+    public EytzingerIndex(Path path) throws IOException {
+        super(path, MAGIC, VERSION, HEADER_SIZE, "Eytzinger index");
+        try {
+            long size = getSize();
+            if (channel.size() != getFileSize(size)) {
+                throw truncated();
+            }
+            this.keys = new MappedBuffer(channel, FileChannel.MapMode.READ_ONLY, HEADER_SIZE, 8 * (size + 1));
+            this.frequencies = new MappedBuffer(channel, FileChannel.MapMode.READ_ONLY,
+                    HEADER_SIZE + 8 * (size + 1), 4 * (size + 1));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Write the keys of a {@link BTree} to an index file, replacing any there.
+     * <p>
+     * The keys are read in order from {@link BTree#iterator()} and written straight to their places in the file, which
+     * are found by walking the tree of the index in order alongside, so nothing but the tree itself is held in memory.
+     *
+     * @param tree          the {@link BTree}, with keys of up to 31 bases
+     * @param path          the path of the file
+     * @throws IOException  if an I/O error occurs
+     */
+    public static void write(BTree tree, Path path) throws IOException {
+        if (tree.getSubsequenceLength() > SequenceUtils.MAX_LENGTH) {
+            throw new IllegalArgumentException("Eytzinger indexes hold subsequences of up to "
+                    + SequenceUtils.MAX_LENGTH + " bases, not " + tree.getSubsequenceLength());
+        }
+        long size = tree.getSize();
+        try (FileChannel out = create(path)) {
+            ByteBuffer header = newHeader(HEADER_SIZE, MAGIC, VERSION, tree).putLong(0);
+            header.flip();
+            writeFully(out, header, 0);
+            MappedBuffer keys = new MappedBuffer(out, FileChannel.MapMode.READ_WRITE, HEADER_SIZE, 8 * (size + 1));
+            MappedBuffer frequencies = new MappedBuffer(out, FileChannel.MapMode.READ_WRITE,
+                    HEADER_SIZE + 8 * (size + 1), 4 * (size + 1));
+
+            long i = 1;
+            while (2 * i <= size) {  // Start at the smallest key, the leftmost
+                i *= 2;
+            }
+            Iterator<TreeObject> iter = tree.iterator();
+            for (long written = 0; written < size; written++) {
+                TreeObject obj = iter.next();
+                keys.putLong(8 * i, obj.getSubsequence());
+                frequencies.putInt(4 * i, obj.getCount());
+                if (2 * i + 1 <= size) {  // The successor is the leftmost key of the right subtree
+                    i = 2 * i + 1;
+                    while (2 * i <= size) {
+                        i *= 2;
+                    }
+                } else {  // Or the first ancestor whose left subtree this is
+                    i >>>= Long.numberOfTrailingZeros(~i) + 1;
+                }
+            }
+            keys.force();
+            frequencies.force();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    TreeObject searchKey(long key) {
+        long size = getSize();
+        long target = key ^ Long.MIN_VALUE;  // Flipping the sign bit orders keys unsigned, as TreeObject does
+        long i = 1;
+        while (i <= size) {  // Left if the key here is at least the target, else right
+            i = 2 * i + ((keys.getLong(8 * i) ^ Long.MIN_VALUE) < target ? 1 : 0);
+        }
+        i >>>= Long.numberOfTrailingZeros(~i) + 1;  // Back up to the last left turn, the least key at least the target
+        if (i == 0 || keys.getLong(8 * i) != key) {
+            return null;
+        }
+        return new TreeObject(key, frequencies.getInt(4 * i));
+    }
+
+    /**
+     * Get the size of the file of an index of a number of keys.
+     *
+     * @param size  the number of keys
+     * @return      the size of the file in bytes
+     */
+    static long getFileSize(long size) {
+        return HEADER_SIZE + 12 * (size + 1);
+    }
+}
@@ -0,0 +1,195 @@
+package cs321.index;
+
+import cs321.btree.BTree;
+import cs321.btree.FrequencyIndex;
+import cs321.create.SequenceUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The formats of read-only {@link FrequencyIndex} files that a {@link BTree} can be exported to once it is built.
+ * <p>
+ * Each format's file starts with a magic number of its own, so a file is opened in whichever format it is in by
+ * {@link #open(Path)}, without being told. None of the magic numbers is {@link BTree#MAGIC}, which starts a
+ * {@link BTree} file.
+ *
+ * @author Derek Caplinger
+ * @author Matt Youngberg
+ */
+public enum IndexFormat {
+
+    /**
+     * Sorted keys in Eytzinger order; see {@link EytzingerIndex}.
+     */
+    EYTZINGER(".eytz", EytzingerIndex.MAGIC, SequenceUtils.MAX_LENGTH),
+
+    /**
+     * A table of the frequency of every possible subsequence; see {@link DenseIndex}.
+     */
+    DENSE(".dense", DenseIndex.MAGIC, DenseIndex.MAX_LENGTH),
+
+    /**
+     * Fingerprints and frequencies in the slots of a minimal perfect hash function; see {@link PerfectHashIndex}.
+     */
+    MPHF(".mphf", PerfectHashIndex.MAGIC, SequenceUtils.MAX_LENGTH),
+
+    /**
+     * Sorted keys found through a piecewise linear model of their positions; see {@link LearnedIndex}.
+     */
+    PGM(".pgm", LearnedIndex.MAGIC, SequenceUtils.MAX_LENGTH);
+
+    /**
+     * The suffix added to the file name of a {@link BTree} for the file of an index exported from it.
+     */
+    private final String suffix;
+
+    /**
+     * The first four bytes of a file of the format.
+     */
+    private final int magic;
+
+    /**
+     * The length of the longest subsequences the format holds.
+     */
+    private final int maxLength;
+
+    /**
+     * Create a new {@link IndexFormat}.
+     *
+     * @param suffix    the suffix of the file of an index
+     * @param magic     the first four bytes of a file of the format
+     * @param maxLength the length of the longest subsequences the format holds
+     */
+    IndexFormat(String suffix, int magic, int maxLength) {
+        this.suffix = suffix;
+        this.magic = magic;
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * Get the suffix added to the file name of a {@link BTree} for the file of an index exported from it, e.g.
+     * <code>.eytz</code>.
+     *
+     * @return  the suffix
+     */
+    public String getSuffix() {
+        return suffix;
+    }
+
+    /**
+     * Get the length of the longest subsequences the format holds.
+     *
+     * @return  the length of the longest subsequences
+     */
+    public int getMaxLength() {
+        return maxLength;
+    }
+
+    /**
+     * Write the keys of a {@link BTree} to a file in this format, replacing any there.
+     *
+     * @param tree          the {@link BTree}
+     * @param path          the path of the file
+     * @throws IOException  if an I/O error occurs
+     */
+    public void write(BTree tree, Path path) throws IOException {
+        switch (this) {
+            case EYTZINGER:
+                EytzingerIndex.write(tree, path);
+                break;
+            case DENSE:
+                DenseIndex.write(tree, path);
+                break;
+            case MPHF:
+                PerfectHashIndex.write(tree, path);
+                break;
+            case PGM:
+                LearnedIndex.write(tree, path);
+                break;
+            default:
+                throw new AssertionError(this);
+        }
+    }
+
+    /**
+     * Open a file in whichever format it is in.
+     *
+     * @param path          the path of the file
+     * @return              the index, or null if the file isn't in any of the formats, e.g. if it is a {@link BTree}
+     * @throws IOException  if an I/O error occurs
+     */
+    public static FrequencyIndex open(Path path) throws IOException {
+        IndexFormat format = detect(path);
+        if (format == null) {
+            return null;
+        }
+        switch (format) {
+            case EYTZINGER:
+                return new EytzingerIndex(path);
+            case DENSE:
+                return new DenseIndex(path);
+            case MPHF:
+                return new PerfectHashIndex(path);
+            case PGM:
+                return new LearnedIndex(path);
+            default:
+                throw new AssertionError(format);
+        }
+    }
+
+    /**
+     * Tell which format a file is in from its magic number.
+     *
+     * @param path          the path of the file
+     * @return              the format, or null if the file isn't in any of them
+     * @throws IOException  if an I/O error occurs
+     */
+    public static IndexFormat detect(Path path) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    return null;
+                }
+            }
+        }
+        int magic = buffer.getInt(0);
+        for (IndexFormat format : values()) {
+            if (format.magic == magic) {
+                return format;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Choose the format to index subsequences of a length in: a {@link #DENSE} table while it is no larger than
+     * {@value DenseIndex#AUTO_MAX_LENGTH} bases, at most 64MB, and {@link #EYTZINGER} order after that.
+     *
+     * @param length    the length of the subsequences, at most {@value SequenceUtils#MAX_LENGTH}
+     * @return          the format
+     */
+    public static IndexFormat forLength(int length) {
+        return length <= DenseIndex.AUTO_MAX_LENGTH ? DENSE : EYTZINGER;
+    }
+
+    /**
+     * Get an {@link IndexFormat} from its name on the command line, case-insensitive.
+     *
+     * @param name                      the name of the format, e.g. "eytzinger", "dense", "mphf" or "pgm"
+     * @return                          the matching {@link IndexFormat}
+     * @throws IllegalArgumentException if no {@link IndexFormat} matches the given name
+     */
+    public static IndexFormat fromString(String name) {
+        for (IndexFormat format : values()) {
+            if (format.name().equalsIgnoreCase(name)) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Unknown index format: " + name);
+    }
+}
@@ -0,0 +1,308 @@
+package cs321.index;
+
+import cs321.btree.BTree;
+import cs321.btree.FrequencyIndex;
+import cs321.btree.TreeObject;
+import cs321.create.SequenceUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * A read-only {@link FrequencyIndex} of the keys of a {@link BTree} that is done being built, held sorted and packed
+ * and found through a piecewise linear model of where each key is, as in a PGM-index.
+ * <p>
+ * The encodings of subsequences spread out evenly, so the position of a key among the sorted keys is close to a
+ * straight line of the key over long runs of them. The model splits the keys into segments, each a line that predicts
+ * the position of every key of its segment to within {@link #EPSILON} of it. A search finds the segment of its key by
+ * a binary search of the first keys of the segments, which are few enough to be held in memory, and then finds the key
+ * by a binary search of the <code>2 * EPSILON + 3</code> keys around the predicted position, a few cache lines. The
+ * model takes 24B per segment, where a {@link BTree} takes a node per few hundred keys, and the keys and frequencies
+ * themselves take 12B each.
+ * <p>
+ * The segments are built in one pass over the keys in order, from {@link BTree#iterator()}, by keeping the range of
+ * slopes from the first key of the segment that keeps every key so far within {@link #EPSILON}, and starting a new
+ * segment once the range is empty. This takes a few more segments than the optimal ones of a PGM-index, but needs only
+ * the first key of a segment in memory rather than all of its keys.
+ * <p>
+ * An index is written by {@link #write(BTree, Path)}, and the file is laid out as follows, big-endian:
+ * <pre>
+ * int     magic               {@link #MAGIC}
+ * int     version             1
+ * int     subsequenceLength   as {@link BTree#getSubsequenceLength()}
+ * int     flags               1 if canonical
+ * long    size                the number of keys, n
+ * int     epsilon             the most a position is predicted off by
+ * int     unused              0
+ * long    segmentCount        the number of segments, s
+ * long[]  keys                n keys, sorted
+ * int[]   frequencies         n frequencies, at the same index as their keys
+ * (long, long, double)[]      s segments: the first key, its position and the slope of the line from it
+ * </pre>
+ * Only keys of up to 31 bases, with a high of 0, can be indexed.
+ *
+ * @author Derek Caplinger
+ * @author Matt Youngberg
+ */
+public final class LearnedIndex extends MappedIndex {
+
+    /**
+     * The first four bytes of an index file, "PGMI".
+     */
+    public static final int MAGIC = 0x50474D49;
+
+    /**
+     * The most the position of a key is predicted off by. Larger makes for fewer segments, but more keys to search
+     * through around the prediction.
+     */
+    static final int EPSILON = 32;
+
+    /**
+     * The version of the layout of the file.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * The size of the header of the file in bytes.
+     */
+    private static final int HEADER_SIZE = 40;
+
+    /**
+     * The size of a segment in the file in bytes.
+     */
+    private static final int SEGMENT_SIZE = 24;
+
+    /**
+     * The keys, mapped.
+     */
+    private final MappedBuffer keys;
+
+    /**
+     * The frequencies, mapped.
+     */
+    private final MappedBuffer frequencies;
+
+    /**
+     * The first key of each segment.
+     */
+    private final long[] segmentKeys;
+
+    /**
+     * The position of the first key of each segment, and then the number of keys.
+     */
+    private final long[] segmentPositions;
+
+    /**
+     * The slope of the line of each segment.
+     */
+    private final double[] segmentSlopes;
+
+    /**
+     * The most the position of a key is predicted off by.
+     */
+    private final int epsilon;
+
+    /**
+     * Open an index file.
+     *
+     * @param path          the path of the file
+     * @throws IOException  if an I/O error occurs, or the file isn't an index
+     */
+    public LearnedIndex(Path path) throws IOException {
+        super(path, MAGIC, VERSION, HEADER_SIZE, "learned index");
+        try {
+            long size = getSize();
+            ByteBuffer header = read(COMMON_HEADER_SIZE, HEADER_SIZE - COMMON_HEADER_SIZE);
+            this.epsilon = header.getInt();
+            header.getInt();
+            long segmentCount = header.getLong();
+            if (epsilon < 0 || segmentCount < 0 || segmentCount > size
+                    || segmentCount > Integer.MAX_VALUE / SEGMENT_SIZE
+                    || channel.size() != getFileSize(size, segmentCount)) {
+                throw truncated();
+            }
+            this.keys = new MappedBuffer(channel, FileChannel.MapMode.READ_ONLY, HEADER_SIZE, 8 * size);
+            this.frequencies = new MappedBuffer(channel, FileChannel.MapMode.READ_ONLY, HEADER_SIZE + 8 * size,
+                    4 * size);
+
+            ByteBuffer segments = read(HEADER_SIZE + 12 * size, (int) segmentCount * SEGMENT_SIZE);
+            this.segmentKeys = new long[(int) segmentCount];
+            this.segmentPositions = new long[(int) segmentCount + 1];
+            this.segmentSlopes = new double[(int) segmentCount];
+            for (int i = 0; i < segmentCount; i++) {
+                segmentKeys[i] = segments.getLong();
+                segmentPositions[i] = segments.getLong();
+                segmentSlopes[i] = segments.getDouble();
+            }
+            segmentPositions[(int) segmentCount] = size;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Write the keys of a {@link BTree} to an index file, replacing any there.
+     * <p>
+     * The keys are read in order from {@link BTree#iterator()} and written straight to the file, and the segments of
+     * the model are built alongside and written after them.
+     *
+     * @param tree          the {@link BTree}, with keys of up to 31 bases
+     * @param path          the path of the file
+     * @throws IOException  if an I/O error occurs
+     */
+    public static void write(BTree tree, Path path) throws IOException {
+        if (tree.getSubsequenceLength() > SequenceUtils.MAX_LENGTH) {
+            throw new IllegalArgumentException("Learned indexes hold subsequences of up to "
+                    + SequenceUtils.MAX_LENGTH + " bases, not " + tree.getSubsequenceLength());
+        }
+        long size = tree.getSize();
+        try (FileChannel out = create(path)) {
+            MappedBuffer keys = new MappedBuffer(out, FileChannel.MapMode.READ_WRITE, HEADER_SIZE, 8 * size);
+            MappedBuffer frequencies = new MappedBuffer(out, FileChannel.MapMode.READ_WRITE, HEADER_SIZE + 8 * size,
+                    4 * size);
+
+            long[] segmentKeys = new long[16];
+            long[] segmentPositions = new long[16];
+            double[] segmentSlopes = new double[16];
+            int segmentCount = 0;
+            double lowSlope = Double.NEGATIVE_INFINITY;
+            double highSlope = Double.POSITIVE_INFINITY;
+            Iterator<TreeObject> iter = tree.iterator();
+            for (long position = 0; position < size; position++) {
+                TreeObject obj = iter.next();
+                long key = obj.getSubsequence();
+                keys.putLong(8 * position, key);
+                frequencies.putInt(4 * position, obj.getCount());
+
+                if (segmentCount > 0) {  // Narrow the slopes of the segment to those that keep this key within epsilon
+                    double dx = toUnsignedDouble(key - segmentKeys[segmentCount - 1]);
+                    double dy = position - segmentPositions[segmentCount - 1];
+                    double low = Math.max(lowSlope, (dy - EPSILON) / dx);
+                    double high = Math.min(highSlope, (dy + EPSILON) / dx);
+                    if (low <= high) {
+                        lowSlope = low;
+                        highSlope = high;
+                        continue;
+                    }
+                    segmentSlopes[segmentCount - 1] = getSlope(lowSlope, highSlope);
+                }
+                if (segmentCount == segmentKeys.length) {  // Start a new segment at this key
+                    segmentKeys = Arrays.copyOf(segmentKeys, 2 * segmentCount);
+                    segmentPositions = Arrays.copyOf(segmentPositions, 2 * segmentCount);
+                    segmentSlopes = Arrays.copyOf(segmentSlopes, 2 * segmentCount);
+                }
+                segmentKeys[segmentCount] = key;
+                segmentPositions[segmentCount] = position;
+                segmentCount++;
+                lowSlope = Double.NEGATIVE_INFINITY;
+                highSlope = Double.POSITIVE_INFINITY;
+            }
+            if (segmentCount > 0) {
+                segmentSlopes[segmentCount - 1] = getSlope(lowSlope, highSlope);
+            }
+            keys.force();
+            frequencies.force();
+
+            ByteBuffer header = newHeader(HEADER_SIZE, MAGIC, VERSION, tree).putInt(EPSILON).putInt(0)
+                    .putLong(segmentCount);
+            header.flip();
+            writeFully(out, header, 0);
+            ByteBuffer segments = ByteBuffer.allocate(segmentCount * SEGMENT_SIZE);
+            for (int i = 0; i < segmentCount; i++) {
+                segments.putLong(segmentKeys[i]).putLong(segmentPositions[i]).putDouble(segmentSlopes[i]);
+            }
+            segments.flip();
+            writeFully(out, segments, HEADER_SIZE + 12 * size);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    TreeObject searchKey(long key) {
+        // Find the last segment starting at or before the key
+        int segment = -1;
+        for (int lowSegment = 0, highSegment = segmentKeys.length - 1; lowSegment <= highSegment; ) {
+            int mid = (lowSegment + highSegment) >>> 1;
+            if (Long.compareUnsigned(segmentKeys[mid], key) <= 0) {
+                segment = mid;
+                lowSegment = mid + 1;
+            } else {
+                highSegment = mid - 1;
+            }
+        }
+        if (segment < 0) {
+            return null;
+        }
+
+        // Search the keys within epsilon of the predicted position, and within the segment
+        long predicted = segmentPositions[segment]
+                + (long) (segmentSlopes[segment] * toUnsignedDouble(key - segmentKeys[segment]));
+        long first = Math.max(segmentPositions[segment], predicted - epsilon - 1);
+        long last = Math.min(segmentPositions[segment + 1] - 1, predicted + epsilon + 1);
+        while (first <= last) {
+            long mid = (first + last) >>> 1;
+            long midKey = keys.getLong(8 * mid);
+            int comparison = Long.compareUnsigned(midKey, key);
+            if (comparison == 0) {
+                return new TreeObject(key, frequencies.getInt(4 * mid));
+            } else if (comparison < 0) {
+                first = mid + 1;
+            } else {
+                last = mid - 1;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the number of segments of the model.
+     *
+     * @return  the number of segments
+     */
+    int getSegmentCount() {
+        return segmentKeys.length;
+    }
+
+    /**
+     * Choose the slope of a segment from the range of slopes that keep its keys within epsilon: the middle, or flat for
+     * a segment of one key, which any slope keeps.
+     *
+     * @param lowSlope  the lowest slope
+     * @param highSlope the highest slope
+     * @return          the slope
+     */
+    private static double getSlope(double lowSlope, double highSlope) {
+        if (Double.isInfinite(lowSlope) || Double.isInfinite(highSlope)) {
+            return 0;
+        }
+        return (lowSlope + highSlope) / 2;
+    }
+
+    /**
+     * Convert a long, read as unsigned, to the nearest double.
+     *
+     * @param value the long
+     * @return      the double
+     */
+    private static double toUnsignedDouble(long value) {
+        return value >= 0 ? value : (value >>> 1) * 2.0 + (value & 1);
+    }
+
+    /**
+     * Get the size of the file of an index.
+     *
+     * @param size          the number of keys
+     * @param segmentCount  the number of segments
+     * @return              the size of the file in bytes
+     */
+    static long getFileSize(long size, long segmentCount) {
+        return HEADER_SIZE + 12 * size + SEGMENT_SIZE * segmentCount;
+    }
+}
@@ -0,0 +1,105 @@
+package cs321.index;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A region of a file mapped into memory, of any size, read and written by the byte offset of a long or int in it.
+ * <p>
+ * A {@link MappedByteBuffer} is indexed by an int, so it maps at most 2GB. A region larger than that is mapped as
+ * several segments of {@link #SEGMENT_SIZE} bytes, and an offset picks its segment by its high bits. A segment is a
+ * multiple of 8 bytes, so a long or int at an offset aligned to its size never straddles two.
+ *
+ * @author Derek Caplinger
+ * @author Matt Youngberg
+ */
+final class MappedBuffer {
+
+    /**
+     * The number of bits of an offset within a segment.
+     */
+    private static final int SEGMENT_SHIFT = 30;
+
+    /**
+     * The size of a segment in bytes, except the last, which may be smaller.
+     */
+    static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+
+    /**
+     * The mask of the bits of an offset within a segment.
+     */
+    private static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    /**
+     * The segments of the region, in order.
+     */
+    private final MappedByteBuffer[] segments;
+
+    /**
+     * Map a region of a file.
+     *
+     * @param channel       the channel of the file, open for reading, and for writing if the mode is read-write
+     * @param mode          the mode to map the region in
+     * @param position      the position of the region in the file
+     * @param size          the size of the region in bytes
+     * @throws IOException  if an I/O error occurs
+     */
+    MappedBuffer(FileChannel channel, FileChannel.MapMode mode, long position, long size) throws IOException {
+        int count = (int) ((size + SEGMENT_SIZE - 1) >>> SEGMENT_SHIFT);
+        segments = new MappedByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            long start = (long) i << SEGMENT_SHIFT;
+            segments[i] = channel.map(mode, position + start, Math.min(SEGMENT_SIZE, size - start));
+        }
+    }
+
+    /**
+     * Read a long.
+     *
+     * @param offset    the offset of the long in the region, a multiple of 8
+     * @return          the long
+     */
+    long getLong(long offset) {
+        return segments[(int) (offset >>> SEGMENT_SHIFT)].getLong((int) (offset & SEGMENT_MASK));
+    }
+
+    /**
+     * Read an int.
+     *
+     * @param offset    the offset of the int in the region, a multiple of 4
+     * @return          the int
+     */
+    int getInt(long offset) {
+        return segments[(int) (offset >>> SEGMENT_SHIFT)].getInt((int) (offset & SEGMENT_MASK));
+    }
+
+    /**
+     * Write a long.
+     *
+     * @param offset    the offset of the long in the region, a multiple of 8
+     * @param value     the long
+     */
+    void putLong(long offset, long value) {
+        segments[(int) (offset >>> SEGMENT_SHIFT)].putLong((int) (offset & SEGMENT_MASK), value);
+    }
+
+    /**
+     * Write an int.
+     *
+     * @param offset    the offset of the int in the region, a multiple of 4
+     * @param value     the int
+     */
+    void putInt(long offset, int value) {
+        segments[(int) (offset >>> SEGMENT_SHIFT)].putInt((int) (offset & SEGMENT_MASK), value);
+    }
+
+    /**
+     * Write any changes to the region through to the file.
+     */
+    void force() {
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+    }
+}
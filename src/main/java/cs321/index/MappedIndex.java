@@ -0,0 +1,241 @@
+package cs321.index;
+
+import cs321.btree.BTree;
+import cs321.btree.FrequencyIndex;
+import cs321.btree.TreeObject;
+import cs321.create.SequenceUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The part of a read-only {@link FrequencyIndex} file that is the same in every format: the start of its header, the
+ * channel its regions are mapped from, and searching for canonical keys. A format only lays out and searches its own
+ * keys, through {@link #searchKey(long)}.
+ * <p>
+ * Every format's file starts with the same fields, big-endian, followed by the rest of its own header:
+ * <pre>
+ * int     magic               the magic number of the format
+ * int     version             the version of the layout of the format
+ * int     subsequenceLength   as {@link BTree#getSubsequenceLength()}
+ * int     flags               1 if canonical
+ * long    size                the number of keys
+ * </pre>
+ *
+ * @author Derek Caplinger
+ * @author Matt Youngberg
+ */
+abstract class MappedIndex implements FrequencyIndex {
+
+    /**
+     * The flag set when keys are canonical.
+     */
+    static final int CANONICAL_FLAG = 1;
+
+    /**
+     * The size of the fields every format's header starts with, in bytes.
+     */
+    static final int COMMON_HEADER_SIZE = 24;
+
+    /**
+     * The channel of the file.
+     */
+    final FileChannel channel;
+
+    /**
+     * The name of the format, e.g. "Eytzinger index", for messages.
+     */
+    private final String name;
+
+    /**
+     * The path of the file, for messages.
+     */
+    private final Path path;
+
+    /**
+     * The number of keys.
+     */
+    private final long size;
+
+    /**
+     * The length of the subsequences held.
+     */
+    private final int subsequenceLength;
+
+    /**
+     * Whether keys are canonical.
+     */
+    private final boolean canonical;
+
+    /**
+     * Open an index file and read the fields its header starts with. A format that fails to read the rest of the file
+     * must close {@link #channel} before throwing.
+     *
+     * @param path          the path of the file
+     * @param magic         the magic number of the format
+     * @param version       the version of the layout of the format
+     * @param headerSize    the size of the whole header of the format, in bytes
+     * @param name          the name of the format, e.g. "Eytzinger index"
+     * @throws IOException  if an I/O error occurs, or the file isn't an index of the format
+     */
+    MappedIndex(Path path, int magic, int version, int headerSize, String name) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.name = name;
+        this.path = path;
+        try {
+            ByteBuffer header = read(0, headerSize);
+            if (header.remaining() < headerSize || header.getInt() != magic || header.getInt() != version) {
+                throw new IOException("Not " + ("AEIOU".indexOf(name.charAt(0)) < 0 ? "a " : "an ") + name + ": "
+                        + path);
+            }
+            this.subsequenceLength = header.getInt();
+            this.canonical = (header.getInt() & CANONICAL_FLAG) != 0;
+            this.size = header.getLong();
+            if (size < 0) {
+                throw truncated();
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Search for a key in the layout of the format.
+     *
+     * @param key   the key, canonical if keys are, with a high of 0
+     * @return      the {@link TreeObject} holding the key and its frequency, or null if it is absent
+     */
+    abstract TreeObject searchKey(long key);
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public TreeObject search(long high, long low) {
+        if (high != 0) {
+            return null;  // Only keys of up to 31 bases are held
+        }
+        return searchKey(canonical ? SequenceUtils.getCanonical(low, subsequenceLength) : low);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public TreeObject[] searchBatch(long[] high, long[] low) {
+        if (high.length != low.length) {
+            throw new IllegalArgumentException("Got " + high.length + " high and " + low.length + " low halves");
+        }
+        TreeObject[] results = new TreeObject[low.length];
+        for (int i = 0; i < low.length; i++) {
+            results[i] = search(high[i], low[i]);
+        }
+        return results;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getSubsequenceLength() {
+        return subsequenceLength;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isCanonical() {
+        return canonical;
+    }
+
+    /**
+     * Close the file. The mapping is released once it is garbage collected.
+     *
+     * @throws IOException  if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Read a region of the file into a buffer, ready to be read from.
+     *
+     * @param position      the position of the region in the file
+     * @param length        the length of the region in bytes
+     * @return              the buffer, with fewer bytes remaining than the length if the file ends first
+     * @throws IOException  if an I/O error occurs
+     */
+    ByteBuffer read(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining() && channel.read(buffer, position + buffer.position()) >= 0) {
+            // Read until full or the end of the file
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Make the exception thrown when the file is shorter or longer than its header says.
+     *
+     * @return  the exception
+     */
+    IOException truncated() {
+        return new IOException(Character.toUpperCase(name.charAt(0)) + name.substring(1) + " is truncated: " + path);
+    }
+
+    /**
+     * Open an index file to be written, replacing any there.
+     *
+     * @param path          the path of the file
+     * @return              the channel of the file, open for reading, as regions are mapped read-write, and writing
+     * @throws IOException  if an I/O error occurs
+     */
+    static FileChannel create(Path path) throws IOException {
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * Start the header of an index file of the keys of a {@link BTree}, with the fields every format's header starts
+     * with, for the format to put the rest of its own header after.
+     *
+     * @param headerSize    the size of the whole header of the format, in bytes
+     * @param magic         the magic number of the format
+     * @param version       the version of the layout of the format
+     * @param tree          the {@link BTree}
+     * @return              the header, positioned after the common fields
+     */
+    static ByteBuffer newHeader(int headerSize, int magic, int version, BTree tree) {
+        return ByteBuffer.allocate(headerSize).putInt(magic).putInt(version).putInt(tree.getSubsequenceLength())
+                .putInt(tree.isCanonical() ? CANONICAL_FLAG : 0).putLong(tree.getSize());
+    }
+
+    /**
+     * Write all of a buffer to a file.
+     *
+     * @param out           the channel of the file
+     * @param buffer        the buffer, ready to be read from
+     * @param position      the position in the file to write it at
+     * @throws IOException  if an I/O error occurs
+     */
+    static void writeFully(FileChannel out, ByteBuffer buffer, long position) throws IOException {
+        long start = position - buffer.position();
+        while (buffer.hasRemaining()) {
+            out.write(buffer, start + buffer.position());
+        }
+    }
+}
@@ -0,0 +1,403 @@
+package cs321.index;
+
+import cs321.btree.BTree;
+import cs321.btree.FrequencyIndex;
+import cs321.btree.TreeObject;
+import cs321.create.SequenceUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A read-only {@link FrequencyIndex} of the keys of a {@link BTree} that is done being built, found through a minimal
+ * perfect hash function of them: one that maps each of the <code>n</code> keys to a different slot from 0 to
+ * <code>n - 1</code>, where its fingerprint and frequency are held.
+ * <p>
+ * Searches for subsequences only ever ask for the frequency of one, never for the keys around it, so the order that a
+ * {@link BTree} or an {@link EytzingerIndex} keeps its keys in costs them comparisons for nothing. Here a search hashes
+ * its key and reads its slot instead, which is usually found on the first level of the function and costs a couple of
+ * reads close together, then one more for the slot.
+ * <p>
+ * The function is built as BBHash builds one. Each level is a bit array {@value #GAMMA} times as long as the keys left
+ * for it, which are hashed into it with a hash of their own. The bits of keys that land alone are set, and the keys
+ * that collide are left for the next level, until none are left. A key's slot is the number of bits set before its
+ * bit across all the levels, counted from a running count kept for every 512 bits. That makes for about 4 bits per key
+ * on top of the 8 bytes of its fingerprint and frequency.
+ * <p>
+ * A key that isn't held may land on the bit of one that is, so a slot holds the fingerprint of its key to tell them
+ * apart. For subsequences of up to 16 bases, the fingerprint is the key itself, so searches are exact. For longer
+ * ones, it is a 32-bit hash, so a search for an absent subsequence finds the frequency of another one about once in
+ * four billion.
+ * <p>
+ * An index is written by {@link #write(BTree, Path)}, and the file is laid out as follows, big-endian:
+ * <pre>
+ * int     magic               {@link #MAGIC}
+ * int     version             1
+ * int     subsequenceLength   as {@link BTree#getSubsequenceLength()}
+ * int     flags               1 if canonical
+ * long    size                the number of keys, n
+ * int     levelCount          the number of levels, l
+ * int     unused              0
+ * long    wordCount           the number of 64-bit words of bits of all levels, w
+ * long[]  levelStarts         l indexes of the first word of each level
+ * long[]  words               w words of bits
+ * long[]  ranks               (w + 7) / 8 counts of the bits set before each run of 8 words
+ * int[]   fingerprints        n fingerprints, at the slots of their keys
+ * int[]   frequencies         n frequencies, at the slots of their keys
+ * </pre>
+ * Only keys of up to 31 bases, with a high of 0, can be indexed, and fewer than 2^31 of them.
+ *
+ * @author Derek Caplinger
+ * @author Matt Youngberg
+ */
+public final class PerfectHashIndex extends MappedIndex {
+
+    /**
+     * The first four bytes of an index file, "MPHF".
+     */
+    public static final int MAGIC = 0x4D504846;
+
+    /**
+     * The length of the longest subsequences whose fingerprints are the keys themselves.
+     */
+    static final int EXACT_MAX_LENGTH = 16;
+
+    /**
+     * The number of bits of a level per key left for it. More bits make for fewer collisions and so fewer levels to
+     * search through, at the cost of space.
+     */
+    private static final double GAMMA = 2.0;
+
+    /**
+     * The most levels a function is built with. Each level takes all but a fraction of the keys left, so this many are
+     * never needed.
+     */
+    private static final int MAX_LEVELS = 64;
+
+    /**
+     * The most keys an index can hold, as they are held in an array while it is built.
+     */
+    private static final long MAX_SIZE = Integer.MAX_VALUE - 8;
+
+    /**
+     * The version of the layout of the file.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * The size of the fixed part of the header of the file in bytes, before the starts of the levels.
+     */
+    private static final int HEADER_SIZE = 40;
+
+    /**
+     * The function, mapped.
+     */
+    private final Function function;
+
+    /**
+     * The fingerprints, mapped.
+     */
+    private final MappedBuffer fingerprints;
+
+    /**
+     * The frequencies, mapped.
+     */
+    private final MappedBuffer frequencies;
+
+    /**
+     * Open an index file.
+     *
+     * @param path          the path of the file
+     * @throws IOException  if an I/O error occurs, or the file isn't an index
+     */
+    public PerfectHashIndex(Path path) throws IOException {
+        super(path, MAGIC, VERSION, HEADER_SIZE, "perfect hash index");
+        try {
+            long size = getSize();
+            ByteBuffer header = read(COMMON_HEADER_SIZE, HEADER_SIZE - COMMON_HEADER_SIZE);
+            int levelCount = header.getInt();
+            header.getInt();
+            long wordCount = header.getLong();
+            if (size > MAX_SIZE || levelCount < 0 || levelCount > MAX_LEVELS || wordCount < 0
+                    || channel.size() != getFileSize(size, levelCount, wordCount)) {
+                throw truncated();
+            }
+
+            ByteBuffer starts = read(HEADER_SIZE, 8 * levelCount);
+            long[] levelStarts = new long[levelCount + 1];
+            for (int level = 0; level < levelCount; level++) {
+                levelStarts[level] = starts.getLong(8 * level);
+            }
+            levelStarts[levelCount] = wordCount;
+
+            long position = HEADER_SIZE + 8L * levelCount;
+            MappedBuffer words = new MappedBuffer(channel, FileChannel.MapMode.READ_ONLY, position, 8 * wordCount);
+            position += 8 * wordCount;
+            MappedBuffer ranks = new MappedBuffer(channel, FileChannel.MapMode.READ_ONLY, position,
+                    8 * getRankCount(wordCount));
+            position += 8 * getRankCount(wordCount);
+            this.function = new Function(levelStarts, words, ranks);
+            this.fingerprints = new MappedBuffer(channel, FileChannel.MapMode.READ_ONLY, position, 4 * size);
+            this.frequencies = new MappedBuffer(channel, FileChannel.MapMode.READ_ONLY, position + 4 * size,
+                    4 * size);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Write the keys of a {@link BTree} to an index file, replacing any there.
+     * <p>
+     * The keys are read from {@link BTree#iterator()} into memory to build the function from, level by level, and then
+     * read again to write their fingerprints and frequencies to their slots.
+     *
+     * @param tree          the {@link BTree}, with fewer than 2^31 keys of up to 31 bases
+     * @param path          the path of the file
+     * @throws IOException  if an I/O error occurs
+     */
+    public static void write(BTree tree, Path path) throws IOException {
+        int length = tree.getSubsequenceLength();
+        if (length > SequenceUtils.MAX_LENGTH) {
+            throw new IllegalArgumentException("Perfect hash indexes hold subsequences of up to "
+                    + SequenceUtils.MAX_LENGTH + " bases, not " + length);
+        }
+        long size = tree.getSize();
+        if (size > MAX_SIZE) {
+            throw new IllegalArgumentException("Perfect hash indexes hold up to " + MAX_SIZE + " keys, not " + size);
+        }
+        long[] keys = new long[(int) size];
+        Iterator<TreeObject> iter = tree.iterator();
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = iter.next().getSubsequence();
+        }
+
+        // Build the levels, each from the keys that collided on the one before
+        List<long[]> levels = new ArrayList<>();
+        int remaining = keys.length;
+        while (remaining > 0) {
+            if (levels.size() == MAX_LEVELS) {
+                throw new IllegalStateException("Keys still collide after " + MAX_LEVELS + " levels");
+            }
+            int level = levels.size();
+            long bitCount = getLevelBits(remaining);
+            long[] bits = new long[(int) (bitCount >>> 6)];
+            long[] collisions = new long[bits.length];
+            for (int i = 0; i < remaining; i++) {
+                long bit = getBit(keys[i], level, bitCount);
+                int word = (int) (bit >>> 6);
+                if ((bits[word] & (1L << bit)) != 0) {
+                    collisions[word] |= 1L << bit;
+                }
+                bits[word] |= 1L << bit;
+            }
+            int next = 0;
+            for (int i = 0; i < bits.length; i++) {
+                bits[i] &= ~collisions[i];
+            }
+            for (int i = 0; i < remaining; i++) {
+                long bit = getBit(keys[i], level, bitCount);
+                if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                    keys[next++] = keys[i];
+                }
+            }
+            remaining = next;
+            levels.add(bits);
+        }
+        keys = null;  // Not to hold them while the function is written
+
+        int levelCount = levels.size();
+        long[] levelStarts = new long[levelCount + 1];
+        for (int level = 0; level < levelCount; level++) {
+            levelStarts[level + 1] = levelStarts[level] + levels.get(level).length;
+        }
+        long wordCount = levelStarts[levelCount];
+
+        try (FileChannel out = create(path)) {
+            ByteBuffer header = newHeader(HEADER_SIZE + 8 * levelCount, MAGIC, VERSION, tree).putInt(levelCount)
+                    .putInt(0).putLong(wordCount);
+            for (int level = 0; level < levelCount; level++) {
+                header.putLong(levelStarts[level]);
+            }
+            header.flip();
+            writeFully(out, header, 0);
+
+            long position = HEADER_SIZE + 8L * levelCount;
+            MappedBuffer words = new MappedBuffer(out, FileChannel.MapMode.READ_WRITE, position, 8 * wordCount);
+            position += 8 * wordCount;
+            MappedBuffer ranks = new MappedBuffer(out, FileChannel.MapMode.READ_WRITE, position,
+                    8 * getRankCount(wordCount));
+            position += 8 * getRankCount(wordCount);
+            long word = 0;
+            long rank = 0;
+            for (long[] bits : levels) {
+                for (long bitsOfWord : bits) {
+                    if (word % 8 == 0) {
+                        ranks.putLong(8 * (word / 8), rank);
+                    }
+                    words.putLong(8 * word, bitsOfWord);
+                    rank += Long.bitCount(bitsOfWord);
+                    word++;
+                }
+            }
+            levels = null;
+
+            Function function = new Function(levelStarts, words, ranks);
+            MappedBuffer fingerprints = new MappedBuffer(out, FileChannel.MapMode.READ_WRITE, position, 4 * size);
+            MappedBuffer frequencies = new MappedBuffer(out, FileChannel.MapMode.READ_WRITE, position + 4 * size,
+                    4 * size);
+            iter = tree.iterator();
+            while (iter.hasNext()) {
+                TreeObject obj = iter.next();
+                long slot = function.getSlot(obj.getSubsequence());
+                fingerprints.putInt(4 * slot, getFingerprint(obj.getSubsequence(), length));
+                frequencies.putInt(4 * slot, obj.getCount());
+            }
+            words.force();
+            ranks.force();
+            fingerprints.force();
+            frequencies.force();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    TreeObject searchKey(long key) {
+        long slot = function.getSlot(key);
+        if (slot < 0 || fingerprints.getInt(4 * slot) != getFingerprint(key, getSubsequenceLength())) {
+            return null;
+        }
+        return new TreeObject(key, frequencies.getInt(4 * slot));
+    }
+
+    /**
+     * Get the number of levels of the function, which is the most bit arrays a search reads from.
+     *
+     * @return  the number of levels
+     */
+    int getLevelCount() {
+        return function.levelStarts.length - 1;
+    }
+
+    /**
+     * Get the number of bits of a level for a number of keys left for it, rounded up to a whole word.
+     *
+     * @param keyCount  the number of keys
+     * @return          the number of bits, a multiple of 64
+     */
+    private static long getLevelBits(int keyCount) {
+        return Math.max(64, ((long) Math.ceil(GAMMA * keyCount) + 63) & ~63L);
+    }
+
+    /**
+     * Get the bit a key lands on in a level, from the high 32 bits of its hash for the level.
+     *
+     * @param key       the key
+     * @param level     the level
+     * @param bitCount  the number of bits of the level, at most 2^32
+     * @return          the bit within the level
+     */
+    private static long getBit(long key, int level, long bitCount) {
+        return ((SequenceUtils.mix(key + (level + 1) * 0x9E3779B97F4A7C15L) >>> 32) * bitCount) >>> 32;
+    }
+
+    /**
+     * Get the fingerprint of a key: the key itself if it is short enough to fit, or else a hash of it.
+     *
+     * @param key       the key
+     * @param length    the length of the subsequences held
+     * @return          the fingerprint
+     */
+    private static int getFingerprint(long key, int length) {
+        if (length >= 1 && length <= EXACT_MAX_LENGTH) {
+            return (int) key;
+        }
+        return (int) (SequenceUtils.mix(key ^ 0xC2B2AE3D27D4EB4FL) >>> 32);
+    }
+
+    /**
+     * Get the number of running counts kept for a number of words of bits, one for every 8 words.
+     *
+     * @param wordCount the number of words
+     * @return          the number of counts
+     */
+    private static long getRankCount(long wordCount) {
+        return (wordCount + 7) / 8;
+    }
+
+    /**
+     * Get the size of the file of an index.
+     *
+     * @param size          the number of keys
+     * @param levelCount    the number of levels
+     * @param wordCount     the number of words of bits of all levels
+     * @return              the size of the file in bytes
+     */
+    static long getFileSize(long size, int levelCount, long wordCount) {
+        return HEADER_SIZE + 8L * levelCount + 8 * wordCount + 8 * getRankCount(wordCount) + 8 * size;
+    }
+
+    /**
+     * The minimal perfect hash function of an index, read from its bits wherever they are mapped.
+     */
+    private static final class Function {
+
+        /**
+         * The index of the first word of each level, and then the number of words of all of them.
+         */
+        private final long[] levelStarts;
+
+        /**
+         * The words of bits of all levels.
+         */
+        private final MappedBuffer words;
+
+        /**
+         * The number of bits set before each run of 8 words.
+         */
+        private final MappedBuffer ranks;
+
+        /**
+         * Create a new {@link Function}.
+         *
+         * @param levelStarts   the index of the first word of each level, and then the number of words
+         * @param words         the words of bits of all levels
+         * @param ranks         the number of bits set before each run of 8 words
+         */
+        Function(long[] levelStarts, MappedBuffer words, MappedBuffer ranks) {
+            this.levelStarts = levelStarts;
+            this.words = words;
+            this.ranks = ranks;
+        }
+
+        /**
+         * Get the slot of a key. A key that wasn't among those the function was built from gets either -1 or the
+         * slot of one that was.
+         *
+         * @param key   the key
+         * @return      the slot of the key, or -1 if it landed on no set bit
+         */
+        long getSlot(long key) {
+            for (int level = 0; level < levelStarts.length - 1; level++) {
+                long bitCount = (levelStarts[level + 1] - levelStarts[level]) << 6;
+                long bit = (levelStarts[level] << 6) + getBit(key, level, bitCount);
+                long word = words.getLong(8 * (bit >>> 6));
+                if ((word & (1L << bit)) != 0) {
+                    long rank = ranks.getLong(8 * (bit >>> 9));
+                    for (long i = (bit >>> 9) << 3; i < bit >>> 6; i++) {
+                        rank += Long.bitCount(words.getLong(8 * i));
+                    }
+                    return rank + Long.bitCount(word & ((1L << bit) - 1));
+                }
+            }
+            return -1;
+        }
+    }
+}
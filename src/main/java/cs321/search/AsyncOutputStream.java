@@ -0,0 +1,197 @@
+package cs321.search;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * An {@link OutputStream} that hands every chunk written to it to a background thread, which performs the actual write
+ * to the wrapped {@link OutputStream}.
+ * <p>
+ * This is intended to sit beneath a buffering writer, such as {@link SearchResultWriter}, which only writes large
+ * chunks. The calling thread then only pays for copying a chunk into a queue, while the system call to write it out
+ * happens concurrently with the next batch of queries. The queue is bounded so that a slow consumer (e.g. a pipe that
+ * is not being read) applies back pressure instead of exhausting the heap.
+ * <p>
+ * Any {@link IOException} raised by the background thread is rethrown from the next call to {@link #write}, or from
+ * {@link #close()} at the latest.
+ *
+ * @author Derek Caplinger
+ * @author Matt Youngberg
+ */
+class AsyncOutputStream extends OutputStream {
+
+    /**
+     * How many chunks can be waiting on the background thread before writers block.
+     */
+    private static final int QUEUE_CAPACITY = 16;
+
+    /**
+     * Enqueued to ask the background thread to flush the wrapped stream.
+     */
+    private static final byte[] FLUSH = new byte[0];
+
+    /**
+     * Enqueued to ask the background thread to flush the wrapped stream and exit.
+     */
+    private static final byte[] CLOSE = new byte[0];
+
+    /**
+     * The stream the background thread writes to.
+     */
+    private final OutputStream out;
+
+    /**
+     * The chunks that are waiting to be written by the background thread.
+     */
+    private final BlockingQueue<byte[]> pending;
+
+    /**
+     * The background thread.
+     */
+    private final Thread writer;
+
+    /**
+     * The first error encountered by the background thread, if any.
+     */
+    private volatile IOException error;
+
+    /**
+     * Whether {@link #close()} has been called.
+     */
+    private boolean closed;
+
+    /**
+     * Create a new {@link AsyncOutputStream} that writes to the given stream on a background thread.
+     *
+     * @param out   the stream to write to
+     */
+    AsyncOutputStream(OutputStream out) {
+        this.out = out;
+        this.pending = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        this.writer = new Thread(this::drainQueue, "async-output-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        checkOpen();
+        if (len > 0) {
+            enqueue(Arrays.copyOfRange(b, off, off + len));
+        }
+    }
+
+    /**
+     * Ask the background thread to flush the wrapped stream once it has written everything enqueued so far.
+     *
+     * @throws IOException  if the background thread has failed
+     */
+    @Override
+    public void flush() throws IOException {
+        checkOpen();
+        enqueue(FLUSH);
+    }
+
+    /**
+     * Wait for the background thread to write everything enqueued so far, then close the wrapped stream.
+     *
+     * @throws IOException  if the background thread has failed, or closing the wrapped stream does
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        enqueue(CLOSE);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for output to be written");
+        }
+        try {
+            if (error != null) {
+                throw error;
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Put a chunk on the queue, blocking while the queue is full.
+     *
+     * @param chunk         the chunk to enqueue
+     * @throws IOException  if the calling thread is interrupted while waiting
+     */
+    private void enqueue(byte[] chunk) throws IOException {
+        try {
+            pending.put(chunk);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for output to be written");
+        }
+    }
+
+    /**
+     * Throw if this stream is closed or the background thread has failed.
+     *
+     * @throws IOException  if this stream is closed or the background thread has failed
+     */
+    private void checkOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * The body of the background thread: write chunks until asked to close. After an error, chunks are discarded so
+     * that writers never block forever on a full queue.
+     */
+    private void drainQueue() {
+        while (true) {
+            byte[] chunk;
+            try {
+                chunk = pending.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (error != null && chunk != CLOSE) {
+                continue;
+            }
+            try {
+                if (chunk == CLOSE) {
+                    if (error == null) {
+                        out.flush();
+                    }
+                    return;
+                } else if (chunk == FLUSH) {
+                    out.flush();
+                } else {
+                    out.write(chunk);
+                }
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package cs321.search;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import cs321.common.ParseArgumentException;
+import cs321.create.SequenceUtils;
+
+/**
+ * A program that searches a BTree file served by a GeneBankQueryServer on this machine for the subsequences listed in
+ * a query file, and writes the results to standard out just as GeneBankSearchBTree does at debug level 0.
+ * <p>
+ * Run `java -jar build/libs/GeneBankQueryClient.jar --help` for usage information.
+ *
+ * @author Derek Caplinger
+ * @author Matt Youngberg
+ */
+public class GeneBankQueryClient {
+
+    /**
+     * The number of queries sent to the server in one request. Larger requests take fewer round trips.
+     */
+    private static final int REQUEST_SIZE = 1 << 14;
+
+    /**
+     * The size of the buffers of the connection, in bytes.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * The entry point for the GeneBankQueryClient program.
+     *
+     * @param args          command line arguments provided with program call
+     * @throws IOException  if there is an error reading the query file or talking to the server
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0 || args[0].equals("--help") || args[0].equals("-h")) {
+            printUsageAndExit(null, 0);
+        }
+        GeneBankQueryClientArguments clientArguments = null;
+        try {
+            clientArguments = parseArguments(args);
+        } catch (ParseArgumentException e) {
+            printUsageAndExit(e.getMessage(), 1);
+        }
+        try {
+            search(clientArguments);
+        } catch (ConnectException e) {
+            System.err.println("Could not connect to a GeneBankQueryServer on port " + clientArguments.getPort() + ": "
+                    + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * This method prints when invalid arguments are detected and will print an appropriately formatted usage example
+     * and exit the program.
+     *
+     * @param errorMessage error message provided by parse argument exception
+     * @param exitCode     exit code to be used when exiting the program
+     */
+    private static void printUsageAndExit(String errorMessage, int exitCode) {
+        if (exitCode != 0) {
+            System.err.println(errorMessage);
+        }
+        System.err.println("Usage: java -jar build/libs/GeneBankQueryClient.jar --btreefile=<b-tree-file> --length=<sequence-length>");
+        System.err.println("\t--queryfile=<query-file> [--port=<port>] [--output=<text|binary|counts>] [--asyncoutput=<0|1>]");
+        System.exit(exitCode);
+    }
+
+    /**
+     * This method accepts the command line arguments, args, and attempts to parse the arguments.
+     *
+     * @param args                      command line arguments provided by user.
+     * @throws ParseArgumentException   exception issue encountered parsing arguments
+     * @return                          validated {@link GeneBankQueryClientArguments} object
+     */
+    private static GeneBankQueryClientArguments parseArguments(String[] args) throws ParseArgumentException {
+        try {
+            return GeneBankQueryClientArguments.fromStringArgs(args);
+        } catch (IllegalArgumentException e) {
+            throw new ParseArgumentException(e.getMessage());
+        }
+    }
+
+    /**
+     * Send the queries of the query file to the server, {@link #REQUEST_SIZE} at a time, and write the results to
+     * standard out in the requested format, in the order of the query file. If the server answers with an error, it is
+     * printed and the program exits with a nonzero status.
+     * <p>
+     * The BTree file is named to the server by its absolute path if it exists here, so that the client can be run from
+     * any directory, and as given otherwise.
+     *
+     * @param args          the arguments of the client
+     * @throws IOException  if there is an error reading the query file or talking to the server
+     */
+    private static void search(GeneBankQueryClientArguments args) throws IOException {
+        Path btreePath = Paths.get(args.getBtreeFileName());
+        String btreeFileName = btreePath.toFile().exists() ? btreePath.toAbsolutePath().normalize().toString()
+                : args.getBtreeFileName();
+
+        String error = null;
+        try (BufferedReader input = new BufferedReader(new FileReader(args.getQueryFileName()));
+             SearchResultWriter resultWriter = SearchResultWriter.toStandardOut(args.getOutputFormat(),
+                     args.useAsyncOutput());
+             Socket socket = new Socket(InetAddress.getLoopbackAddress(), args.getPort());
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                     StandardCharsets.US_ASCII), BUFFER_SIZE);
+             Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(),
+                     StandardCharsets.US_ASCII), BUFFER_SIZE)) {
+            List<String> queries = new ArrayList<>(REQUEST_SIZE);
+            String line = input.readLine();
+            while (line != null) {
+                queries.clear();
+                while (line != null && queries.size() < REQUEST_SIZE) {
+                    if (!line.trim().isEmpty()) {  // Blank lines aren't queries
+                        queries.add(line.trim().toLowerCase());
+                    }
+                    line = input.readLine();
+                }
+                if (queries.isEmpty()) {
+                    break;
+                }
+
+                StringBuilder request = new StringBuilder();
+                request.append(GeneBankQueryServer.SEARCH).append(' ').append(btreeFileName).append(' ')
+                        .append(args.getSubsequenceLength()).append(' ').append(queries.size()).append('\n');
+                for (String query : queries) {
+                    request.append(query).append('\n');
+                }
+                out.append(request);
+                out.flush();
+
+                String answer = in.readLine();
+                if (answer == null || !answer.equals(GeneBankQueryServer.OK + " " + queries.size())) {
+                    error = answer == null ? "Server closed the connection" : answer;
+                    break;
+                }
+                for (String query : queries) {
+                    String count = in.readLine();
+                    if (count == null) {
+                        throw new IOException("Server closed the connection partway through an answer");
+                    }
+                    resultWriter.write(query, SequenceUtils.dnaStringToLongHigh(query),
+                            SequenceUtils.dnaStringToLongLow(query), Integer.parseInt(count));
+                }
+            }
+            if (error == null) {
+                out.write(GeneBankQueryServer.QUIT + "\n");
+                out.flush();
+            }
+        }
+        if (error != null) {  // Only once the results so far are written out
+            System.err.println(error);
+            System.exit(1);
+        }
+    }
+}
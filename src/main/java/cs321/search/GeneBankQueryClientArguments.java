@@ -0,0 +1,284 @@
+package cs321.search;
+
+import cs321.create.SequenceUtils;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/**
+ * A class to represent the arguments to the GeneBankQueryClient program.
+ * <p>
+ * Create a new instance via the factory method {@link #fromStringArgs(String[])}. This will parse the string array of
+ * arguments from the command line, run validation, and return a new {@link GeneBankQueryClientArguments} object.
+ * <p>
+ * The usage is as follows:
+ * <p>
+ * <pre>
+ * java -jar build/libs/GeneBankQueryClient.jar --btreefile=&lt;b-tree-file&gt; --length=&lt;sequence-length&gt;
+ *  --queryfile=&lt;query-file&gt; [--port=&lt;port&gt;] [--output=&lt;text|binary|counts&gt;] [--asyncoutput=&lt;0|1&gt;]
+ * </pre>
+ * <p>
+ * The BTree file is one served by a GeneBankQueryServer on this machine, listening on the given port, which defaults to
+ * {@link GeneBankQueryServer#DEFAULT_PORT}. It needn't exist where the client runs. The other arguments are as for
+ * GeneBankSearchBTree; see {@link GeneBankSearchBTreeArguments}.
+ *
+ * @author Derek Caplinger
+ * @author Matt Youngberg
+ */
+public class GeneBankQueryClientArguments {
+
+    /**
+     * A pattern that string arguments must match.
+     */
+    private static final Pattern argPattern = Pattern.compile("^--([a-zA-Z]+)=([0-9a-zA-Z._/\\\\:-]+)$");
+
+    /**
+     * The file name of the BTree file, as the server was given it or as a path to it.
+     */
+    private final String btreeFileName;
+
+    /**
+     * The subsequence length. 1-63
+     */
+    private final int subsequenceLength;
+
+    /**
+     * The file name of the Query file.
+     */
+    private final String queryFileName;
+
+    /**
+     * The port the server listens on. 1-65535
+     */
+    private final int port;
+
+    /**
+     * The format to write results in. Defaults to {@link SearchResultWriter.Format#TEXT}.
+     */
+    private final SearchResultWriter.Format outputFormat;
+
+    /**
+     * Whether results are written to standard out on a background thread. 0 or 1
+     */
+    private final boolean asyncOutput;
+
+    /**
+     * Create a new {@link GeneBankQueryClientArguments} object.
+     *
+     * @param btreeFileName     the file name of the BTree file served
+     * @param subsequenceLength the subsequence length. 1-63
+     * @param queryFileName     the file name of the Query file. Should exist on disk
+     * @param port              the port the server listens on. 1-65535
+     * @param outputFormat      the format to write results in
+     * @param asyncOutput       whether results are written on a background thread
+     */
+    public GeneBankQueryClientArguments(String btreeFileName, int subsequenceLength, String queryFileName, int port, SearchResultWriter.Format outputFormat, boolean asyncOutput) {
+        this.btreeFileName = btreeFileName;
+        this.subsequenceLength = subsequenceLength;
+        this.queryFileName = queryFileName;
+        this.port = port;
+        this.outputFormat = outputFormat;
+        this.asyncOutput = asyncOutput;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+
+        GeneBankQueryClientArguments other = (GeneBankQueryClientArguments) obj;
+
+        if (btreeFileName == null ? other.btreeFileName != null : !btreeFileName.equals(other.btreeFileName)) {
+            return false;
+        }
+        if (subsequenceLength != other.subsequenceLength) {
+            return false;
+        }
+        if (queryFileName == null ? other.queryFileName != null : !queryFileName.equals(other.queryFileName)) {
+            return false;
+        }
+        if (port != other.port) {
+            return false;
+        }
+        if (outputFormat != other.outputFormat) {
+            return false;
+        }
+        if (asyncOutput != other.asyncOutput) {
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "GeneBankQueryClientArguments{" +
+                "btreeFileName='" + btreeFileName + '\'' +
+                ", subsequenceLength=" + subsequenceLength +
+                ", queryFileName='" + queryFileName + '\'' +
+                ", port=" + port +
+                ", outputFormat=" + outputFormat +
+                ", asyncOutput=" + asyncOutput +
+                '}';
+    }
+
+    /**
+     * @return the btreeFileName
+     */
+    public String getBtreeFileName() {
+        return btreeFileName;
+    }
+
+    /**
+     * @return the subsequenceLength
+     */
+    public int getSubsequenceLength() {
+        return subsequenceLength;
+    }
+
+    /**
+     * @return the queryFileName
+     */
+    public String getQueryFileName() {
+        return queryFileName;
+    }
+
+    /**
+     * Get the port the server listens on.
+     *
+     * @return the port
+     */
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * Get the format to write results in.
+     *
+     * @return the output format
+     */
+    public SearchResultWriter.Format getOutputFormat() {
+        return outputFormat;
+    }
+
+    /**
+     * Get whether results should be written to standard out on a background thread.
+     *
+     * @return whether to write results asynchronously
+     */
+    public boolean useAsyncOutput() {
+        return asyncOutput;
+    }
+
+    /**
+     * Create a GeneBankQueryClientArguments object from a string array of arguments, typically the command line args.
+     *
+     * @param args  the string array of arguments
+     * @return      a GeneBankQueryClientArguments object
+     */
+    public static GeneBankQueryClientArguments fromStringArgs(String[] args) {
+        Map<String, String> argMap = new HashMap<>();
+
+        Set<String> requiredArgs = new HashSet<>(Arrays.asList("btreefile", "length", "queryfile"));
+        Set<String> optionalArgs = new HashSet<>(Arrays.asList("port", "output", "asyncoutput"));
+
+        // Get all strings into argMap
+        Matcher matcher;
+        for (String argStr : args) {
+            matcher = argPattern.matcher(argStr);
+            if (!matcher.matches()) {
+                throw new IllegalArgumentException("Invalid argument: " + argStr);
+            }
+
+            String param = matcher.group(1);
+            String arg = matcher.group(2);
+
+            if (!requiredArgs.contains(param) && !optionalArgs.contains(param)) {
+                throw new IllegalArgumentException("Invalid argument: " + argStr);
+            } else {
+                argMap.put(param, arg);
+            }
+        }
+
+        // Check for required arguments
+        for (String requiredArg : requiredArgs) {
+            if (!argMap.containsKey(requiredArg)) {
+                throw new IllegalArgumentException("Missing required argument: " + requiredArg);
+            }
+        }
+
+        // Length
+        String lengthValue = argMap.get("length");
+        if (!lengthValue.matches("[0-9]+")) {
+            throw new IllegalArgumentException("Invalid argument. Length must be a number: length=" + lengthValue);
+        }
+        int length = Integer.parseInt(lengthValue);
+        if (length < 1 || length > SequenceUtils.MAX_WIDE_LENGTH) {
+            throw new IllegalArgumentException("Invalid argument. Length must be 1-" + SequenceUtils.MAX_WIDE_LENGTH
+                    + ": length=" + lengthValue);
+        }
+
+        // queryfile
+        String queryfileValue = argMap.get("queryfile");
+        if (!new File(queryfileValue).exists()) {
+            throw new IllegalArgumentException("Invalid argument. Query file not found: queryfile=" + queryfileValue);
+        }
+
+        // Port
+        String portValue = argMap.get("port");
+        int port = GeneBankQueryServer.DEFAULT_PORT;
+        if (portValue != null) {
+            if (!portValue.matches("[0-9]{1,5}") || Integer.parseInt(portValue) < 1 || Integer.parseInt(portValue) > 65535) {
+                throw new IllegalArgumentException("Invalid argument. Port must be 1-65535: port=" + portValue);
+            }
+            port = Integer.parseInt(portValue);
+        }
+
+        // Output
+        String outputValue = argMap.get("output");
+        SearchResultWriter.Format outputFormat = SearchResultWriter.Format.TEXT;
+        if (outputValue != null) {
+            try {
+                outputFormat = SearchResultWriter.Format.fromString(outputValue);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid argument. Output must be text, binary or counts: output=" + outputValue);
+            }
+        }
+
+        // Async output
+        String asyncOutputValue = argMap.get("asyncoutput");
+        if (asyncOutputValue != null && !asyncOutputValue.equals("0") && !asyncOutputValue.equals("1")) {
+            throw new IllegalArgumentException("Invalid argument. Async output should be 0 or 1: asyncoutput=" + asyncOutputValue);
+        }
+
+        // Create and return the arguments object
+        return new GeneBankQueryClientArguments(
+                argMap.get("btreefile"),
+                length,
+                queryfileValue,
+                port,
+                outputFormat,
+                "1".equals(asyncOutputValue)
+        );
+    }
+}
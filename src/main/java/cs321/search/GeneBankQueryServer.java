@@ -0,0 +1,456 @@
+package cs321.search;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.management.JMException;
+
+import cs321.btree.BTree;
+import cs321.btree.BTreeException;
+import cs321.btree.FrequencyIndex;
+import cs321.common.ParseArgumentException;
+import cs321.index.IndexFormat;
+
+/**
+ * A program that keeps BTree files open and answers queries for them from other programs on this machine, so that
+ * each batch of queries skips starting up a JVM and warming up a cache, as GeneBankSearchBTree does on every run.
+ * <p>
+ * Run `java -jar build/libs/GeneBankQueryServer.jar --help` for usage information, and search a BTree file it serves
+ * with GeneBankQueryClient, which writes its results as GeneBankSearchBTree does.
+ * <p>
+ * The server listens on the loopback address only, and speaks a line protocol in ASCII, one request after another on a
+ * connection:
+ * <pre>
+ * SEARCH &lt;b-tree-file&gt; &lt;sequence-length&gt; &lt;n&gt;   followed by n lines, one query each
+ * QUIT                                          to close the connection
+ * </pre>
+ * A search is answered by <code>OK &lt;n&gt;</code> and then n lines, each the total frequency of a query and its
+ * complement, in the order of the queries, or by <code>ERROR &lt;message&gt;</code> if the BTree file isn't served,
+ * is of another length, or a query is too long to encode. The BTree file is named as the server was given it, or by its
+ * absolute path. A request that can't be read is answered by an error and the connection is closed.
+ * <p>
+ * Each connection is served on a thread of its own, so clients are served at once. A {@link BTree} and its cache can
+ * only be searched by one thread at a time, so the searches of a batch of {@link QueryBatchSearcher#BATCH_SIZE}
+ * queries hold a lock of the BTree file, and the searches of other clients of the same file wait for it, while those
+ * of other files go on. Each BTree file keeps its cache of results across clients, as well as its cache of nodes.
+ *
+ * @author Derek Caplinger
+ * @author Matt Youngberg
+ */
+public class GeneBankQueryServer implements Closeable {
+
+    /**
+     * The port listened on unless another is given.
+     */
+    public static final int DEFAULT_PORT = 32100;
+
+    /**
+     * The request to search for a number of queries.
+     */
+    static final String SEARCH = "SEARCH";
+
+    /**
+     * The request to close the connection.
+     */
+    static final String QUIT = "QUIT";
+
+    /**
+     * The start of the answer to a search that succeeded.
+     */
+    static final String OK = "OK";
+
+    /**
+     * The start of the answer to a request that failed.
+     */
+    static final String ERROR = "ERROR";
+
+    /**
+     * The most queries of a request, which are read into memory before they are searched for.
+     */
+    static final int MAX_REQUEST_SIZE = 1 << 20;
+
+    /**
+     * The size of the buffers of a connection, in bytes.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * A BTree file served, searched under a lock.
+     */
+    private static final class ServedIndex {
+
+        /**
+         * The searcher of the index, which holds its cache of results.
+         */
+        final QueryBatchSearcher searcher;
+
+        /**
+         * The lock held while searching the index.
+         */
+        final Object lock;
+
+        /**
+         * Create a new {@link ServedIndex}.
+         *
+         * @param index the index
+         * @param lock  the lock held while searching it
+         */
+        ServedIndex(FrequencyIndex index, Object lock) {
+            this.searcher = new QueryBatchSearcher(index);
+            this.lock = lock;
+        }
+    }
+
+    /**
+     * The BTree files served, by their names as given and by their absolute paths.
+     */
+    private final Map<String, ServedIndex> indexes = new HashMap<>();
+
+    /**
+     * The BTree files served, in the order given.
+     */
+    private final List<ServedIndex> indexList = new ArrayList<>();
+
+    /**
+     * The socket listened on.
+     */
+    private final ServerSocket serverSocket;
+
+    /**
+     * The threads that serve connections.
+     */
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "GeneBankQueryServer connection");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * The sockets of open connections, to be closed with the server.
+     */
+    private final Set<Socket> clients = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    /**
+     * Whether the server was closed.
+     */
+    private volatile boolean closed;
+
+    /**
+     * The entry point for the GeneBankQueryServer program.
+     * <p>
+     * This method will parse the command line arguments, open the BTree files and serve them until killed.
+     *
+     * @param args              command line arguments provided with program call
+     * @throws BTreeException   if there is an error opening a BTree
+     * @throws IOException      if there is an error opening a BTree file or listening on the port
+     */
+    public static void main(String[] args) throws BTreeException, IOException {
+        if (args.length == 0 || args[0].equals("--help") || args[0].equals("-h")) {
+            printUsageAndExit(null, 0);
+        }
+        GeneBankQueryServerArguments serverArguments = null;
+        try {
+            serverArguments = parseArguments(args);
+        } catch (ParseArgumentException e) {
+            printUsageAndExit(e.getMessage(), 1);
+        }
+
+        GeneBankQueryServer server = new GeneBankQueryServer(serverArguments);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                server.close();
+            } catch (IOException e) {
+                System.err.println("Error closing BTree files: " + e.getMessage());
+            }
+        }));
+        System.err.println("Serving " + serverArguments.getBtreeFileNames().size() + " BTree file(s) on port "
+                + server.getPort() + "...");
+        server.serve();
+    }
+
+    /**
+     * This method prints when invalid arguments are detected and will print an appropriately formatted usage example
+     * and exit the program.
+     *
+     * @param errorMessage error message provided by parse argument exception
+     * @param exitCode     exit code to be used when exiting the program
+     */
+    private static void printUsageAndExit(String errorMessage, int exitCode) {
+        if (exitCode != 0) {
+            System.err.println(errorMessage);
+        }
+        System.err.println("Usage: java -jar build/libs/GeneBankQueryServer.jar --btreefile=<b-tree-file>[,<b-tree-file>...]");
+        System.err.println("\t[--port=<port>] [--cachesize=<n>] [--cachemem=<size>]");
+        System.exit(exitCode);
+    }
+
+    /**
+     * This method accepts the command line arguments, args, and attempts to parse the arguments.
+     *
+     * @param args                      command line arguments provided by user.
+     * @throws ParseArgumentException   exception issue encountered parsing arguments
+     * @return                          validated {@link GeneBankQueryServerArguments} object
+     */
+    private static GeneBankQueryServerArguments parseArguments(String[] args) throws ParseArgumentException {
+        try {
+            return GeneBankQueryServerArguments.fromStringArgs(args);
+        } catch (IllegalArgumentException e) {
+            throw new ParseArgumentException(e.getMessage());
+        }
+    }
+
+    /**
+     * Open the BTree files given by the arguments, with their caches, and listen on the port. Connections aren't
+     * accepted until {@link #serve()} is called.
+     *
+     * @param args              the arguments of the server
+     * @throws BTreeException   if there is an error opening a BTree
+     * @throws IOException      if there is an error opening a BTree file or listening on the port
+     */
+    GeneBankQueryServer(GeneBankQueryServerArguments args) throws BTreeException, IOException {
+        try {
+            for (String btreeFileName : args.getBtreeFileNames()) {
+                FrequencyIndex index = IndexFormat.open(Paths.get(btreeFileName));
+                Object lock = new Object();
+                if (index == null) {
+                    BTree tree = args.getCacheSize() > 0 ? new BTree(btreeFileName, args.getCacheSize())
+                            : new BTree(btreeFileName);
+                    if (args.getCacheMemory() > 0) {
+                        tree.useOffHeapCache(args.getCacheMemory());
+                    }
+                    try {
+                        tree.registerMBean();
+                    } catch (JMException e) {
+                        System.err.println("Warning: BTree metrics are not available over JMX: " + e.getMessage());
+                    }
+                    index = tree;
+                }
+                ServedIndex served = new ServedIndex(index, lock);
+                indexList.add(served);
+                indexes.put(btreeFileName, served);
+                indexes.put(Paths.get(btreeFileName).toAbsolutePath().normalize().toString(), served);
+            }
+            serverSocket = new ServerSocket(args.getPort(), 0, InetAddress.getLoopbackAddress());
+        } catch (BTreeException | IOException | RuntimeException e) {
+            closeIndexes();
+            throw e;
+        }
+    }
+
+    /**
+     * Get the port listened on, which was picked by the system if port 0 was given.
+     *
+     * @return  the port
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Accept connections and serve each on a thread of its own, until the server is closed.
+     *
+     * @throws IOException  if an I/O error occurs while accepting a connection
+     */
+    public void serve() throws IOException {
+        while (!closed) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (SocketException e) {
+                if (closed) {
+                    return;
+                }
+                throw e;
+            }
+            clients.add(socket);
+            executor.execute(() -> handle(socket));
+        }
+    }
+
+    /**
+     * Stop listening, close any open connections and close the BTree files. Searches in progress finish first.
+     *
+     * @throws IOException  if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        serverSocket.close();
+        for (Socket socket : clients) {
+            socket.close();
+        }
+        executor.shutdown();
+        closeIndexes();
+    }
+
+    /**
+     * Close the BTree files opened so far, each once no search holds its lock.
+     *
+     * @throws IOException  if an I/O error occurs
+     */
+    private void closeIndexes() throws IOException {
+        IOException failure = null;
+        for (ServedIndex served : indexList) {
+            synchronized (served.lock) {
+                try {
+                    served.searcher.getIndex().close();
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Serve a connection until the client quits or closes it, or sends a request that can't be read.
+     *
+     * @param socket    the socket of the connection
+     */
+    private void handle(Socket socket) {
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                     StandardCharsets.US_ASCII), BUFFER_SIZE);
+             Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(),
+                     StandardCharsets.US_ASCII), BUFFER_SIZE)) {
+            String line;
+            while ((line = in.readLine()) != null && !line.equals(QUIT)) {
+                // SEARCH <b-tree-file> <sequence-length> <n>, where the file name may have spaces
+                int countStart = line.lastIndexOf(' ') + 1;
+                int lengthStart = countStart > 0 ? line.lastIndexOf(' ', countStart - 2) + 1 : 0;
+                if (!line.startsWith(SEARCH + " ") || lengthStart <= SEARCH.length() + 1
+                        || !line.substring(lengthStart, countStart - 1).matches("[0-9]{1,2}")
+                        || !line.substring(countStart).matches("[0-9]{1,7}")
+                        || Integer.parseInt(line.substring(countStart)) > MAX_REQUEST_SIZE) {
+                    out.write(ERROR + " Invalid request; expected " + SEARCH
+                            + " <b-tree-file> <sequence-length> <n> with n up to " + MAX_REQUEST_SIZE + "\n");
+                    break;
+                }
+                String btreeFileName = line.substring(SEARCH.length() + 1, lengthStart - 1);
+                int length = Integer.parseInt(line.substring(lengthStart, countStart - 1));
+                int count = Integer.parseInt(line.substring(countStart));
+
+                List<String> queries = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    String query = in.readLine();
+                    if (query == null) {
+                        return;  // Closed partway through the request
+                    }
+                    queries.add(query.trim().toLowerCase());
+                }
+
+                ServedIndex served = indexes.get(btreeFileName);
+                String mismatched = findMismatched(queries, length);
+                if (served == null) {
+                    out.write(ERROR + " BTree file is not served: " + btreeFileName + "\n");
+                } else if (served.searcher.getIndex().getSubsequenceLength() != 0
+                        && served.searcher.getIndex().getSubsequenceLength() != length) {
+                    out.write(ERROR + " BTree file stores subsequences of length "
+                            + served.searcher.getIndex().getSubsequenceLength() + ", not " + length + "\n");
+                } else if (mismatched != null) {
+                    // Cached results are keyed by encoding alone, which is the same for queries of different lengths
+                    out.write(ERROR + " Query is not of length " + length + ": " + mismatched + "\n");
+                } else {
+                    int[] totals;
+                    try {
+                        totals = search(served, queries);
+                    } catch (IllegalArgumentException e) {
+                        out.write(ERROR + " Invalid query: " + String.valueOf(e.getMessage()).replace('\n', ' ')
+                                + "\n");
+                        out.flush();
+                        continue;
+                    }
+                    StringBuilder answer = new StringBuilder(OK).append(' ').append(count).append('\n');
+                    for (int total : totals) {
+                        answer.append(total).append('\n');
+                    }
+                    out.append(answer);
+                }
+                out.flush();
+            }
+            out.flush();
+        } catch (IOException e) {
+            if (!closed) {
+                System.err.println("Warning: connection failed: " + e.getMessage());
+            }
+        } finally {
+            clients.remove(socket);
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Already closed, or the connection is gone either way
+            }
+        }
+    }
+
+    /**
+     * Find a query of a request that isn't of the length the request declares.
+     *
+     * @param queries   the queries
+     * @param length    the declared length
+     * @return          the first query of another length, or null if all are of the length
+     */
+    private static String findMismatched(List<String> queries, int length) {
+        for (String query : queries) {
+            if (query.length() != length) {
+                return query;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Search a BTree file for the queries of a request, a batch at a time, holding its lock for each batch so that
+     * other clients' batches can be searched in between.
+     *
+     * @param served        the BTree file
+     * @param queries       the queries, in lowercase
+     * @return              the total frequency of each query and its complement
+     * @throws IOException  if an I/O error occurs
+     * @throws IllegalArgumentException if a query is too long to encode
+     */
+    private int[] search(ServedIndex served, List<String> queries) throws IOException {
+        int[] totals = new int[queries.size()];
+        long[] queryHighs = new long[QueryBatchSearcher.BATCH_SIZE];
+        long[] queryLongs = new long[QueryBatchSearcher.BATCH_SIZE];
+        int[] queryFreqs = new int[QueryBatchSearcher.BATCH_SIZE];
+        int[] complementFreqs = new int[QueryBatchSearcher.BATCH_SIZE];
+        for (int start = 0; start < queries.size(); start += QueryBatchSearcher.BATCH_SIZE) {
+            List<String> batch = queries.subList(start, Math.min(queries.size(),
+                    start + QueryBatchSearcher.BATCH_SIZE));
+            synchronized (served.lock) {
+                if (closed) {
+                    throw new IOException("Server closed");
+                }
+                served.searcher.search(batch, queryHighs, queryLongs, queryFreqs, complementFreqs);
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                totals[start + i] = queryFreqs[i] + complementFreqs[i];
+            }
+        }
+        return totals;
+    }
+}
@@ -0,0 +1,263 @@
+package cs321.search;
+
+import cs321.common.ParseArgumentUtils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/**
+ * A class to represent the arguments to the GeneBankQueryServer program.
+ * <p>
+ * Create a new instance via the factory method {@link #fromStringArgs(String[])}. This will parse the string array of
+ * arguments from the command line, run validation, and return a new {@link GeneBankQueryServerArguments} object.
+ * <p>
+ * The usage is as follows:
+ * <p>
+ * <pre>
+ * java -jar build/libs/GeneBankQueryServer.jar --btreefile=&lt;b-tree-file&gt;[,&lt;b-tree-file&gt;...]
+ *  [--port=&lt;port&gt;] [--cachesize=&lt;n&gt;] [--cachemem=&lt;size&gt;]
+ * </pre>
+ * <p>
+ * Each BTree file may also be a read-only index exported from a BTree; see {@link cs321.index.IndexFormat}. The port
+ * defaults to {@link GeneBankQueryServer#DEFAULT_PORT}, and port 0 takes any free one. <code>--cachesize</code> gives
+ * each BTree a cache of that many nodes, and <code>--cachemem</code> gives each a cache of that many bytes, such as
+ * <code>512m</code> or <code>8g</code>, held outside the heap, as it does in {@link GeneBankSearchBTree}; see
+ * {@link cs321.btree.BTree#useOffHeapCache(long)}. Each BTree file served takes a cache of its own, so allow the JVM
+ * that much direct memory for each with <code>-XX:MaxDirectMemorySize</code>. Give one or neither.
+ *
+ * @author Derek Caplinger
+ * @author Matt Youngberg
+ */
+public class GeneBankQueryServerArguments {
+
+    /**
+     * A pattern that string arguments must match. BTree files are separated by commas.
+     */
+    private static final Pattern argPattern = Pattern.compile("^--([a-zA-Z]+)=([0-9a-zA-Z._/\\\\:,-]+)$");
+
+    /**
+     * The smallest cache memory accepted, in bytes, which holds a few nodes of the largest page size.
+     */
+    private static final long MIN_CACHE_MEMORY = 1 << 20;
+
+    /**
+     * The file names of the BTree files to serve.
+     */
+    private final List<String> btreeFileNames;
+
+    /**
+     * The port to listen on. 0-65535
+     */
+    private final int port;
+
+    /**
+     * The cache size of each BTree. 100-10,000. Will be 0 if unset.
+     */
+    private final int cacheSize;
+
+    /**
+     * The size of the off-heap cache of each BTree, in bytes. Will be 0 if unset.
+     */
+    private final long cacheMemory;
+
+    /**
+     * Create a new {@link GeneBankQueryServerArguments} object.
+     *
+     * @param btreeFileNames    the file names of the BTree files to serve. Should exist on disk
+     * @param port              the port to listen on. 0-65535
+     * @param cacheSize         the cache size of each BTree. 100-10,000, or 0 for none
+     * @param cacheMemory       the size of the off-heap cache of each BTree in bytes, or 0 for none
+     */
+    public GeneBankQueryServerArguments(List<String> btreeFileNames, int port, int cacheSize, long cacheMemory) {
+        this.btreeFileNames = Collections.unmodifiableList(new ArrayList<>(btreeFileNames));
+        this.port = port;
+        this.cacheSize = cacheSize;
+        this.cacheMemory = cacheMemory;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+
+        GeneBankQueryServerArguments other = (GeneBankQueryServerArguments) obj;
+
+        if (!btreeFileNames.equals(other.btreeFileNames)) {
+            return false;
+        }
+        if (port != other.port) {
+            return false;
+        }
+        if (cacheSize != other.cacheSize) {
+            return false;
+        }
+        if (cacheMemory != other.cacheMemory) {
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "GeneBankQueryServerArguments{" +
+                "btreeFileNames=" + btreeFileNames +
+                ", port=" + port +
+                ", cacheSize=" + cacheSize +
+                ", cacheMemory=" + cacheMemory +
+                '}';
+    }
+
+    /**
+     * Get the file names of the BTree files to serve, in the order given.
+     *
+     * @return the file names, which can't be modified
+     */
+    public List<String> getBtreeFileNames() {
+        return btreeFileNames;
+    }
+
+    /**
+     * Get the port to listen on.
+     *
+     * @return the port, or 0 for any free one
+     */
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * Get the cache size of each BTree, in nodes.
+     *
+     * @return the cache size, or 0 if unset
+     */
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    /**
+     * Get the size of the off-heap cache of each BTree, in bytes.
+     *
+     * @return the size of the off-heap cache of each BTree, or 0 if unset
+     */
+    public long getCacheMemory() {
+        return cacheMemory;
+    }
+
+    /**
+     * Create a GeneBankQueryServerArguments object from a string array of arguments, typically the command line args.
+     *
+     * @param args  the string array of arguments
+     * @return      a GeneBankQueryServerArguments object
+     */
+    public static GeneBankQueryServerArguments fromStringArgs(String[] args) {
+        Map<String, String> argMap = new HashMap<>();
+
+        Set<String> requiredArgs = new HashSet<>(Arrays.asList("btreefile"));
+        Set<String> optionalArgs = new HashSet<>(Arrays.asList("port", "cachesize", "cachemem"));
+
+        // Get all strings into argMap
+        Matcher matcher;
+        for (String argStr : args) {
+            matcher = argPattern.matcher(argStr);
+            if (!matcher.matches()) {
+                throw new IllegalArgumentException("Invalid argument: " + argStr);
+            }
+
+            String param = matcher.group(1);
+            String arg = matcher.group(2);
+
+            if (!requiredArgs.contains(param) && !optionalArgs.contains(param)) {
+                throw new IllegalArgumentException("Invalid argument: " + argStr);
+            } else {
+                argMap.put(param, arg);
+            }
+        }
+
+        // Check for required arguments
+        for (String requiredArg : requiredArgs) {
+            if (!argMap.containsKey(requiredArg)) {
+                throw new IllegalArgumentException("Missing required argument: " + requiredArg);
+            }
+        }
+
+        // btreefile
+        String btreefileValue = argMap.get("btreefile");
+        List<String> btreeFileNames = new ArrayList<>();
+        for (String btreeFileName : btreefileValue.split(",", -1)) {
+            if (btreeFileName.isEmpty() || !new File(btreeFileName).exists()) {
+                throw new IllegalArgumentException("Invalid argument. BTree file not found: btreefile=" + btreeFileName);
+            }
+            if (btreeFileNames.contains(btreeFileName)) {
+                throw new IllegalArgumentException("Invalid argument. BTree file given twice: btreefile=" + btreeFileName);
+            }
+            btreeFileNames.add(btreeFileName);
+        }
+
+        // Port
+        String portValue = argMap.get("port");
+        int port = GeneBankQueryServer.DEFAULT_PORT;
+        if (portValue != null) {
+            if (!portValue.matches("[0-9]{1,5}") || Integer.parseInt(portValue) > 65535) {
+                throw new IllegalArgumentException("Invalid argument. Port must be 0-65535: port=" + portValue);
+            }
+            port = Integer.parseInt(portValue);
+        }
+
+        // Cache size
+        String cachesizeValue = argMap.get("cachesize");
+        int cachesize = 0;
+        if (cachesizeValue != null) {
+            if (!cachesizeValue.matches("[0-9]+")) {
+                throw new IllegalArgumentException("Invalid argument. Cache size must be a number: cachesize=" + cachesizeValue);
+            }
+            cachesize = Integer.parseInt(cachesizeValue);
+            if (cachesize < 100 || cachesize > 10000) {
+                throw new IllegalArgumentException("Invalid argument. Cache size must be between 100-10,000: cachesize=" + cachesizeValue);
+            }
+        }
+
+        // Cache memory
+        String cachememValue = argMap.get("cachemem");
+        long cachemem = 0;
+        if (cachememValue != null) {
+            try {
+                cachemem = ParseArgumentUtils.parseByteSize(cachememValue);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid argument. Cache memory must be a size in bytes, e.g. 512m or 8g: cachemem=" + cachememValue);
+            }
+            if (cachemem < MIN_CACHE_MEMORY) {
+                throw new IllegalArgumentException("Invalid argument. Cache memory must be at least 1m: cachemem=" + cachememValue);
+            }
+            if (cachesizeValue != null) {
+                throw new IllegalArgumentException("Invalid argument. Cannot specify both cache size and cache memory: cachesize=" + cachesizeValue + "; cachemem=" + cachememValue);
+            }
+        }
+
+        // Create and return the arguments object
+        return new GeneBankQueryServerArguments(btreeFileNames, port, cachesize, cachemem);
+    }
+}
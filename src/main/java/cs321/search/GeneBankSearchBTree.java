@@ -1,20 +1,26 @@
 package cs321.search;
 
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
 import java.io.FileReader;
+import java.io.FileWriter;
 import java.io.IOException;
-import java.util.Collections;
+import java.io.Writer;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Scanner;
 import java.lang.String;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import javax.management.JMException;
 
 import cs321.btree.BTree;
 import cs321.btree.BTreeException;
+import cs321.btree.FrequencyIndex;
 import cs321.btree.TreeObject;
 
 import cs321.common.ParseArgumentException;
-import cs321.create.SequenceUtils;
+import cs321.index.IndexFormat;
 
 
 /**
@@ -75,7 +81,8 @@ public class GeneBankSearchBTree {
 		}
 		System.err.println("Usage: java -jar build/libs/GeneBankSearchBTree.jar --cache=<0|1> --degree=<btree-degree>");
 		System.err.println("\t--btreefile=<b-tree-file> --length=<sequence-length> --queryfile=<query-file>");
-		System.err.println("\t[--cachesize=<n>] [--debug=0|1]");
+		System.err.println("\t[--cachesize=<n>] [--debug=0|1] [--output=<text|binary|counts>] [--asyncoutput=<0|1>]");
+		System.err.println("\t[--cachemem=<size>]");
 		System.exit(exitCode);
 	}
 
@@ -101,10 +108,20 @@ public class GeneBankSearchBTree {
 	 * This method will take in the command line arguments and use them to search the provided BTree for the
 	 * subsequences listed in the provided query file.
 	 * <p>
-	 * The results of the search will be output to the standard output stream.
+	 * The results of the search will be output to the standard output stream through a {@link SearchResultWriter} in
+	 * the requested format.
 	 * <p>
 	 * Debug level 0 outputs a list of subsequences and their frequency count
-	 * Debug level 1 will add a separate line to declare what subsequence is being searched and if it was found or not.  
+	 * Debug level 1 will add a separate line to declare what subsequence is being searched and if it was found or not.
+	 * This is buffered and written to the standard error stream.
+	 * <p>
+	 * Queries are searched for {@link QueryBatchSearcher#BATCH_SIZE} at a time, so that the reads of their nodes can
+	 * overlap, and repeated and complementary queries are answered from a cache; see {@link QueryBatchSearcher}. Results
+	 * are still written in the order of the query file. Debug level 1 ends with the number of hits and misses of the
+	 * cache.
+	 * <p>
+	 * The BTree file may instead be a read-only index exported from a BTree by GeneBankCreateBTree, in any of the
+	 * formats of {@link IndexFormat}, which is searched the same way. The cache arguments don't apply to an index.
 	 * 
 	 * @param args				Command Line arguments provided in the program call
 	 * @throws BTreeException	If there is an error locating the BTree File 
@@ -120,74 +137,170 @@ public class GeneBankSearchBTree {
 			throw new BTreeException("File does not exist or was not located");
 		}
 
-		// open BTree file to begin reading BTree
-		BTree searchTree;
-		if (args.useCache()) {
-			searchTree = new BTree(args.getBtreeFileName(), args.getCacheSize());
-		} else {
-			searchTree = new BTree(args.getBtreeFileName());
+		// open BTree file to begin reading BTree, unless it is a read-only index exported from one
+		FrequencyIndex searchTree = IndexFormat.open(filePath);
+		if (searchTree == null) {
+			searchTree = openBTree(args);
 		}
+		if (searchTree.getSubsequenceLength() != 0 && searchTree.getSubsequenceLength() != args.getSubsequenceLength()) {
+			throw new BTreeException("BTree file stores subsequences of length " + searchTree.getSubsequenceLength()
+					+ ", not " + args.getSubsequenceLength());
+		}
+		boolean canonical = searchTree.isCanonical();  // If so, one search covers both the query and its complement
 
 		// open scanner to read query file in
 		Scanner input = new Scanner(new FileReader(args.getQueryFileName()));  // open scanner to read query file
+		QueryBatchSearcher searcher = new QueryBatchSearcher(searchTree);
+		List<String> queries = new ArrayList<>(QueryBatchSearcher.BATCH_SIZE);
+		long[] queryHighs = new long[QueryBatchSearcher.BATCH_SIZE];
+		long[] queryLongs = new long[QueryBatchSearcher.BATCH_SIZE];
+		int[] queryFreqs = new int[QueryBatchSearcher.BATCH_SIZE];
+		int[] complementFreqs = new int[QueryBatchSearcher.BATCH_SIZE];
 		String query;
-		long queryLong;
-		long complementQueryLong;
-		TreeObject result;
-		TreeObject complementResult;
-		int queryFreq;
-		int complementFreq;
 		int totalFreq;
 
+		SearchResultWriter resultWriter = null;
+		Writer debugWriter = null;
+		if (args.getDebugLevel() == 0) {
+			resultWriter = SearchResultWriter.toStandardOut(args.getOutputFormat(), args.useAsyncOutput());
+		} else {
+			debugWriter = new BufferedWriter(new FileWriter(FileDescriptor.err), SearchResultWriter.BUFFER_SIZE);
+		}
+		StringBuilder debugBuilder = new StringBuilder();
+
 		while (input.hasNext()) {
-			query = input.nextLine().trim().toLowerCase();
-			queryLong = SequenceUtils.dnaStringToLong(query);
-			complementQueryLong = SequenceUtils.getComplement(queryLong, query.length());
-			result = searchTree.search(queryLong);
-			complementResult = searchTree.search(complementQueryLong);
-
-			queryFreq = result == null ? 0 : result.getCount();
-			complementFreq = complementResult == null ? 0 : complementResult.getCount();
-			totalFreq = queryFreq + complementFreq;
-
-			if (args.getDebugLevel() == 0) {
-				System.out.println(query + " " + totalFreq);
-			} else {
-				debugLevel1(query, result, complementResult);
+			queries.clear();
+			while (input.hasNext() && queries.size() < QueryBatchSearcher.BATCH_SIZE) {
+				queries.add(input.nextLine().trim().toLowerCase());
+			}
+			searcher.search(queries, queryHighs, queryLongs, queryFreqs, complementFreqs);
+
+			for (int i = 0; i < queries.size(); i++) {
+				query = queries.get(i);
+				totalFreq = queryFreqs[i] + complementFreqs[i];
+
+				if (args.getDebugLevel() == 0) {
+					resultWriter.write(query, queryHighs[i], queryLongs[i], totalFreq);
+				} else {
+					debugBuilder.setLength(0);
+					debugLevel1(debugBuilder, query, queryFreqs[i], complementFreqs[i], canonical);
+					debugWriter.append(debugBuilder);
+				}
 			}
 		}
 		input.close();
+		searchTree.close();
+		if (resultWriter != null) {
+			resultWriter.close();
+		} else {
+			debugBuilder.setLength(0);
+			appendRightAligned(debugBuilder.append("Query cache hits:"), searcher.getCacheHits(), 21).append('\n');
+			appendRightAligned(debugBuilder.append("Query cache misses:"), searcher.getCacheMisses(), 19).append('\n');
+			debugWriter.append(debugBuilder);
+			debugWriter.flush();
+		}
+	}
+
+	/**
+	 * Open the BTree file to search, with the cache given by the arguments, and register its metrics over JMX.
+	 *
+	 * @param args				the arguments of the search
+	 * @return					the {@link BTree}
+	 * @throws BTreeException	if there is an error opening the BTree
+	 * @throws IOException		if there is an error setting up its cache
+	 */
+	private static BTree openBTree(GeneBankSearchBTreeArguments args) throws BTreeException, IOException {
+		BTree searchTree;
+		if (args.getCacheMemory() > 0) {
+			searchTree = new BTree(args.getBtreeFileName());
+			searchTree.useOffHeapCache(args.getCacheMemory());
+		} else if (args.useCache()) {
+			searchTree = new BTree(args.getBtreeFileName(), args.getCacheSize());
+		} else {
+			searchTree = new BTree(args.getBtreeFileName());
+		}
+		try {
+			searchTree.registerMBean();
+		} catch (JMException e) {
+			System.err.println("Warning: BTree metrics are not available over JMX: " + e.getMessage());
+		}
+		return searchTree;
 	}
 
 	/**
-	 * Prints the result of a search per debug level 1 specifications.
+	 * Formats the result of a search per debug level 1 specifications.
+	 * <p>
+	 * This is called once per query, so the block is built up in a reused {@link StringBuilder} rather than with
+	 * <code>printf</code>, which parses its format string on every call.
 	 *
+	 * @param sb				The {@link StringBuilder} to append the formatted result to
 	 * @param query				The query string
-	 * @param result			The {@link TreeObject} result of the query string; null if not found
-	 * @param complementResult	The {@link TreeObject} result of the complement of the query string; null if not found
+	 * @param resultCount		The frequency of the query string; 0 if not found
+	 * @param complementResultCount	The frequency of the complement of the query string; 0 if not found
+	 * @param canonical			Whether resultCount is of the canonical key, which already includes the complement
 	 */
-	private static void debugLevel1(String query, TreeObject result, TreeObject complementResult) {
-		System.err.println();
+	private static void debugLevel1(StringBuilder sb, String query, int resultCount, int complementResultCount,
+									boolean canonical) {
+		sb.append('\n');
 
 		// Header
-		String headerString = "  Search results for \"" + query + "\":  ";
-		List<String> dashedLines = Collections.nCopies(headerString.length(), "-");
-		System.err.println(String.join("", dashedLines));
-		System.err.println(headerString);
-		System.err.println(String.join("", dashedLines));
+		int headerLength = query.length() + 26;  // "  Search results for \"" + query + "\":  "
+		appendRepeated(sb, '-', headerLength).append('\n');
+		sb.append("  Search results for \"").append(query).append("\":  \n");
+		appendRepeated(sb, '-', headerLength).append('\n');
 
 		// Subsequence result
-		int resultCount = (result != null) ? result.getCount() : 0;
-		System.err.printf("subsequence:%,15d%n", resultCount);
+		if (canonical) {
+			appendRightAligned(sb.append("canonical:"), resultCount, 17).append('\n');
+		} else {
+			appendRightAligned(sb.append("subsequence:"), resultCount, 15).append('\n');
+		}
 
 		// Complement result
-		int complementResultCount = (complementResult != null) ? complementResult.getCount() : 0;
-		System.err.printf("complement:%,16d%n", complementResultCount);
+		if (!canonical) {
+			appendRightAligned(sb.append("complement:"), complementResultCount, 16).append('\n');
+		}
 
 		// Print total
-		System.err.printf("total:%,21d%n", resultCount + complementResultCount);
+		appendRightAligned(sb.append("total:"), resultCount + complementResultCount, 21).append('\n');
 
-		System.err.println();
+		sb.append('\n');
 	}
-}
 
+	/**
+	 * Append a character to a {@link StringBuilder} the given number of times.
+	 *
+	 * @param sb		the {@link StringBuilder} to append to
+	 * @param c			the character to append
+	 * @param times		how many times to append it
+	 * @return			the given {@link StringBuilder}
+	 */
+	private static StringBuilder appendRepeated(StringBuilder sb, char c, int times) {
+		for (int i = 0; i < times; i++) {
+			sb.append(c);
+		}
+		return sb;
+	}
+
+	/**
+	 * Append a non-negative number with thousands separators, right-aligned in a field of the given width. Equivalent
+	 * to the <code>%,{width}d</code> format specifier in an English locale.
+	 *
+	 * @param sb		the {@link StringBuilder} to append to
+	 * @param value		the number to append
+	 * @param width		the width of the field
+	 * @return			the given {@link StringBuilder}
+	 */
+	private static StringBuilder appendRightAligned(StringBuilder sb, long value, int width) {
+		String digits = Long.toString(value);
+		int length = digits.length() + (digits.length() - 1) / 3;
+		appendRepeated(sb, ' ', width - length);
+		for (int i = 0; i < digits.length(); i++) {
+			if (i > 0 && (digits.length() - i) % 3 == 0) {
+				sb.append(',');
+			}
+			sb.append(digits.charAt(i));
+		}
+		return sb;
+	}
+}
@@ -1,5 +1,8 @@
 package cs321.search;
 
+import cs321.common.ParseArgumentUtils;
+import cs321.create.SequenceUtils;
+
 import java.io.File;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -21,8 +24,15 @@ import java.util.regex.Pattern;
  * <pre>
  * java java -jar build/libs/GeneBankSearchBTree.jar --cache=&lt;0|1&gt;  --degree=&lt;btree-degree&gt;
  *  --btreefile=&lt;b-tree-file&gt; --length=&lt;sequence-length&gt; --queryfile=&lt;query-file&gt;
- *  [--cachesize=&lt;n&gt;] [--debug=&lt;0|1&gt;]
+ *  [--cachesize=&lt;n&gt;] [--debug=&lt;0|1&gt;] [--output=&lt;text|binary|counts&gt;] [--asyncoutput=&lt;0|1&gt;]
+ *  [--cachemem=&lt;size&gt;]
  * </pre>
+ * <p>
+ * The <code>--output</code> and <code>--asyncoutput</code> arguments are extensions to the project spec; see
+ * {@link SearchResultWriter}. So is <code>--cachemem</code>, which sizes the cache in bytes rather than nodes, such as
+ * <code>512m</code> or <code>8g</code>, and holds it outside the heap; see
+ * {@link cs321.btree.BTree#useOffHeapCache(long)}. With <code>--cache=1</code>, give either <code>--cachesize</code> or
+ * <code>--cachemem</code>.
  *
  * @author Derek Caplinger
  * @author Matt Youngberg
@@ -33,6 +43,11 @@ public class GeneBankSearchBTreeArguments {
      * A pattern that string arguments must match.
      */
     private static final Pattern argPattern = Pattern.compile("^--([a-zA-Z]+)=([0-9a-zA-Z._/\\\\:-]+)$");
+
+    /**
+     * The smallest cache memory accepted, in bytes, which holds a few nodes of the largest page size.
+     */
+    private static final long MIN_CACHE_MEMORY = 1 << 20;
 	
 	/**
      * Whether to use a cache. 0 or 1
@@ -50,7 +65,7 @@ public class GeneBankSearchBTreeArguments {
 	private final String btreeFileName;
     
 	/**
-     * The subsequence length. 1-31
+     * The subsequence length. 1-63
      */
 	private final int subsequenceLength;
     
@@ -70,17 +85,69 @@ public class GeneBankSearchBTreeArguments {
 	private final int debugLevel;
 
 	/**
-     * Create a new {@link GeneBankSearchBTreeArguments} object.
+	 * The format to write results in. Defaults to {@link SearchResultWriter.Format#TEXT}.
+	 */
+	private final SearchResultWriter.Format outputFormat;
+
+	/**
+	 * Whether results are written to standard out on a background thread. 0 or 1
+	 */
+	private final boolean asyncOutput;
+
+	/**
+	 * The size of an off-heap cache in bytes, in place of a cache size in nodes. Will be 0 if unset.
+	 */
+	private final long cacheMemory;
+
+	/**
+     * Create a new {@link GeneBankSearchBTreeArguments} object that writes results in the default format.
      *
      * @param useCache              whether to use a cache. 0 or 1
      * @param degree                the degree of the BTree. 0 or >=2
      * @param btreeFileName         the file name of the BTree file. Should exist on disk
-     * @param subsequenceLength     the subsequence length. 1-31
+     * @param subsequenceLength     the subsequence length. 1-63
      * @param queryFileName			the file name of the Query file.
      * @param cacheSize             the cache size. 100-10,000
      * @param debugLevel            the debug level. 0 or 1
      */
     public GeneBankSearchBTreeArguments(boolean useCache, int degree, String btreeFileName, int subsequenceLength, String queryFileName, int cacheSize, int debugLevel) {
+        this(useCache, degree, btreeFileName, subsequenceLength, queryFileName, cacheSize, debugLevel,
+                SearchResultWriter.Format.TEXT, false);
+    }
+
+    /**
+     * Create a new {@link GeneBankSearchBTreeArguments} object.
+     *
+     * @param useCache              whether to use a cache. 0 or 1
+     * @param degree                the degree of the BTree. 0 or >=2
+     * @param btreeFileName         the file name of the BTree file. Should exist on disk
+     * @param subsequenceLength     the subsequence length. 1-63
+     * @param queryFileName			the file name of the Query file.
+     * @param cacheSize             the cache size. 100-10,000
+     * @param debugLevel            the debug level. 0 or 1
+     * @param outputFormat          the format to write results in
+     * @param asyncOutput           whether results are written on a background thread
+     */
+    public GeneBankSearchBTreeArguments(boolean useCache, int degree, String btreeFileName, int subsequenceLength, String queryFileName, int cacheSize, int debugLevel, SearchResultWriter.Format outputFormat, boolean asyncOutput) {
+        this(useCache, degree, btreeFileName, subsequenceLength, queryFileName, cacheSize, debugLevel, outputFormat,
+                asyncOutput, 0);
+    }
+
+    /**
+     * Create a new {@link GeneBankSearchBTreeArguments} object.
+     *
+     * @param useCache              whether to use a cache. 0 or 1
+     * @param degree                the degree of the BTree. 0 or >=2
+     * @param btreeFileName         the file name of the BTree file. Should exist on disk
+     * @param subsequenceLength     the subsequence length. 1-63
+     * @param queryFileName			the file name of the Query file.
+     * @param cacheSize             the cache size. 100-10,000, or 0 with a cache memory
+     * @param debugLevel            the debug level. 0 or 1
+     * @param outputFormat          the format to write results in
+     * @param asyncOutput           whether results are written on a background thread
+     * @param cacheMemory           the size of an off-heap cache in bytes, or 0 for a cache size in nodes
+     */
+    public GeneBankSearchBTreeArguments(boolean useCache, int degree, String btreeFileName, int subsequenceLength, String queryFileName, int cacheSize, int debugLevel, SearchResultWriter.Format outputFormat, boolean asyncOutput, long cacheMemory) {
         this.useCache = useCache;
         this.degree = degree;
         this.btreeFileName = btreeFileName;
@@ -88,6 +155,9 @@ public class GeneBankSearchBTreeArguments {
         this.queryFileName = queryFileName;
         this.cacheSize = cacheSize;
         this.debugLevel = debugLevel;
+        this.outputFormat = outputFormat;
+        this.asyncOutput = asyncOutput;
+        this.cacheMemory = cacheMemory;
     }
 
     /**
@@ -141,6 +211,15 @@ public class GeneBankSearchBTreeArguments {
         if (useCache != other.useCache) {
             return false;
         }
+        if (outputFormat != other.outputFormat) {
+            return false;
+        }
+        if (asyncOutput != other.asyncOutput) {
+            return false;
+        }
+        if (cacheMemory != other.cacheMemory) {
+            return false;
+        }
 
         return true;
     }
@@ -160,6 +239,9 @@ public class GeneBankSearchBTreeArguments {
                 ", queryFileName='" + getQueryFileName() + '\'' +
                 ", cacheSize=" + cacheSize +
                 ", debugLevel=" + getDebugLevel() +
+                ", outputFormat=" + outputFormat +
+                ", asyncOutput=" + asyncOutput +
+                ", cacheMemory=" + cacheMemory +
                 '}';
     }
 
@@ -215,6 +297,35 @@ public class GeneBankSearchBTreeArguments {
 	public int getDebugLevel() {
 		return debugLevel;
 	}
+
+    /**
+     * Get the format to write results in.
+     *
+     * @return the output format
+     */
+    public SearchResultWriter.Format getOutputFormat() {
+        return outputFormat;
+    }
+
+    /**
+     * Get whether results should be written to standard out on a background thread.
+     *
+     * @return whether to write results asynchronously
+     */
+    public boolean useAsyncOutput() {
+        return asyncOutput;
+    }
+
+    /**
+     * Get the size of the cache in bytes, for a cache held off the heap.
+     * <p>
+     * Will be 0 if the cache is sized in nodes by {@link #getCacheSize()} instead, or there is no cache.
+     *
+     * @return the size of the cache in bytes
+     */
+    public long getCacheMemory() {
+        return cacheMemory;
+    }
 	
 	 /**
      * Create a GeneBankSearchBTreeArguments object from a string array of arguments, typically the command line args.
@@ -229,7 +340,7 @@ public class GeneBankSearchBTreeArguments {
         Map<String, String> argMap = new HashMap<>();
 
         Set<String> requiredArgs = new HashSet<>(Arrays.asList("cache", "degree", "btreefile", "length", "queryfile"));
-        Set<String> optionalArgs = new HashSet<>(Arrays.asList("cachesize", "debug"));
+        Set<String> optionalArgs = new HashSet<>(Arrays.asList("cachesize", "debug", "output", "asyncoutput", "cachemem"));
 
         // Get all strings into argMap
         Matcher matcher;
@@ -295,8 +406,9 @@ public class GeneBankSearchBTreeArguments {
             throw new IllegalArgumentException("Invalid argument. Length must be a number: length=" + lengthValue);
         }
         int length = Integer.parseInt(lengthValue);
-        if (length < 1 || length > 31) {
-            throw new IllegalArgumentException("Invalid argument. Length must be 1-31: length=" + lengthValue);
+        if (length < 1 || length > SequenceUtils.MAX_WIDE_LENGTH) {
+            throw new IllegalArgumentException("Invalid argument. Length must be 1-" + SequenceUtils.MAX_WIDE_LENGTH
+                    + ": length=" + lengthValue);
         }
         
         // queryfile
@@ -306,6 +418,26 @@ public class GeneBankSearchBTreeArguments {
             throw new IllegalArgumentException("Invalid argument. Query file not found: queryfile=" + queryfileValue);
         }
 
+        // Cache memory
+        String cachememValue = argMap.get("cachemem");
+        long cachemem = 0;
+        if (cachememValue != null) {
+            try {
+                cachemem = ParseArgumentUtils.parseByteSize(cachememValue);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid argument. Cache memory must be a size in bytes, e.g. 512m or 8g: cachemem=" + cachememValue);
+            }
+            if (cachemem < MIN_CACHE_MEMORY) {
+                throw new IllegalArgumentException("Invalid argument. Cache memory must be at least 1m: cachemem=" + cachememValue);
+            }
+            if (cacheValue.equals("0")) {  // specified not to have a cache
+                throw new IllegalArgumentException("Invalid argument. Cannot specify cache memory with no cache: cachemem=" + cachememValue + "; cache=" + cacheValue);
+            }
+            if (argMap.get("cachesize") != null) {
+                throw new IllegalArgumentException("Invalid argument. Cannot specify both cache size and cache memory: cachesize=" + argMap.get("cachesize") + "; cachemem=" + cachememValue);
+            }
+        }
+
         // Cache size
         String cachesizeValue = argMap.get("cachesize");
         if (cachesizeValue != null) {
@@ -320,8 +452,8 @@ public class GeneBankSearchBTreeArguments {
                 throw new IllegalArgumentException("Invalid argument. Cannot specify cache size with no cache: cachesize=" + cachesizeValue + "; cache=" + cacheValue);
             }
         } else {
-            if (cacheValue.equals("1")) {
-                throw new IllegalArgumentException("Invalid argument. Must specify cache size when using cache: cachesize=" + cachesizeValue + "; cache=" + cacheValue);
+            if (cacheValue.equals("1") && cachememValue == null) {
+                throw new IllegalArgumentException("Invalid argument. Must specify cache size or cache memory when using cache: cachesize=" + cachesizeValue + "; cache=" + cacheValue);
             }
             argMap.put("cachesize", "0");
         }
@@ -341,6 +473,23 @@ public class GeneBankSearchBTreeArguments {
             debugValue = "0";
         }
 
+        // Output
+        String outputValue = argMap.get("output");
+        SearchResultWriter.Format outputFormat = SearchResultWriter.Format.TEXT;
+        if (outputValue != null) {
+            try {
+                outputFormat = SearchResultWriter.Format.fromString(outputValue);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid argument. Output must be text, binary or counts: output=" + outputValue);
+            }
+        }
+
+        // Async output
+        String asyncOutputValue = argMap.get("asyncoutput");
+        if (asyncOutputValue != null && !asyncOutputValue.equals("0") && !asyncOutputValue.equals("1")) {
+            throw new IllegalArgumentException("Invalid argument. Async output should be 0 or 1: asyncoutput=" + asyncOutputValue);
+        }
+
         // Create and return the arguments object
         return new GeneBankSearchBTreeArguments(
                 argMap.get("cache").equals("1"),
@@ -349,7 +498,10 @@ public class GeneBankSearchBTreeArguments {
                 Integer.parseInt(argMap.get("length")),
                 argMap.get("queryfile"),
                 Integer.parseInt(argMap.get("cachesize")),
-                Integer.parseInt(argMap.get("debug"))
+                Integer.parseInt(argMap.get("debug")),
+                outputFormat,
+                "1".equals(asyncOutputValue),
+                cachemem
         );
     }
 }
@@ -73,7 +73,7 @@ public class GeneBankSearchDatabase {
 			System.err.println(errorMessage);
 		}
 		System.err.println("Usage: java -jar build/libs/GeneBankSearchDatabase.jar --database=<SQLite-database-path> ");
-		System.err.println("\t --queryfile=<query-file>");
+		System.err.println("\t --queryfile=<query-file> [--output=<text|binary|counts>] [--asyncoutput=<0|1>]");
 		System.exit(exitCode);
 	}
 
@@ -105,7 +105,8 @@ public class GeneBankSearchDatabase {
 	 * {@link cs321.btree.BTreeSQLiteDBBuilder} stores the subsequences as a long within the database. This method will
 	 * read in a sequence from the query file, convert it to a long and build a query for the database to search for the
 	 * given sequence and its complement to determine the total frequency of the sequence. The results are than output
-	 * to stdout with the format ("sequence" "total frequency") without parentheses.
+	 * to stdout through a {@link SearchResultWriter}, by default with the format ("sequence" "total frequency") without
+	 * parentheses.
 	 * 
 	 * @param  args         Parsed and validated command line arguments provided by
 	 *                      user
@@ -118,11 +119,13 @@ public class GeneBankSearchDatabase {
 		if (!Files.exists(path)) {
 			throw new IOException("Database file does not exist");
 		}
-		try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + databasePath)) {
+		try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + databasePath);
+			 SearchResultWriter resultWriter = SearchResultWriter.toStandardOut(args.getOutputFormat(), args.useAsyncOutput())) {
 
 			// create scanner to read query file
 			Scanner input = new Scanner(Paths.get(args.getQueryFileName()));
 			String subsequenceString;
+			long subsequenceHigh;
 			long subsequenceLong;
 			long subseqComplementLong;
 			int sequenceLength;
@@ -141,37 +144,65 @@ public class GeneBankSearchDatabase {
 			String query = "SELECT Frequency FROM Sequences WHERE Encoding = ? OR Encoding = ?";
 			PreparedStatement pstmt = connection.prepareStatement(query);
 
+			// subsequences longer than 31 bases are stored with the high bits of their encoding in a separate column
+			String wideQuery = "SELECT Frequency FROM Sequences WHERE (High = ? AND Encoding = ?) OR (High = ? AND Encoding = ?)";
+			PreparedStatement widePstmt = null;  // only prepared if needed, as only databases with wide keys have High
+
 			// execute database searches and process results set to print output
 			while (input.hasNext()) {
 				subsequenceString = input.nextLine().trim();
 				sequenceLength = subsequenceString.length();
-				subsequenceLong = SequenceUtils.dnaStringToLong(subsequenceString);
-				subseqComplementLong = SequenceUtils.getComplement(subsequenceLong, sequenceLength);
-				pstmt.setString(1, String.valueOf(subsequenceLong));
-				pstmt.setString(2, String.valueOf(subseqComplementLong));
-				ResultSet results = pstmt.executeQuery();
-				printSearchResults(results, subsequenceString);
+				ResultSet results;
+				if (sequenceLength > SequenceUtils.MAX_LENGTH) {
+					if (widePstmt == null) {
+						widePstmt = connection.prepareStatement(wideQuery);
+					}
+					subsequenceHigh = SequenceUtils.dnaStringToLongHigh(subsequenceString);
+					subsequenceLong = SequenceUtils.dnaStringToLongLow(subsequenceString);
+					widePstmt.setString(1, String.valueOf(subsequenceHigh));
+					widePstmt.setString(2, String.valueOf(subsequenceLong));
+					widePstmt.setString(3, String.valueOf(SequenceUtils.getComplementHigh(subsequenceHigh, sequenceLength)));
+					widePstmt.setString(4, String.valueOf(SequenceUtils.getComplementLow(subsequenceLong, sequenceLength)));
+					results = widePstmt.executeQuery();
+				} else {
+					subsequenceHigh = 0L;
+					subsequenceLong = SequenceUtils.dnaStringToLong(subsequenceString);
+					subseqComplementLong = SequenceUtils.getComplement(subsequenceLong, sequenceLength);
+					pstmt.setString(1, String.valueOf(subsequenceLong));
+					pstmt.setString(2, String.valueOf(subseqComplementLong));
+					results = pstmt.executeQuery();
+				}
+				printSearchResults(results, subsequenceString, subsequenceHigh, subsequenceLong, resultWriter);
 				results.close();
 			}
 			pstmt.close();
+			if (widePstmt != null) {
+				widePstmt.close();
+			}
 		}
 	}
 
 	/**
 	 * This helper method takes in a returned result set for a database query and
-	 * prints all columns of the result set as described in the searchDatabase
+	 * writes all columns of the result set as described in the searchDatabase
 	 * method.
 	 * 
 	 * @param  results      result set returned from SQLite query statement
+	 * @param  query        the query string
+	 * @param  encodingHigh the high 64 bits of the encoding of the query string; 0 for up to 31 bases
+	 * @param  encoding     the encoding of the query string
+	 * @param  writer       the {@link SearchResultWriter} to write the result to
 	 * @throws SQLException if an error occurred in the SQLite connection or the
 	 *                      results set is closed
+	 * @throws IOException  if an error occurred writing the result
 	 */
-	private static void printSearchResults(ResultSet results, String query) throws SQLException {
+	private static void printSearchResults(ResultSet results, String query, long encodingHigh, long encoding,
+										   SearchResultWriter writer) throws SQLException, IOException {
 		int totalFrequency = 0;
 
 		while (results.next()) {
 			totalFrequency += results.getInt("Frequency");
 		}
-		System.out.println(query.toLowerCase() + " " + totalFrequency);
+		writer.write(query.toLowerCase(), encodingHigh, encoding, totalFrequency);
 	}
 }
@@ -22,8 +22,11 @@ import java.util.regex.Pattern;
  * <p>
  * <pre>
  * java -jar  java -jar build/libs/GeneBankSearchDatabase.jar --database=&lt;SQLite-database-path&gt;
- * --queryfile=&lt;query-file&gt;
+ * --queryfile=&lt;query-file&gt; [--output=&lt;text|binary|counts&gt;] [--asyncoutput=&lt;0|1&gt;]
  * </pre>
+ * <p>
+ * The <code>--output</code> and <code>--asyncoutput</code> arguments are extensions to the project spec; see
+ * {@link SearchResultWriter}.
  *
  * @author Derek Caplinger
  * @author Matt Youngberg
@@ -46,15 +49,39 @@ public class GeneBankSearchDatabaseArguments {
 	private final String queryFileName;
 
 	/**
-	 * Create a new {@link GeneBankSearchDatabaseArguments} object.
+	 * The format to write results in. Defaults to {@link SearchResultWriter.Format#TEXT}.
+	 */
+	private final SearchResultWriter.Format outputFormat;
+
+	/**
+	 * Whether results are written to standard out on a background thread.
+	 */
+	private final boolean asyncOutput;
+
+	/**
+	 * Create a new {@link GeneBankSearchDatabaseArguments} object that writes results in the default format.
 	 *
 	 * @param databasePath  The path to the SQLite database created alongside the {@link cs321.btree.BTree}
 	 * @param queryFileName the file name of the Query file. Should exist on disk
 	 *
 	 */
 	public GeneBankSearchDatabaseArguments(Path databasePath, String queryFileName) {
+		this(databasePath, queryFileName, SearchResultWriter.Format.TEXT, false);
+	}
+
+	/**
+	 * Create a new {@link GeneBankSearchDatabaseArguments} object.
+	 *
+	 * @param databasePath  The path to the SQLite database created alongside the {@link cs321.btree.BTree}
+	 * @param queryFileName the file name of the Query file. Should exist on disk
+	 * @param outputFormat  the format to write results in
+	 * @param asyncOutput   whether results are written on a background thread
+	 */
+	public GeneBankSearchDatabaseArguments(Path databasePath, String queryFileName, SearchResultWriter.Format outputFormat, boolean asyncOutput) {
 		this.databasePath = databasePath;
 		this.queryFileName = queryFileName;
+		this.outputFormat = outputFormat;
+		this.asyncOutput = asyncOutput;
 	}
 
 	/**
@@ -90,6 +117,12 @@ public class GeneBankSearchDatabaseArguments {
 				return false;
 			}
 		}
+		if (outputFormat != other.outputFormat) {
+			return false;
+		}
+		if (asyncOutput != other.asyncOutput) {
+			return false;
+		}
 
 		return true;
 	}
@@ -100,7 +133,7 @@ public class GeneBankSearchDatabaseArguments {
 	@Override
 	public String toString() {
 		return "GeneBankSearchDatabaseArguments{" + "dataBasePath=" + getDatabasePath() + ", queryFileName='"
-				+ getQueryFileName() + '\'' + '}';
+				+ getQueryFileName() + '\'' + ", outputFormat=" + outputFormat + ", asyncOutput=" + asyncOutput + '}';
 	}
 
 	/**
@@ -121,6 +154,24 @@ public class GeneBankSearchDatabaseArguments {
 		return queryFileName;
 	}
 
+	/**
+	 * Get the format to write results in.
+	 *
+	 * @return the output format
+	 */
+	public SearchResultWriter.Format getOutputFormat() {
+		return outputFormat;
+	}
+
+	/**
+	 * Get whether results should be written to standard out on a background thread.
+	 *
+	 * @return whether to write results asynchronously
+	 */
+	public boolean useAsyncOutput() {
+		return asyncOutput;
+	}
+
 	/**
 	 * Create a GeneBankSearchDatabaseArguments object from a string array of arguments, typically the command line
 	 * args.
@@ -135,6 +186,7 @@ public class GeneBankSearchDatabaseArguments {
 		Map<String, String> argMap = new HashMap<>();
 
 		Set<String> requiredArgs = new HashSet<>(Arrays.asList("database", "queryfile"));
+		Set<String> optionalArgs = new HashSet<>(Arrays.asList("output", "asyncoutput"));
 
 		// Get all strings into argMap
 		Matcher matcher;
@@ -148,7 +200,7 @@ public class GeneBankSearchDatabaseArguments {
 			String param = argComponents[0].substring(2);
 			String arg = argComponents[1];
 
-			if (!requiredArgs.contains(param)) {
+			if (!requiredArgs.contains(param) && !optionalArgs.contains(param)) {
 				throw new IllegalArgumentException("Invalid argument: " + argStr);
 			} else {
 				argMap.put(param, arg);
@@ -178,7 +230,25 @@ public class GeneBankSearchDatabaseArguments {
 			throw new IllegalArgumentException("Invalid argument. query file not found: queryfile=" + queryFileValue);
 		}
 
+		// output
+		String outputValue = argMap.get("output");
+		SearchResultWriter.Format outputFormat = SearchResultWriter.Format.TEXT;
+		if (outputValue != null) {
+			try {
+				outputFormat = SearchResultWriter.Format.fromString(outputValue);
+			} catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException("Invalid argument. output must be text, binary or counts: output=" + outputValue);
+			}
+		}
+
+		// asyncoutput
+		String asyncOutputValue = argMap.get("asyncoutput");
+		if (asyncOutputValue != null && !asyncOutputValue.equals("0") && !asyncOutputValue.equals("1")) {
+			throw new IllegalArgumentException("Invalid argument. asyncoutput should be 0 or 1: asyncoutput=" + asyncOutputValue);
+		}
+
 		// Create and return the arguments object
-		return new GeneBankSearchDatabaseArguments(Paths.get(databasePathValue), argMap.get("queryfile"));
+		return new GeneBankSearchDatabaseArguments(Paths.get(databasePathValue), argMap.get("queryfile"), outputFormat,
+				"1".equals(asyncOutputValue));
 	}
 }
@@ -0,0 +1,234 @@
+package cs321.search;
+
+import cs321.btree.BTree;
+import cs321.btree.FrequencyIndex;
+import cs321.btree.TreeObject;
+import cs321.create.SequenceUtils;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Searches a {@link FrequencyIndex} for the frequencies of batches of query strings and of their complements, as
+ * GeneBankSearchBTree and GeneBankQueryServer report them.
+ * <p>
+ * Queries are searched for {@link #BATCH_SIZE} at a time with {@link FrequencyIndex#searchBatch(long[], long[])}, so
+ * that the reads of their nodes can overlap. The results of queries of up to {@value SequenceUtils#MAX_LENGTH} bases
+ * are cached by the canonical key of the query, the lesser of it and its complement, in a {@link QueryCache}. A query
+ * and its complement have the same total frequency, with the frequencies of the two strands swapped, so a query that
+ * repeats an earlier one, or that is the complement of one, as half of the queries of a file of every subsequence are,
+ * is answered without a search. So is one that repeats a query earlier in the same batch.
+ * <p>
+ * A {@link QueryBatchSearcher} is not thread-safe, and neither is a {@link BTree}; searches from several threads must
+ * be made one at a time.
+ *
+ * @author Derek Caplinger
+ * @author Matt Youngberg
+ */
+final class QueryBatchSearcher {
+
+    /**
+     * The most queries searched for together.
+     */
+    static final int BATCH_SIZE = 1024;
+
+    /**
+     * The number of results held by the {@link QueryCache}, 16B each.
+     */
+    private static final int CACHE_SIZE = 1 << 16;
+
+    /**
+     * The value of a query in a batch whose result is to come from the search of the batch. The index of the search is
+     * subtracted from it.
+     */
+    private static final long PENDING = -2;
+
+    /**
+     * The index searched.
+     */
+    private final FrequencyIndex index;
+
+    /**
+     * Whether the index holds canonical keys, in which case one search covers both a query and its complement.
+     */
+    private final boolean canonical;
+
+    /**
+     * The cache of results, by canonical key.
+     */
+    private final QueryCache cache = new QueryCache(CACHE_SIZE);
+
+    /**
+     * The cached frequencies of each query of a batch, or {@link #PENDING} minus the index of its search.
+     */
+    private final long[] queryResults = new long[BATCH_SIZE];
+
+    /**
+     * Whether the frequencies of each query of a batch are those of its complement, with the strands swapped.
+     */
+    private final boolean[] mirrored = new boolean[BATCH_SIZE];
+
+    /**
+     * The high 64 bits of each key to search for.
+     */
+    private final long[] searchHighs = new long[BATCH_SIZE];
+
+    /**
+     * The low 64 bits of each key to search for.
+     */
+    private final long[] searchLongs = new long[BATCH_SIZE];
+
+    /**
+     * The high 64 bits of the complement of each key to search for.
+     */
+    private final long[] complementHighs = new long[BATCH_SIZE];
+
+    /**
+     * The low 64 bits of the complement of each key to search for.
+     */
+    private final long[] complementLongs = new long[BATCH_SIZE];
+
+    /**
+     * Whether the result of each search is to be cached.
+     */
+    private final boolean[] cacheable = new boolean[BATCH_SIZE];
+
+    /**
+     * The frequencies found by each search, packed by {@link #packCounts(int, int)}.
+     */
+    private final long[] searchResults = new long[BATCH_SIZE];
+
+    /**
+     * Create a new {@link QueryBatchSearcher} with an empty cache.
+     *
+     * @param index the index to search
+     */
+    QueryBatchSearcher(FrequencyIndex index) {
+        this.index = index;
+        this.canonical = index.isCanonical();
+    }
+
+    /**
+     * Search for a batch of queries, and encode them.
+     *
+     * @param queries           up to {@link #BATCH_SIZE} query strings, in lowercase
+     * @param queryHighs        where to put the high 64 bits of the encoding of each query
+     * @param queryLongs        where to put the low 64 bits of the encoding of each query
+     * @param queryFreqs        where to put the frequency of each query, or of its canonical key in a canonical index
+     * @param complementFreqs   where to put the frequency of the complement of each query, or 0 in a canonical index
+     * @throws IOException      if an I/O error occurs
+     * @throws IllegalArgumentException if there are too many queries, or a query is too long to encode
+     */
+    void search(List<String> queries, long[] queryHighs, long[] queryLongs, int[] queryFreqs, int[] complementFreqs)
+            throws IOException {
+        int count = queries.size();
+        if (count > BATCH_SIZE) {
+            throw new IllegalArgumentException("Batch of " + count + " queries is larger than " + BATCH_SIZE);
+        }
+        for (int i = 0; i < count; i++) {  // Encode them all first, so one too long fails before the cache is touched
+            queryHighs[i] = SequenceUtils.dnaStringToLongHigh(queries.get(i));
+            queryLongs[i] = SequenceUtils.dnaStringToLongLow(queries.get(i));
+        }
+
+        int searches = 0;
+        for (int i = 0; i < count; i++) {
+            String query = queries.get(i);
+            long complementHigh = SequenceUtils.getComplementHigh(queryHighs[i], query.length());
+            long complementLong = SequenceUtils.getComplementLow(queryLongs[i], query.length());
+
+            // Search for the canonical key, and its complement, once, unless the cache has it
+            boolean narrow = query.length() <= SequenceUtils.MAX_LENGTH;
+            long key = narrow ? SequenceUtils.getCanonical(queryLongs[i], query.length()) : queryLongs[i];
+            mirrored[i] = key != queryLongs[i];
+            mirrored[i] &= !canonical;  // A canonical index finds both strands under the key
+            queryResults[i] = narrow ? cache.get(key) : QueryCache.ABSENT;
+            if (queryResults[i] == QueryCache.ABSENT) {
+                searchHighs[searches] = narrow ? 0 : queryHighs[i];
+                searchLongs[searches] = key;
+                complementHighs[searches] = narrow ? 0 : complementHigh;
+                complementLongs[searches] = key == queryLongs[i] ? complementLong : queryLongs[i];
+                cacheable[searches] = narrow;
+                queryResults[i] = PENDING - searches;
+                if (narrow) {  // So a repeat later in the batch waits for this search rather than making another
+                    cache.put(key, queryResults[i]);
+                }
+                searches++;
+            }
+        }
+
+        TreeObject[] results;
+        TreeObject[] complementResults;
+        try {
+            results = index.searchBatch(Arrays.copyOf(searchHighs, searches), Arrays.copyOf(searchLongs, searches));
+            complementResults = canonical ? new TreeObject[searches]
+                    : index.searchBatch(Arrays.copyOf(complementHighs, searches),
+                            Arrays.copyOf(complementLongs, searches));
+        } catch (IOException | RuntimeException e) {
+            cache.clear();  // Not to leave the entries of this batch pending on a search that never finished
+            throw e;
+        }
+        for (int j = 0; j < searches; j++) {
+            searchResults[j] = packCounts(results[j] == null ? 0 : results[j].getCount(),
+                    complementResults[j] == null ? 0 : complementResults[j].getCount());
+            if (cacheable[j]) {
+                cache.put(searchLongs[j], searchResults[j]);
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            long counts = queryResults[i] <= PENDING ? searchResults[(int) (PENDING - queryResults[i])]
+                    : queryResults[i];
+            queryFreqs[i] = (int) (mirrored[i] ? counts : counts >>> 32);
+            complementFreqs[i] = (int) (mirrored[i] ? counts >>> 32 : counts);
+        }
+    }
+
+    /**
+     * Get the index searched.
+     *
+     * @return  the index
+     */
+    FrequencyIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Tell whether the index holds canonical keys, in which case the frequency of a query is that of its canonical
+     * key, and that of its complement is 0.
+     *
+     * @return  whether the index holds canonical keys
+     */
+    boolean isCanonical() {
+        return canonical;
+    }
+
+    /**
+     * Get the number of queries answered from the cache so far.
+     *
+     * @return  the number of hits
+     */
+    long getCacheHits() {
+        return cache.getHits();
+    }
+
+    /**
+     * Get the number of queries looked up in the cache and not found so far.
+     *
+     * @return  the number of misses
+     */
+    long getCacheMisses() {
+        return cache.getMisses();
+    }
+
+    /**
+     * Pack the frequencies of a key and its complement into a long, to be held in the {@link QueryCache}.
+     *
+     * @param count             the frequency of the key, in the high 32 bits
+     * @param complementCount   the frequency of its complement, in the low 32 bits
+     * @return                  the packed frequencies, which are never negative
+     */
+    private static long packCounts(int count, int complementCount) {
+        return (long) count << 32 | complementCount & 0xFFFFFFFFL;
+    }
+}
@@ -0,0 +1,140 @@
+package cs321.search;
+
+import java.util.Arrays;
+
+/**
+ * A cache of the results of searches for subsequences, from their keys to what was found for them, of a fixed number
+ * of entries.
+ * <p>
+ * Keys and values are held in two arrays of primitives rather than a map of boxed ones, so a lookup allocates nothing.
+ * The cache is direct-mapped: each key has one slot, picked by a hash of it, and putting a key in a slot holding
+ * another replaces it. That keeps it bounded without keeping track of which entries were used last, at the cost of
+ * now and then replacing an entry that would have been used again.
+ *
+ * @author Derek Caplinger
+ * @author Matt Youngberg
+ */
+final class QueryCache {
+
+    /**
+     * The value got for a key that isn't in the cache. It can't be put.
+     */
+    static final long ABSENT = -1;
+
+    /**
+     * The keys of the entries, by slot.
+     */
+    private final long[] keys;
+
+    /**
+     * The values of the entries, by slot, or {@link #ABSENT} for an empty slot.
+     */
+    private final long[] values;
+
+    /**
+     * The number of bits of a hash that pick a slot.
+     */
+    private final int slotBits;
+
+    /**
+     * The number of lookups that found their key.
+     */
+    private long hits;
+
+    /**
+     * The number of lookups that didn't.
+     */
+    private long misses;
+
+    /**
+     * Create a new, empty {@link QueryCache}.
+     *
+     * @param capacity  the number of entries to hold, rounded up to a power of two
+     */
+    QueryCache(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Capacity must be 1-" + (1 << 30) + ": " + capacity);
+        }
+        int slots = Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1;
+        this.keys = new long[slots];
+        this.values = new long[slots];
+        this.slotBits = Integer.numberOfTrailingZeros(slots);
+        Arrays.fill(values, ABSENT);
+    }
+
+    /**
+     * Look up the value of a key.
+     *
+     * @param key   the key
+     * @return      the value of the key, or {@link #ABSENT} if it isn't in the cache
+     */
+    long get(long key) {
+        int slot = slot(key);
+        if (values[slot] != ABSENT && keys[slot] == key) {
+            hits++;
+            return values[slot];
+        }
+        misses++;
+        return ABSENT;
+    }
+
+    /**
+     * Put the value of a key, replacing the entry in its slot, if any.
+     *
+     * @param key   the key
+     * @param value the value, anything but {@link #ABSENT}
+     */
+    void put(long key, long value) {
+        if (value == ABSENT) {
+            throw new IllegalArgumentException("Can't put the absent value");
+        }
+        int slot = slot(key);
+        keys[slot] = key;
+        values[slot] = value;
+    }
+
+    /**
+     * Remove every entry. The counts of hits and misses are kept.
+     */
+    void clear() {
+        Arrays.fill(values, ABSENT);
+    }
+
+    /**
+     * Get the number of lookups that found their key.
+     *
+     * @return  the number of hits
+     */
+    long getHits() {
+        return hits;
+    }
+
+    /**
+     * Get the number of lookups that didn't find their key.
+     *
+     * @return  the number of misses
+     */
+    long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Get the number of entries the cache holds at most.
+     *
+     * @return  the number of slots
+     */
+    int getCapacity() {
+        return keys.length;
+    }
+
+    /**
+     * Get the slot of a key, from the high bits of its product with the golden ratio, which spreads out keys that
+     * differ only in their low bits, as the encodings of subsequences that differ only in their last bases do.
+     *
+     * @param key   the key
+     * @return      the slot
+     */
+    private int slot(long key) {
+        return slotBits == 0 ? 0 : (int) ((key * 0x9E3779B97F4A7C15L) >>> (64 - slotBits));
+    }
+}
@@ -0,0 +1,329 @@
+package cs321.search;
+
+import cs321.create.SequenceUtils;
+
+import java.io.Closeable;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A sink for the results produced by the search programs.
+ * <p>
+ * Both {@link GeneBankSearchBTree} and {@link GeneBankSearchDatabase} produce one result per query: the query itself,
+ * its encoding, and the total frequency of the query and its complement. Instead of printing each of these with
+ * {@link System#out}, which flushes and synchronizes on every line, the programs hand results to a
+ * {@link SearchResultWriter}, which encodes them directly into a large byte buffer and only hands that buffer to the
+ * underlying {@link OutputStream} when it fills up. Optionally, the underlying stream can be an
+ * {@link AsyncOutputStream}, in which case the actual write to the operating system happens on a background thread.
+ * <p>
+ * The format of the results is pluggable. See {@link Format} for the available formats.
+ * <p>
+ * Create a new instance via the factory method {@link #create(Format, OutputStream, boolean)}, or
+ * {@link #toStandardOut(Format, boolean)} for the common case. Always {@link #close()} the writer, as results are not
+ * guaranteed to reach the underlying stream before then.
+ *
+ * @author Derek Caplinger
+ * @author Matt Youngberg
+ */
+public abstract class SearchResultWriter implements Closeable {
+
+    /**
+     * The formats a {@link SearchResultWriter} can write results in.
+     */
+    public enum Format {
+
+        /**
+         * One line per result with the lowercase query and its total frequency, separated by a space. This is the
+         * format expected by the `check-queries.sh` and `check-db.sh` scripts, and is the default.
+         */
+        TEXT,
+
+        /**
+         * Fixed-width binary records: the encoding of the query as a big-endian 8B long, followed by the total
+         * frequency as a big-endian 4B int. Downstream tools can read the records without parsing any text.
+         * <p>
+         * Queries longer than 31 bases are encoded in 16B, the high 8B first; see
+         * {@link SequenceUtils#dnaStringToLongHigh(String)}.
+         */
+        BINARY,
+
+        /**
+         * One line per result with only the total frequency. Useful when the query file is already on hand, as the
+         * lines of the output line up with the lines of the query file.
+         */
+        COUNTS;
+
+        /**
+         * Get a {@link Format} from its name on the command line, case-insensitive.
+         *
+         * @param name                      the name of the format, e.g. "text"
+         * @return                          the matching {@link Format}
+         * @throws IllegalArgumentException if no {@link Format} matches the given name
+         */
+        public static Format fromString(String name) {
+            for (Format format : values()) {
+                if (format.name().equalsIgnoreCase(name)) {
+                    return format;
+                }
+            }
+            throw new IllegalArgumentException("Unknown output format: " + name);
+        }
+    }
+
+    /**
+     * The size of the buffer that results are encoded into before being handed to the underlying stream.
+     */
+    static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * The longest a single record can be in bytes: a query of up to 63 bases, a space, a 10 digit count and a newline
+     * comfortably fit in this.
+     */
+    private static final int MAX_RECORD_SIZE = 80;
+
+    /**
+     * The stream results are eventually written to.
+     */
+    private final OutputStream out;
+
+    /**
+     * The buffer that results are encoded into.
+     */
+    protected final byte[] buffer;
+
+    /**
+     * The next position in {@link #buffer} to write to.
+     */
+    protected int position;
+
+    /**
+     * Create a new {@link SearchResultWriter} that writes to the given stream.
+     *
+     * @param out   the stream to eventually write results to
+     */
+    SearchResultWriter(OutputStream out) {
+        this.out = out;
+        this.buffer = new byte[BUFFER_SIZE];
+        this.position = 0;
+    }
+
+    /**
+     * Create a {@link SearchResultWriter} that writes results in the given format to the given stream.
+     *
+     * @param format    the format to write results in
+     * @param out       the stream to write results to
+     * @param async     whether writes to the stream should happen on a background thread
+     * @return          a new {@link SearchResultWriter}
+     */
+    public static SearchResultWriter create(Format format, OutputStream out, boolean async) {
+        if (async) {
+            out = new AsyncOutputStream(out);
+        }
+        switch (format) {
+            case BINARY:
+                return new BinaryResultWriter(out);
+            case COUNTS:
+                return new CountsResultWriter(out);
+            case TEXT:
+            default:
+                return new TextResultWriter(out);
+        }
+    }
+
+    /**
+     * Create a {@link SearchResultWriter} that writes results in the given format to the standard output stream.
+     * <p>
+     * The file descriptor is written to directly, bypassing the line-by-line flushing of {@link System#out}.
+     *
+     * @param format    the format to write results in
+     * @param async     whether writes to standard out should happen on a background thread
+     * @return          a new {@link SearchResultWriter}
+     */
+    public static SearchResultWriter toStandardOut(Format format, boolean async) {
+        OutputStream stdout = new FilterOutputStream(new FileOutputStream(FileDescriptor.out)) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);  // FilterOutputStream would otherwise write byte by byte
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();  // Never close the process's standard out
+            }
+        };
+        return create(format, stdout, async);
+    }
+
+    /**
+     * Write the result of a single query.
+     *
+     * @param query         the query, as it should appear in the output
+     * @param encoding      the encoding of the query, per {@link SequenceUtils#dnaStringToLong(String)}
+     * @param count         the total frequency of the query and its complement
+     * @throws IOException  if an I/O error occurs while writing to the underlying stream
+     */
+    public void write(String query, long encoding, int count) throws IOException {
+        write(query, 0L, encoding, count);
+    }
+
+    /**
+     * Write the result of a single query that may be longer than 31 bases.
+     *
+     * @param query         the query, as it should appear in the output
+     * @param encodingHigh  the high 64 bits of the encoding of the query, per
+     *                      {@link SequenceUtils#dnaStringToLongHigh(String)}
+     * @param encoding      the low 64 bits of the encoding of the query, per
+     *                      {@link SequenceUtils#dnaStringToLongLow(String)}
+     * @param count         the total frequency of the query and its complement
+     * @throws IOException  if an I/O error occurs while writing to the underlying stream
+     */
+    public abstract void write(String query, long encodingHigh, long encoding, int count) throws IOException;
+
+    /**
+     * Write everything buffered so far to the underlying stream and flush it.
+     *
+     * @throws IOException  if an I/O error occurs
+     */
+    public void flush() throws IOException {
+        drain();
+        out.flush();
+    }
+
+    /**
+     * Flush and close the underlying stream.
+     *
+     * @throws IOException  if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Guarantee that the next record fits in the free space of {@link #buffer}, draining it if not.
+     * <p>
+     * Subclasses should call this before encoding each record.
+     *
+     * @param recordSize    the number of bytes the next record needs
+     * @throws IOException  if an I/O error occurs while draining the buffer
+     */
+    protected void reserve(int recordSize) throws IOException {
+        if (buffer.length - position < Math.max(recordSize, MAX_RECORD_SIZE)) {
+            drain();
+        }
+    }
+
+    /**
+     * Append the characters of a string, assumed to be ASCII, to {@link #buffer}.
+     *
+     * @param s the string to append
+     */
+    protected void putAscii(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            buffer[position++] = (byte) s.charAt(i);
+        }
+    }
+
+    /**
+     * Append the decimal digits of a non-negative int to {@link #buffer}, without allocating a {@link String}.
+     *
+     * @param value the value to append
+     */
+    protected void putDecimal(int value) {
+        if (value == 0) {
+            buffer[position++] = '0';
+            return;
+        }
+        int digits = 0;
+        for (int v = value; v > 0; v /= 10) {
+            digits++;
+        }
+        for (int i = position + digits - 1; i >= position; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        position += digits;
+    }
+
+    /**
+     * Hand the contents of {@link #buffer} to the underlying stream.
+     *
+     * @throws IOException  if an I/O error occurs
+     */
+    private void drain() throws IOException {
+        if (position > 0) {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+
+    /**
+     * Writes results per {@link Format#TEXT}.
+     */
+    private static class TextResultWriter extends SearchResultWriter {
+
+        TextResultWriter(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(String query, long encodingHigh, long encoding, int count) throws IOException {
+            reserve(query.length() + 12);
+            putAscii(query);
+            buffer[position++] = ' ';
+            putDecimal(count);
+            buffer[position++] = '\n';
+        }
+    }
+
+    /**
+     * Writes results per {@link Format#BINARY}.
+     */
+    private static class BinaryResultWriter extends SearchResultWriter {
+
+        BinaryResultWriter(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(String query, long encodingHigh, long encoding, int count) throws IOException {
+            boolean wide = query.length() > SequenceUtils.MAX_LENGTH;
+            reserve((wide ? Long.BYTES : 0) + Long.BYTES + Integer.BYTES);
+            if (wide) {
+                for (int shift = 56; shift >= 0; shift -= 8) {
+                    buffer[position++] = (byte) (encodingHigh >>> shift);
+                }
+            }
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[position++] = (byte) (encoding >>> shift);
+            }
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                buffer[position++] = (byte) (count >>> shift);
+            }
+        }
+    }
+
+    /**
+     * Writes results per {@link Format#COUNTS}.
+     */
+    private static class CountsResultWriter extends SearchResultWriter {
+
+        CountsResultWriter(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(String query, long encodingHigh, long encoding, int count) throws IOException {
+            reserve(12);
+            putDecimal(count);
+            buffer[position++] = '\n';
+        }
+    }
+}
@@ -9,9 +9,22 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 
 import static org.junit.Assert.*;
 
@@ -380,6 +393,471 @@ public class BTreeTest {
         assertEquals(10, obj.getCount());
     }
 
+    /**
+     * Test that a canonical BTree stores a sequence and its complement under the same key, and that searching for
+     * either finds the combined count.
+     *
+     * @throws BTreeException Exception thrown when BTree encounters an unexpected problem
+     * @throws IOException Exception thrown when testing fails due to IO errors
+     */
+    @Test
+    public void testCanonicalKeys() throws BTreeException, IOException {
+
+        int length = 3;
+        long seq = SequenceUtils.dnaStringToLong("aac");
+        long complement = SequenceUtils.getComplement(seq, length);
+
+        BTree b = new BTree(2, testFilename, 0, new BTreeOptions().subsequenceLength(length).canonical(true));
+
+        b.insert(new TreeObject(seq));
+        b.insert(new TreeObject(complement));
+        b.insert(new TreeObject(complement));
+
+        assertTrue(b.isCanonical());
+        assertEquals(length, b.getSubsequenceLength());
+        assertEquals(1, b.getSize());
+        assertEquals(3, b.search(seq).getCount());
+        assertEquals(3, b.search(complement).getCount());
+    }
+
+    /**
+     * Test that a BTree of subsequences longer than 31 bases stores and finds them by all of their bases, and that
+     * they come out of the tree in order.
+     *
+     * @throws BTreeException Exception thrown when BTree encounters an unexpected problem
+     * @throws IOException Exception thrown when testing fails due to IO errors
+     */
+    @Test
+    public void testWideKeys() throws BTreeException, IOException {
+
+        int length = 47;
+        BTree b = new BTree(2, testFilename, 0, new BTreeOptions().subsequenceLength(length));
+
+        // Same low 32 bases, different leading bases
+        String[] subsequences = {
+                "ttttttttttttttt" + "acgtacgtacgtacgtacgtacgtacgtacgt",
+                "aaaaaaaaaaaaaaa" + "acgtacgtacgtacgtacgtacgtacgtacgt",
+                "aaaaaaaaaaaaaaa" + "tttttttttttttttttttttttttttttttt",
+                "ccccccccccccccc" + "acgtacgtacgtacgtacgtacgtacgtacgt",
+        };
+        for (String subsequence : subsequences) {
+            b.insert(new TreeObject(SequenceUtils.dnaStringToLongHigh(subsequence),
+                    SequenceUtils.dnaStringToLongLow(subsequence), 1));
+        }
+        b.insert(new TreeObject(SequenceUtils.dnaStringToLongHigh(subsequences[0]),
+                SequenceUtils.dnaStringToLongLow(subsequences[0]), 1));
+
+        assertEquals(4, b.getSize());
+        assertEquals(2, b.search(SequenceUtils.dnaStringToLongHigh(subsequences[0]),
+                SequenceUtils.dnaStringToLongLow(subsequences[0])).getCount());
+        assertNull(b.search(SequenceUtils.dnaStringToLongHigh("ggggggggggggggg" + "acgtacgtacgtacgtacgtacgtacgtacgt"),
+                SequenceUtils.dnaStringToLongLow("ggggggggggggggg" + "acgtacgtacgtacgtacgtacgtacgtacgt")));
+
+        String[] sorted = subsequences.clone();
+        Arrays.sort(sorted);
+        Iterator<TreeObject> iterator = b.iterator();
+        for (String subsequence : sorted) {
+            TreeObject obj = iterator.next();
+            assertEquals(subsequence, SequenceUtils.longsToDnaString(obj.getSubsequenceHigh(), obj.getSubsequence(),
+                    length));
+        }
+    }
+
+    /**
+     * Test that a canonical BTree can't be created without a valid subsequence length.
+     *
+     * @throws BTreeException Exception thrown when BTree encounters an unexpected problem
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testCanonicalRequiresLength() throws BTreeException {
+        new BTree(2, testFilename, 0, new BTreeOptions().canonical(true));
+    }
+
+    /**
+     * Test that a file whose metadata doesn't start with the magic number and current version, like one written in the
+     * original layout, is refused rather than misread, and that a BTree written to disk can be opened again.
+     *
+     * @throws BTreeException Exception thrown when BTree encounters an unexpected problem
+     * @throws IOException Exception thrown when testing fails due to IO errors
+     */
+    @Test
+    public void testMetadataMagicAndVersion() throws BTreeException, IOException {
+
+        BTree b = new BTree(2, testFilename);
+        b.insert(new TreeObject(1));
+        b.flush();
+        b.close();
+        BTree reopened = new BTree(testFilename);
+        assertEquals(1, reopened.getSize());
+        reopened.close();
+
+        // Original layout: t, root position, count, height, then the root node
+        ByteBuffer original = ByteBuffer.allocate(4096);
+        original.putInt(2).putLong(20).putInt(1).putInt(0);
+        Files.write(new File(testFilename).toPath(), original.array());
+        try {
+            new BTree(testFilename);
+            fail("Expected a BTreeException for a file in the original layout");
+        } catch (BTreeException e) {
+            assertTrue(e.getMessage().startsWith("Not a BTree file"));
+        }
+
+        ByteBuffer future = ByteBuffer.allocate(4096);
+        future.putInt(BTree.MAGIC).putInt(BTree.FORMAT_VERSION + 1);
+        Files.write(new File(testFilename).toPath(), future.array());
+        try {
+            new BTree(testFilename);
+            fail("Expected a BTreeException for a file of another version");
+        } catch (BTreeException e) {
+            assertTrue(e.getMessage().startsWith("Unsupported BTree file version"));
+        }
+    }
+
+    /**
+     * Test that a BTree of short subsequences packs its keys to raise its optimal degree, and still holds the same
+     * keys and frequencies as were inserted, reading every node back from disk.
+     *
+     * @throws BTreeException Exception thrown when BTree encounters an unexpected problem
+     * @throws IOException Exception thrown when testing fails due to IO errors
+     */
+    @Test
+    public void testPackedKeys() throws BTreeException, IOException {
+
+        int length = 6;
+        BTree b = new BTree(0, testFilename, 0, new BTreeOptions().subsequenceLength(length).maxFrequency(10000));
+        assertTrue(b.getDegree() > new BTree(0, testFilename + "2", 0, new BTreeOptions()).getDegree() * 2);
+        deleteTestFile(testFilename + "2");
+
+        Random random = new Random(321);
+        TreeMap<Long, Integer> expected = new TreeMap<>();
+        for (int i = 0; i < 10000; i++) {
+            long key = random.nextInt(1 << (2 * length));
+            b.insert(new TreeObject(key));
+            expected.merge(key, 1, Integer::sum);
+        }
+
+        assertTrue(b.getHeight() > 0);
+        assertEquals(expected.size(), b.getSize());
+        long[] keys = b.getSortedKeyArray();
+        int i = 0;
+        for (long key : expected.keySet()) {
+            assertEquals(key, keys[i++]);
+            assertEquals((int) expected.get(key), b.search(key).getCount());
+        }
+    }
+
+    /**
+     * Test that a BTree whose frequencies are packed into a byte refuses to count a key past 255, even once reopened
+     * from its file, and is left intact to be written out.
+     *
+     * @throws BTreeException Exception thrown when BTree encounters an unexpected problem
+     * @throws IOException Exception thrown when testing fails due to IO errors
+     */
+    @Test
+    public void testPackedFrequencyBound() throws BTreeException, IOException {
+
+        BTree b = new BTree(2, testFilename, 0, new BTreeOptions().subsequenceLength(4).maxFrequency(255));
+        for (int i = 0; i < 10; i++) {
+            b.insert(new TreeObject(i));
+        }
+        for (int i = 1; i < 200; i++) {
+            b.insert(new TreeObject(7));
+        }
+        b.flush();
+        b.close();
+
+        b = new BTree(testFilename);
+        for (int i = 200; i < 255; i++) {
+            b.insert(new TreeObject(7));
+        }
+        try {
+            b.insert(new TreeObject(7));
+            fail("Expected an IllegalStateException for a frequency of 256");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains("255"));
+        }
+        b.flush();
+        b.close();
+
+        b = new BTree(testFilename);
+        assertEquals(255, b.search(7).getCount());
+        assertEquals(10, b.getSize());
+        b.close();
+    }
+
+    /**
+     * Test that a BTree given a page size derives its degree from it and starts every node on a page boundary, after
+     * a header page.
+     *
+     * @throws BTreeException Exception thrown when BTree encounters an unexpected problem
+     * @throws IOException Exception thrown when testing fails due to IO errors
+     */
+    @Test
+    public void testPageAlignedNodes() throws BTreeException, IOException {
+
+        int pageSize = 16384;
+        BTree b = new BTree(0, testFilename, 0, new BTreeOptions().subsequenceLength(10).pageSize(pageSize));
+        assertEquals(pageSize, b.getPageSize());
+        assertTrue(FixedNodeCodec.getByteSize(b.getDegree(), 4, 4) <= pageSize);
+        assertTrue(FixedNodeCodec.getByteSize(b.getDegree() + 1, 4, 4) > pageSize);
+
+        Random random = new Random(321);
+        long[] input = new long[20000];
+        for (int i = 0; i < input.length; i++) {
+            input[i] = random.nextInt(1 << 20);
+            b.insert(new TreeObject(input[i]));
+        }
+        assertTrue(b.getHeight() > 0);
+        assertTrue(validateBTreeInserts(b, input));
+
+        // Every node has been written to its own page, after the header page
+        b.flush();
+        long fileSize = new File(testFilename).length();
+        assertEquals(0, fileSize % pageSize);
+        assertEquals(b.getNumberOfNodes() + 1, fileSize / pageSize);
+    }
+
+    /**
+     * Test that a BTree can't be given a degree whose nodes don't fit in its pages.
+     *
+     * @throws BTreeException Exception thrown when BTree encounters an unexpected problem
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testDegreeTooLargeForPage() throws BTreeException {
+        new BTree(1000, testFilename, 0, new BTreeOptions().subsequenceLength(31).pageSize(4096));
+    }
+
+    /**
+     * Test that a batch search finds the same keys as searching for each in turn, with and without a cache, reading
+     * nodes from the cache, the write buffer and the disk.
+     *
+     * @throws BTreeException Exception thrown when BTree encounters an unexpected problem
+     * @throws IOException Exception thrown when testing fails due to IO errors
+     */
+    @Test
+    public void testSearchBatch() throws BTreeException, IOException {
+
+        for (int cacheSize : new int[]{0, 10}) {
+            deleteTestFile(testFilename);
+            BTree b = new BTree(2, testFilename, cacheSize, new BTreeOptions().subsequenceLength(20));
+
+            Random random = new Random(321);
+            long[] high = new long[6000];
+            long[] low = new long[high.length];
+            for (int i = 0; i < low.length; i++) {
+                low[i] = random.nextInt(1 << 16);
+                if (i % 2 == 0) {
+                    b.insert(new TreeObject(low[i]));  // Every other key is left out of the tree
+                }
+            }
+            assertTrue(b.getHeight() > 2);
+
+            TreeObject[] results = b.searchBatch(high, low);
+            for (int i = 0; i < low.length; i++) {
+                TreeObject expected = b.search(low[i]);
+                if (expected == null) {
+                    assertNull(results[i]);
+                } else {
+                    assertEquals(expected.getSubsequence(), results[i].getSubsequence());
+                    assertEquals(expected.getCount(), results[i].getCount());
+                }
+            }
+        }
+    }
+
+    /**
+     * Test that the metrics count insertions, splits and cache lookups while building a BTree, that a search of a
+     * reopened BTree reads one node per level, and that the metrics can be read through JMX.
+     *
+     * @throws Exception Exception thrown when testing fails
+     */
+    @Test
+    public void testMetrics() throws Exception {
+
+        BTree b = new BTree(2, testFilename, 10, new BTreeOptions().subsequenceLength(20));
+        Random random = new Random(321);
+        int inserts = 5000;
+        for (int i = 0; i < inserts; i++) {
+            b.insert(new TreeObject(random.nextInt(2000)));  // Plenty of duplicates
+        }
+
+        BTreeMetrics.Snapshot built = b.getMetrics().snapshot();
+        assertEquals(b.getSize(), built.getNewKeys());
+        assertEquals(inserts - b.getSize(), built.getDuplicateIncrements());
+        assertEquals(b.getHeight(), built.getRootSplits());
+        assertEquals(b.getNumberOfNodes(), 1 + built.getSplits() + built.getRootSplits());  // Each split adds a node
+        assertEquals(b.getHeight() + 1, built.getCacheHitsByLevel().length);  // Lookups at every depth...
+        assertEquals(0, built.getCacheHitsByLevel()[0]);  // ... but the root's
+        assertEquals(built.getCacheHits(), Arrays.stream(built.getCacheHitsByLevel()).sum());
+        assertTrue(built.getDirtyEvictions() > 0);
+        assertEquals(b.getCacheHitRate(), built.getCacheHitRate(), 1e-6);
+
+        b.flush();
+        assertTrue(b.getNodeWrites() >= b.getNumberOfNodes());  // Evicted nodes may be written more than once
+        b.close();
+
+        b = new BTree(testFilename);
+        ObjectName name = b.registerMBean();
+        assertNull(b.search(1 << 20));  // Too large to be in the tree, so the search reaches a leaf
+        assertEquals(b.getHeight() + 1, b.getNodeReads());  // The root when opened, then a node per level below
+        assertEquals(b.getHeight() + 1, Arrays.stream(b.getMetrics().getReadLatencyHistogram()).sum());
+        assertTrue(b.getMetrics().getNodeReadBytes() > 0);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        assertEquals(b.getHeight() + 1L, server.getAttribute(name, "NodeReads"));
+        b.close();
+        assertFalse(server.isRegistered(name));
+    }
+
+    /**
+     * Test that a Flight Recorder recording of a build holds an event for every split, eviction and write of a node
+     * that the metrics count, and for every read of a node from disk, while building and searching.
+     *
+     * @throws Exception Exception thrown when testing fails
+     */
+    @Test
+    public void testFlightRecorderEvents() throws Exception {
+
+        Path recordingFile = Files.createTempFile("btree", ".jfr");
+        Map<String, Long> counts = new HashMap<>();
+        BTreeMetrics.Snapshot built;
+        long searchReads;
+        try (Recording recording = new Recording()) {
+            recording.enable("cs321.btree.NodeRead");
+            recording.enable("cs321.btree.NodeWrite");
+            recording.enable("cs321.btree.NodeSplit");
+            recording.enable("cs321.btree.NodeEviction");
+            recording.start();
+
+            BTree b = new BTree(2, testFilename, 10, new BTreeOptions().subsequenceLength(20));
+            Random random = new Random(321);
+            for (int i = 0; i < 5000; i++) {
+                b.insert(new TreeObject(random.nextInt(2000)));
+            }
+            b.flush();
+            built = b.getMetrics().snapshot();
+            b.close();
+
+            b = new BTree(testFilename);
+            assertNull(b.search(1 << 20));  // Too large to be in the tree, so the search reaches a leaf
+            searchReads = b.getNodeReads();
+            assertEquals(b.getHeight() + 1, searchReads);  // The root when opened, then a node per level below
+            b.close();
+
+            recording.stop();
+            recording.dump(recordingFile);
+        }
+
+        long rootSplits = 0;
+        long diskReads = 0;
+        long cacheHits = 0;
+        try {
+            for (RecordedEvent event : RecordingFile.readAllEvents(recordingFile)) {
+                String name = event.getEventType().getName();
+                counts.merge(name, name.equals("cs321.btree.NodeWrite") ? event.getLong("nodes") : 1, Long::sum);
+                if (name.equals("cs321.btree.NodeSplit") && event.getBoolean("rootSplit")) {
+                    rootSplits++;
+                    assertEquals(0, event.getInt("level"));
+                }
+                if (name.equals("cs321.btree.NodeRead")) {
+                    diskReads += event.getLong("bytes") > 0 ? 1 : 0;
+                    cacheHits += event.getBoolean("cacheHit") ? 1 : 0;
+                }
+            }
+        } finally {
+            Files.delete(recordingFile);
+        }
+        assertEquals(built.getSplits(), (long) counts.get("cs321.btree.NodeSplit"));
+        assertEquals(built.getRootSplits(), rootSplits);
+        assertEquals(built.getCleanEvictions() + built.getDirtyEvictions(),
+                (long) counts.get("cs321.btree.NodeEviction"));
+        assertEquals(built.getNodeWrites(), (long) counts.get("cs321.btree.NodeWrite"));
+        assertEquals(built.getNodeReads() + searchReads, diskReads);
+        assertTrue(cacheHits > 0 && cacheHits <= built.getCacheHits());  // The metrics count lookups to write, too
+    }
+
+    /**
+     * Test that a BTree of compressed pages holds the same keys and frequencies as were inserted, across enough keys
+     * to split its pages several times, reading every node back from disk.
+     *
+     * @throws BTreeException Exception thrown when BTree encounters an unexpected problem
+     * @throws IOException Exception thrown when testing fails due to IO errors
+     */
+    @Test
+    public void testCompressedPages() throws BTreeException, IOException {
+
+        int length = 31;
+        BTree b = new BTree(0, testFilename, 0, new BTreeOptions().subsequenceLength(length).compressed(true));
+
+        Random random = new Random(321);
+        TreeMap<Long, Integer> expected = new TreeMap<>();
+        for (int i = 0; i < 5000; i++) {
+            long key = random.nextLong() >>> 2;
+            if (i % 3 == 0 && !expected.isEmpty()) {
+                key = expected.firstKey();  // Some duplicates, including in internal nodes
+            }
+            b.insert(new TreeObject(key));
+            expected.merge(key, 1, Integer::sum);
+        }
+
+        assertTrue(b.isCompressed());
+        assertTrue(b.getHeight() > 0);
+        assertEquals(expected.size(), b.getSize());
+
+        long[] keys = b.getSortedKeyArray();
+        int i = 0;
+        for (long key : expected.keySet()) {
+            assertEquals(key, keys[i++]);
+            assertEquals((int) expected.get(key), b.search(key).getCount());
+        }
+        assertNull(b.search(1L));
+    }
+
+    /**
+     * Test that a BTree of compressed pages stores wide keys in order, splitting on its degree before its pages fill.
+     *
+     * @throws BTreeException Exception thrown when BTree encounters an unexpected problem
+     * @throws IOException Exception thrown when testing fails due to IO errors
+     */
+    @Test
+    public void testCompressedWideKeys() throws BTreeException, IOException {
+
+        int length = 47;
+        BTree b = new BTree(3, testFilename, 0, new BTreeOptions().subsequenceLength(length).compressed(true));
+
+        Random random = new Random(321);
+        TreeMap<String, Integer> expected = new TreeMap<>();
+        for (int i = 0; i < 500; i++) {
+            StringBuilder sb = new StringBuilder(length);
+            for (int j = 0; j < length; j++) {
+                sb.append("acgt".charAt(random.nextInt(i % 2 == 0 ? 4 : 2)));
+            }
+            String subsequence = sb.toString();
+            b.insert(new TreeObject(SequenceUtils.dnaStringToLongHigh(subsequence),
+                    SequenceUtils.dnaStringToLongLow(subsequence), 1));
+            expected.merge(subsequence, 1, Integer::sum);
+        }
+
+        assertEquals(expected.size(), b.getSize());
+        Iterator<TreeObject> iterator = b.iterator();
+        for (String subsequence : expected.keySet()) {
+            TreeObject obj = iterator.next();
+            assertEquals(subsequence, SequenceUtils.longsToDnaString(obj.getSubsequenceHigh(), obj.getSubsequence(),
+                    length));
+            assertEquals((int) expected.get(subsequence), obj.getCount());
+        }
+        assertFalse(iterator.hasNext());
+    }
+
+    /**
+     * Test that a BTree of compressed pages can't be created with a degree too large for its pages.
+     *
+     * @throws BTreeException Exception thrown when BTree encounters an unexpected problem
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testCompressedDegreeTooLarge() throws BTreeException {
+        new BTree(5000, testFilename, 0, new BTreeOptions().subsequenceLength(31).compressed(true));
+    }
+
     /**
      * TreeObject test of additional constructor.
      */
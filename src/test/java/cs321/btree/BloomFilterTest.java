@@ -0,0 +1,165 @@
+package cs321.btree;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the {@link BloomFilter} class, on its own and beside the file of a {@link BTree}.
+ *
+ * @author Derek Caplinger
+ * @author Matt Youngberg
+ */
+public class BloomFilterTest {
+
+    /**
+     * The file written to in these tests.
+     */
+    private static final String TEST_FILENAME = "Test_BloomFilter.tmp";
+
+    /**
+     * Delete the test file and its Bloom filter after each test.
+     */
+    @After
+    public void cleanUp() {
+        new File(TEST_FILENAME).delete();
+        new File(TEST_FILENAME + BTree.BLOOM_FILTER_SUFFIX).delete();
+    }
+
+    /**
+     * Test that a filter holds every key added to it, wide ones included, and lets through about the false positive
+     * rate it was made for of those that weren't, both before and after it is written to disk and read back.
+     *
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void testFalsePositiveRate() throws Exception {
+        for (double rate : new double[] {0.1, 0.01, 0.001}) {
+            BloomFilter filter = BloomFilter.create(50000, 0, rate);
+            Random random = new Random(321);
+            Set<Long> added = new HashSet<>();
+            while (added.size() < 50000) {
+                long key = random.nextLong();
+                if (added.add(key)) {
+                    filter.add(key >>> 60, key);
+                }
+            }
+            filter.write(Paths.get(TEST_FILENAME));
+            BloomFilter read = BloomFilter.read(Paths.get(TEST_FILENAME));
+            assertEquals(filter.getSize(), Files.size(Paths.get(TEST_FILENAME)));
+
+            for (BloomFilter f : new BloomFilter[] {filter, read}) {
+                for (long key : added) {
+                    assertTrue(f.mightContain(key >>> 60, key));
+                }
+                int falsePositives = 0;
+                int tries = 200000;
+                Random absent = new Random(123);
+                for (int i = 0; i < tries; i++) {
+                    long key = absent.nextLong();
+                    if (!added.contains(key) && f.mightContain(key >>> 60, key)) {
+                        falsePositives++;
+                    }
+                }
+                double measured = (double) falsePositives / tries;
+                assertTrue("rate " + rate + " measured " + measured, measured < rate * 1.5);
+            }
+        }
+    }
+
+    /**
+     * Test that a file that isn't a filter isn't read as one.
+     *
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void testReadNotAFilter() throws Exception {
+        Path path = Paths.get(TEST_FILENAME);
+        assertNull(BloomFilter.read(path));
+        Files.write(path, new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20, 21, 22, 23,
+                24, 25, 26, 27, 28});
+        assertNull(BloomFilter.read(path));
+    }
+
+    /**
+     * Test that a {@link BTree} with a Bloom filter finds every key it holds, answers most searches for absent keys
+     * without reading a node, in single and batched searches alike, and stops using the filter once inserted into.
+     *
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void testBTreeSearchesSkipAbsentKeys() throws Exception {
+        BTree b = new BTree(2, TEST_FILENAME, 0, new BTreeOptions().subsequenceLength(20));
+        for (long key = 0; key < 4000; key += 2) {  // Even keys only
+            b.insert(new TreeObject(key));
+        }
+        b.flush();
+        b.writeBloomFilter(0.01);
+        b.close();
+
+        b = new BTree(TEST_FILENAME);
+        assertTrue(b.hasBloomFilter());
+        long reads = b.getNodeReads();
+        int found = 0;
+        for (long key = 1; key < 4000; key += 2) {
+            found += b.search(key) == null ? 0 : 1;
+        }
+        assertEquals(0, found);
+        long missReads = b.getNodeReads() - reads;
+        assertTrue("read " + missReads, missReads < 2000 * b.getHeight() / 20);
+
+        long[] high = new long[4000];
+        long[] low = new long[4000];
+        for (int i = 0; i < 4000; i++) {
+            low[i] = i;
+        }
+        TreeObject[] results = b.searchBatch(high, low);
+        for (int i = 0; i < 4000; i++) {
+            if (i % 2 == 0) {
+                assertEquals(1, results[i].getCount());
+            } else {
+                assertNull(results[i]);
+            }
+        }
+
+        b.insert(new TreeObject(1));
+        assertFalse(b.hasBloomFilter());
+        assertEquals(1, b.search(1).getCount());
+        b.flush();
+        b.close();
+
+        b = new BTree(TEST_FILENAME);  // Out of date, as it doesn't hold 1
+        assertFalse(b.hasBloomFilter());
+        assertEquals(1, b.search(1).getCount());
+        b.close();
+    }
+
+    /**
+     * Test that a {@link BTree} created over the file of another doesn't use the other's Bloom filter.
+     *
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void testNewBTreeRemovesOldFilter() throws Exception {
+        BTree b = new BTree(2, TEST_FILENAME, 0, new BTreeOptions().subsequenceLength(20));
+        b.insert(new TreeObject(1));
+        b.flush();
+        b.writeBloomFilter(0.01);
+        b.close();
+        assertTrue(new File(TEST_FILENAME + BTree.BLOOM_FILTER_SUFFIX).exists());
+
+        b = new BTree(2, TEST_FILENAME, 0, new BTreeOptions().subsequenceLength(20));
+        assertFalse(b.hasBloomFilter());
+        assertFalse(new File(TEST_FILENAME + BTree.BLOOM_FILTER_SUFFIX).exists());
+        b.close();
+    }
+}
@@ -0,0 +1,168 @@
+package cs321.btree;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the {@link BufferPool} class, shared by several {@link BTree}s.
+ *
+ * @author Derek Caplinger
+ * @author Matt Youngberg
+ */
+public class BufferPoolTest {
+
+    /**
+     * The files written to in these tests.
+     */
+    private static final String[] TEST_FILENAMES = {"Test_BufferPool0.tmp", "Test_BufferPool1.tmp"};
+
+    /**
+     * The size of a page of the trees in these tests.
+     */
+    private static final int PAGE_SIZE = BTree.MIN_PAGE_SIZE;
+
+    /**
+     * The number of nodes the pool holds in these tests.
+     */
+    private static final int POOL_NODES = 16;
+
+    /**
+     * Delete the test files after each test.
+     */
+    @After
+    public void cleanUp() {
+        for (String fileName : TEST_FILENAMES) {
+            new File(fileName).delete();
+        }
+    }
+
+    /**
+     * Test that two {@link BTree}s inserted into in turn through a pool much smaller than both hold the same keys and
+     * frequencies as were inserted, both before and after they are written to disk and reopened, and that the pool
+     * stays within its budget throughout.
+     *
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void testSharedByTwoTrees() throws Exception {
+        long poolBytes = POOL_NODES * getNodeSize();
+        BufferPool pool = new BufferPool(poolBytes);
+        BTree[] trees = new BTree[2];
+        List<TreeMap<Long, Integer>> expected = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            trees[i] = createTree(TEST_FILENAMES[i]);
+            trees[i].useBufferPool(pool);
+            expected.add(new TreeMap<>());
+        }
+        assertEquals(2, pool.getTreeCount());
+
+        Random random = new Random(321);
+        for (int j = 0; j < 5000; j++) {
+            int i = j % 2;
+            long key = random.nextInt(i == 0 ? 3000 : 1000);
+            trees[i].insert(new TreeObject(key));
+            expected.get(i).merge(key, 1, Integer::sum);
+            assertTrue(pool.getUsed() <= poolBytes);
+        }
+        assertEquals(poolBytes, pool.getUsed());
+
+        for (int i = 0; i < 2; i++) {
+            assertTrue(trees[i].getMetrics().getDirtyEvictions() > 0);
+            for (Map.Entry<Long, Integer> entry : expected.get(i).entrySet()) {
+                assertEquals((int) entry.getValue(), trees[i].search(entry.getKey()).getCount());
+            }
+            trees[i].flush();
+            trees[i].close();
+        }
+        assertEquals(0, pool.getTreeCount());
+        assertEquals(0, pool.getUsed());
+
+        for (int i = 0; i < 2; i++) {
+            BTree tree = new BTree(TEST_FILENAMES[i]);
+            tree.useBufferPool(pool);
+            long[] keys = tree.getSortedKeyArray();
+            assertEquals(expected.get(i).size(), keys.length);
+            int k = 0;
+            for (Map.Entry<Long, Integer> entry : expected.get(i).entrySet()) {
+                assertEquals((long) entry.getKey(), keys[k++]);
+                assertEquals((int) entry.getValue(), tree.search(entry.getKey()).getCount());
+            }
+            tree.close();
+        }
+    }
+
+    /**
+     * Test that memory moves to the tree being used: a tree that fills the pool and then sits idle has its nodes
+     * evicted, dirty ones written back, as another tree is used, and that closing a tree returns its frames.
+     *
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void testEvictsAcrossTrees() throws Exception {
+        BufferPool pool = new BufferPool(POOL_NODES * getNodeSize());
+        BTree idle = createTree(TEST_FILENAMES[0]);
+        idle.useBufferPool(pool);
+        for (long key = 0; key < 2000; key++) {
+            idle.insert(new TreeObject(key));
+        }
+        assertEquals(POOL_NODES, pool.getFrameCount());
+        long idleEvictions = idle.getMetrics().getCleanEvictions() + idle.getMetrics().getDirtyEvictions();
+
+        BTree busy = createTree(TEST_FILENAMES[1]);
+        busy.useBufferPool(pool);
+        for (long key = 0; key < 2000; key++) {
+            busy.insert(new TreeObject(key));
+        }
+        assertEquals(idleEvictions + POOL_NODES,
+                idle.getMetrics().getCleanEvictions() + idle.getMetrics().getDirtyEvictions());
+        assertEquals(POOL_NODES, pool.getFrameCount());
+
+        busy.close();
+        assertEquals(0, pool.getFrameCount());
+        assertEquals(1, pool.getTreeCount());
+        for (long key = 0; key < 2000; key++) {  // Still all there, from disk or the write buffer
+            assertEquals(1, idle.search(key).getCount());
+        }
+        assertEquals(POOL_NODES, pool.getFrameCount());
+        idle.close();
+    }
+
+    /**
+     * Get the size of an encoded node of the trees in these tests, which is what each counts for in a pool.
+     *
+     * @return              the size of a node in bytes
+     * @throws Exception    if the tree can't be created
+     */
+    private static int getNodeSize() throws Exception {
+        BufferPool pool = new BufferPool(Long.MAX_VALUE);
+        BTree tree = createTree(TEST_FILENAMES[0]);
+        tree.useBufferPool(pool);
+        for (long key = 0; pool.getFrameCount() == 0; key++) {  // The root is held apart until it is split
+            tree.insert(new TreeObject(key));
+        }
+        int nodeSize = (int) (pool.getUsed() / pool.getFrameCount());
+        tree.close();
+        new File(TEST_FILENAMES[0]).delete();
+        return nodeSize;
+    }
+
+    /**
+     * Create a new {@link BTree} of a small degree, aligned to pages, with no cache of its own.
+     *
+     * @param fileName      the file of the tree
+     * @return              the tree
+     * @throws Exception    if the tree can't be created
+     */
+    private static BTree createTree(String fileName) throws Exception {
+        return new BTree(2, fileName, 0, new BTreeOptions().subsequenceLength(20).pageSize(PAGE_SIZE));
+    }
+}
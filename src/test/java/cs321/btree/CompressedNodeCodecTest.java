@@ -0,0 +1,120 @@
+package cs321.btree;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the {@link CompressedNodeCodec} class.
+ *
+ * @author Derek Caplinger
+ * @author Matt Youngberg
+ */
+public class CompressedNodeCodecTest {
+
+    /**
+     * The position of the first page in these tests.
+     */
+    private static final long FIRST_PAGE = 28;
+
+    /**
+     * Test that a leaf survives a round trip through a page, including keys whose top bit is set.
+     */
+    @Test
+    public void testLeafRoundTrip() {
+        CompressedNodeCodec codec = new CompressedNodeCodec(4096, 10, false, FIRST_PAGE);
+        BTreeNode node = new BTreeNode(10);
+        long[] keys = {0L, 1L, 200L, 1L << 40, Long.MAX_VALUE, Long.MIN_VALUE, -1L};
+        for (int i = 0; i < keys.length; i++) {
+            node.keys[i] = new TreeObject(keys[i], i + 1);
+        }
+        node.keyCount = keys.length;
+
+        BTreeNode read = roundTrip(codec, node);
+
+        assertTrue(read.leaf);
+        assertEquals(keys.length, read.keyCount);
+        for (int i = 0; i < keys.length; i++) {
+            assertEquals(keys[i], read.keys[i].getSubsequence());
+            assertEquals(i + 1, read.keys[i].getCount());
+        }
+    }
+
+    /**
+     * Test that an internal node with wide keys survives a round trip through a page, including deltas that borrow from
+     * the high bits.
+     */
+    @Test
+    public void testWideInternalRoundTrip() {
+        CompressedNodeCodec codec = new CompressedNodeCodec(4096, 4, true, FIRST_PAGE);
+        BTreeNode node = new BTreeNode(4);
+        node.leaf = false;
+        long[][] keys = {{0L, -1L}, {1L, 0L}, {1L, 5L}, {(1L << 62) - 1, Long.MIN_VALUE}};
+        for (int i = 0; i < keys.length; i++) {
+            node.keys[i] = new TreeObject(keys[i][0], keys[i][1], 100000 * i + 1);
+            node.childPositions[i] = FIRST_PAGE + 4096L * (i + 1);
+        }
+        node.childPositions[keys.length] = FIRST_PAGE + 4096L * 1000000;
+        node.keyCount = keys.length;
+
+        BTreeNode read = roundTrip(codec, node);
+
+        assertFalse(read.leaf);
+        assertEquals(keys.length, read.keyCount);
+        for (int i = 0; i < keys.length; i++) {
+            assertEquals(keys[i][0], read.keys[i].getSubsequenceHigh());
+            assertEquals(keys[i][1], read.keys[i].getSubsequence());
+            assertEquals(100000 * i + 1, read.keys[i].getCount());
+        }
+        for (int i = 0; i <= keys.length; i++) {
+            assertEquals(node.childPositions[i], read.childPositions[i]);
+        }
+    }
+
+    /**
+     * Test that a page of close keys holds many more keys than a fixed-size node, and that a node that is not full
+     * still has room for the largest possible key.
+     */
+    @Test
+    public void testIsFull() {
+        int t = CompressedNodeCodec.getMaxDegree(4096);
+        CompressedNodeCodec codec = new CompressedNodeCodec(4096, t, false, FIRST_PAGE);
+        BTreeNode node = new BTreeNode(t);
+        while (!codec.isFull(node)) {
+            node.keys[node.keyCount] = new TreeObject(node.keyCount * 50L, 1);
+            node.keyCount++;
+        }
+        assertTrue(node.keyCount > BTreeNode.getMaxKeyCount(102));
+
+        node.keyCount--;
+        node.keys[node.keyCount] = new TreeObject(Long.MAX_VALUE, Integer.MAX_VALUE);
+        node.keyCount++;
+        assertTrue(codec.getEncodedSize(node) <= 4096);
+        roundTrip(codec, node);
+    }
+
+    /**
+     * Test that a degree too large for the page is refused.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testDegreeTooLarge() {
+        new CompressedNodeCodec(4096, CompressedNodeCodec.getMaxDegree(4096) + 1, false, FIRST_PAGE);
+    }
+
+    /**
+     * Write a node to a page and read it back.
+     *
+     * @param codec the codec to use
+     * @param node  the node to write
+     * @return      the node read back
+     */
+    private static BTreeNode roundTrip(CompressedNodeCodec codec, BTreeNode node) {
+        ByteBuffer buffer = ByteBuffer.allocate(codec.getNodeSize());
+        codec.write(node, buffer);
+        assertEquals(codec.getNodeSize(), buffer.position());
+        buffer.flip();
+        return codec.read(buffer);
+    }
+}
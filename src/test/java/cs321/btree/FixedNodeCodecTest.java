@@ -0,0 +1,95 @@
+package cs321.btree;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the {@link FixedNodeCodec} class.
+ *
+ * @author Derek Caplinger
+ * @author Matt Youngberg
+ */
+public class FixedNodeCodecTest {
+
+    /**
+     * The position of the first node in these tests.
+     */
+    private static final long FIRST_NODE = 4096;
+
+    /**
+     * Test that key widths are the narrowest that hold a subsequence of a given length.
+     */
+    @Test
+    public void testKeyWidth() {
+        assertEquals(1, FixedNodeCodec.getKeyWidth(1));
+        assertEquals(1, FixedNodeCodec.getKeyWidth(4));
+        assertEquals(2, FixedNodeCodec.getKeyWidth(5));
+        assertEquals(2, FixedNodeCodec.getKeyWidth(8));
+        assertEquals(4, FixedNodeCodec.getKeyWidth(9));
+        assertEquals(4, FixedNodeCodec.getKeyWidth(16));
+        assertEquals(8, FixedNodeCodec.getKeyWidth(17));
+        assertEquals(8, FixedNodeCodec.getKeyWidth(31));
+        assertEquals(16, FixedNodeCodec.getKeyWidth(32));
+        assertEquals(16, FixedNodeCodec.getKeyWidth(63));
+    }
+
+    /**
+     * Test that count widths are the narrowest that hold a given frequency, and the widest if it is not known.
+     */
+    @Test
+    public void testCountWidth() {
+        assertEquals(1, FixedNodeCodec.getCountWidth(255));
+        assertEquals(2, FixedNodeCodec.getCountWidth(256));
+        assertEquals(2, FixedNodeCodec.getCountWidth(65535));
+        assertEquals(4, FixedNodeCodec.getCountWidth(65536));
+        assertEquals(4, FixedNodeCodec.getCountWidth(0));
+    }
+
+    /**
+     * Test that an internal node survives a round trip through the packed layout, including a child at the first node.
+     */
+    @Test
+    public void testPackedRoundTrip() {
+        int t = 3;
+        FixedNodeCodec codec = new FixedNodeCodec(t, 2, 1, FIRST_NODE, 4096);
+        assertEquals(FixedNodeCodec.getByteSize(t, 2, 1), codec.getNodeSize());
+
+        BTreeNode node = new BTreeNode(t);
+        node.leaf = false;
+        node.keys[0] = new TreeObject(0L, 1);
+        node.keys[1] = new TreeObject(0xFFFFL, 255);
+        node.keyCount = 2;
+        node.childPositions[0] = FIRST_NODE;
+        node.childPositions[1] = FIRST_NODE + 7L * 4096;
+        node.childPositions[2] = FIRST_NODE + 3L * 4096;
+
+        ByteBuffer buffer = ByteBuffer.allocate(codec.getNodeSize());
+        codec.write(node, buffer);
+        assertEquals(codec.getNodeSize(), buffer.position());
+        buffer.flip();
+        BTreeNode read = codec.read(buffer);
+
+        assertFalse(read.leaf);
+        assertEquals(2, read.keyCount);
+        assertEquals(0L, read.keys[0].getSubsequence());
+        assertEquals(1, read.keys[0].getCount());
+        assertEquals(0xFFFFL, read.keys[1].getSubsequence());
+        assertEquals(255, read.keys[1].getCount());
+        assertArrayEquals(node.childPositions, read.childPositions);
+    }
+
+    /**
+     * Test that a frequency too wide for its slot is refused rather than truncated.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void testFrequencyTooWide() {
+        FixedNodeCodec codec = new FixedNodeCodec(2, 1, 1, FIRST_NODE, FixedNodeCodec.getByteSize(2, 1, 1));
+        BTreeNode node = new BTreeNode(2);
+        node.keys[0] = new TreeObject(3L, 256);
+        node.keyCount = 1;
+        codec.write(node, ByteBuffer.allocate(codec.getNodeSize()));
+    }
+}
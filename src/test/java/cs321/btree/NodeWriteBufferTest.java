@@ -0,0 +1,120 @@
+package cs321.btree;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the {@link NodeWriteBuffer} class.
+ *
+ * @author Derek Caplinger
+ * @author Matt Youngberg
+ */
+public class NodeWriteBufferTest {
+
+    /**
+     * The file written to in these tests.
+     */
+    private static final String TEST_FILENAME = "Test_NodeWriteBuffer.tmp";
+
+    /**
+     * The minimum degree of the nodes in these tests.
+     */
+    private static final int T = 2;
+
+    /**
+     * The distance on disk from one node to the next in these tests, larger than a node so padding is written.
+     */
+    private static final int SLOT_SIZE = 128;
+
+    /**
+     * Delete the test file after each test.
+     */
+    @After
+    public void cleanUp() {
+        new File(TEST_FILENAME).delete();
+    }
+
+    /**
+     * Test that waiting nodes can be read back before they are flushed, and that a flush writes each to its position,
+     * whether in a run of adjacent nodes or on its own.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Test
+    public void testFlushWritesEveryNodeToItsPosition() throws IOException {
+        FixedNodeCodec codec = new FixedNodeCodec(T, false);
+        try (RandomAccessFile file = new RandomAccessFile(TEST_FILENAME, "rw")) {
+            FileChannel channel = file.getChannel();
+            BTreeMetrics metrics = new BTreeMetrics();
+            NodeWriteBuffer buffer = new NodeWriteBuffer(channel, codec, SLOT_SIZE, 100, metrics);
+
+            long[] slots = {5, 1, 2, 9, 3};  // Out of order, with a run of 1-3 and gaps either side
+            for (long slot : slots) {
+                buffer.put(slot * SLOT_SIZE, makeNode(slot));
+            }
+            buffer.put(2 * SLOT_SIZE, makeNode(20));  // Replaces the node waiting at slot 2
+            assertEquals(slots.length, buffer.size());
+            assertEquals(20, buffer.get(2 * SLOT_SIZE).keys[0].getSubsequence());
+            assertNull(buffer.get(4 * SLOT_SIZE));
+            assertEquals(0, channel.size());
+
+            buffer.flush();
+            assertEquals(0, buffer.size());
+            assertEquals(10L * SLOT_SIZE, channel.size());
+            assertEquals(slots.length, metrics.getNodeWrites());
+            assertEquals((long) slots.length * SLOT_SIZE, metrics.getNodeWriteBytes());
+            assertEquals(3, Arrays.stream(metrics.getWriteLatencyHistogram()).sum());  // Slots 1-3, 5 and 9
+            for (long slot : slots) {
+                ByteBuffer read = ByteBuffer.allocate(codec.getNodeSize());
+                channel.read(read, slot * SLOT_SIZE);
+                read.flip();
+                assertEquals(slot == 2 ? 20 : slot, codec.read(read).keys[0].getSubsequence());
+            }
+        }
+    }
+
+    /**
+     * Test that the buffer flushes itself once it holds as many nodes as its capacity.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Test
+    public void testFlushAtCapacity() throws IOException {
+        FixedNodeCodec codec = new FixedNodeCodec(T, false);
+        try (RandomAccessFile file = new RandomAccessFile(TEST_FILENAME, "rw")) {
+            FileChannel channel = file.getChannel();
+            NodeWriteBuffer buffer = new NodeWriteBuffer(channel, codec, SLOT_SIZE, 4, new BTreeMetrics());
+
+            for (long slot = 0; slot < 3; slot++) {
+                buffer.put(slot * SLOT_SIZE, makeNode(slot));
+            }
+            assertEquals(0, channel.size());
+            buffer.put(3 * SLOT_SIZE, makeNode(3));
+            assertEquals(0, buffer.size());
+            assertEquals(4L * SLOT_SIZE, channel.size());
+        }
+    }
+
+    /**
+     * Make a leaf node holding a single key.
+     *
+     * @param key   the key of the node
+     * @return      the node
+     */
+    private static BTreeNode makeNode(long key) {
+        BTreeNode node = new BTreeNode(T);
+        node.leaf = true;
+        node.keys[0] = new TreeObject(key);
+        node.keyCount = 1;
+        return node;
+    }
+}
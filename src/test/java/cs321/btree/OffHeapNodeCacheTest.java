@@ -0,0 +1,189 @@
+package cs321.btree;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the {@link OffHeapNodeCache} class, on its own and as the cache of a {@link BTree}.
+ *
+ * @author Derek Caplinger
+ * @author Matt Youngberg
+ */
+public class OffHeapNodeCacheTest {
+
+    /**
+     * The file written to in these tests.
+     */
+    private static final String TEST_FILENAME = "Test_OffHeapNodeCache.tmp";
+
+    /**
+     * The minimum degree of the nodes in these tests.
+     */
+    private static final int T = 2;
+
+    /**
+     * Delete the test file after each test.
+     */
+    @After
+    public void cleanUp() {
+        new File(TEST_FILENAME).delete();
+    }
+
+    /**
+     * Test that nodes are decoded as they were cached, that changes are only cached when put again, and that a dirty
+     * node evicted or flushed reaches the file while a clean one doesn't.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Test
+    public void testEvictsAndWritesBackDirtyNodes() throws IOException {
+        FixedNodeCodec codec = new FixedNodeCodec(T, false);
+        int slot = codec.getNodeSize();
+        try (RandomAccessFile file = new RandomAccessFile(TEST_FILENAME, "rw")) {
+            FileChannel channel = file.getChannel();
+            BTreeMetrics metrics = new BTreeMetrics();
+            NodeWriteBuffer buffer = new NodeWriteBuffer(channel, codec, slot, 100, metrics);
+            OffHeapNodeCache cache = new OffHeapNodeCache(2L * slot + slot / 2, codec, buffer, metrics);
+            assertEquals(2, cache.getCapacity());
+
+            BTreeNode clean = makeNode(1);
+            assertFalse(cache.put(slot, clean));
+            BTreeNode dirty = makeNode(2);
+            dirty.dirty = true;
+            assertFalse(cache.put(2L * slot, dirty));
+            dirty.keys[0] = new TreeObject(20);  // Not cached until put again
+            assertEquals(2, cache.get(2L * slot).keys[0].getSubsequence());
+            assertTrue(cache.put(2L * slot, dirty));
+            assertEquals(20, cache.get(2L * slot).keys[0].getSubsequence());
+            assertTrue(cache.get(2L * slot).dirty);
+            assertFalse(cache.get(slot).dirty);
+
+            // Both are referenced, so the clock passes over both and evicts the first, then the second
+            cache.put(3L * slot, makeNode(3));
+            assertNull(cache.get(slot));
+            assertEquals(1, metrics.getCleanEvictions());
+            cache.put(4L * slot, makeNode(4));
+            assertNull(cache.get(2L * slot));
+            assertEquals(1, metrics.getDirtyEvictions());
+            assertEquals(1, buffer.size());
+            assertEquals(20, buffer.get(2L * slot).keys[0].getSubsequence());
+
+            BTreeNode changed = cache.get(3L * slot);
+            changed.keys[0] = new TreeObject(30);
+            changed.dirty = true;
+            cache.put(3L * slot, changed);
+            cache.flush();
+            buffer.flush();
+            assertFalse(cache.get(3L * slot).dirty);
+            assertEquals(2, metrics.getNodeWrites());
+            ByteBuffer read = ByteBuffer.allocate(slot);
+            channel.read(read, 3L * slot);
+            read.flip();
+            assertEquals(30, codec.read(read).keys[0].getSubsequence());
+        }
+    }
+
+    /**
+     * Test that the cache finds every node it holds, and only those, through many evictions, which shift the entries
+     * of its hash table around.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Test
+    public void testFindsNodesThroughEvictions() throws IOException {
+        FixedNodeCodec codec = new FixedNodeCodec(T, false);
+        int slot = codec.getNodeSize();
+        try (RandomAccessFile file = new RandomAccessFile(TEST_FILENAME, "rw")) {
+            BTreeMetrics metrics = new BTreeMetrics();
+            NodeWriteBuffer buffer = new NodeWriteBuffer(file.getChannel(), codec, slot, 100, metrics);
+            OffHeapNodeCache cache = new OffHeapNodeCache(64L * slot, codec, buffer, metrics);
+
+            Random random = new Random(321);
+            Map<Long, Long> cached = new HashMap<>();  // Position to key, for what the cache should hold
+            int puts = 0;
+            for (int i = 0; i < 20000; i++) {
+                long position = (1 + random.nextInt(200)) * (long) slot;
+                BTreeNode node = cache.get(position);
+                if (node != null) {
+                    assertEquals(cached.get(position), (Long) node.keys[0].getSubsequence());
+                } else {
+                    cached.remove(position);
+                    long key = random.nextInt(1 << 20);
+                    cache.put(position, makeNode(key));
+                    cached.put(position, key);
+                    puts++;
+                }
+            }
+            int found = 0;
+            for (long position = slot; position <= 200L * slot; position += slot) {
+                found += cache.get(position) != null ? 1 : 0;
+            }
+            assertEquals(64, found);  // Full
+            assertEquals(puts - 64, metrics.getCleanEvictions());
+        }
+    }
+
+    /**
+     * Test that a {@link BTree} built and searched with a cache much smaller than the tree, held off the heap, holds
+     * the same keys and frequencies as were inserted, both before and after it is written to disk and reopened.
+     *
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void testBTreeWithOffHeapCache() throws Exception {
+        BTree b = new BTree(2, TEST_FILENAME, 0, new BTreeOptions().subsequenceLength(20));
+        b.useOffHeapCache(16L * 4096);
+        Random random = new Random(321);
+        TreeMap<Long, Integer> expected = new TreeMap<>();
+        for (int i = 0; i < 5000; i++) {
+            long key = random.nextInt(3000);
+            b.insert(new TreeObject(key));
+            expected.merge(key, 1, Integer::sum);
+        }
+        assertEquals(expected.size(), b.getSize());
+        assertTrue(b.getMetrics().getDirtyEvictions() > 0);
+        for (Map.Entry<Long, Integer> entry : expected.entrySet()) {
+            assertEquals((int) entry.getValue(), b.search(entry.getKey()).getCount());
+        }
+        b.flush();
+        b.close();
+
+        b = new BTree(TEST_FILENAME);
+        b.useOffHeapCache(1 << 20);
+        long[] keys = b.getSortedKeyArray();
+        assertEquals(expected.size(), keys.length);
+        int i = 0;
+        for (Map.Entry<Long, Integer> entry : expected.entrySet()) {
+            assertEquals((long) entry.getKey(), keys[i++]);
+            assertEquals((int) entry.getValue(), b.search(entry.getKey()).getCount());
+        }
+        assertNull(b.search(1 << 20));
+        b.close();
+    }
+
+    /**
+     * Make a leaf node holding a single key.
+     *
+     * @param key   the key of the node
+     * @return      the node
+     */
+    private static BTreeNode makeNode(long key) {
+        BTreeNode node = new BTreeNode(T);
+        node.leaf = true;
+        node.keys[0] = new TreeObject(key);
+        node.keyCount = 1;
+        return node;
+    }
+}
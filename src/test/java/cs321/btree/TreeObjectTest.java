@@ -111,4 +111,29 @@ public class TreeObjectTest {
         TreeObject treeObject2 = new TreeObject(99L, 4);
         assertEquals(0, treeObject.compareTo(treeObject2));
     }
+
+    /**
+     * Tests that a wide TreeObject can be written to and read back from a {@link ByteBuffer}.
+     */
+    @Test
+    public void testWideByteBufferRoundTrip() {
+        ByteBuffer buffer = ByteBuffer.allocate(TreeObject.WIDE_BYTE_SIZE);
+        new TreeObject(7L, -1L, 3).writeToByteBuffer(buffer, true);
+        assertEquals(TreeObject.WIDE_BYTE_SIZE, buffer.position());
+        buffer.flip();
+        TreeObject treeObject = TreeObject.fromByteBuffer(buffer, true);
+        assertEquals(7L, treeObject.getSubsequenceHigh());
+        assertEquals(-1L, treeObject.getSubsequence());
+        assertEquals(3, treeObject.getCount());
+    }
+
+    /**
+     * Tests that wide TreeObjects compare by their high bits first, then by their low bits as unsigned.
+     */
+    @Test
+    public void testCompareWide() {
+        assertTrue(new TreeObject(0L, -1L, 1).compareTo(new TreeObject(1L, 0L, 1)) < 0);
+        assertTrue(new TreeObject(1L, -1L, 1).compareTo(new TreeObject(1L, 1L, 1)) > 0);
+        assertEquals(0, new TreeObject(1L, 5L, 1).compareTo(new TreeObject(1L, 5L, 2)));
+    }
 }
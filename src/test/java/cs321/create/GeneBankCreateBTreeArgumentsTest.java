@@ -1,5 +1,6 @@
 package cs321.create;
 
+import cs321.index.IndexFormat;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -49,7 +50,8 @@ public class GeneBankCreateBTreeArgumentsTest {
     @Test
     public void testConstructor() {
         // Should succeed
-        new GeneBankCreateBTreeArguments(true, 2, testFileName, 3, 0, 0);
+        new GeneBankCreateBTreeArguments(true, 2, testFileName, 3, 0, 0,
+                false, false, 0, false, 0, 0, null);
     }
 
     /**
@@ -57,8 +59,10 @@ public class GeneBankCreateBTreeArgumentsTest {
      */
     @Test
     public void testEqualsTrue() {
-        GeneBankCreateBTreeArguments args1 = new GeneBankCreateBTreeArguments(true, 2, testFileName, 3, 0, 0);
-        GeneBankCreateBTreeArguments args2 = new GeneBankCreateBTreeArguments(true, 2, testFileName, 3, 0, 0);
+        GeneBankCreateBTreeArguments args1 = new GeneBankCreateBTreeArguments(true, 2, testFileName, 3, 0, 0,
+                false, false, 0, false, 0, 0, null);
+        GeneBankCreateBTreeArguments args2 = new GeneBankCreateBTreeArguments(true, 2, testFileName, 3, 0, 0,
+                false, false, 0, false, 0, 0, null);
         assert(args1.equals(args2));
     }
 
@@ -67,8 +71,10 @@ public class GeneBankCreateBTreeArgumentsTest {
      */
     @Test
     public void testEqualsFalse() {
-        GeneBankCreateBTreeArguments args1 = new GeneBankCreateBTreeArguments(true, 2, testFileName, 3, 0, 0);
-        GeneBankCreateBTreeArguments args2 = new GeneBankCreateBTreeArguments(true, 2, testFileName, 3, 0, 1);  // Different debug
+        GeneBankCreateBTreeArguments args1 = new GeneBankCreateBTreeArguments(true, 2, testFileName, 3, 0, 0,
+                false, false, 0, false, 0, 0, null);
+        GeneBankCreateBTreeArguments args2 = new GeneBankCreateBTreeArguments(true, 2, testFileName, 3, 0, 1,
+                false, false, 0, false, 0, 0, null);  // Different debug
         assert(!args1.equals(args2));
     }
 
@@ -77,7 +83,8 @@ public class GeneBankCreateBTreeArgumentsTest {
      */
     @Test
     public void testUseCache() {
-        GeneBankCreateBTreeArguments args = new GeneBankCreateBTreeArguments(true, 2, testFileName, 3, 0, 0);
+        GeneBankCreateBTreeArguments args = new GeneBankCreateBTreeArguments(true, 2, testFileName, 3, 0, 0,
+                false, false, 0, false, 0, 0, null);
         assert(args.useCache());
     }
 
@@ -87,7 +94,8 @@ public class GeneBankCreateBTreeArgumentsTest {
      */
     @Test
     public void testGetDegree() {
-        GeneBankCreateBTreeArguments args = new GeneBankCreateBTreeArguments(true, 2, testFileName, 3, 0, 0);
+        GeneBankCreateBTreeArguments args = new GeneBankCreateBTreeArguments(true, 2, testFileName, 3, 0, 0,
+                false, false, 0, false, 0, 0, null);
         assert(args.getDegree() == 2);
     }
 
@@ -96,7 +104,8 @@ public class GeneBankCreateBTreeArgumentsTest {
      */
     @Test
     public void testGetGbkFileName() {
-        GeneBankCreateBTreeArguments args = new GeneBankCreateBTreeArguments(true, 2, testFileName, 3, 0, 0);
+        GeneBankCreateBTreeArguments args = new GeneBankCreateBTreeArguments(true, 2, testFileName, 3, 0, 0,
+                false, false, 0, false, 0, 0, null);
         assert(args.getGbkFileName().equals(testFileName));
     }
 
@@ -105,7 +114,8 @@ public class GeneBankCreateBTreeArgumentsTest {
      */
     @Test
     public void testGetSubsequenceLength() {
-        GeneBankCreateBTreeArguments args = new GeneBankCreateBTreeArguments(true, 2, testFileName, 3, 0, 0);
+        GeneBankCreateBTreeArguments args = new GeneBankCreateBTreeArguments(true, 2, testFileName, 3, 0, 0,
+                false, false, 0, false, 0, 0, null);
         assert(args.getSubsequenceLength() == 3);
     }
 
@@ -114,7 +124,8 @@ public class GeneBankCreateBTreeArgumentsTest {
      */
     @Test
     public void testGetCacheSize() {
-        GeneBankCreateBTreeArguments args = new GeneBankCreateBTreeArguments(true, 2, testFileName, 3, 0, 0);
+        GeneBankCreateBTreeArguments args = new GeneBankCreateBTreeArguments(true, 2, testFileName, 3, 0, 0,
+                false, false, 0, false, 0, 0, null);
         assert(args.getCacheSize() == 0);
     }
 
@@ -123,7 +134,8 @@ public class GeneBankCreateBTreeArgumentsTest {
      */
     @Test
     public void testGetDebugLevel() {
-        GeneBankCreateBTreeArguments args = new GeneBankCreateBTreeArguments(true, 2, testFileName, 3, 0, 0);
+        GeneBankCreateBTreeArguments args = new GeneBankCreateBTreeArguments(true, 2, testFileName, 3, 0, 0,
+                false, false, 0, false, 0, 0, null);
         assert(args.getDebugLevel() == 0);
     }
 
@@ -289,12 +301,22 @@ public class GeneBankCreateBTreeArgumentsTest {
      * Tests that {@link GeneBankCreateBTreeArguments#fromStringArgs(String[])} throws when given an invalid length.
      */
     @Test(expected = IllegalArgumentException.class)
-    public void testBadLengthOver31() {
-        String[] args = {"--cache=0", "--degree=2", "--gbkfile=testfile.gbk", "--length=32"};  // length > 31
+    public void testBadLengthOver63() {
+        String[] args = {"--cache=0", "--degree=2", "--gbkfile=testfile.gbk", "--length=64"};  // length > 63
         // Should throw an exception
         GeneBankCreateBTreeArguments.fromStringArgs(args);
     }
 
+    /**
+     * Tests that {@link GeneBankCreateBTreeArguments#fromStringArgs(String[])} accepts lengths past 31, which are
+     * stored in wide keys.
+     */
+    @Test
+    public void testLongLength() {
+        String[] args = {"--cache=0", "--degree=2", "--gbkfile=testfile.gbk", "--length=63"};
+        assert(GeneBankCreateBTreeArguments.fromStringArgs(args).getSubsequenceLength() == 63);
+    }
+
     /**
      * Tests that {@link GeneBankCreateBTreeArguments#fromStringArgs(String[])} throws when given an invalid length.
      */
@@ -344,4 +366,161 @@ public class GeneBankCreateBTreeArgumentsTest {
         // Should throw an exception
         GeneBankCreateBTreeArguments.fromStringArgs(args);
     }
+
+    /**
+     * Tests that {@link GeneBankCreateBTreeArguments#fromStringArgs(String[])} accepts a page size.
+     */
+    @Test
+    public void testPageSize() {
+        String[] args = {"--cache=0", "--degree=0", "--gbkfile=testfile.gbk", "--length=3", "--pagesize=16384"};
+        assert(GeneBankCreateBTreeArguments.fromStringArgs(args).getPageSize() == 16384);
+    }
+
+    /**
+     * Tests that {@link GeneBankCreateBTreeArguments#fromStringArgs(String[])} throws when the page size is not a
+     * power of two.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadPageSize() {
+        String[] args = {"--cache=0", "--degree=0", "--gbkfile=testfile.gbk", "--length=3", "--pagesize=10000"};
+        // Should throw an exception
+        GeneBankCreateBTreeArguments.fromStringArgs(args);
+    }
+
+    /**
+     * Tests that {@link GeneBankCreateBTreeArguments#fromStringArgs(String[])} accepts a progress flag, off by default.
+     */
+    @Test
+    public void testProgress() {
+        String[] args = {"--cache=0", "--degree=0", "--gbkfile=testfile.gbk", "--length=3", "--progress=1"};
+        assert(GeneBankCreateBTreeArguments.fromStringArgs(args).showProgress());
+        String[] defaultArgs = {"--cache=0", "--degree=0", "--gbkfile=testfile.gbk", "--length=3"};
+        assert(!GeneBankCreateBTreeArguments.fromStringArgs(defaultArgs).showProgress());
+    }
+
+    /**
+     * Tests that {@link GeneBankCreateBTreeArguments#fromStringArgs(String[])} throws when the progress flag is not 0
+     * or 1.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadProgress() {
+        String[] args = {"--cache=0", "--degree=0", "--gbkfile=testfile.gbk", "--length=3", "--progress=2"};
+        // Should throw an exception
+        GeneBankCreateBTreeArguments.fromStringArgs(args);
+    }
+
+    /**
+     * Tests that {@link GeneBankCreateBTreeArguments#fromStringArgs(String[])} accepts a cache memory in place of a
+     * cache size.
+     */
+    @Test
+    public void testCacheMemory() {
+        String[] args = {"--cache=1", "--degree=0", "--gbkfile=testfile.gbk", "--length=3", "--cachemem=8g"};
+        GeneBankCreateBTreeArguments arguments = GeneBankCreateBTreeArguments.fromStringArgs(args);
+        assert(arguments.getCacheMemory() == 8L << 30);
+        assert(arguments.getCacheSize() == 0);
+    }
+
+    /**
+     * Tests that {@link GeneBankCreateBTreeArguments#fromStringArgs(String[])} throws when the cache memory is not a
+     * size.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadCacheMemory() {
+        String[] args = {"--cache=1", "--degree=0", "--gbkfile=testfile.gbk", "--length=3", "--cachemem=8q"};
+        // Should throw an exception
+        GeneBankCreateBTreeArguments.fromStringArgs(args);
+    }
+
+    /**
+     * Tests that {@link GeneBankCreateBTreeArguments#fromStringArgs(String[])} throws when given a cache memory with
+     * no cache.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testCacheMemoryWithNoCache() {
+        String[] args = {"--cache=0", "--degree=0", "--gbkfile=testfile.gbk", "--length=3", "--cachemem=64m"};
+        // Should throw an exception
+        GeneBankCreateBTreeArguments.fromStringArgs(args);
+    }
+
+    /**
+     * Tests that {@link GeneBankCreateBTreeArguments#fromStringArgs(String[])} throws when given both a cache size and
+     * a cache memory.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testCacheMemoryWithCacheSize() {
+        String[] args = {"--cache=1", "--degree=0", "--gbkfile=testfile.gbk", "--length=3", "--cachesize=100",
+                "--cachemem=64m"};
+        // Should throw an exception
+        GeneBankCreateBTreeArguments.fromStringArgs(args);
+    }
+
+    /**
+     * Tests that {@link GeneBankCreateBTreeArguments#fromStringArgs(String[])} accepts a Bloom filter false positive
+     * rate, with no Bloom filter by default.
+     */
+    @Test
+    public void testBloomFilterRate() {
+        String[] args = {"--cache=0", "--degree=0", "--gbkfile=testfile.gbk", "--length=3", "--bloomfpr=0.01"};
+        assert(GeneBankCreateBTreeArguments.fromStringArgs(args).getBloomFilterRate() == 0.01);
+        String[] defaultArgs = {"--cache=0", "--degree=0", "--gbkfile=testfile.gbk", "--length=3"};
+        assert(GeneBankCreateBTreeArguments.fromStringArgs(defaultArgs).getBloomFilterRate() == 0);
+    }
+
+    /**
+     * Tests that {@link GeneBankCreateBTreeArguments#fromStringArgs(String[])} throws when the Bloom filter false
+     * positive rate is out of range.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadBloomFilterRate() {
+        String[] args = {"--cache=0", "--degree=0", "--gbkfile=testfile.gbk", "--length=3", "--bloomfpr=1"};
+        // Should throw an exception
+        GeneBankCreateBTreeArguments.fromStringArgs(args);
+    }
+
+    /**
+     * Tests that {@link GeneBankCreateBTreeArguments#fromStringArgs(String[])} accepts an index format, with no index
+     * by default.
+     */
+    @Test
+    public void testIndexFormat() {
+        String[] args = {"--cache=0", "--degree=0", "--gbkfile=testfile.gbk", "--length=3", "--index=eytzinger"};
+        assert(GeneBankCreateBTreeArguments.fromStringArgs(args).getIndexFormat() == IndexFormat.EYTZINGER);
+        String[] defaultArgs = {"--cache=0", "--degree=0", "--gbkfile=testfile.gbk", "--length=3"};
+        assert(GeneBankCreateBTreeArguments.fromStringArgs(defaultArgs).getIndexFormat() == null);
+    }
+
+    /**
+     * Tests that {@link GeneBankCreateBTreeArguments#fromStringArgs(String[])} chooses the format of the index by the
+     * length of the subsequences when given <code>--index=auto</code>.
+     */
+    @Test
+    public void testIndexFormatAuto() {
+        String[] shortArgs = {"--cache=0", "--degree=0", "--gbkfile=testfile.gbk", "--length=12", "--index=auto"};
+        assert(GeneBankCreateBTreeArguments.fromStringArgs(shortArgs).getIndexFormat() == IndexFormat.DENSE);
+        String[] longArgs = {"--cache=0", "--degree=0", "--gbkfile=testfile.gbk", "--length=13", "--index=auto"};
+        assert(GeneBankCreateBTreeArguments.fromStringArgs(longArgs).getIndexFormat() == IndexFormat.EYTZINGER);
+    }
+
+    /**
+     * Tests that {@link GeneBankCreateBTreeArguments#fromStringArgs(String[])} throws when given a dense index of
+     * subsequences too long for a table.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testIndexFormatDenseTooLong() {
+        String[] args = {"--cache=0", "--degree=0", "--gbkfile=testfile.gbk", "--length=15", "--index=dense"};
+        // Should throw an exception
+        GeneBankCreateBTreeArguments.fromStringArgs(args);
+    }
+
+    /**
+     * Tests that {@link GeneBankCreateBTreeArguments#fromStringArgs(String[])} throws when given an index of
+     * subsequences too long for it.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testIndexFormatWideKeys() {
+        String[] args = {"--cache=0", "--degree=0", "--gbkfile=testfile.gbk", "--length=40", "--index=eytzinger"};
+        // Should throw an exception
+        GeneBankCreateBTreeArguments.fromStringArgs(args);
+    }
 }
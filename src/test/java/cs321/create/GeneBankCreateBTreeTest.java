@@ -63,7 +63,8 @@ public class GeneBankCreateBTreeTest {
         args[2] = "--gbkfile=fileNameGbk.gbk";
         args[3] = "--length=13";
 
-        GeneBankCreateBTreeArguments expectedConfiguration = new GeneBankCreateBTreeArguments(false, 20, "fileNameGbk.gbk", 13, 0, 0);
+        GeneBankCreateBTreeArguments expectedConfiguration = new GeneBankCreateBTreeArguments(false, 20, "fileNameGbk.gbk", 13, 0, 0,
+                false, false, 0, false, 0, 0, null);
         GeneBankCreateBTreeArguments actualConfiguration = GeneBankCreateBTree.parseArguments(args);
         assertEquals(expectedConfiguration, actualConfiguration);
     }
@@ -143,6 +143,53 @@ public class GeneBankSubsequenceIteratorTest {
     }
 
     //////////////////////////////////////////////////////////////////////////////
+    /**
+     * Tests that {@link GeneBankSubsequenceIterator#nextEncoded()} agrees with encoding the results of
+     * {@link GeneBankSubsequenceIterator#next()}, including across the 'n' characters that reset a subsequence and for
+     * subsequences longer than 31 bases.
+     *
+     * @throws IOException If there is an error reading the file.
+     */
+    @Test
+    public void nextEncodedMatchesNext() throws IOException {
+        for (Path path : Arrays.asList(getCondensedTest0GBK(), getCondensedCapitalizedTest0GBK(), getStartsN())) {
+            for (int k : new int[]{1, 6, 10, 31, 32, 47, 63}) {
+                try (GeneBankSubsequenceIterator strings = new GeneBankSubsequenceIterator(path, k);
+                     GeneBankSubsequenceIterator encodings = new GeneBankSubsequenceIterator(path, k)) {
+                    while (strings.hasNext()) {
+                        assertTrue(encodings.hasNext());
+                        String subsequence = strings.next();
+                        assertEquals(SequenceUtils.dnaStringToLongLow(subsequence), encodings.nextEncoded());
+                        assertEquals(SequenceUtils.dnaStringToLongHigh(subsequence), encodings.lastEncodedHigh());
+                    }
+                    assertFalse(encodings.hasNext());
+                } catch (IllegalArgumentException e) {
+                    // The file has no sequence of length k; nothing to compare
+                }
+            }
+        }
+    }
+
+    /**
+     * Tests that {@link GeneBankSubsequenceIterator#getBasesRead()} counts every base of the file once, whatever the
+     * subsequence length, and that the whole file has been read once the iterator is exhausted.
+     *
+     * @throws IOException If there is an error reading the file.
+     */
+    @Test
+    public void countsBasesRead() throws IOException {
+        Path path = getCondensedTest0GBK();
+        for (int k : new int[]{1, 6, 10}) {
+            try (GeneBankSubsequenceIterator iterator = new GeneBankSubsequenceIterator(path, k)) {
+                while (iterator.hasNext()) {
+                    iterator.nextEncoded();
+                }
+                assertEquals(69, iterator.getBasesRead());
+                assertEquals(iterator.getFileSize(), iterator.getBytesRead());
+            }
+        }
+    }
+
     // CORNER CASES: Testing eccentric qualities that might throw off the Iterator
     /////////////////////////////////////////////////////////////////////////////
 
@@ -0,0 +1,75 @@
+package cs321.create;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link PhaseTimer}.
+ *
+ * @author Derek Caplinger
+ * @author Matt Youngberg
+ */
+public class PhaseTimerTest {
+
+    /**
+     * Test that phases are timed in turn, that a phase timed twice is summed, and that phases added by the caller
+     * aren't counted again in the total.
+     */
+    @Test
+    public void testPhases() throws InterruptedException {
+        PhaseTimer timer = new PhaseTimer();
+        timer.start("First");
+        Thread.sleep(20);
+        timer.start("Second");  // Stops the first
+        Thread.sleep(20);
+        timer.start("First");
+        Thread.sleep(20);
+        timer.stop();
+        timer.stop();  // Nothing to stop
+        timer.add("Nested", 5_000_000_000L);
+
+        long first = timer.getWallNanos("First");
+        long second = timer.getWallNanos("Second");
+        assertTrue(first >= 40_000_000);
+        assertTrue(second >= 20_000_000);
+        assertEquals(5_000_000_000L, timer.getWallNanos("Nested"));
+        assertEquals(0, timer.getWallNanos("Missing"));
+        assertEquals(first + second, timer.getTotalWallNanos());
+        assertTrue(timer.getPeakHeap() > 0);
+    }
+
+    /**
+     * Test that the report lists each phase, shows unknown times of added phases as "-", and formats numbers the same
+     * way whatever the default locale.
+     */
+    @Test
+    public void testReport() throws InterruptedException {
+        Locale defaultLocale = Locale.getDefault();
+        Locale.setDefault(Locale.GERMANY);  // Would write decimal commas
+        try {
+            PhaseTimer timer = new PhaseTimer();
+            timer.start("Build loop");
+            Thread.sleep(20);
+            timer.stop();
+            timer.add("Parse", timer.getWallNanos("Build loop") / 2);
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            timer.printReport(new PrintStream(bytes, true));
+            String[] lines = new String(bytes.toByteArray(), StandardCharsets.UTF_8).split("\\R");
+            assertEquals(6, lines.length);
+            assertTrue(lines[0].startsWith("Phase"));
+            assertTrue(lines[2].startsWith("Build loop"));
+            assertTrue(lines[3].matches("  Parse\\s+0\\.\\d{3}\\s+-\\s+-\\s+50\\.0%"));
+            assertTrue(lines[4].matches("Total\\s+\\d+\\.\\d{3}\\s+(\\d+\\.\\d{3}|-)\\s+\\d+\\.\\d{3}"));
+            assertTrue(lines[5].matches("Peak heap:\\s+[\\d,]+\\.\\d MB"));
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+}
@@ -3,7 +3,9 @@ package cs321.create;
 // import cs321.Utils;
 import org.junit.Test;
 
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Random;
 
 import static org.junit.Assert.*;
 
@@ -12,15 +14,176 @@ public class SequenceUtilsTest
     @Test
     public void longToDNAStringTest() throws Exception
     {
+        assertEquals("gatcctccat", SequenceUtils.longToDnaString(0b10_00_11_01_01_11_01_01_00_11L, 10));
+        assertEquals("aaa", SequenceUtils.longToDnaString(0L, 3));
+        assertEquals("", SequenceUtils.longToDnaString(0L, 0));
+        assertEquals("ttttttttttttttttttttttttttttttt", SequenceUtils.longToDnaString(Long.MAX_VALUE >>> 1, 31));
     }
 
     @Test
     public void DNAStringToLongTest() throws Exception
     {
+        assertEquals(0b10_00_11_01_01_11_01_01_00_11L, SequenceUtils.dnaStringToLong("gatcctccat"));
+        assertEquals(0b10_00_11_01_01_11_01_01_00_11L, SequenceUtils.dnaStringToLong("GATCCTCCAT"));
+        assertEquals(0L, SequenceUtils.dnaStringToLong(""));
+        assertEquals(Long.MAX_VALUE >>> 1, SequenceUtils.dnaStringToLong("ttttttttttttttttttttttttttttttt"));
     }
 
     @Test
     public void getComplementTest() throws Exception
     {
+        long sequence = SequenceUtils.dnaStringToLong("atcg");
+        assertEquals("tagc", SequenceUtils.longToDnaString(SequenceUtils.getComplement(sequence, 4), 4));
+    }
+
+    @Test
+    public void getReverseComplementTest() throws Exception
+    {
+        long sequence = SequenceUtils.dnaStringToLong("aacg");
+        assertEquals("cgtt", SequenceUtils.longToDnaString(SequenceUtils.getReverseComplement(sequence, 4), 4));
+
+        Random random = new Random(321);
+        for (int length = 1; length <= 31; length++) {
+            String dna = randomDna(random, length);
+            String expected = naiveReverseComplement(dna);
+            long reverseComplement = SequenceUtils.getReverseComplement(SequenceUtils.dnaStringToLong(dna), length);
+            assertEquals(expected, SequenceUtils.longToDnaString(reverseComplement, length));
+        }
+    }
+
+    @Test
+    public void rollingEncodingTest() throws Exception
+    {
+        Random random = new Random(321);
+        String dna = randomDna(random, 500);
+        for (int length : new int[]{1, 4, 17, 31}) {
+            long forward = 0;
+            long reverseComplement = 0;
+            for (int i = 0; i < dna.length(); i++) {
+                int base = SequenceUtils.baseCode(dna.charAt(i));
+                forward = SequenceUtils.rollForward(forward, base, length);
+                reverseComplement = SequenceUtils.rollReverseComplement(reverseComplement, base, length);
+                if (i >= length - 1) {
+                    String window = dna.substring(i - length + 1, i + 1);
+                    assertEquals(SequenceUtils.dnaStringToLong(window), forward);
+                    assertEquals(SequenceUtils.getReverseComplement(forward, length), reverseComplement);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void encodeDecodeTest() throws Exception
+    {
+        Random random = new Random(321);
+        for (int length : new int[]{0, 1, 31, 32, 33, 100}) {
+            String dna = randomDna(random, length);
+            byte[] src = ("xx" + dna.toUpperCase()).getBytes(StandardCharsets.US_ASCII);
+            long[] packed = new long[(length + SequenceUtils.BASES_PER_LONG - 1) / SequenceUtils.BASES_PER_LONG];
+
+            assertEquals(packed.length, SequenceUtils.encode(src, 2, length, packed));
+            if (length > 0 && length <= 31) {
+                assertEquals(SequenceUtils.dnaStringToLong(dna), packed[0]);
+            }
+
+            byte[] decoded = new byte[length];
+            SequenceUtils.decode(packed, length, decoded, 0);
+            assertEquals(dna, new String(decoded, StandardCharsets.US_ASCII));
+        }
+    }
+
+    @Test
+    public void wideEncodingTest() throws Exception
+    {
+        Random random = new Random(321);
+        for (int length = 1; length <= SequenceUtils.MAX_WIDE_LENGTH; length++) {
+            String dna = randomDna(random, length);
+            long high = SequenceUtils.dnaStringToLongHigh(dna);
+            long low = SequenceUtils.dnaStringToLongLow(dna);
+            if (length <= SequenceUtils.MAX_LENGTH) {
+                assertEquals(0L, high);
+                assertEquals(SequenceUtils.dnaStringToLong(dna), low);
+            }
+            assertEquals(dna, SequenceUtils.longsToDnaString(high, low, length));
+
+            String complement = SequenceUtils.longsToDnaString(SequenceUtils.getComplementHigh(high, length),
+                    SequenceUtils.getComplementLow(low, length), length);
+            for (int i = 0; i < length; i++) {
+                assertEquals("tgca".charAt("acgt".indexOf(dna.charAt(i))), complement.charAt(i));
+            }
+        }
+    }
+
+    @Test
+    public void getCanonicalTest() throws Exception
+    {
+        long sequence = SequenceUtils.dnaStringToLong("tttg");
+        assertEquals("aaac", SequenceUtils.longToDnaString(SequenceUtils.getCanonical(sequence, 4), 4));
+        assertEquals(sequence ^ 0xFF, SequenceUtils.getCanonical(sequence, 4));
+        long aaac = SequenceUtils.dnaStringToLong("aaac");
+        assertEquals(aaac, SequenceUtils.getCanonical(aaac, 4));
+
+        // Encodings order as their strings do, so the canonical key is the lesser string of the two strands
+        Random random = new Random(321);
+        for (int length = 1; length <= SequenceUtils.MAX_WIDE_LENGTH; length++) {
+            String dna = randomDna(random, length);
+            long high = SequenceUtils.dnaStringToLongHigh(dna);
+            long low = SequenceUtils.dnaStringToLongLow(dna);
+            String complement = SequenceUtils.longsToDnaString(SequenceUtils.getComplementHigh(high, length),
+                    SequenceUtils.getComplementLow(low, length), length);
+            String expected = dna.compareTo(complement) < 0 ? dna : complement;
+            long canonicalHigh = SequenceUtils.getCanonicalHigh(high, low, length);
+            long canonicalLow = SequenceUtils.getCanonicalLow(high, low, length);
+            assertEquals(expected, SequenceUtils.longsToDnaString(canonicalHigh, canonicalLow, length));
+            if (length <= SequenceUtils.MAX_LENGTH) {
+                assertEquals(canonicalLow, SequenceUtils.getCanonical(low, length));
+            }
+        }
+    }
+
+    @Test
+    public void rollingWideEncodingTest() throws Exception
+    {
+        Random random = new Random(321);
+        String dna = randomDna(random, 300);
+        for (int length : new int[]{32, 47, 63}) {
+            long high = 0;
+            long low = 0;
+            for (int i = 0; i < dna.length(); i++) {
+                int base = SequenceUtils.baseCode(dna.charAt(i));
+                high = SequenceUtils.rollForwardHigh(high, low, length);
+                low = SequenceUtils.rollForward(low, base, SequenceUtils.BASES_PER_LONG);
+                if (i >= length - 1) {
+                    String window = dna.substring(i - length + 1, i + 1);
+                    assertEquals(SequenceUtils.dnaStringToLongHigh(window), high);
+                    assertEquals(SequenceUtils.dnaStringToLongLow(window), low);
+                }
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void encodeRejectsNonBaseTest() throws Exception
+    {
+        byte[] src = "acgnt".getBytes(StandardCharsets.US_ASCII);
+        SequenceUtils.encode(src, 0, src.length, new long[1]);
+    }
+
+    private static String randomDna(Random random, int length)
+    {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append("acgt".charAt(random.nextInt(4)));
+        }
+        return sb.toString();
+    }
+
+    private static String naiveReverseComplement(String dna)
+    {
+        StringBuilder sb = new StringBuilder(dna.length());
+        for (int i = dna.length() - 1; i >= 0; i--) {
+            sb.append("tgca".charAt("acgt".indexOf(dna.charAt(i))));
+        }
+        return sb.toString();
     }
 }
@@ -0,0 +1,69 @@
+package cs321.index;
+
+import cs321.btree.BTree;
+import cs321.btree.BTreeOptions;
+import org.junit.After;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.util.Random;
+
+import static cs321.index.IndexTestUtils.*;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the {@link DenseIndex} class. Searches are tested for every format by {@link IndexFormatTest}.
+ *
+ * @author Derek Caplinger
+ * @author Matt Youngberg
+ */
+public class DenseIndexTest {
+
+    /**
+     * Delete the test files after each test.
+     */
+    @After
+    public void cleanUp() {
+        deleteFiles();
+    }
+
+    /**
+     * Test that a table holds every subsequence of its length, whatever the number of its keys, and nothing for a key
+     * too long to be one.
+     *
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void testTableOfLength() throws Exception {
+        int length = 6;
+        Random random = new Random(321);
+        writeIndex(IndexFormat.DENSE, length, 1000, random, () -> random.nextInt(1 << (2 * length)));
+        assertEquals(DenseIndex.getFileSize(length), Files.size(getIndexPath(IndexFormat.DENSE)));
+        try (DenseIndex index = new DenseIndex(getIndexPath(IndexFormat.DENSE))) {
+            assertNull(index.search(0, 1L << (2 * length)));
+            assertNull(index.search(0, Long.MIN_VALUE));
+        }
+    }
+
+    /**
+     * Test that a {@link BTree} of subsequences too long for a table, or of no given length, can't be exported to one.
+     *
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void testTooLong() throws Exception {
+        for (int length : new int[] {0, DenseIndex.MAX_LENGTH + 1}) {
+            BTree b = new BTree(2, TEST_FILENAME, 0, new BTreeOptions().subsequenceLength(length));
+            try {
+                IndexFormat.DENSE.write(b, getIndexPath(IndexFormat.DENSE));
+                fail("Exported subsequences of length " + length);
+            } catch (IllegalArgumentException e) {
+                // Expected
+            }
+            b.close();
+            deleteFiles();
+        }
+        assertEquals(IndexFormat.DENSE, IndexFormat.forLength(DenseIndex.AUTO_MAX_LENGTH));
+        assertEquals(IndexFormat.EYTZINGER, IndexFormat.forLength(DenseIndex.AUTO_MAX_LENGTH + 1));
+    }
+}
@@ -0,0 +1,47 @@
+package cs321.index;
+
+import cs321.btree.FrequencyIndex;
+import org.junit.After;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static cs321.index.IndexTestUtils.*;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the {@link EytzingerIndex} class. Searches are tested for every format by {@link IndexFormatTest}.
+ *
+ * @author Derek Caplinger
+ * @author Matt Youngberg
+ */
+public class EytzingerIndexTest {
+
+    /**
+     * Delete the test files after each test.
+     */
+    @After
+    public void cleanUp() {
+        deleteFiles();
+    }
+
+    /**
+     * Test that an index of every size from empty to a few complete levels and beyond takes the size of file expected
+     * of its number of keys.
+     *
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void testFileSize() throws Exception {
+        Random random = new Random(321);
+        for (int size : new int[] {0, 1, 2, 3, 7, 8, 100, 1023, 1024, 5000}) {
+            TreeMap<Long, Integer> expected = writeIndex(IndexFormat.EYTZINGER, 0, size, random, random::nextLong);
+            assertEquals(EytzingerIndex.getFileSize(size), Files.size(getIndexPath(IndexFormat.EYTZINGER)));
+            try (FrequencyIndex index = new EytzingerIndex(getIndexPath(IndexFormat.EYTZINGER))) {
+                assertEquals(expected.size(), index.getSize());
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package cs321.index;
+
+import cs321.btree.BTree;
+import cs321.btree.BTreeOptions;
+import cs321.btree.FrequencyIndex;
+import cs321.btree.TreeObject;
+import cs321.create.SequenceUtils;
+import org.junit.After;
+import org.junit.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.LongSupplier;
+
+import static cs321.index.IndexTestUtils.*;
+import static org.junit.Assert.*;
+
+/**
+ * Tests of every {@link IndexFormat}, and of the opening of index files in whichever format they are in.
+ *
+ * @author Derek Caplinger
+ * @author Matt Youngberg
+ */
+public class IndexFormatTest {
+
+    /**
+     * Delete the test files after each test.
+     */
+    @After
+    public void cleanUp() {
+        deleteFiles();
+    }
+
+    /**
+     * Test that an index of each format, of every size from empty to a few complete levels of an Eytzinger tree and
+     * words of a perfect hash function and beyond, is opened in its format and finds each key of its tree with its
+     * frequency, and no key between or beyond them. Keys are of a length the format holds exactly, and of any 64 bits,
+     * including the sign bit, which sorts last, for the formats that hold any.
+     *
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void testFindsEveryKey() throws Exception {
+        for (IndexFormat format : IndexFormat.values()) {
+            Random random = new Random(321);
+            int length;
+            LongSupplier keys;
+            if (format == IndexFormat.DENSE) {
+                length = 8;
+                keys = () -> random.nextInt(1 << (2 * 8));
+            } else if (format == IndexFormat.MPHF) {
+                length = PerfectHashIndex.EXACT_MAX_LENGTH;  // Fingerprints are the keys, so absent keys are never found
+                keys = () -> random.nextInt() & 0xFFFFFFFFL;
+            } else {
+                length = 0;
+                keys = random::nextLong;
+            }
+            for (int size : new int[] {0, 1, 2, 3, 7, 8, 63, 64, 65, 100, 1023, 1024, 5000}) {
+                TreeMap<Long, Integer> expected = writeIndex(format, length, size, random, keys);
+                assertEquals(format, IndexFormat.detect(getIndexPath(format)));
+                try (FrequencyIndex index = IndexFormat.open(getIndexPath(format))) {
+                    assertEquals(length, index.getSubsequenceLength());
+                    assertFalse(index.isCanonical());
+                    assertFindsEveryKey(index, expected);
+                }
+            }
+        }
+    }
+
+    /**
+     * Test that an index of canonical keys of each format finds a subsequence given as either strand, in single and
+     * batched searches, as its {@link BTree} does, including subsequences too long for a perfect hash index to tell
+     * apart by fingerprint exactly.
+     *
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void testCanonical() throws Exception {
+        for (IndexFormat format : IndexFormat.values()) {
+            int length = format == IndexFormat.DENSE ? 8 : 20;
+            BTree b = new BTree(2, TEST_FILENAME, 0, new BTreeOptions().subsequenceLength(length).canonical(true));
+            Random random = new Random(321);
+            long[] queries = new long[4000];
+            for (int i = 0; i < queries.length; i++) {
+                queries[i] = random.nextLong() & ((1L << (2 * length)) - 1);
+                if (i % 2 == 0) {
+                    b.insert(new TreeObject(queries[i]));
+                }
+            }
+            format.write(b, getIndexPath(format));
+
+            try (FrequencyIndex index = IndexFormat.open(getIndexPath(format))) {
+                assertTrue(index.isCanonical());
+                assertEquals(length, index.getSubsequenceLength());
+                TreeObject[] results = index.searchBatch(new long[queries.length], queries);
+                for (int i = 0; i < queries.length; i++) {
+                    long complement = SequenceUtils.getComplementLow(queries[i], length);
+                    TreeObject expected = b.search(queries[i]);
+                    assertEquals(expected == null ? 0 : expected.getCount(),
+                            results[i] == null ? 0 : results[i].getCount());
+                    TreeObject fromComplement = index.search(0, complement);
+                    assertEquals(expected == null ? 0 : expected.getCount(),
+                            fromComplement == null ? 0 : fromComplement.getCount());
+                }
+            }
+            b.close();
+            deleteFiles();
+        }
+    }
+
+    /**
+     * Test that a {@link BTree} file is not opened as an index, and that a {@link BTree} of wide keys can't be
+     * exported to any.
+     *
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void testNotAnIndex() throws Exception {
+        BTree b = new BTree(2, TEST_FILENAME, 0, new BTreeOptions().subsequenceLength(40));
+        b.insert(new TreeObject(1, 2, 1));
+        b.flush();
+        Path path = Paths.get(TEST_FILENAME);
+        assertNull(IndexFormat.detect(path));
+        assertNull(IndexFormat.open(path));
+        for (IndexFormat format : IndexFormat.values()) {
+            try {
+                format.write(b, getIndexPath(format));
+                fail("Exported wide keys to " + format);
+            } catch (IllegalArgumentException e) {
+                // Expected
+            }
+        }
+        b.close();
+    }
+}
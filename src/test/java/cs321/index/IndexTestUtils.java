@@ -0,0 +1,110 @@
+package cs321.index;
+
+import cs321.btree.BTree;
+import cs321.btree.BTreeOptions;
+import cs321.btree.FrequencyIndex;
+import cs321.btree.TreeObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.LongSupplier;
+
+import static org.junit.Assert.*;
+
+/**
+ * The files, trees and checks shared by the tests of the {@link IndexFormat}s.
+ *
+ * @author Derek Caplinger
+ * @author Matt Youngberg
+ */
+final class IndexTestUtils {
+
+    /**
+     * The {@link BTree} file written to in the tests, and the start of the names of their index files.
+     */
+    static final String TEST_FILENAME = "Test_Index.tmp";
+
+    /**
+     * Not to be instantiated.
+     */
+    private IndexTestUtils() {
+    }
+
+    /**
+     * Get the index file of a format written to in the tests.
+     *
+     * @param format    the format
+     * @return          the path of the file
+     */
+    static Path getIndexPath(IndexFormat format) {
+        return Paths.get(TEST_FILENAME + format.getSuffix());
+    }
+
+    /**
+     * Delete the {@link BTree} file and the index files of every format.
+     */
+    static void deleteFiles() {
+        new File(TEST_FILENAME).delete();
+        for (IndexFormat format : IndexFormat.values()) {
+            getIndexPath(format).toFile().delete();
+        }
+    }
+
+    /**
+     * Build a {@link BTree} of distinct keys, each inserted one to three times, and write it to an index file of a
+     * format. Only even keys are inserted, so odd ones are absent. The {@link BTree} file is deleted afterwards.
+     *
+     * @param format        the format of the index
+     * @param length        the length of the subsequences of the tree, or 0 for none
+     * @param size          the number of distinct keys
+     * @param random        the source of the number of times each key is inserted
+     * @param keys          the source of the keys, of which the lowest bit is cleared
+     * @return              the frequency of each key, in the unsigned order of keys
+     * @throws Exception    if the tree or the index can't be written
+     */
+    static TreeMap<Long, Integer> writeIndex(IndexFormat format, int length, int size, Random random,
+                                             LongSupplier keys) throws Exception {
+        TreeMap<Long, Integer> expected = new TreeMap<>(Long::compareUnsigned);
+        BTree b = new BTree(2, TEST_FILENAME, 0, new BTreeOptions().subsequenceLength(length));
+        while (expected.size() < size) {
+            long key = keys.getAsLong() & ~1L;
+            int count = 1 + random.nextInt(3);
+            for (int i = 0; i < count; i++) {
+                b.insert(new TreeObject(key));
+            }
+            expected.merge(key, count, Integer::sum);
+        }
+        format.write(b, getIndexPath(format));
+        b.close();
+        new File(TEST_FILENAME).delete();
+        return expected;
+    }
+
+    /**
+     * Check that an index finds each of its keys with its frequency, and no key next to or below them, or with a high
+     * other than 0.
+     *
+     * @param index         the index
+     * @param expected      the frequency of each key, in the unsigned order of keys
+     * @throws IOException  if the index can't be read
+     */
+    static void assertFindsEveryKey(FrequencyIndex index, TreeMap<Long, Integer> expected) throws IOException {
+        assertEquals(expected.size(), index.getSize());
+        for (Map.Entry<Long, Integer> entry : expected.entrySet()) {
+            TreeObject found = index.search(0, entry.getKey());
+            assertEquals((long) entry.getKey(), found.getSubsequence());
+            assertEquals((int) entry.getValue(), found.getCount());
+            assertNull(index.search(0, entry.getKey() + 1));
+            assertNull(index.search(1, entry.getKey()));
+        }
+        if (!expected.isEmpty()) {
+            assertNull(index.search(0, expected.firstKey() - 1));
+        }
+        assertNull(index.search(0, -1));
+    }
+}
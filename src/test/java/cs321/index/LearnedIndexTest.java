@@ -0,0 +1,79 @@
+package cs321.index;
+
+import cs321.btree.BTree;
+import cs321.btree.BTreeOptions;
+import cs321.btree.TreeObject;
+import org.junit.After;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.LongSupplier;
+
+import static cs321.index.IndexTestUtils.*;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the {@link LearnedIndex} class. Searches are tested for every format by {@link IndexFormatTest}.
+ *
+ * @author Derek Caplinger
+ * @author Matt Youngberg
+ */
+public class LearnedIndexTest {
+
+    /**
+     * Delete the test files after each test.
+     */
+    @After
+    public void cleanUp() {
+        deleteFiles();
+    }
+
+    /**
+     * Test that an index of keys clumped together in runs far apart, which no one line fits, still finds each key,
+     * with no more segments than keys, and takes the size of file expected of its numbers of keys and segments.
+     *
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void testClumpedKeys() throws Exception {
+        Random random = new Random(321);
+        long[] run = new long[1];
+        LongSupplier keys = () -> {
+            if (random.nextInt(50) == 0) {
+                run[0] = random.nextLong() >>> 2;
+            }
+            return run[0] + random.nextInt(1000);
+        };
+        for (int size : new int[] {0, 1, 2, 100, 5000}) {
+            TreeMap<Long, Integer> expected = writeIndex(IndexFormat.PGM, 0, size, random, keys);
+            try (LearnedIndex index = new LearnedIndex(getIndexPath(IndexFormat.PGM))) {
+                int segmentCount = index.getSegmentCount();
+                assertEquals(LearnedIndex.getFileSize(size, segmentCount),
+                        Files.size(getIndexPath(IndexFormat.PGM)));
+                assertTrue(segmentCount <= size);
+                assertFindsEveryKey(index, expected);
+            }
+        }
+    }
+
+    /**
+     * Test that evenly spread keys take a small fraction as many segments as keys.
+     *
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void testFewSegments() throws Exception {
+        BTree b = new BTree(2, TEST_FILENAME, 0, new BTreeOptions().subsequenceLength(10));
+        Random random = new Random(321);
+        for (int i = 0; i < 20000; i++) {
+            b.insert(new TreeObject(random.nextInt(1 << 20)));
+        }
+        IndexFormat.PGM.write(b, getIndexPath(IndexFormat.PGM));
+        try (LearnedIndex index = new LearnedIndex(getIndexPath(IndexFormat.PGM))) {
+            assertTrue(index.getSegmentCount() * 100 < index.getSize());
+        }
+        b.close();
+    }
+}
@@ -0,0 +1,45 @@
+package cs321.index;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static cs321.index.IndexTestUtils.*;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the {@link PerfectHashIndex} class. Searches are tested for every format by {@link IndexFormatTest}.
+ *
+ * @author Derek Caplinger
+ * @author Matt Youngberg
+ */
+public class PerfectHashIndexTest {
+
+    /**
+     * Delete the test files after each test.
+     */
+    @After
+    public void cleanUp() {
+        deleteFiles();
+    }
+
+    /**
+     * Test that the function of an index of every size from empty to tens of thousands of keys takes few levels, as
+     * each level takes all but a fraction of the keys left for it.
+     *
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void testFewLevels() throws Exception {
+        Random random = new Random(321);
+        for (int size : new int[] {0, 1, 2, 63, 64, 65, 1000, 20000}) {
+            writeIndex(IndexFormat.MPHF, PerfectHashIndex.EXACT_MAX_LENGTH, size, random,
+                    () -> random.nextInt() & 0xFFFFFFFFL);
+            try (PerfectHashIndex index = new PerfectHashIndex(getIndexPath(IndexFormat.MPHF))) {
+                assertEquals(size, index.getSize());
+                assertTrue(index.getLevelCount() < 16);
+            }
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package cs321.search;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+
+/**
+ * Tests for {@link GeneBankQueryClientArguments}.
+ *
+ * @author Derek Caplinger
+ * @author Matt Youngberg
+ */
+public class GeneBankQueryClientArgumentsTest {
+
+    /**
+     * Query file name for testing.
+     */
+    private String queryFileName = "clientqueryfile.gbk";
+
+    /**
+     * BTree file name for testing, which needn't exist.
+     */
+    private String btreeFileName = "clientbtreefile.gbk";
+
+    /**
+     * Creates the test file before all tests are run.
+     */
+    @BeforeClass
+    public static void beforeAll() {
+        File file = new File("clientqueryfile.gbk");  // Literal because of @BeforeClass
+        try {
+            file.createNewFile();
+        } catch (Exception e) {
+            System.out.println("Error creating test file");
+        }
+    }
+
+    /**
+     * Deletes the test file after all tests are run.
+     */
+    @AfterClass
+    public static void afterAll() {
+        File file = new File("clientqueryfile.gbk");  // Literal because of @AfterClass
+        if (file.exists() && !file.isDirectory()) {
+            file.delete();
+        }
+    }
+
+    /**
+     * Tests the constructor.
+     */
+    @Test
+    public void testConstructor() {
+        // Should succeed
+        new GeneBankQueryClientArguments(btreeFileName, 3, queryFileName, 4000, SearchResultWriter.Format.TEXT, false);
+    }
+
+    /**
+     * Tests the equals method when two objects are equal.
+     */
+    @Test
+    public void testEqualsTrue() {
+        GeneBankQueryClientArguments args1 = new GeneBankQueryClientArguments(btreeFileName, 3, queryFileName, 4000, SearchResultWriter.Format.TEXT, false);
+        GeneBankQueryClientArguments args2 = new GeneBankQueryClientArguments(btreeFileName, 3, queryFileName, 4000, SearchResultWriter.Format.TEXT, false);
+        assert(args1.equals(args2));
+    }
+
+    /**
+     * Tests the equals method when two objects are not equal.
+     */
+    @Test
+    public void testEqualsFalse() {
+        GeneBankQueryClientArguments args1 = new GeneBankQueryClientArguments(btreeFileName, 3, queryFileName, 4000, SearchResultWriter.Format.TEXT, false);
+        GeneBankQueryClientArguments args2 = new GeneBankQueryClientArguments(btreeFileName, 3, queryFileName, 4001, SearchResultWriter.Format.TEXT, false);  // Different port
+        assert(!args1.equals(args2));
+    }
+
+    /**
+     * Tests that the getters return the correct values.
+     */
+    @Test
+    public void testGetters() {
+        GeneBankQueryClientArguments args = new GeneBankQueryClientArguments(btreeFileName, 3, queryFileName, 4000, SearchResultWriter.Format.COUNTS, true);
+        assert(args.getBtreeFileName().equals(btreeFileName));
+        assert(args.getSubsequenceLength() == 3);
+        assert(args.getQueryFileName().equals(queryFileName));
+        assert(args.getPort() == 4000);
+        assert(args.getOutputFormat() == SearchResultWriter.Format.COUNTS);
+        assert(args.useAsyncOutput());
+    }
+
+    /**
+     * Tests that {@link GeneBankQueryClientArguments#fromStringArgs(String[])} method returns the correct value when
+     * given correct arguments, with a BTree file that doesn't exist here.
+     */
+    @Test
+    public void testFromStringArgsHappyPath() {
+        String[] args = {"--btreefile=clientbtreefile.gbk", "--length=3", "--queryfile=clientqueryfile.gbk", "--port=4000", "--output=binary", "--asyncoutput=1"};
+        GeneBankQueryClientArguments arguments = GeneBankQueryClientArguments.fromStringArgs(args);
+        assert(arguments.getBtreeFileName().equals(btreeFileName));
+        assert(arguments.getSubsequenceLength() == 3);
+        assert(arguments.getQueryFileName().equals(queryFileName));
+        assert(arguments.getPort() == 4000);
+        assert(arguments.getOutputFormat() == SearchResultWriter.Format.BINARY);
+        assert(arguments.useAsyncOutput());
+    }
+
+    /**
+     * Tests that {@link GeneBankQueryClientArguments#fromStringArgs(String[])} method returns the correct value when
+     * given correct arguments without optional arguments.
+     */
+    @Test
+    public void testFromStringWithoutOptionalsHappyPath() {
+        String[] args = {"--queryfile=clientqueryfile.gbk", "--length=3", "--btreefile=clientbtreefile.gbk"};
+        GeneBankQueryClientArguments arguments = GeneBankQueryClientArguments.fromStringArgs(args);
+        assert(arguments.getPort() == GeneBankQueryServer.DEFAULT_PORT);
+        assert(arguments.getOutputFormat() == SearchResultWriter.Format.TEXT);
+        assert(!arguments.useAsyncOutput());
+    }
+
+    /**
+     * Tests that {@link GeneBankQueryClientArguments#fromStringArgs(String[])} throws when missing the length.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testMissingArgument() {
+        String[] args = {"--btreefile=clientbtreefile.gbk", "--queryfile=clientqueryfile.gbk"};
+        GeneBankQueryClientArguments.fromStringArgs(args);
+    }
+
+    /**
+     * Tests that {@link GeneBankQueryClientArguments#fromStringArgs(String[])} throws when the query file doesn't
+     * exist.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testNonExistentQueryFile() {
+        String[] args = {"--btreefile=clientbtreefile.gbk", "--length=3", "--queryfile=nonexistent.gbk"};
+        GeneBankQueryClientArguments.fromStringArgs(args);
+    }
+
+    /**
+     * Tests that {@link GeneBankQueryClientArguments#fromStringArgs(String[])} throws when the length is under 1.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadLengthUnder1() {
+        String[] args = {"--btreefile=clientbtreefile.gbk", "--length=0", "--queryfile=clientqueryfile.gbk"};
+        GeneBankQueryClientArguments.fromStringArgs(args);
+    }
+
+    /**
+     * Tests that {@link GeneBankQueryClientArguments#fromStringArgs(String[])} throws when the port is 0, which a
+     * server can listen on but a client can't connect to.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadPort0() {
+        String[] args = {"--btreefile=clientbtreefile.gbk", "--length=3", "--queryfile=clientqueryfile.gbk", "--port=0"};
+        GeneBankQueryClientArguments.fromStringArgs(args);
+    }
+
+    /**
+     * Tests that {@link GeneBankQueryClientArguments#fromStringArgs(String[])} throws when given an unknown output
+     * format.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadOutputFormat() {
+        String[] args = {"--btreefile=clientbtreefile.gbk", "--length=3", "--queryfile=clientqueryfile.gbk", "--output=xml"};
+        GeneBankQueryClientArguments.fromStringArgs(args);
+    }
+}
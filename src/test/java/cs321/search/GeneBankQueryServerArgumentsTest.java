@@ -0,0 +1,220 @@
+package cs321.search;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Tests for {@link GeneBankQueryServerArguments}.
+ *
+ * @author Derek Caplinger
+ * @author Matt Youngberg
+ */
+public class GeneBankQueryServerArgumentsTest {
+
+    /**
+     * BTree file name for testing.
+     */
+    private String btreeFileName = "serverbtreefile1.gbk";
+
+    /**
+     * Second BTree file name for testing.
+     */
+    private String otherBtreeFileName = "serverbtreefile2.gbk";
+
+    /**
+     * Creates the test files before all tests are run.
+     */
+    @BeforeClass
+    public static void beforeAll() {
+        for (String name : new String[] {"serverbtreefile1.gbk", "serverbtreefile2.gbk"}) {  // Literal because of @BeforeClass
+            File file = new File(name);
+            try {
+                file.createNewFile();
+            } catch (Exception e) {
+                System.out.println("Error creating test file");
+            }
+        }
+    }
+
+    /**
+     * Deletes the test files after all tests are run.
+     */
+    @AfterClass
+    public static void afterAll() {
+        for (String name : new String[] {"serverbtreefile1.gbk", "serverbtreefile2.gbk"}) {  // Literal because of @AfterClass
+            File file = new File(name);
+            if (file.exists() && !file.isDirectory()) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Tests the constructor.
+     */
+    @Test
+    public void testConstructor() {
+        // Should succeed
+        new GeneBankQueryServerArguments(Collections.singletonList(btreeFileName), 0, 100, 0);
+    }
+
+    /**
+     * Tests the equals method when two objects are equal.
+     */
+    @Test
+    public void testEqualsTrue() {
+        GeneBankQueryServerArguments args1 = new GeneBankQueryServerArguments(Arrays.asList(btreeFileName, otherBtreeFileName), 4000, 100, 0);
+        GeneBankQueryServerArguments args2 = new GeneBankQueryServerArguments(Arrays.asList(btreeFileName, otherBtreeFileName), 4000, 100, 0);
+        assert(args1.equals(args2));
+    }
+
+    /**
+     * Tests the equals method when two objects are not equal.
+     */
+    @Test
+    public void testEqualsFalse() {
+        GeneBankQueryServerArguments args1 = new GeneBankQueryServerArguments(Arrays.asList(btreeFileName, otherBtreeFileName), 4000, 100, 0);
+        GeneBankQueryServerArguments args2 = new GeneBankQueryServerArguments(Arrays.asList(otherBtreeFileName, btreeFileName), 4000, 100, 0);  // Different order
+        assert(!args1.equals(args2));
+    }
+
+    /**
+     * Tests that the getters return the correct values.
+     */
+    @Test
+    public void testGetters() {
+        GeneBankQueryServerArguments args = new GeneBankQueryServerArguments(Collections.singletonList(btreeFileName), 4000, 0, 64L << 20);
+        assert(args.getBtreeFileNames().equals(Collections.singletonList(btreeFileName)));
+        assert(args.getPort() == 4000);
+        assert(args.getCacheSize() == 0);
+        assert(args.getCacheMemory() == 64L << 20);
+    }
+
+    /**
+     * Tests that {@link GeneBankQueryServerArguments#fromStringArgs(String[])} method returns the correct value when
+     * given correct arguments.
+     */
+    @Test
+    public void testFromStringArgsHappyPath() {
+        String[] args = {"--btreefile=serverbtreefile1.gbk,serverbtreefile2.gbk", "--port=4000", "--cachesize=100"};
+        GeneBankQueryServerArguments arguments = GeneBankQueryServerArguments.fromStringArgs(args);
+        assert(arguments.getBtreeFileNames().equals(Arrays.asList(btreeFileName, otherBtreeFileName)));
+        assert(arguments.getPort() == 4000);
+        assert(arguments.getCacheSize() == 100);
+        assert(arguments.getCacheMemory() == 0);
+    }
+
+    /**
+     * Tests that {@link GeneBankQueryServerArguments#fromStringArgs(String[])} method returns the correct value when
+     * given correct arguments without optional arguments.
+     */
+    @Test
+    public void testFromStringWithoutOptionalsHappyPath() {
+        String[] args = {"--btreefile=serverbtreefile1.gbk"};
+        GeneBankQueryServerArguments arguments = GeneBankQueryServerArguments.fromStringArgs(args);
+        assert(arguments.getBtreeFileNames().equals(Collections.singletonList(btreeFileName)));
+        assert(arguments.getPort() == GeneBankQueryServer.DEFAULT_PORT);
+        assert(arguments.getCacheSize() == 0);
+        assert(arguments.getCacheMemory() == 0);
+    }
+
+    /**
+     * Tests that {@link GeneBankQueryServerArguments#fromStringArgs(String[])} accepts port 0 and a cache memory.
+     */
+    @Test
+    public void testFromStringArgsPort0CacheMemory() {
+        String[] args = {"--cachemem=512m", "--port=0", "--btreefile=serverbtreefile1.gbk"};
+        GeneBankQueryServerArguments arguments = GeneBankQueryServerArguments.fromStringArgs(args);
+        assert(arguments.getPort() == 0);
+        assert(arguments.getCacheMemory() == 512L << 20);
+    }
+
+    /**
+     * Tests that {@link GeneBankQueryServerArguments#fromStringArgs(String[])} throws when given an unknown argument.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownArgument() {
+        String[] args = {"--btreefile=serverbtreefile1.gbk", "--unknown=0"};
+        GeneBankQueryServerArguments.fromStringArgs(args);
+    }
+
+    /**
+     * Tests that {@link GeneBankQueryServerArguments#fromStringArgs(String[])} throws when missing the BTree file.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testMissingArgument() {
+        String[] args = {"--port=4000"};
+        GeneBankQueryServerArguments.fromStringArgs(args);
+    }
+
+    /**
+     * Tests that {@link GeneBankQueryServerArguments#fromStringArgs(String[])} throws when a BTree file doesn't exist.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testNonExistentBTreeFile() {
+        String[] args = {"--btreefile=serverbtreefile1.gbk,nonexistent.gbk"};
+        GeneBankQueryServerArguments.fromStringArgs(args);
+    }
+
+    /**
+     * Tests that {@link GeneBankQueryServerArguments#fromStringArgs(String[])} throws when a BTree file is given twice.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testDuplicateBTreeFile() {
+        String[] args = {"--btreefile=serverbtreefile1.gbk,serverbtreefile1.gbk"};
+        GeneBankQueryServerArguments.fromStringArgs(args);
+    }
+
+    /**
+     * Tests that {@link GeneBankQueryServerArguments#fromStringArgs(String[])} throws when the list of BTree files has
+     * an empty entry.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyBTreeFile() {
+        String[] args = {"--btreefile=serverbtreefile1.gbk,"};
+        GeneBankQueryServerArguments.fromStringArgs(args);
+    }
+
+    /**
+     * Tests that {@link GeneBankQueryServerArguments#fromStringArgs(String[])} throws when the port is over 65535.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadPortOver65535() {
+        String[] args = {"--btreefile=serverbtreefile1.gbk", "--port=65536"};
+        GeneBankQueryServerArguments.fromStringArgs(args);
+    }
+
+    /**
+     * Tests that {@link GeneBankQueryServerArguments#fromStringArgs(String[])} throws when the cache size is under 100.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadCacheSizeUnder100() {
+        String[] args = {"--btreefile=serverbtreefile1.gbk", "--cachesize=99"};
+        GeneBankQueryServerArguments.fromStringArgs(args);
+    }
+
+    /**
+     * Tests that {@link GeneBankQueryServerArguments#fromStringArgs(String[])} throws when the cache memory is too
+     * small.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testSmallCacheMemory() {
+        String[] args = {"--btreefile=serverbtreefile1.gbk", "--cachemem=4k"};
+        GeneBankQueryServerArguments.fromStringArgs(args);
+    }
+
+    /**
+     * Tests that {@link GeneBankQueryServerArguments#fromStringArgs(String[])} throws when given both a cache size and
+     * a cache memory.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testCacheMemoryWithCacheSize() {
+        String[] args = {"--btreefile=serverbtreefile1.gbk", "--cachesize=100", "--cachemem=64m"};
+        GeneBankQueryServerArguments.fromStringArgs(args);
+    }
+}
@@ -0,0 +1,202 @@
+package cs321.search;
+
+import cs321.btree.BTree;
+import cs321.btree.BTreeOptions;
+import cs321.btree.TreeObject;
+import cs321.create.SequenceUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the {@link GeneBankQueryServer} class.
+ *
+ * @author Derek Caplinger
+ * @author Matt Youngberg
+ */
+public class GeneBankQueryServerTest {
+
+    /**
+     * The {@link BTree} file served in these tests.
+     */
+    private static final String TEST_FILENAME = "Test_GeneBankQueryServer.tmp";
+
+    /**
+     * The subsequence length of the {@link BTree}.
+     */
+    private static final int LENGTH = 6;
+
+    /**
+     * The frequency inserted for each key.
+     */
+    private final int[] counts = new int[1 << (2 * LENGTH)];
+
+    /**
+     * The server under test.
+     */
+    private GeneBankQueryServer server;
+
+    /**
+     * The thread the server accepts connections on.
+     */
+    private Thread serverThread;
+
+    /**
+     * Write a {@link BTree} of random subsequences, and serve it on any free port.
+     *
+     * @throws Exception if the setup fails
+     */
+    @Before
+    public void setUp() throws Exception {
+        BTree b = new BTree(2, TEST_FILENAME, 0, new BTreeOptions().subsequenceLength(LENGTH));
+        Random random = new Random(321);
+        for (int i = 0; i < 5000; i++) {
+            int key = random.nextInt(counts.length);
+            b.insert(new TreeObject(key));
+            counts[key]++;
+        }
+        b.flush();
+        b.close();
+
+        server = new GeneBankQueryServer(new GeneBankQueryServerArguments(Collections.singletonList(TEST_FILENAME),
+                0, 100, 0));
+        serverThread = new Thread(() -> {
+            try {
+                server.serve();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        serverThread.start();
+    }
+
+    /**
+     * Close the server and delete the test file.
+     *
+     * @throws Exception if the cleanup fails
+     */
+    @After
+    public void cleanUp() throws Exception {
+        server.close();
+        serverThread.join(5000);
+        new File(TEST_FILENAME).delete();
+    }
+
+    /**
+     * Test that clients searching at once are each answered with the total frequency of each query and its complement,
+     * in the order of their queries, over several requests on one connection, across batches and with repeats.
+     *
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void testConcurrentClients() throws Exception {
+        ExecutorService clients = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int c = 0; c < 4; c++) {
+                int seed = c;
+                results.add(clients.submit(() -> {
+                    try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+                         BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                                 StandardCharsets.US_ASCII));
+                         Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII)) {
+                        Random random = new Random(seed);
+                        for (int request = 0; request < 3; request++) {
+                            int[] keys = new int[QueryBatchSearcher.BATCH_SIZE * 2 + 7];
+                            StringBuilder builder = new StringBuilder(GeneBankQueryServer.SEARCH).append(' ')
+                                    .append(TEST_FILENAME).append(' ').append(LENGTH).append(' ').append(keys.length)
+                                    .append('\n');
+                            for (int i = 0; i < keys.length; i++) {
+                                keys[i] = random.nextInt(counts.length);
+                                builder.append(SequenceUtils.longToDnaString(keys[i], LENGTH).toUpperCase())
+                                        .append('\n');
+                            }
+                            out.write(builder.toString());
+                            out.flush();
+
+                            assertEquals(GeneBankQueryServer.OK + " " + keys.length, in.readLine());
+                            for (int key : keys) {
+                                int complement = (int) SequenceUtils.getComplement(key, LENGTH);
+                                assertEquals(counts[key] + counts[complement], Integer.parseInt(in.readLine()));
+                            }
+                        }
+                        out.write(GeneBankQueryServer.QUIT + "\n");
+                        out.flush();
+                        assertNull(in.readLine());
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+
+    /**
+     * Test that a request for a file that isn't served, of the wrong length, with a query of another length than the
+     * request declares or with a query too long to encode is answered with an error and the connection stays open,
+     * that the file can also be named by its absolute path, and that a request that can't be read is answered with an
+     * error and the connection is closed.
+     *
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void testErrors() throws Exception {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                     StandardCharsets.US_ASCII));
+             Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII)) {
+            out.write("SEARCH nonexistent.tmp 6 1\naaaaaa\n");
+            out.flush();
+            assertTrue(in.readLine().startsWith(GeneBankQueryServer.ERROR + " "));
+
+            out.write("SEARCH " + TEST_FILENAME + " 5 1\naaaaa\n");
+            out.flush();
+            assertTrue(in.readLine().startsWith(GeneBankQueryServer.ERROR + " "));
+
+            out.write("SEARCH " + TEST_FILENAME + " 6 2\naaaaaa\naaa\n");
+            out.flush();
+            assertTrue(in.readLine().startsWith(GeneBankQueryServer.ERROR + " "));
+
+            StringBuilder tooLong = new StringBuilder();
+            for (int i = 0; i <= SequenceUtils.MAX_WIDE_LENGTH; i++) {
+                tooLong.append('a');
+            }
+            out.write("SEARCH " + TEST_FILENAME + " 6 2\naaaaaa\n" + tooLong + "\n");
+            out.flush();
+            assertTrue(in.readLine().startsWith(GeneBankQueryServer.ERROR + " "));
+
+            out.write("SEARCH " + new File(TEST_FILENAME).getAbsolutePath() + " 6 1\naaaaaa\n");
+            out.flush();
+            assertEquals(GeneBankQueryServer.OK + " 1", in.readLine());
+            int complement = (int) SequenceUtils.getComplement(0, LENGTH);
+            assertEquals(counts[0] + counts[complement], Integer.parseInt(in.readLine()));
+
+            out.write("FETCH everything\n");
+            out.flush();
+            assertTrue(in.readLine().startsWith(GeneBankQueryServer.ERROR + " "));
+            assertNull(in.readLine());
+        }
+    }
+}
@@ -311,8 +311,8 @@ public class GeneBankSearchBTreeArgumentsTest {
      * Tests that {@link GeneBankSearchBTreeArguments#fromStringArgs(String[])} throws when given an invalid length.
      */
     @Test(expected = IllegalArgumentException.class)
-    public void testBadLengthOver31() {
-        String[] args = {"--cache=1", "--degree=0", "--btreefile=btreefile.gbk", "--length=32", "--queryfile=queryfile.gbk", "--cachesize=100", "--debug=0"};
+    public void testBadLengthOver63() {
+        String[] args = {"--cache=1", "--degree=0", "--btreefile=btreefile.gbk", "--length=64", "--queryfile=queryfile.gbk", "--cachesize=100", "--debug=0"};
         GeneBankSearchBTreeArguments.fromStringArgs(args);
     }
 
@@ -371,4 +371,57 @@ public class GeneBankSearchBTreeArgumentsTest {
         String[] args = {"--cache=1", "--degree=0", "--btreefile=btreefile.gbk", "--length=3", "--queryfile=queryfile.gbk", "--cachesize=100", "--debug=2"};
         GeneBankSearchBTreeArguments.fromStringArgs(args);
     }
+
+    /**
+     * Tests that {@link GeneBankSearchBTreeArguments#fromStringArgs(String[])} parses the output format and async
+     * output arguments.
+     */
+    @Test
+    public void testFromStringArgsOutput() {
+        String[] args = {"--cache=0", "--degree=0", "--btreefile=btreefile.gbk", "--length=3", "--queryfile=queryfile.gbk", "--output=binary", "--asyncoutput=1"};
+        GeneBankSearchBTreeArguments arguments = GeneBankSearchBTreeArguments.fromStringArgs(args);
+        assert(arguments.getOutputFormat() == SearchResultWriter.Format.BINARY);
+        assert(arguments.useAsyncOutput());
+    }
+
+    /**
+     * Tests that {@link GeneBankSearchBTreeArguments#fromStringArgs(String[])} throws when given an unknown output
+     * format.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadOutputFormat() {
+        String[] args = {"--cache=0", "--degree=0", "--btreefile=btreefile.gbk", "--length=3", "--queryfile=queryfile.gbk", "--output=xml"};
+        GeneBankSearchBTreeArguments.fromStringArgs(args);
+    }
+
+    /**
+     * Tests that {@link GeneBankSearchBTreeArguments#fromStringArgs(String[])} accepts a cache memory in place of a
+     * cache size.
+     */
+    @Test
+    public void testFromStringArgsCacheMemory() {
+        String[] args = {"--cache=1", "--degree=0", "--btreefile=btreefile.gbk", "--length=3", "--queryfile=queryfile.gbk", "--cachemem=512m"};
+        GeneBankSearchBTreeArguments arguments = GeneBankSearchBTreeArguments.fromStringArgs(args);
+        assert(arguments.getCacheMemory() == 512L << 20);
+    }
+
+    /**
+     * Tests that {@link GeneBankSearchBTreeArguments#fromStringArgs(String[])} throws when the cache memory is too
+     * small.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testSmallCacheMemory() {
+        String[] args = {"--cache=1", "--degree=0", "--btreefile=btreefile.gbk", "--length=3", "--queryfile=queryfile.gbk", "--cachemem=4k"};
+        GeneBankSearchBTreeArguments.fromStringArgs(args);
+    }
+
+    /**
+     * Tests that {@link GeneBankSearchBTreeArguments#fromStringArgs(String[])} throws when given both a cache size and
+     * a cache memory.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testCacheMemoryWithCacheSize() {
+        String[] args = {"--cache=1", "--degree=0", "--btreefile=btreefile.gbk", "--length=3", "--queryfile=queryfile.gbk", "--cachesize=100", "--cachemem=64m"};
+        GeneBankSearchBTreeArguments.fromStringArgs(args);
+    }
 }
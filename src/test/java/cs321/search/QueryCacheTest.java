@@ -0,0 +1,62 @@
+package cs321.search;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the {@link QueryCache} class.
+ *
+ * @author Derek Caplinger
+ * @author Matt Youngberg
+ */
+public class QueryCacheTest {
+
+    /**
+     * Test that a key put in the cache is got back, a key never put isn't, and lookups are counted as hits or misses.
+     */
+    @Test
+    public void testGetAndPut() {
+        QueryCache cache = new QueryCache(1024);
+        assertEquals(QueryCache.ABSENT, cache.get(0));
+        cache.put(0, 5);
+        cache.put(-7, 0);
+        assertEquals(5, cache.get(0));
+        assertEquals(0, cache.get(-7));
+        assertEquals(QueryCache.ABSENT, cache.get(1));
+        assertEquals(2, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    /**
+     * Test that the cache rounds its capacity up to a power of two and never holds more entries than that, keeping
+     * the latest of keys that share a slot.
+     */
+    @Test
+    public void testBounded() {
+        QueryCache cache = new QueryCache(100);
+        assertEquals(128, cache.getCapacity());
+        for (long key = 0; key < 10000; key++) {
+            cache.put(key, key);
+        }
+        int held = 0;
+        for (long key = 0; key < 10000; key++) {
+            long value = cache.get(key);
+            if (value != QueryCache.ABSENT) {
+                assertEquals(key, value);
+                held++;
+            }
+        }
+        assertTrue(held <= cache.getCapacity());
+        assertEquals(cache.getCapacity(), held);  // Every slot was put in, and holds the key put in it last
+        assertEquals(9999, cache.get(9999));
+    }
+
+    /**
+     * Test that the absent value can't be put.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testPutAbsent() {
+        new QueryCache(16).put(1, QueryCache.ABSENT);
+    }
+}
@@ -0,0 +1,81 @@
+package cs321.search;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link SearchResultWriter}.
+ *
+ * @author Derek Caplinger
+ * @author Matt Youngberg
+ */
+public class SearchResultWriterTest {
+
+    /**
+     * Test that the text format matches what the search programs have always printed.
+     */
+    @Test
+    public void testTextFormat() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (SearchResultWriter writer = SearchResultWriter.create(SearchResultWriter.Format.TEXT, out, false)) {
+            writer.write("acgt", 27, 0);
+            writer.write("ttt", 63, 1234567);
+        }
+        assertEquals("acgt 0\nttt 1234567\n", new String(out.toByteArray(), StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Test that the counts format only writes the counts.
+     */
+    @Test
+    public void testCountsFormat() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (SearchResultWriter writer = SearchResultWriter.create(SearchResultWriter.Format.COUNTS, out, false)) {
+            writer.write("acgt", 27, 10);
+            writer.write("ttt", 63, 0);
+        }
+        assertEquals("10\n0\n", new String(out.toByteArray(), StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Test that the binary format writes a big-endian encoding and count per result.
+     */
+    @Test
+    public void testBinaryFormat() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (SearchResultWriter writer = SearchResultWriter.create(SearchResultWriter.Format.BINARY, out, false)) {
+            writer.write("acgt", 27, 10);
+            writer.write("ttt", 63, 0);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(out.toByteArray());
+        assertEquals(2 * (Long.BYTES + Integer.BYTES), buffer.remaining());
+        assertEquals(27, buffer.getLong());
+        assertEquals(10, buffer.getInt());
+        assertEquals(63, buffer.getLong());
+        assertEquals(0, buffer.getInt());
+    }
+
+    /**
+     * Test that writing on a background thread produces the same output, even when the buffer has to be drained many
+     * times.
+     */
+    @Test
+    public void testAsyncMatchesSync() throws IOException {
+        ByteArrayOutputStream syncOut = new ByteArrayOutputStream();
+        ByteArrayOutputStream asyncOut = new ByteArrayOutputStream();
+        try (SearchResultWriter sync = SearchResultWriter.create(SearchResultWriter.Format.TEXT, syncOut, false);
+             SearchResultWriter async = SearchResultWriter.create(SearchResultWriter.Format.TEXT, asyncOut, true)) {
+            for (int i = 0; i < 100000; i++) {
+                sync.write("acgtacgtac", i, i);
+                async.write("acgtacgtac", i, i);
+            }
+        }
+        assertArrayEquals(syncOut.toByteArray(), asyncOut.toByteArray());
+    }
+}